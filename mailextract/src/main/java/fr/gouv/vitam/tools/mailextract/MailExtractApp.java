@@ -153,6 +153,17 @@ import static fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger
  * <td>model of extraction on disk 1 or 2 (default 2)</td>
  * </tr>
  * <tr>
+ * <td>--threads x</td>
+ * <td>number of threads used for elements extraction (default 1, sequential
+ * extraction)</td>
+ * </tr>
+ * <tr>
+ * <td>--mboxindex</td>
+ * <td>keep the mbox files messages slices in a "rootdir/name.index" directory,
+ * beside the extraction directory, to avoid scanning again the same mbox files
+ * in next extractions</td>
+ * </tr>
+ * <tr>
  * <td>--verbatim x</td>
  * <td>event level to log (OFF|GLOBAL|WARNING|FOLDER|MESSAGE_GROUP|MESSAGE|MESSAGE_DETAILS)</td>
  * </tr>
@@ -269,6 +280,14 @@ public class MailExtractApp {
                 "model of extraction on disk 1 or 2 (default 2)");
         options.addOption(model);
 
+        Option threads = new Option("threads", "threads", true,
+                "number of threads used for elements extraction (default 1, sequential extraction)");
+        options.addOption(threads);
+
+        Option mboxindex = new Option("mboxindex", "mboxindex", false,
+                "keep the mbox files messages slices in a rootdir/name.index directory, to avoid scanning again the same mbox files in next extractions");
+        options.addOption(mboxindex);
+
         Option warning = new Option("w", "warning", false,
                 "generate warning when there's a problem on a message (otherwise log at MESSAGE_DETAILS level)");
         options.addOption(warning);
@@ -307,6 +326,7 @@ public class MailExtractApp {
         int port = -1;
         int namesLength = 12;
         int model = 2;
+        int threadCount = 1;
         StoreExtractorOptions storeExtractorOptions;
         boolean local = false;
         String logLevel, defaultCharset;
@@ -371,6 +391,20 @@ public class MailExtractApp {
             }
         }
 
+        if (cmd.hasOption("threads")) {
+            try {
+                threadCount = Integer.parseInt((String) cmd.getOptionValue("threads"));
+
+            } catch (NumberFormatException e) {
+                System.err.println("the threads argument must be numeric");
+                System.exit(1);
+            }
+            if (threadCount < 1) {
+                System.err.println("the threads argument must be at least 1");
+                System.exit(1);
+            }
+        }
+
         // identify protocol option
         if (cmd.hasOption("type"))
             protocol = (String) cmd.getOptionValue("type");
@@ -388,6 +422,8 @@ public class MailExtractApp {
                 cmd.hasOption("warning"), namesLength, defaultCharset, cmd.hasOption("extractlists"), cmd.hasOption("extractmessagetextfile"),
                 cmd.hasOption("extractmessagetextmetadata"), cmd.hasOption("extractfiletextfile"),
                 cmd.hasOption("extractfiletextmetadata"), model);
+        storeExtractorOptions.threadCount = threadCount;
+        storeExtractorOptions.mboxSlicesIndex = cmd.hasOption("mboxindex");
 
         // specific option parsing for local type extraction
         switch (protocol) {
@@ -121,22 +121,27 @@ public abstract class StoreAppointment extends StoreElement {
      * @throws MailExtractLibException the mail extract lib exception
      */
     public void extractAppointment(boolean writeFlag, StoreAppointment father) throws InterruptedException, MailExtractLibException {
-        if (writeFlag && storeFolder.getStoreExtractor().getOptions().extractObjectsLists) {
-            writeToAppointmentsList(father);
-            if ((attachments!=null) && (!attachments.isEmpty())) {
-                ArchiveUnit attachmentNode = new ArchiveUnit(storeFolder.storeExtractor, storeFolder.storeExtractor.destRootPath +
-                        File.separator + storeFolder.storeExtractor.destName + File.separator + "appointments", "AppointmentAttachments#" + listLineId);
-                attachmentNode.addMetadata("DescriptionLevel", "RecordGrp", true);
-                attachmentNode.addMetadata("Title", "Appointment Attachments #" + listLineId, true);
-                attachmentNode.addMetadata("Description", "Appointment attachments extracted for " + subject + "[" + startTime + "-" + endTime + "]", true);
-                attachmentNode.addMetadata("StartDate", getDateInUTCTimeZone(startTime), true);
-                attachmentNode.addMetadata("EndDate", getDateInUTCTimeZone(endTime), true);
-                attachmentNode.write();
-                StoreAttachment.extractAttachments(attachments, attachmentNode, writeFlag);
+        try {
+            if (writeFlag && storeFolder.getStoreExtractor().getOptions().extractObjectsLists) {
+                writeToAppointmentsList(father);
+                if ((attachments!=null) && (!attachments.isEmpty())) {
+                    ArchiveUnit attachmentNode = new ArchiveUnit(storeFolder.storeExtractor, storeFolder.storeExtractor.destRootPath +
+                            File.separator + storeFolder.storeExtractor.destName + File.separator + "appointments", "AppointmentAttachments#" + listLineId);
+                    attachmentNode.addMetadata("DescriptionLevel", "RecordGrp", true);
+                    attachmentNode.addMetadata("Title", "Appointment Attachments #" + listLineId, true);
+                    attachmentNode.addMetadata("Description", "Appointment attachments extracted for " + subject + "[" + startTime + "-" + endTime + "]", true);
+                    attachmentNode.addMetadata("StartDate", getDateInUTCTimeZone(startTime), true);
+                    attachmentNode.addMetadata("EndDate", getDateInUTCTimeZone(endTime), true);
+                    attachmentNode.write();
+                    StoreAttachment.extractAttachments(attachments, attachmentNode, writeFlag);
+                }
+                if (exceptions != null)
+                    for (StoreAppointment a : exceptions)
+                        a.extractAppointment(writeFlag, this);
             }
-            if (exceptions != null)
-                for (StoreAppointment a : exceptions)
-                    a.extractAppointment(writeFlag, this);
+        } finally {
+            // spilled attachments contents are no more needed
+            StoreAttachment.releaseAttachments(attachments);
         }
     }
 
@@ -32,9 +32,13 @@ import fr.gouv.vitam.tools.mailextractlib.nodes.ArchiveUnit;
 import fr.gouv.vitam.tools.mailextractlib.utils.DateRange;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 
 import javax.activation.MimeType;
 import javax.activation.MimeTypeParseException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
@@ -50,7 +54,7 @@ public class StoreAttachment {
     /** Father Store Element of the attachment **/
     protected StoreElement fatherElement;
 
-    /** Attachment content. */
+    /** Attachment content, byte[] or SpillableBuffer when too big to be kept in memory, for binary content. */
     protected Object attachmentContent;
 
     /** Attachment store scheme or null if only an attachment file. */
@@ -71,6 +75,15 @@ public class StoreAttachment {
     /** Attachment type. */
     protected int attachmentType;
 
+    /** Text extracted from the attachment during the extraction preparation, if any. */
+    private String preparedTextExtract;
+
+    /** Exception of the text extraction during the extraction preparation, if any. */
+    private MailExtractLibException preparedTextExtractException;
+
+    /** True if the text extraction has been done during the extraction preparation. */
+    private boolean textExtractPrepared;
+
     // /** Macro types of attachment. */
 
     /** The Constant FILE_ATTACHMENT. */
@@ -114,6 +127,10 @@ public class StoreAttachment {
 
     /**
      * Gets the raw attachment content.
+     * <p>
+     * If the content has been spilled to a temporary file, because too big, it's
+     * loaded in memory, so {@link #getRawAttachmentInputStream()} is to be
+     * preferred whenever possible.
      *
      * @return the raw attachment content
      * @throws MailExtractLibException
@@ -122,7 +139,34 @@ public class StoreAttachment {
     public byte[] getRawAttachmentContent() throws MailExtractLibException {
         if (attachmentContent instanceof byte[])
             return (byte[]) attachmentContent;
-        else
+        else if (attachmentContent instanceof SpillableBuffer) {
+            try {
+                return ((SpillableBuffer) attachmentContent).toByteArray();
+            } catch (IOException e) {
+                throw new MailExtractLibException("mailextractlib: can't read the spilled attachment content", e);
+            }
+        } else
+            throw new MailExtractLibException("mailextractlib: this attachment has no binary form", null);
+    }
+
+    /**
+     * Gets a new input stream on the raw attachment content, be it in memory or
+     * spilled to a temporary file.
+     *
+     * @return the raw attachment content input stream
+     * @throws MailExtractLibException
+     *             the extraction exception
+     */
+    public InputStream getRawAttachmentInputStream() throws MailExtractLibException {
+        if (attachmentContent instanceof byte[])
+            return new ByteArrayInputStream((byte[]) attachmentContent);
+        else if (attachmentContent instanceof SpillableBuffer) {
+            try {
+                return ((SpillableBuffer) attachmentContent).getInputStream();
+            } catch (IOException e) {
+                throw new MailExtractLibException("mailextractlib: can't read the spilled attachment content", e);
+            }
+        } else
             throw new MailExtractLibException("mailextractlib: this attachment has no binary form", null);
     }
 
@@ -221,13 +265,13 @@ public class StoreAttachment {
         if (attachments != null && !attachments.isEmpty()) {
             for (StoreAttachment a : attachments) {
                 if ((a.attachmentType != StoreAttachment.STORE_ATTACHMENT)
-                        && (a.attachmentContent instanceof byte[])
+                        && ((a.attachmentContent instanceof byte[]) || (a.attachmentContent instanceof SpillableBuffer))
                         // special case for ms-tnef attachments "winmail.dat" because tika can identify them as rfc822
                         // when part of it is mail
                         && (!a.mimeType.toLowerCase().equals("application/ms-tnef")
                         && (!a.mimeType.toLowerCase().equals("application/vnd.ms-tnef")))) {
-                    try {
-                        mimeType = TikaExtractor.getInstance().getMimeType(a.getRawAttachmentContent());
+                    try (InputStream is = a.getRawAttachmentInputStream()) {
+                        mimeType = TikaExtractor.getInstance().getMimeType(is);
                         if (mimeType == null)
                             continue;
                         for (String mt : StoreExtractor.mimeTypeSchemeMap.keySet()) {
@@ -236,7 +280,7 @@ public class StoreAttachment {
                                 break;
                             }
                         }
-                    } catch (MailExtractLibException e) {
+                    } catch (MailExtractLibException | IOException e) {
                         // forget it
                     }
                 }
@@ -244,6 +288,40 @@ public class StoreAttachment {
         }
     }
 
+    /**
+     * Prepare the extraction of all file or inline attachments, which doesn't
+     * depend on the ArchiveUnits, that is to say mainly the text extraction.
+     *
+     * @param attachments the attachments
+     * @param writeFlag   the write flag
+     */
+    static void prepareAttachmentsExtraction(List<StoreAttachment> attachments, boolean writeFlag) {
+        if ((attachments != null) && writeFlag) {
+            for (StoreAttachment a : attachments)
+                if (a.attachmentType != StoreAttachment.STORE_ATTACHMENT)
+                    a.prepareFileOrInlineAttachmentExtraction();
+        }
+    }
+
+    private void prepareFileOrInlineAttachmentExtraction() {
+        StoreExtractor fatherExtractor = fatherElement.getStoreExtractor();
+
+        if ((name == null) || name.isEmpty())
+            name = "[Vide]";
+        if (!textExtractPrepared
+                && (fatherExtractor.options.extractFileTextFile || fatherExtractor.options.extractFileTextMetadata)) {
+            try {
+                if (attachmentContent instanceof SpillableBuffer)
+                    preparedTextExtract = TikaExtractor.getInstance().extractTextFromStream(getRawAttachmentInputStream());
+                else
+                    preparedTextExtract = TikaExtractor.getInstance().extractTextFromBinary(getRawAttachmentContent());
+            } catch (MailExtractLibException ee) {
+                preparedTextExtractException = ee;
+            }
+        }
+        textExtractPrepared = true;
+    }
+
     /**
      * Extract all attachments as children node of a specific ArchiveUnit node.
      * <p>
@@ -272,6 +350,23 @@ public class StoreAttachment {
         }
     }
 
+    /**
+     * Release the spilled contents of all attachments, if any, which are no more
+     * needed when the father element has been extracted.
+     *
+     * @param attachments the attachments
+     */
+    static void releaseAttachments(List<StoreAttachment> attachments) {
+        if (attachments != null) {
+            for (StoreAttachment a : attachments) {
+                if (a.attachmentContent instanceof SpillableBuffer) {
+                    ((SpillableBuffer) a.attachmentContent).release();
+                    a.attachmentContent = null;
+                }
+            }
+        }
+    }
+
     /**
      * Extract a file or inline message attachment.
      */
@@ -279,8 +374,7 @@ public class StoreAttachment {
         ArchiveUnit attachmentNode;
         StoreExtractor fatherExtractor=fatherElement.getStoreExtractor();
 
-        if ((name == null) || name.isEmpty())
-            name = "[Vide]";
+        prepareFileOrInlineAttachmentExtraction();
         attachmentNode = new ArchiveUnit(fatherExtractor, node, "Attachment", name);
         attachmentNode.addMetadata("DescriptionLevel", "Item", true);
         attachmentNode.addMetadata("Title", name, true);
@@ -301,18 +395,17 @@ public class StoreAttachment {
         if (date != null)
             attachmentNode.addMetadata("CreatedDate", DateRange.getISODateString(creationDate), true);
 
-        // Raw object extraction
-        attachmentNode.addObject(getRawAttachmentContent(), name, "BinaryMaster", 1);
+        // Raw object extraction, streamed from temporary file if spilled
+        if (attachmentContent instanceof SpillableBuffer)
+            attachmentNode.addObject((SpillableBuffer) attachmentContent, name, "BinaryMaster", 1);
+        else
+            attachmentNode.addObject(getRawAttachmentContent(), name, "BinaryMaster", 1);
 
-        // Text object extraction
-        String textExtract = null;
-        if (fatherExtractor.options.extractFileTextFile || fatherExtractor.options.extractFileTextMetadata)
-            try {
-                textExtract = TikaExtractor.getInstance().extractTextFromBinary(getRawAttachmentContent());
-            } catch (MailExtractLibException ee) {
-                doProgressLog(fatherExtractor.getProgressLogger(), MailExtractProgressLogger.MESSAGE_DETAILS,
-                        "mailextractlib: can't extract text content from attachment " + name, ee);
-            }
+        // Text object extraction, done in preparation
+        String textExtract = preparedTextExtract;
+        if (preparedTextExtractException != null)
+            doProgressLog(fatherExtractor.getProgressLogger(), MailExtractProgressLogger.MESSAGE_DETAILS,
+                    "mailextractlib: can't extract text content from attachment " + name, preparedTextExtractException);
         // put in file
         if (fatherExtractor.options.extractFileTextFile && (!((textExtract == null) || textExtract.trim().isEmpty()))) {
             attachmentNode.addObject(textExtract.getBytes(StandardCharsets.UTF_8), name + ".txt", "TextContent", 1);
@@ -0,0 +1,261 @@
+/**
+ * Copyright French Prime minister Office/SGMAP/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@culture.gouv.fr
+ * <p>
+ * This software is a computer program whose purpose is to implement a digital archiving back-office system managing
+ * high volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA at the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+
+package fr.gouv.vitam.tools.mailextractlib.core;
+
+import fr.gouv.vitam.tools.mailextractlib.nodes.ArchiveUnit;
+import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline for concurrent folders elements extraction.
+ * <p>
+ * The store is read only by the extraction thread, which also analyzes the
+ * messages, as the store access libraries are not thread safe. The messages
+ * extraction preparation (text content, attachments text extraction and mime
+ * fake generation) is then done by a bounded pool of worker threads, while the
+ * extraction thread goes on reading the store. The prepared messages are then
+ * extracted by the extraction thread in the store order, so that the
+ * ArchiveUnits are named as in a sequential extraction, and their disk writing
+ * is done by the worker threads.
+ * <p>
+ * When the store gives independent access to each message, as for mbox files
+ * sliced in messages, the messages building and analysis is also done by the
+ * worker threads.
+ */
+class StoreElementsPipeline {
+
+    // Utility class containing one element in the pipeline
+    private static class PendingElement {
+        /**
+         * The element.
+         */
+        StoreElement element;
+        /**
+         * The write flag.
+         */
+        boolean writeFlag;
+        /**
+         * The extraction preparation future, or null if not a message.
+         */
+        Future<?> preparation;
+        /**
+         * The message building and analysis future, or null if not concurrently analyzed.
+         */
+        Future<StoreMessage> analysis;
+
+        /**
+         * Instantiates a new pending element.
+         *
+         * @param element   the element
+         * @param writeFlag the write flag
+         */
+        PendingElement(StoreElement element, boolean writeFlag) {
+            this.element = element;
+            this.writeFlag = writeFlag;
+            this.preparation = null;
+            this.analysis = null;
+        }
+    }
+
+    // max number of elements read but not yet extracted
+    private final int maxPendingElements;
+
+    // worker threads pool, the extraction thread runs tasks itself when the queue is full
+    private final ThreadPoolExecutor executor;
+
+    // elements read in the store order, and not yet extracted
+    private final ArrayDeque<PendingElement> pendingElements;
+
+    // ArchiveUnits disk writing not yet verified
+    private final ArrayDeque<Future<?>> pendingWrites;
+
+    /**
+     * Instantiates a new store elements pipeline.
+     *
+     * @param threadCount the number of worker threads
+     */
+    StoreElementsPipeline(int threadCount) {
+        this.maxPendingElements = 2 * threadCount;
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(2 * threadCount), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.pendingElements = new ArrayDeque<PendingElement>();
+        this.pendingWrites = new ArrayDeque<Future<?>>();
+    }
+
+    /**
+     * Submit an element read in the store.
+     * <p>
+     * A message is analyzed and its extraction preparation is given to the
+     * worker threads. Other elements are entirely processed when their turn
+     * comes.
+     *
+     * @param element   the element
+     * @param writeFlag the write flag
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     * @throws InterruptedException    the interrupted exception
+     */
+    void submitElement(StoreElement element, boolean writeFlag) throws MailExtractLibException, InterruptedException {
+        PendingElement pendingElement = new PendingElement(element, writeFlag);
+        if (element instanceof StoreMessage) {
+            StoreMessage message = (StoreMessage) element;
+            message.analyzeElement();
+            pendingElement.preparation = executor.submit(() -> {
+                message.prepareExtraction(writeFlag);
+                return null;
+            });
+        }
+        pendingElements.add(pendingElement);
+        while (pendingElements.size() > maxPendingElements)
+            commitFirstElement();
+    }
+
+    /**
+     * Submit a message to be built, analyzed and prepared by the worker threads.
+     * <p>
+     * This is possible only if the store gives independent concurrent access to
+     * each message.
+     *
+     * @param messageBuilder the message builder
+     * @param writeFlag      the write flag
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     * @throws InterruptedException    the interrupted exception
+     */
+    void submitMessage(StoreFolder.MessageBuilder messageBuilder, boolean writeFlag) throws MailExtractLibException, InterruptedException {
+        PendingElement pendingElement = new PendingElement(null, writeFlag);
+        pendingElement.analysis = executor.submit(() -> {
+            StoreMessage message = messageBuilder.build();
+            if (message != null) {
+                message.analyzeMessage();
+                message.prepareExtraction(writeFlag);
+            }
+            return message;
+        });
+        pendingElements.add(pendingElement);
+        while (pendingElements.size() > maxPendingElements)
+            commitFirstElement();
+    }
+
+    // extract the first pending element, waiting for its analysis or preparation if needed
+    private void commitFirstElement() throws MailExtractLibException, InterruptedException {
+        PendingElement pendingElement = pendingElements.removeFirst();
+        if (pendingElement.analysis != null) {
+            StoreMessage message = getResult(pendingElement.analysis);
+            if (message != null) {
+                message.registerAnalyzedElement();
+                message.commitElement(pendingElement.writeFlag);
+            }
+        } else if (pendingElement.preparation == null)
+            pendingElement.element.processElement(pendingElement.writeFlag);
+        else {
+            getResult(pendingElement.preparation);
+            ((StoreMessage) pendingElement.element).commitElement(pendingElement.writeFlag);
+        }
+    }
+
+    /**
+     * Extract all the pending elements.
+     *
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     * @throws InterruptedException    the interrupted exception
+     */
+    void commitAllElements() throws MailExtractLibException, InterruptedException {
+        while (!pendingElements.isEmpty())
+            commitFirstElement();
+    }
+
+    /**
+     * Submit an ArchiveUnit disk writing to the worker threads.
+     * <p>
+     * Writing failures of previously submitted ArchiveUnits, if any, are thrown
+     * at this time.
+     *
+     * @param archiveUnit the ArchiveUnit, which must not be modified any more
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     */
+    void submitWrite(ArchiveUnit archiveUnit) throws MailExtractLibException {
+        for (Iterator<Future<?>> it = pendingWrites.iterator(); it.hasNext(); ) {
+            Future<?> write = it.next();
+            if (write.isDone()) {
+                it.remove();
+                try {
+                    getResult(write);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MailExtractLibException("mailextractlib: interrupted", e);
+                }
+            }
+        }
+        pendingWrites.add(executor.submit(() -> {
+            archiveUnit.writeImmediately();
+            return null;
+        }));
+    }
+
+    /**
+     * Wait for all the submitted ArchiveUnits disk writing.
+     *
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     * @throws InterruptedException    the interrupted exception
+     */
+    void waitAllWrites() throws MailExtractLibException, InterruptedException {
+        while (!pendingWrites.isEmpty())
+            getResult(pendingWrites.removeFirst());
+    }
+
+    /**
+     * Stop the worker threads.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // wait for a task and throw its failure cause, if any
+    private static <T> T getResult(Future<T> future) throws MailExtractLibException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MailExtractLibException)
+                throw (MailExtractLibException) cause;
+            else if (cause instanceof InterruptedException)
+                throw (InterruptedException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new MailExtractLibException("mailextractlib: concurrent extraction failure", cause);
+        }
+    }
+}
@@ -286,6 +286,9 @@ public abstract class StoreExtractor {
     // private logger
     private MailExtractProgressLogger logger;
 
+    // private pipeline for concurrent elements extraction, only in root store extractor during extraction
+    private StoreElementsPipeline elementsPipeline;
+
     /**
      * The Global lists ps map.
      * private map of printstreams for global lists extraction
@@ -615,6 +618,20 @@ public abstract class StoreExtractor {
         return !((destName == null) || destName.isEmpty());
     }
 
+    /**
+     * Gets the directory of the indexes kept between extractions (for example
+     * mbox files messages slices), beside the extraction directory so that they
+     * are not part of the extraction.
+     *
+     * @return the index directory, or null if the slices index option is not set
+     * or there's no extraction directory
+     */
+    public File getIndexDirectory() {
+        if (!options.mboxSlicesIndex || (destRootPath == null) || !hasDestName())
+            return null;
+        return new File(destRootPath, destName + ".index");
+    }
+
     /**
      * Gets a uniq ID in store extractor context.
      * <p>
@@ -633,6 +650,34 @@ public abstract class StoreExtractor {
         return id;
     }
 
+    /**
+     * Gets the pipeline for concurrent elements extraction of this store
+     * extractor, defined only in root store extractor during extraction with more
+     * than one thread.
+     *
+     * @return the elements pipeline, or null
+     */
+    StoreElementsPipeline getElementsPipeline() {
+        return elementsPipeline;
+    }
+
+    /**
+     * Submit the ArchiveUnit disk writing to the root store extractor elements
+     * pipeline, if any.
+     *
+     * @param archiveUnit the ArchiveUnit, which must not be modified any more
+     * @return true, if submitted, false if the ArchiveUnit has to be written by the caller
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     */
+    public boolean submitArchiveUnitWrite(ArchiveUnit archiveUnit) throws MailExtractLibException {
+        if (rootStoreExtractor != null)
+            return rootStoreExtractor.submitArchiveUnitWrite(archiveUnit);
+        if (elementsPipeline == null)
+            return false;
+        elementsPipeline.submitWrite(archiveUnit);
+        return true;
+    }
+
     /**
      * Add to total raw size.
      *
@@ -848,13 +893,32 @@ public abstract class StoreExtractor {
      * @throws InterruptedException    the interrupted exception
      */
     public void extractAllFolders() throws MailExtractLibException, InterruptedException {
-        String title;
-
         start = Instant.now();
 
         writeTargetLog();
         doProgressLog(logger, MailExtractProgressLogger.GLOBAL, "mailextractlib: extraction begin", null);
 
+        if (isRoot() && (options.threadCount > 1))
+            elementsPipeline = new StoreElementsPipeline(options.threadCount);
+        try {
+            extractAllFoldersContent();
+        } finally {
+            if (elementsPipeline != null) {
+                elementsPipeline.shutdown();
+                elementsPipeline = null;
+            }
+        }
+
+        end = Instant.now();
+        String summary = "Terminated in " + getSummary();
+        doProgressLog(logger, MailExtractProgressLogger.GLOBAL, "mailextractlib: " + summary, null);
+        System.out.println(summary);
+    }
+
+    // extract folders and root node, waiting for all disk writing in pipelined extraction
+    private void extractAllFoldersContent() throws MailExtractLibException, InterruptedException {
+        String title;
+
         rootStoreFolder.extractFolderAsRoot(true);
 
         ArchiveUnit rootNode = rootStoreFolder.getArchiveUnit();
@@ -877,11 +941,8 @@ public abstract class StoreExtractor {
             rootNode.addMetadata("EndDate", DateRange.getISODateString(rootStoreFolder.dateRange.getEnd()), true);
         }
         rootNode.write();
-
-        end = Instant.now();
-        String summary = "Terminated in " + getSummary();
-        doProgressLog(logger, MailExtractProgressLogger.GLOBAL, "mailextractlib: " + summary, null);
-        System.out.println(summary);
+        if (elementsPipeline != null)
+            elementsPipeline.waitAllWrites();
     }
 
     /**
@@ -27,6 +27,8 @@
 
 package fr.gouv.vitam.tools.mailextractlib.core;
 
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
+
 /**
  * StoreExtractorOptions class for all extraction options.
  */
@@ -68,6 +70,18 @@ public class StoreExtractorOptions {
     /** The model of extraction on disk. */
     public int model;
 
+    /** The number of threads used for elements extraction, 1 for a sequential extraction. */
+    public int threadCount;
+
+    /** The size above which binary contents (attachments, messages) are spilled to temporary files instead of being kept in memory. */
+    public long contentSpillThreshold;
+
+    /** The mbox files memory mapping flag, if false mbox files are read through files kept open, which are not locked after extraction. */
+    public boolean mboxMemoryMapping;
+
+    /** The mbox files messages slices index flag, if true the slices are kept in a directory beside the extraction directory to be reused by next extractions. */
+    public boolean mboxSlicesIndex;
+
     /**
      * Instantiates a new store extractor options.
      */
@@ -83,6 +97,10 @@ public class StoreExtractorOptions {
         extractFileTextMetadata = false;
         defaultCharsetName = "windows-1252";
         model = 2;
+        threadCount = 1;
+        contentSpillThreshold = SpillableBuffer.DEFAULT_SPILL_THRESHOLD;
+        mboxMemoryMapping = true;
+        mboxSlicesIndex = false;
     }
 
     /**
@@ -115,5 +133,9 @@ public class StoreExtractorOptions {
         this.extractFileTextFile = extractFileTextFile;
         this.extractFileTextMetadata = extractFileTextMetadata;
         this.model = model;
+        this.threadCount = 1;
+        this.contentSpillThreshold = SpillableBuffer.DEFAULT_SPILL_THRESHOLD;
+        this.mboxMemoryMapping = true;
+        this.mboxSlicesIndex = false;
     }
 }
@@ -335,8 +335,90 @@ public abstract class StoreFolder {
     private void extractFolderElements(boolean writeFlag) throws MailExtractLibException, InterruptedException {
         folderElementsCount = 0;
         folderElementsRawSize = 0;
-        if (hasElements())
+        if (hasElements()) {
             doExtractFolderElements(writeFlag);
+            commitExtractedElements();
+        }
+    }
+
+    /**
+     * Extract one folder element, to be used in
+     * {@link #doExtractFolderElements doExtractFolderElements}.
+     * <p>
+     * In a pipelined extraction (more than one thread) the element is only
+     * analyzed, its extraction being done later in the store order, at the
+     * latest when {@link #commitExtractedElements commitExtractedElements} is
+     * called. Otherwise the element is immediately processed.
+     *
+     * @param element   the element
+     * @param writeFlag the write flag
+     * @throws MailExtractLibException  Any unrecoverable extraction exception (access trouble, major             format problems...)
+     * @throws InterruptedException the interrupted exception
+     */
+    protected void extractElement(StoreElement element, boolean writeFlag) throws MailExtractLibException, InterruptedException {
+        StoreElementsPipeline elementsPipeline = storeExtractor.getElementsPipeline();
+        if (elementsPipeline != null)
+            elementsPipeline.submitElement(element, writeFlag);
+        else
+            element.processElement(writeFlag);
+    }
+
+    /**
+     * Builder of a folder message, used when the store gives independent access
+     * to each message so that it can be built out of the store reading thread.
+     */
+    public interface MessageBuilder {
+        /**
+         * Builds the message.
+         *
+         * @return the message, or null if there's no message to extract
+         * @throws MailExtractLibException  Any unrecoverable extraction exception (access trouble, major             format problems...)
+         * @throws InterruptedException the interrupted exception
+         */
+        StoreMessage build() throws MailExtractLibException, InterruptedException;
+    }
+
+    /**
+     * Extract one folder message, to be used in
+     * {@link #doExtractFolderElements doExtractFolderElements} when the store
+     * gives independent access to each message, as for mbox files sliced in
+     * messages.
+     * <p>
+     * In a pipelined extraction (more than one thread) the message is built and
+     * analyzed by a worker thread, its extraction being done later in the store
+     * order, at the latest when {@link #commitExtractedElements
+     * commitExtractedElements} is called. Otherwise the message is immediately
+     * built and processed.
+     *
+     * @param messageBuilder the message builder
+     * @param writeFlag      the write flag
+     * @throws MailExtractLibException  Any unrecoverable extraction exception (access trouble, major             format problems...)
+     * @throws InterruptedException the interrupted exception
+     */
+    protected void extractMessage(MessageBuilder messageBuilder, boolean writeFlag) throws MailExtractLibException, InterruptedException {
+        StoreElementsPipeline elementsPipeline = storeExtractor.getElementsPipeline();
+        if (elementsPipeline != null)
+            elementsPipeline.submitMessage(messageBuilder, writeFlag);
+        else {
+            StoreMessage message = messageBuilder.build();
+            if (message != null)
+                message.processElement(writeFlag);
+        }
+    }
+
+    /**
+     * Complete the extraction of all the elements given to
+     * {@link #extractElement extractElement} or {@link #extractMessage
+     * extractMessage}, to be used before releasing store
+     * resources needed by these elements.
+     *
+     * @throws MailExtractLibException  Any unrecoverable extraction exception (access trouble, major             format problems...)
+     * @throws InterruptedException the interrupted exception
+     */
+    protected void commitExtractedElements() throws MailExtractLibException, InterruptedException {
+        StoreElementsPipeline elementsPipeline = storeExtractor.getElementsPipeline();
+        if (elementsPipeline != null)
+            elementsPipeline.commitAllElements();
     }
 
     /**
@@ -345,6 +427,9 @@ public abstract class StoreFolder {
      * It extracts folder elements, count these elements with
      * {@link #incFolderElementsCount incFolderElementsCount}, and accumulate their
      * raw size with {@link #addFolderElementsRawSize addFolderElementsRawSize}.
+     * <p>
+     * Elements should be given to {@link #extractElement extractElement} so that
+     * they can be extracted concurrently.
      *
      * @param writeFlag the write flag
      * @throws MailExtractLibException  Any unrecoverable extraction exception (access trouble, major             format problems...)
@@ -36,6 +36,7 @@ import fr.gouv.vitam.tools.mailextractlib.utils.DateRange;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
 import fr.gouv.vitam.tools.mailextractlib.utils.RawDataSource;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 import org.apache.poi.hmef.Attachment;
 import org.apache.poi.hmef.HMEFMessage;
 
@@ -114,6 +115,18 @@ public abstract class StoreMessage extends StoreElement {
      */
     protected byte[] mimeContent;
 
+    /**
+     * Raw binary content of the message, or of the mime fake, when too big to
+     * be kept in memory, mimeContent being then null.
+     */
+    protected SpillableBuffer spilledMimeContent;
+
+    /**
+     * True if the spilled mime content has to be kept after extraction, to be
+     * given to the father attachment of an embedded message.
+     */
+    private boolean mimeContentRetained;
+
     /**
      * Mime fake if any, or null for mime source.
      */
@@ -226,6 +239,16 @@ public abstract class StoreMessage extends StoreElement {
      */
     public ArchiveUnit messageNode;
 
+    /**
+     * Text content of the message, defined during the extraction preparation.
+     */
+    private String textContent;
+
+    /**
+     * True if the extraction preparation has been done.
+     */
+    private boolean extractionPrepared;
+
     /**
      * Instantiates a new mail box message.
      *
@@ -280,9 +303,98 @@ public abstract class StoreMessage extends StoreElement {
      * @return the mime content
      */
     public byte[] getMimeContent() {
+        if ((mimeContent == null) && (spilledMimeContent != null)) {
+            try {
+                return spilledMimeContent.toByteArray();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return mimeContent;
+    }
+
+    /**
+     * Gets the message rfc822 form as an attachment content, that is to say a
+     * byte[] or, if too big to be kept in memory, the spilled buffer, then owned
+     * by the attachment.
+     * <p>
+     * <b>Important:</b> this is computed during message extraction, and the
+     * spilled content is available only if {@link #retainMimeContent()} has been
+     * called before.
+     *
+     * @return the mime content
+     */
+    public Object getMimeStoreContent() {
+        if (spilledMimeContent != null)
+            return spilledMimeContent;
+        return mimeContent;
+    }
+
+    /**
+     * Retain the mime content after the extraction, even if spilled to a
+     * temporary file, so that it can be given to the father attachment of an
+     * embedded message with {@link #getMimeStoreContent()}.
+     */
+    public void retainMimeContent() {
+        mimeContentRetained = true;
+    }
+
+    /**
+     * Checks if the mime content is defined, in memory or spilled.
+     *
+     * @return true, if defined
+     */
+    protected boolean hasMimeContent() {
+        return (mimeContent != null) || (spilledMimeContent != null);
+    }
+
+    /**
+     * Gets the mime content size, in memory or spilled.
+     *
+     * @return the size, or 0 if not defined
+     */
+    protected long getMimeContentSize() {
+        if (mimeContent != null)
+            return mimeContent.length;
+        else if (spilledMimeContent != null)
+            return spilledMimeContent.size();
+        return 0;
+    }
+
+    /**
+     * Sets the mime content from the buffer in which it has been written, in
+     * memory or, if too big, as spilled content.
+     *
+     * @param buffer the buffer
+     * @return the mime content byte array, or null if spilled
+     */
+    protected byte[] setMimeContent(SpillableBuffer buffer) {
+        try {
+            buffer.close();
+        } catch (IOException ignored) {
+            // forget it, content is kept as is
+        }
+        if (spilledMimeContent != null)
+            spilledMimeContent.release();
+        if (buffer.isSpilled()) {
+            spilledMimeContent = buffer;
+            mimeContent = null;
+        } else {
+            spilledMimeContent = null;
+            mimeContent = (byte[]) buffer.getContent();
+        }
         return mimeContent;
     }
 
+    // release the spilled contents of the message and its attachments, no more needed after extraction
+    private void releaseSpilledContents() {
+        StoreAttachment.releaseAttachments(attachments);
+        if ((spilledMimeContent != null) && !mimeContentRetained) {
+            spilledMimeContent.release();
+            spilledMimeContent = null;
+        }
+    }
+
     @Override
     public String getLogDescription() {
         String result = "message "+getStoreExtractor().getElementCounter(this.getClass(),false);
@@ -438,6 +550,10 @@ public abstract class StoreMessage extends StoreElement {
 
     /**
      * Gets the native mime content, if any, or null.
+     * <p>
+     * When too big to be kept in memory, the content is spilled to a temporary
+     * file and set with {@link #setMimeContent(SpillableBuffer)}, null being
+     * then returned.
      *
      * @return the native mime content
      * @throws InterruptedException the interrupted exception
@@ -546,20 +662,129 @@ public abstract class StoreMessage extends StoreElement {
 
     @Override
     public void processElement(boolean writeFlag) throws InterruptedException, MailExtractLibException {
+        analyzeElement();
+        commitElement(writeFlag);
+    }
+
+    /**
+     * Analyze the message in the store, first part of the element processing.
+     * <p>
+     * In pipelined extraction it's done in the store reading thread, in the
+     * store order.
+     *
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     * @throws InterruptedException    the interrupted exception
+     */
+    void analyzeElement() throws InterruptedException, MailExtractLibException {
         listLineId = storeFolder.getStoreExtractor().incElementCounter(this.getClass());
         analyzeMessage();
         storeFolder.getDateRange().extendRange(sentDate);
-        extractMessage(writeFlag);
-        countMessage();
+    }
+
+    /**
+     * Account the message, analyzed out of the store reading thread, in the store
+     * extractor counters and in the folder date range.
+     * <p>
+     * In pipelined extraction with concurrent analysis it's done in the store
+     * reading thread, in the store order, before the commit.
+     */
+    void registerAnalyzedElement() {
+        listLineId = storeFolder.getStoreExtractor().incElementCounter(this.getClass());
+        storeFolder.getDateRange().extendRange(sentDate);
+    }
+
+    /**
+     * Extract and count the analyzed message, last part of the element
+     * processing.
+     * <p>
+     * In pipelined extraction it's done in the store reading thread, in the
+     * store order, so that ArchiveUnits names are the same as in sequential
+     * extraction.
+     *
+     * @param writeFlag write or not flag (no write used for stats)
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     * @throws InterruptedException    the interrupted exception
+     */
+    void commitElement(boolean writeFlag) throws InterruptedException, MailExtractLibException {
+        try {
+            extractMessage(writeFlag);
+            countMessage();
+        } finally {
+            releaseSpilledContents();
+        }
+    }
+
+    /**
+     * Prepare the extraction of the analyzed message, computing the elements
+     * which don't depend on the store or on the ArchiveUnits: text content,
+     * attachments text extraction and mime fake, if there's no store attachment
+     * whose raw content is defined only by its own extraction.
+     * <p>
+     * In pipelined extraction it's done by a worker thread, between analysis
+     * and commit, else at the beginning of the message extraction.
+     *
+     * @param writeFlag write or not flag (no write used for stats)
+     * @throws InterruptedException the interrupted exception
+     */
+    public void prepareExtraction(boolean writeFlag) throws InterruptedException {
+        if (extractionPrepared)
+            return;
+
+        if ((subject == null) || subject.trim().isEmpty())
+            subject = "[Vide]";
+
+        // get textContent if TEXT_CONTENT not empty
+        if ((bodyContent[TEXT_BODY] != null) && !bodyContent[TEXT_BODY].isEmpty())
+            textContent = bodyContent[TEXT_BODY];
+
+        // get text content from html if no textContent
+        if ((textContent == null) && (bodyContent[HTML_BODY] != null))
+            textContent = HTMLTextExtractor.getInstance().act(bodyContent[HTML_BODY]);
+
+        StoreAttachment.prepareAttachmentsExtraction(attachments, writeFlag);
+
+        // generate mime fake if needed and associated mimeContent
+        if (!hasMimeContent() && !hasStoreAttachments()) {
+            generateMimeFakeContent();
+            if (!hasMimeContent())
+                mimeContent = "".getBytes();
+        }
+        extractionPrepared = true;
+    }
+
+    // check if there's a store attachment, which can get its raw content from its extraction
+    private boolean hasStoreAttachments() {
+        if (attachments != null)
+            for (StoreAttachment a : attachments)
+                if (a.attachmentType == StoreAttachment.STORE_ATTACHMENT)
+                    return true;
+        return false;
+    }
+
+    // generate the mime fake and the associated mimeContent, spilled if too big
+    private void generateMimeFakeContent() throws InterruptedException {
+        mimeFake = getMimeFake();
+        SpillableBuffer buffer = new SpillableBuffer(getStoreExtractor().options.contentSpillThreshold);
+        try {
+            mimeFake.writeTo(buffer);
+            setMimeContent(buffer);
+        } catch (MessagingException | IOException e) {
+            buffer.release();
+            logMessageWarning("mailextractlib: can't extract raw content", e);
+        }
     }
 
     @Override
     public void listElement(boolean statsFlag) throws InterruptedException, MailExtractLibException {
         listLineId = storeFolder.getStoreExtractor().incElementCounter(this.getClass());
         analyzeMessage();
-        if (statsFlag)
-            extractMessage(false);
-        countMessage();
+        try {
+            if (statsFlag)
+                extractMessage(false);
+            countMessage();
+        } finally {
+            releaseSpilledContents();
+        }
     }
 
     /**
@@ -575,13 +800,9 @@ public abstract class StoreMessage extends StoreElement {
      * @throws InterruptedException    the interrupted exception
      */
     public final void extractMessage(boolean writeFlag) throws MailExtractLibException, InterruptedException {
-        // String description = "[Vide]";
-        String textContent = null;
+        prepareExtraction(writeFlag);
 
         // create message unit
-        if ((subject == null) || subject.trim().isEmpty())
-            subject = "[Vide]";
-
         messageNode = new ArchiveUnit(storeFolder.storeExtractor, storeFolder.folderArchiveUnit, "Message", subject);
 
         // metadata in SEDA 2.0-ontology order
@@ -600,14 +821,6 @@ public abstract class StoreMessage extends StoreElement {
         if ((inReplyToUID != null) && !inReplyToUID.isEmpty())
             messageNode.addMetadata("OriginatingSystemIdReplyTo", inReplyToUID, false);
 
-        // get textContent if TEXT_CONTENT not empty
-        if ((bodyContent[TEXT_BODY] != null) && !bodyContent[TEXT_BODY].isEmpty())
-            textContent = bodyContent[TEXT_BODY];
-
-        // get text content from html if no textContent
-        if ((textContent == null) && (bodyContent[HTML_BODY] != null))
-            textContent = HTMLTextExtractor.getInstance().act(bodyContent[HTML_BODY]);
-
         // purify textContent and put in metadata
         if ((textContent != null) && (!textContent.trim().isEmpty())) {
             if (getStoreExtractor().options.extractMessageTextFile)
@@ -623,22 +836,19 @@ public abstract class StoreMessage extends StoreElement {
         // create all attachments subunits/object groups
         StoreAttachment.extractAttachments(attachments, messageNode, writeFlag);
 
-        // generate mime fake if needed and associated mimeContent
-        if (mimeContent == null) {
-            mimeFake = getMimeFake();
-            try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                mimeFake.writeTo(baos);
-                mimeContent = baos.toByteArray();
-            } catch (MessagingException | IOException e) {
-                logMessageWarning("mailextractlib: can't extract raw content", e);
-            }
-        }
-        if (mimeContent == null)
+        // generate mime fake if not done in preparation and associated mimeContent
+        if (!hasMimeContent())
+            generateMimeFakeContent();
+        if (!hasMimeContent())
             mimeContent = "".getBytes();
 
-        // add object binary master except if empty one
-        messageNode.addObject(mimeContent, messageID + ".eml", "BinaryMaster", 1);
+        // add object binary master except if empty one, streamed from temporary file if spilled
+        // (shared with the unit only if written, as the unit releases it when written)
+        if (spilledMimeContent != null) {
+            if (writeFlag)
+                messageNode.addObject(spilledMimeContent, messageID + ".eml", "BinaryMaster", 1);
+        } else
+            messageNode.addObject(mimeContent, messageID + ".eml", "BinaryMaster", 1);
 
         if (writeFlag)
             messageNode.write();
@@ -875,7 +1085,17 @@ public abstract class StoreMessage extends StoreElement {
 
                     // set object and Content-Type
                     String attachmentFilename = encodedFilename(a.name, a.mimeType, cidName);
-                    if ((a.mimeType == null) || (a.mimeType.isEmpty()))
+                    if (a.attachmentContent instanceof SpillableBuffer) {
+                        // too big content streamed from temporary file, bypassing datahandler
+                        String aMimeType = a.mimeType;
+                        if ((aMimeType == null) || aMimeType.isEmpty() || aMimeType.startsWith("multipart"))
+                            aMimeType = "application/octet-stream";
+                        RawDataSource rds = new RawDataSource((SpillableBuffer) a.attachmentContent,
+                                aMimeType.startsWith("message") ? aMimeType
+                                        : aMimeType + "; name=\"" + attachmentFilename + "\"",
+                                attachmentFilename);
+                        attachPart.setDataHandler(new DataHandler(rds));
+                    } else if ((a.mimeType == null) || (a.mimeType.isEmpty()))
                         attachPart.setContent(a.getRawAttachmentContent(),
                                 "application/octet-stream; name=\"" + attachmentFilename + "\"");
                     else {
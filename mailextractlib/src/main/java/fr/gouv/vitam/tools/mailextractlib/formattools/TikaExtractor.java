@@ -30,6 +30,7 @@ import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import org.apache.tika.Tika;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,17 +45,18 @@ public class TikaExtractor {
     /** Tika object **/
     private Tika tika;
 
-    /** Private constructor */
+    /**
+     * Private constructor.
+     * <p>
+     * The global logger, used by Tika parsers, is switched off once for all, unless
+     * set to FINEST, as it can't be switched off and restored around each call when
+     * extractions run in parallel.
+     */
     private TikaExtractor() {
-        Level memLevel;
-        Logger logger;
-
-        logger = Logger.getGlobal();
-        memLevel = logger.getLevel();
-        if (memLevel != Level.FINEST)
+        Logger logger = Logger.getGlobal();
+        if (logger.getLevel() != Level.FINEST)
             logger.setLevel(Level.OFF);
         tika = new Tika();
-        logger.setLevel(memLevel);
     }
 
     /**
@@ -77,20 +79,34 @@ public class TikaExtractor {
      */
     public String extractTextFromBinary(byte[] rawContent) throws MailExtractLibException {
         String s = null;
-        Level memLevel;
-        Logger logger;
 
-        logger = Logger.getGlobal();
-        memLevel = logger.getLevel();
-        if (memLevel != Level.FINEST)
-            logger.setLevel(Level.OFF);
         try {
             if (rawContent.length > 0)
                 s = tika.parseToString(new ByteArrayInputStream(rawContent));
         } catch (Throwable e) {
             throw new MailExtractLibException("mailextractlib.formattools: can't extract text content", e);
-        } finally {
-            logger.setLevel(memLevel);
+        }
+
+        return s;
+    }
+
+    /**
+     * Gets the text form of the file content read from a stream, for contents
+     * too big to be kept in memory. The stream is closed.
+     *
+     * @param is
+     *            the content input stream
+     * @return the text String
+     * @throws MailExtractLibException
+     *             if text extract was not possible
+     */
+    public String extractTextFromStream(InputStream is) throws MailExtractLibException {
+        String s = null;
+
+        try {
+            s = tika.parseToString(is);
+        } catch (Throwable e) {
+            throw new MailExtractLibException("mailextractlib.formattools: can't extract text content", e);
         }
 
         return s;
@@ -107,21 +123,36 @@ public class TikaExtractor {
      */
     public String getMimeType(byte[] rawContent) throws MailExtractLibException {
         String result = null;
-        Level memLevel;
-        Logger logger;
 
         if (rawContent.length > 0) {
-            logger = Logger.getGlobal();
-            memLevel = logger.getLevel();
-            if (memLevel != Level.FINEST)
-                logger.setLevel(Level.OFF);
             try {
                 result = tika.detect(rawContent);
             } catch (Exception e) {
                 // if any problem in identification tools, default mimetype
                 result = "application/octet-stream";
             }
-            logger.setLevel(memLevel);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the mime type of the file raw content read from an input stream, so
+     * that big content doesn't have to be loaded in memory.
+     *
+     * @param is
+     *            the raw content input stream
+     * @return the mime type
+     * @throws MailExtractLibException
+     *             the mail extract lib exception
+     */
+    public String getMimeType(InputStream is) throws MailExtractLibException {
+        String result;
+
+        try {
+            result = tika.detect(is);
+        } catch (Exception e) {
+            // if any problem in identification tools, default mimetype
+            result = "application/octet-stream";
         }
         return result;
     }
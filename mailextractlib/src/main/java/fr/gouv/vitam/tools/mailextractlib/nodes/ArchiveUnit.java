@@ -31,6 +31,7 @@ import fr.gouv.vitam.tools.mailextractlib.core.StoreExtractor;
 import fr.gouv.vitam.tools.mailextractlib.core.StoreExtractorOptions;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -78,6 +79,10 @@ public class ArchiveUnit {
          * The Raw content.
          */
         byte[] rawContent;
+        /**
+         * The spilled content, when too big to be kept in memory, rawContent being then null.
+         */
+        SpillableBuffer spilledContent;
 
         /**
          * Instantiates a new Archive object.
@@ -89,6 +94,23 @@ public class ArchiveUnit {
          */
         ArchiveObject(byte[] rawContent, String filename, String usage, int version) {
             this.rawContent = rawContent;
+            this.spilledContent = null;
+            this.filename = filename;
+            this.usage = usage;
+            this.version = version;
+        }
+
+        /**
+         * Instantiates a new Archive object with spilled content.
+         *
+         * @param spilledContent the spilled content
+         * @param filename       the filename
+         * @param usage          the usage
+         * @param version        the version
+         */
+        ArchiveObject(SpillableBuffer spilledContent, String filename, String usage, int version) {
+            this.rawContent = null;
+            this.spilledContent = spilledContent;
             this.filename = filename;
             this.usage = usage;
             this.version = version;
@@ -439,19 +461,54 @@ public class ArchiveUnit {
         objects.add(new ArchiveObject(byteContent, normalizeFilename(filename), usage, version));
     }
 
+    /**
+     * Adds an object with content from a spillable buffer.
+     * <p>
+     * This object will be saved to disk in raw binary format. If the content has
+     * been spilled to a temporary file, it's shared with the Archive Unit, which
+     * will stream it to disk and release it when written, and never loaded in
+     * memory.
+     *
+     * @param bufferContent Object content
+     * @param filename      File name
+     * @param usage         Usage type (BinaryMaster| TextContent...)
+     * @param version       Object version (usually 1)
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     */
+    public void addObject(SpillableBuffer bufferContent, String filename, String usage, int version)
+            throws MailExtractLibException {
+        if (bufferContent.isSpilled())
+            objects.add(new ArchiveObject(bufferContent.share(), normalizeFilename(filename), usage, version));
+        else {
+            try {
+                objects.add(new ArchiveObject(bufferContent.toByteArray(), normalizeFilename(filename), usage, version));
+            } catch (IOException e) {
+                throw new MailExtractLibException("mailextractlib: can't read object content, in unit \"" + name + "\"", e);
+            }
+        }
+    }
+
     // create all the directories hierarchy
     private void createDirectory(String dirname) throws MailExtractLibException {
         File dir = new File(dirname);
-        if (!dir.isDirectory() && !dir.mkdirs()) {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
             throw new MailExtractLibException("mailextractlib: illegal destination directory, writing unit \"" + name + "\"", null);
         }
     }
 
     // create a file from byte array
     private void writeFile(String dirPath, String filename, byte[] byteContent) throws MailExtractLibException {
+        writeFile(dirPath, filename, byteContent, null);
+    }
+
+    // create a file from byte array or, if null, streaming the spilled content
+    private void writeFile(String dirPath, String filename, byte[] byteContent, SpillableBuffer spilledContent)
+            throws MailExtractLibException {
         try (FileOutputStream fos = new FileOutputStream(dirPath + File.separator + filename)) {
             if (byteContent != null)
                 fos.write(byteContent);
+            else if (spilledContent != null)
+                spilledContent.writeTo(fos);
         } catch (IOException ex) {
             if (dirPath.length() + filename.length() > 250) {
                 throw new MailExtractLibException(
@@ -466,10 +523,24 @@ public class ArchiveUnit {
 
     /**
      * Write the Archive Unit representation on disk.
+     * <p>
+     * In a pipelined extraction (more than one thread) the disk writing is
+     * submitted to the extraction workers, so the Archive Unit must not be
+     * modified after this call.
      *
      * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
      */
     public void write() throws MailExtractLibException {
+        if (!storeExtractor.submitArchiveUnitWrite(this))
+            writeImmediately();
+    }
+
+    /**
+     * Write the Archive Unit representation on disk in the calling thread.
+     *
+     * @throws MailExtractLibException Any unrecoverable extraction exception (access trouble, major                             format problems...)
+     */
+    public void writeImmediately() throws MailExtractLibException {
         String dirPath;
         String filename;
 
@@ -491,15 +562,31 @@ public class ArchiveUnit {
 
         // write objects files
         if (!objects.isEmpty()) {
-            for (ArchiveObject o : objects) {
-                if (o.filename == null || o.filename.isEmpty())
-                    filename = "undefined";
-                else
-                    filename = o.filename;
-                if (storeExtractor.getOptions().model == StoreExtractorOptions.MODEL_V1)
-                    writeFile(dirPath, "__" + o.usage + "_" + Integer.toString(o.version) + "_" + filename, o.rawContent);
-                else
-                    writeFile(dirPath, "__" + o.usage + "_" + Integer.toString(o.version) + "__" + filename, o.rawContent);
+            try {
+                for (ArchiveObject o : objects) {
+                    if (o.filename == null || o.filename.isEmpty())
+                        filename = "undefined";
+                    else
+                        filename = o.filename;
+                    if (storeExtractor.getOptions().model == StoreExtractorOptions.MODEL_V1)
+                        writeFile(dirPath, "__" + o.usage + "_" + Integer.toString(o.version) + "_" + filename,
+                                o.rawContent, o.spilledContent);
+                    else
+                        writeFile(dirPath, "__" + o.usage + "_" + Integer.toString(o.version) + "__" + filename,
+                                o.rawContent, o.spilledContent);
+                }
+            } finally {
+                releaseSpilledObjects();
+            }
+        }
+    }
+
+    // release the spilled objects contents, which are no more needed once written
+    private void releaseSpilledObjects() {
+        for (ArchiveObject o : objects) {
+            if (o.spilledContent != null) {
+                o.spilledContent.release();
+                o.spilledContent = null;
             }
         }
     }
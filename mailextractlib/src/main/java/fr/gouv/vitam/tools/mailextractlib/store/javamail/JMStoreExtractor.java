@@ -37,6 +37,7 @@ import fr.gouv.vitam.tools.mailextractlib.store.javamail.mbox.MboxStore;
 import fr.gouv.vitam.tools.mailextractlib.store.javamail.thunderbird.ThunderbirdStore;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 
 import javax.mail.*;
 import java.io.UnsupportedEncodingException;
@@ -191,7 +192,11 @@ public class JMStoreExtractor extends StoreExtractor {
                         "mailextractlib.javamail: can't extract embedded store for scheme [" + scheme + "]", null);
             }
             JMEmbeddedStore ejs = (JMEmbeddedStore) store;
-            ejs.setObjectContent(attachment.getStoreContent());
+            // embedded stores are read from memory, so a spilled content is loaded
+            if (attachment.getStoreContent() instanceof SpillableBuffer)
+                ejs.setObjectContent(attachment.getRawAttachmentContent());
+            else
+                ejs.setObjectContent(attachment.getStoreContent());
             store.connect();
         } catch (MessagingException e) {
             throw new MailExtractLibException(
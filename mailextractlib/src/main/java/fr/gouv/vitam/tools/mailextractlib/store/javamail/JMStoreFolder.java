@@ -60,10 +60,15 @@ public class JMStoreFolder extends StoreFolder {
     private JMStoreFolder(StoreExtractor storeExtractor, final Folder folder, StoreFolder father) {
         super(storeExtractor);
         this.folder = folder;
-        if (folder instanceof ThunderbirdFolder)
+        if (folder instanceof ThunderbirdFolder) {
             ((ThunderbirdFolder) folder).setLogger(storeExtractor.getProgressLogger());
-        else if (folder instanceof MboxFolder)
+            ((ThunderbirdFolder) folder).setSlicesIndexDirectory(storeExtractor.getIndexDirectory());
+            ((ThunderbirdFolder) folder).setMemoryMapping(storeExtractor.getOptions().mboxMemoryMapping);
+        } else if (folder instanceof MboxFolder) {
             ((MboxFolder) folder).setLogger(storeExtractor.getProgressLogger());
+            ((MboxFolder) folder).setSlicesIndexDirectory(storeExtractor.getIndexDirectory());
+            ((MboxFolder) folder).setMemoryMapping(storeExtractor.getOptions().mboxMemoryMapping);
+        }
         if (father != null)
             finalizeStoreFolder(father);
     }
@@ -101,13 +106,22 @@ public class JMStoreFolder extends StoreFolder {
         try {
             folder.open(Folder.READ_ONLY);
             msgtotal = folder.getMessageCount();
-            for (int i = 1; i <= msgtotal; i++) {
-                message = folder.getMessage(i);
-                if (!((MimeMessage) message).isSet(Flags.Flag.DELETED)) {
-                    JMStoreMessage jMStoreMessage = new JMStoreMessage(this, (MimeMessage) message);
-                    jMStoreMessage.processElement(writeFlag);
+            if (hasIndependentMessagesAccess()) {
+                // messages can be built and analyzed concurrently
+                for (int i = 1; i <= msgtotal; i++) {
+                    final int msgno = i;
+                    extractMessage(() -> getJMStoreMessage(msgno), writeFlag);
+                }
+            } else {
+                for (int i = 1; i <= msgtotal; i++) {
+                    message = folder.getMessage(i);
+                    if (!((MimeMessage) message).isSet(Flags.Flag.DELETED)) {
+                        JMStoreMessage jMStoreMessage = new JMStoreMessage(this, (MimeMessage) message);
+                        extractElement(jMStoreMessage, writeFlag);
+                    }
                 }
             }
+            commitExtractedElements();
             folder.close(false);
         } catch (MessagingException e) {
             throw new MailExtractLibException("mailextractlib.javamail: can't get messages from folder " + getFullName(), e);
@@ -117,6 +131,24 @@ public class JMStoreFolder extends StoreFolder {
         // already the extraction source
     }
 
+    // check if the folder gives to each message a stream independent of the others, so that messages can be built
+    // and analyzed concurrently
+    private boolean hasIndependentMessagesAccess() {
+        return (folder instanceof MboxFolder) || (folder instanceof ThunderbirdFolder);
+    }
+
+    // get the StoreMessage of a not deleted message, or null
+    private JMStoreMessage getJMStoreMessage(int msgno) throws MailExtractLibException {
+        try {
+            MimeMessage message = (MimeMessage) folder.getMessage(msgno);
+            if (message.isSet(Flags.Flag.DELETED))
+                return null;
+            return new JMStoreMessage(this, message);
+        } catch (MessagingException e) {
+            throw new MailExtractLibException("mailextractlib.javamail: can't get messages from folder " + getFullName(), e);
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
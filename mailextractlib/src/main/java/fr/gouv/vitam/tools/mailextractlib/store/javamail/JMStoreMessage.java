@@ -34,6 +34,7 @@ import fr.gouv.vitam.tools.mailextractlib.core.StoreAttachment;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
 import fr.gouv.vitam.tools.mailextractlib.utils.RFC822Headers;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 
 import javax.activation.DataHandler;
 import javax.mail.*;
@@ -63,8 +64,8 @@ public class JMStoreMessage extends StoreMessage {
      */
     protected MimeMessage message;
 
-    // format to parse dates in Receive header
-    static private MailDateFormat mailDateFormat = new MailDateFormat();
+    // format to parse dates in Receive header, one by thread as messages can be analyzed concurrently
+    static private ThreadLocal<MailDateFormat> mailDateFormat = ThreadLocal.withInitial(MailDateFormat::new);
 
     /**
      * Instantiates a new JM mail box message.
@@ -90,11 +91,11 @@ public class JMStoreMessage extends StoreMessage {
         // geMessageSize of JavaMail is quite approximative...
         long result;
 
-        if (mimeContent != null)
-            result = mimeContent.length;
+        if (hasMimeContent())
+            result = getMimeContentSize();
         else {
             mimeContent = getNativeMimeContent();
-            result = mimeContent.length;
+            result = getMimeContentSize();
         }
         return result;
     }
@@ -319,7 +320,7 @@ public class JMStoreMessage extends StoreMessage {
                 {
                     receivedHeader = receivedHeader.substring(i + 1);
                     try {
-                        result = mailDateFormat.parse(receivedHeader);
+                        result = mailDateFormat.get().parse(receivedHeader);
                     } catch (ParseException e) {
                         // too bad no date
                     }
@@ -524,6 +525,12 @@ public class JMStoreMessage extends StoreMessage {
         return baos.toByteArray();
     }
 
+    // rawcontent of a part, byte[] or SpillableBuffer if too big to be kept in memory
+    private Object getPartSpillableRawContent(BodyPart bp) throws IOException, MessagingException {
+        return SpillableBuffer.readContent(bp.getInputStream(),
+                getStoreExtractor().getOptions().contentSpillThreshold);
+    }
+
     // rawcontent of a part, replacing LF by CRLF in quoted-printable encoded parts (used for windows TNEF fixing)
     private byte[] getPartLFFixedRawContent(BodyPart bp) throws IOException, MessagingException, InterruptedException {
         InputStream is = bp.getInputStream();
@@ -576,10 +583,10 @@ public class JMStoreMessage extends StoreMessage {
                 aType = StoreAttachment.INLINE_ATTACHMENT;
             date = disposition.getParameter("creation-date");
             if ((date != null) && (!date.isEmpty()))
-                aCreationDate = mailDateFormat.parse(date);
+                aCreationDate = mailDateFormat.get().parse(date);
             date = disposition.getParameter("modification-date");
             if ((date != null) && (!date.isEmpty()))
-                aModificationDate = mailDateFormat.parse(date);
+                aModificationDate = mailDateFormat.get().parse(date);
             aName = disposition.getParameter("filename");
         }
 
@@ -633,7 +640,7 @@ public class JMStoreMessage extends StoreMessage {
                 lStoreMessageAttachment.add(new StoreAttachment(this,getPartLFFixedRawContent(bodyPart), "file",
                         MimeUtility.decodeText(aName), aCreationDate, aModificationDate, aMimeType, aContentID, aType));
             else
-                lStoreMessageAttachment.add(new StoreAttachment(this,getPartRawContent(bodyPart), "file",
+                lStoreMessageAttachment.add(new StoreAttachment(this,getPartSpillableRawContent(bodyPart), "file",
                         MimeUtility.decodeText(aName), aCreationDate, aModificationDate, aMimeType, aContentID, aType));
         }
     }
@@ -690,13 +697,14 @@ public class JMStoreMessage extends StoreMessage {
      * getNativeMimeContent()
      */
     protected byte[] getNativeMimeContent() throws InterruptedException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpillableBuffer buffer = new SpillableBuffer(getStoreExtractor().getOptions().contentSpillThreshold);
         try {
-            message.writeTo(baos);
+            message.writeTo(buffer);
         } catch (Exception e) {
             logMessageWarning("mailextractlib.javamail: can't extract raw mime content", e);
         }
 
-        return baos.toByteArray();
+        // null if too big and spilled
+        return setMimeContent(buffer);
     }
 }
@@ -50,6 +50,8 @@ public class MboxFolder extends Folder {
     private MboxStore mboxstore;
     private MboxReader mboxfilereader;
     private MailExtractProgressLogger logger;
+    private File slicesIndexDirectory;
+    private boolean memoryMapping = true;
     private List<MessageFork> messages;
     private int total; // total number of messages in mailbox
 
@@ -75,6 +77,34 @@ public class MboxFolder extends Folder {
         this.logger = logger;
     }
 
+    /**
+     * Sets the slices index directory
+     * <p>
+     * This method is directly called from MailExtract library to enable this
+     * class to keep the messages slices of the mbox file between extractions,
+     * else the file is scanned at each opening
+     *
+     * @param slicesIndexDirectory
+     *            Slices index directory
+     */
+    public void setSlicesIndexDirectory(File slicesIndexDirectory) {
+        this.slicesIndexDirectory = slicesIndexDirectory;
+    }
+
+    /**
+     * Sets the memory mapping flag
+     * <p>
+     * This method is directly called from MailExtract library to choose if the
+     * mbox file is memory mapped, or read through the file kept open until the
+     * folder is closed, so that it's no longer locked after extraction
+     *
+     * @param memoryMapping
+     *            Memory mapping flag
+     */
+    public void setMemoryMapping(boolean memoryMapping) {
+        this.memoryMapping = memoryMapping;
+    }
+
     /**
      * Instantiates a new mbox simulated folder.
      *
@@ -264,17 +294,13 @@ public class MboxFolder extends Folder {
             if (mboxstore.getObjectContent() != null)
                 mboxfilereader = new MboxReader(logger, (byte[]) mboxstore.getObjectContent());
             else
-                mboxfilereader = new MboxReader(logger, new File(mboxstore.getContainer()));
+                mboxfilereader = new MboxReader(logger, new File(mboxstore.getContainer()), memoryMapping);
             opened = true; // now really opened
-            long beg, end;
 
-            mboxfilereader.getNextFromLineBeg();
-            beg = mboxfilereader.getLastFromLineEnd();
-            while (beg != -1) {
-                end = mboxfilereader.getNextFromLineBeg();
-                mf = new MessageFork(beg, end);
+            long[] slices = mboxfilereader.getMessagesSlices(slicesIndexDirectory);
+            for (int i = 0; i < slices.length; i += 2) {
+                mf = new MessageFork(slices[i], slices[i + 1]);
                 messages.add(mf);
-                beg = mboxfilereader.getLastFromLineEnd();
             }
         } catch (IOException e) {
             throw new MessagingException("mbox: open failure, can't read: " + mboxstore.getContainer() + " file");
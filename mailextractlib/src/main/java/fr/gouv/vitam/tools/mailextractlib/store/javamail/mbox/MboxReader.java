@@ -30,12 +30,32 @@ package fr.gouv.vitam.tools.mailextractlib.store.javamail.mbox;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
 
 import javax.mail.internet.SharedInputStream;
-import javax.mail.util.SharedByteArrayInputStream;
 import javax.mail.util.SharedFileInputStream;
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger.doProgressLogWithoutInterruption;
 
 /**
- * Optimized buffered mbox file reader for Thunderbird mbox file.
+ * Optimized memory mapped mbox file reader for Thunderbird mbox file.
+ * <p>
+ * The file is mapped in memory by chunks of 1GB, so that there's no limit on
+ * the file size, and the "From " delimiter lines are searched 8 bytes at a
+ * time. The messages streams are slices of the mapped file without any copy,
+ * which can be read concurrently.
+ * <p>
+ * A mapping can't be released explicitly in Java, it stays until the reader
+ * and all the streams it created are garbage collected, even after
+ * {@link #close close}. In the meantime the file is locked on Windows, and
+ * can't be modified or deleted. When this is a problem, the reader is created
+ * without mapping: the file is then scanned through a buffer window and the
+ * messages streams read from the file, which is kept open until close.
  * <p>
  * <b>Warning:</b>Only for reading and without file locking or new messages
  * management.
@@ -46,32 +66,81 @@ public class MboxReader {
 
     private String filePath;
 
-    // for random access to data when file
-    private RandomAccessFile raf;
+    // mapped chunks size, each chunk being mapped with an overlap of one long to read words at any position
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_OVERLAP = Long.BYTES;
+
+    // word-at-a-time search constants
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long NEWLINES = ONES * '\n';
+
+    // unmapped file scan window size
+    private static final int WINDOW_SIZE = 64 * 1024;
 
-    private SharedInputStream sifs;
+    // the data chunks, mapped on file or wrapped on byte[], or null if the file is not mapped
+    private ByteBuffer[] chunks;
+    private long size;
 
-    // for buffered access to RandomAccessFile
-    private static int BUFFER_SIZE = 4096;
-    private byte[] buffer = new byte[BUFFER_SIZE];
-    private int len = 0;
-    private long bufferPos = 0;
-    private int curPos = 0;
-    private int lineNum = 0;
+    // the file kept open when not mapped, the scan window on it and the root of the messages streams
+    private RandomAccessFile raf;
+    private ByteBuffer window;
+    private long windowStart;
+    private SharedFileInputStream sharedFileInputStream;
+
+    // scan position, always at a line beginning
+    private long position = 0;
     private long fromLineEnd = 0;
 
     /**
-     * Instantiates a new thunder mbox file reader.
+     * Instantiates a new thunder mbox file reader, with the file memory mapped.
      *
      * @param logger Operation store extractor logger
      * @param file   File containing the mbox formatted data
      * @throws IOException Unable to open the file.
      */
     public MboxReader(MailExtractProgressLogger logger, File file) throws IOException {
+        this(logger, file, true);
+    }
+
+    /**
+     * Instantiates a new thunder mbox file reader.
+     *
+     * @param logger       Operation store extractor logger
+     * @param file         File containing the mbox formatted data
+     * @param memoryMapped true if the file is memory mapped, false if it is read
+     *                     through a file kept open until close
+     * @throws IOException Unable to open the file.
+     */
+    public MboxReader(MailExtractProgressLogger logger, File file, boolean memoryMapped) throws IOException {
         this.logger = logger;
         this.filePath = file.getPath();
-        sifs = new SharedFileInputStream(file);
-        raf = new RandomAccessFile(file, "r");
+        if (memoryMapped) {
+            try (RandomAccessFile mappedRaf = new RandomAccessFile(file, "r");
+                 FileChannel channel = mappedRaf.getChannel()) {
+                size = channel.size();
+                chunks = new ByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+                for (int i = 0; i < chunks.length; i++) {
+                    long chunkStart = (long) i << CHUNK_BITS;
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart,
+                            Math.min(CHUNK_SIZE + CHUNK_OVERLAP, size - chunkStart)).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+        } else {
+            raf = new RandomAccessFile(file, "r");
+            try {
+                size = raf.length();
+                sharedFileInputStream = new SharedFileInputStream(file);
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+            window = ByteBuffer.allocate(WINDOW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            window.limit(0);
+            windowStart = 0;
+        }
     }
 
     /**
@@ -82,7 +151,13 @@ public class MboxReader {
      */
     public MboxReader(MailExtractProgressLogger logger, byte[] source) {
         this.logger = logger;
-        sifs = new SharedByteArrayInputStream(source);
+        size = source.length;
+        chunks = new ByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            int chunkStart = i << CHUNK_BITS;
+            chunks[i] = ByteBuffer.wrap(source, chunkStart,
+                    (int) Math.min(CHUNK_SIZE + CHUNK_OVERLAP, size - chunkStart)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
     }
 
     /**
@@ -101,14 +176,25 @@ public class MboxReader {
 
     /**
      * Close.
+     * <p>
+     * If not memory mapped, the file is closed, else the mapped memory is only
+     * released, and the file unlocked, when the reader and all the streams
+     * created by {@link #newStream newStream} are garbage collected.
      *
      * @throws IOException Unable to close the file.
      */
     public void close() throws IOException {
-        if (raf != null)
-            raf.close();
-        if (sifs instanceof InputStream)
-            ((InputStream) sifs).close();
+        chunks = null;
+        window = null;
+        try {
+            if (raf != null)
+                raf.close();
+        } finally {
+            raf = null;
+            if (sharedFileInputStream != null)
+                sharedFileInputStream.close();
+            sharedFileInputStream = null;
+        }
     }
 
     /**
@@ -116,70 +202,71 @@ public class MboxReader {
      * to end-1 position
      * <p>
      * If end=-1 from bytes are from start position to the end of file
+     * <p>
+     * The stream is a {@link SharedInputStream} slice of the mapped file, so
+     * that a MimeMessage parsing it doesn't copy the content.
      *
      * @param start Start
      * @param end   End
      * @return the input stream
      */
     public InputStream newStream(long start, long end) {
-        return sifs.newStream(start, end);
-    }
-
-    // buffered read
-    private final int read() throws IOException {
-        if (raf != null) {
-            // if File
-            if (curPos >= len) {
-                bufferPos = raf.getFilePointer();
-                if ((len = raf.read(buffer)) == -1)
-                    return -1;
-                curPos = 0;
-            }
-        } else {
-            // if byte[]
-            // TODO get rid of buffer when byte[]
-            if (curPos >= len) {
-                bufferPos = sifs.getPosition();
-                if ((len = ((ByteArrayInputStream) sifs).read(buffer)) == -1)
-                    return -1;
-                curPos = 0;
-            }
-        }
-        return buffer[curPos++];
+        if (chunks == null)
+            return sharedFileInputStream.newStream(start, end);
+        return new MappedSharedInputStream(chunks, start, (end == -1 ? size : end));
     }
 
-    // buffered get file pointer
-    private final long getPointer() {
-        return bufferPos + curPos;
+    // get byte at a position
+    private static byte getByte(ByteBuffer[] chunks, long pos) {
+        return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
     }
 
-    // read a complete line but return only first 64 bytes
-    private final int readFirstBytesLine(byte[] buffer) throws IOException {
-        int i = 0;
-        int b;
-
-        lineNum++;
-        while (true) {
-            b = read();
-            if (b == -1)
-                return -1;
-            if (b == '\n')
-                return i;
-            if (i < 64) {
-                buffer[i++] = (byte) b;
+    // get the scan window containing the bytes from a position, up to a long or the end of file, reading it if needed
+    private ByteBuffer getWindow(long pos) throws IOException {
+        if ((pos < windowStart) || (pos + Math.min(Long.BYTES, size - pos) > windowStart + window.limit())) {
+            FileChannel channel = raf.getChannel();
+            window.clear();
+            windowStart = pos;
+            while (window.hasRemaining()) {
+                if (channel.read(window, windowStart + window.position()) <= 0)
+                    break;
             }
+            window.flip();
         }
+        return window;
     }
 
-    // construct a String from buffer
-    private String constructLine(byte[] buffer, int len) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < len; i++) {
-            final char c = (char) (buffer[i]);
-            if (c >= 32)
-                stringBuilder.append(c);
+    // get byte at a position
+    private byte getByte(long pos) throws IOException {
+        if (chunks == null)
+            return getWindow(pos).get((int) (pos - windowStart));
+        return getByte(chunks, pos);
+    }
+
+    // get the long word at a position, which has to be at least a long before the end
+    private long getLong(long pos) throws IOException {
+        if (chunks == null)
+            return getWindow(pos).getLong((int) (pos - windowStart));
+        return chunks[(int) (pos >>> CHUNK_BITS)].getLong((int) (pos & CHUNK_MASK));
+    }
+
+    // search the first "\n" position from a position, or -1
+    private long indexOfNewLine(long from) throws IOException {
+        long pos = from;
+        // word-at-a-time search, each byte equal to '\n' having its high bit set in found
+        while (pos + Long.BYTES <= size) {
+            long word = getLong(pos) ^ NEWLINES;
+            long found = (word - ONES) & ~word & HIGHS;
+            if (found != 0)
+                return pos + (Long.numberOfTrailingZeros(found) >>> 3);
+            pos += Long.BYTES;
+        }
+        while (pos < size) {
+            if (getByte(pos) == '\n')
+                return pos;
+            pos++;
         }
-        return stringBuilder.toString();
+        return -1;
     }
 
     // verify line compliance to the delimiter pattern
@@ -195,13 +282,10 @@ public class MboxReader {
     //
     //After the "From " line is the message itself in RFC 5322 format. The final line is a completely blank line with no spaces or tabs.
     // WARNING: due to tested mbox files diversity the only kept filter is the beginning "From " pattern!
-    private boolean isCompliantMBoxDelimiterLine(byte[] buffer, int len) {
-        if ((buffer[0] == 'F') && (buffer[1] == 'r') && (buffer[2] == 'o') && (buffer[3] == 'm')
-                && (buffer[4] == ' '))
-            return true;
-        else
-            return false;
-
+    private boolean isCompliantMBoxDelimiterLine(long lineBeg) throws IOException {
+        return (lineBeg + 5 <= size) && (getByte(lineBeg) == 'F') && (getByte(lineBeg + 1) == 'r')
+                && (getByte(lineBeg + 2) == 'o') && (getByte(lineBeg + 3) == 'm')
+                && (getByte(lineBeg + 4) == ' ');
     }
 
     /**
@@ -211,21 +295,23 @@ public class MboxReader {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public long getNextFromLineBeg() throws IOException {
-        long beg;
-        int len;
-        byte[] buffer = new byte[64];
+        long beg = position;
+        long newLine;
 
         while (true) {
-            beg = getPointer();
-            len = readFirstBytesLine(buffer);
-            if (len == -1) {
+            newLine = indexOfNewLine(beg);
+            // a line without ending new line is the end of file
+            if (newLine == -1) {
+                position = size;
                 fromLineEnd = -1;
                 return -1;
             }
-                if (isCompliantMBoxDelimiterLine(buffer, len)) {
-                    fromLineEnd = getPointer();
-                    return beg;
-                }
+            if (isCompliantMBoxDelimiterLine(beg)) {
+                position = newLine + 1;
+                fromLineEnd = position;
+                return beg;
+            }
+            beg = newLine + 1;
         }
     }
 
@@ -238,4 +324,174 @@ public class MboxReader {
     public long getLastFromLineEnd() throws IOException {
         return fromLineEnd;
     }
+
+    // verify that the position is just after a "From " line
+    private boolean isFromLineEnd(long pos) throws IOException {
+        if ((pos < 1) || (pos > size) || (getByte(pos - 1) != '\n'))
+            return false;
+        long lineBeg = pos - 1;
+        while ((lineBeg > 0) && (getByte(lineBeg - 1) != '\n'))
+            lineBeg--;
+        return isCompliantMBoxDelimiterLine(lineBeg);
+    }
+
+    // verify that indexed slices match the content, with "From " lines before the first and the last messages
+    // and after the first message
+    private boolean isMatchingSlices(long[] slices) throws IOException {
+        if (slices.length == 0)
+            return true;
+        return isFromLineEnd(slices[0]) && isFromLineEnd(slices[slices.length - 2])
+                && ((slices[1] == -1) || isCompliantMBoxDelimiterLine(slices[1]));
+    }
+
+    /**
+     * Gets the messages slices, begin and end position of each message in
+     * sequence, the end of the last message being -1.
+     * <p>
+     * When the mbox is a file and an index directory is given, the slices are
+     * read from the index if the file is unchanged, or else scanned and written
+     * in the index.
+     *
+     * @param indexDirectory the slices index directory, or null if none
+     * @return the slices
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long[] getMessagesSlices(File indexDirectory) throws IOException {
+        File mboxFile = null;
+        long[] result;
+
+        if ((filePath != null) && (indexDirectory != null)) {
+            mboxFile = new File(filePath);
+            result = MboxSlicesIndex.read(indexDirectory, mboxFile, logger);
+            if (result != null) {
+                if (isMatchingSlices(result)) {
+                    doProgressLogWithoutInterruption(logger, MailExtractProgressLogger.MESSAGE_DETAILS,
+                            "mbox: slices index reused for file " + filePath, null);
+                    return result;
+                }
+                doProgressLogWithoutInterruption(logger, MailExtractProgressLogger.WARNING,
+                        "mbox: slices index doesn't match content of file " + filePath + ", mbox file rescanned",
+                        null);
+            }
+        }
+
+        result = new long[64];
+        int count = 0;
+        long beg, end;
+        getNextFromLineBeg();
+        beg = getLastFromLineEnd();
+        while (beg != -1) {
+            end = getNextFromLineBeg();
+            if (count + 2 > result.length)
+                result = Arrays.copyOf(result, 2 * result.length);
+            result[count++] = beg;
+            result[count++] = end;
+            beg = getLastFromLineEnd();
+        }
+        result = Arrays.copyOf(result, count);
+
+        if (mboxFile != null)
+            MboxSlicesIndex.write(indexDirectory, mboxFile, result, logger);
+        return result;
+    }
+
+    /**
+     * Shared input stream on a slice of the mapped chunks.
+     * <p>
+     * Each stream has its own position, and only reads the chunks with absolute
+     * access, so that different streams can be read concurrently.
+     */
+    private static class MappedSharedInputStream extends InputStream implements SharedInputStream {
+
+        private final ByteBuffer[] chunks;
+        private final long start;
+        private final long end;
+        private long pos;
+        private long markPos;
+
+        /**
+         * Instantiates a new mapped shared input stream.
+         *
+         * @param chunks the mapped chunks
+         * @param start  the start position in chunks
+         * @param end    the end position in chunks, excluded
+         */
+        MappedSharedInputStream(ByteBuffer[] chunks, long start, long end) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+            this.pos = start;
+            this.markPos = start;
+        }
+
+        @Override
+        public int read() {
+            if (pos >= end)
+                return -1;
+            return getByte(chunks, pos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (pos >= end)
+                return -1;
+            int result = (int) Math.min(len, end - pos);
+            int done = 0;
+            while (done < result) {
+                ByteBuffer chunk = chunks[(int) (pos >>> CHUNK_BITS)].duplicate();
+                int chunkPos = (int) (pos & CHUNK_MASK);
+                int count = (int) Math.min(result - done, CHUNK_SIZE - chunkPos);
+                chunk.position(chunkPos);
+                chunk.get(b, off + done, count);
+                done += count;
+                pos += count;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0)
+                return 0;
+            long result = Math.min(n, end - pos);
+            pos += result;
+            return result;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(end - pos, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            markPos = pos;
+        }
+
+        @Override
+        public synchronized void reset() {
+            pos = markPos;
+        }
+
+        @Override
+        public long getPosition() {
+            return pos - start;
+        }
+
+        @Override
+        public InputStream newStream(long start, long end) {
+            if (start < 0)
+                throw new IllegalArgumentException("start < 0");
+            if (end == -1)
+                end = this.end - this.start;
+            return new MappedSharedInputStream(chunks, this.start + start, this.start + Math.min(end, this.end - this.start));
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/**
+ * Copyright French Prime minister Office/SGMAP/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@culture.gouv.fr
+ * <p>
+ * This software is a computer program whose purpose is to implement a digital archiving back-office system managing
+ * high volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA at the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+
+package fr.gouv.vitam.tools.mailextractlib.store.javamail.mbox;
+
+import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger.doProgressLogWithoutInterruption;
+
+/**
+ * Persistent index of the messages slices of a mbox file.
+ * <p>
+ * The messages slicing of a mbox file needs a full scan of the file, so the
+ * slices (begin and end positions of each message) are kept in an index file,
+ * with the path, size and last modification time of the mbox file, and are
+ * reused as long as the mbox file is unchanged.
+ */
+public class MboxSlicesIndex {
+
+    /** Index file format version. */
+    private static final int INDEX_VERSION = 1;
+
+    /** Index file extension. */
+    private static final String INDEX_EXTENSION = ".slices";
+
+    /** Minimum length of a message, only a "From " line. */
+    private static final int MIN_MESSAGE_LENGTH = 6;
+
+    // index file for a mbox file in the index directory
+    private static File getIndexFile(File indexDirectory, File mboxFile) throws IOException {
+        String path = mboxFile.getCanonicalPath();
+        return new File(indexDirectory, mboxFile.getName().replaceAll("[^\\p{IsAlphabetic}\\p{Digit}]", "-")
+                + "-" + Integer.toHexString(path.hashCode()) + INDEX_EXTENSION);
+    }
+
+    // verify that slices are in the mbox file and in sequence, only the last message end being -1
+    private static boolean isOrdered(long[] slices, long length) {
+        long previousEnd = 0;
+        for (int i = 0; i < slices.length; i += 2) {
+            long beg = slices[i];
+            long end = slices[i + 1];
+            if ((beg < previousEnd) || (beg > length))
+                return false;
+            if (end == -1) {
+                if (i + 2 != slices.length)
+                    return false;
+            } else if ((end < beg) || (end > length))
+                return false;
+            previousEnd = end;
+        }
+        return true;
+    }
+
+    private static void logInvalidIndex(File mboxFile, MailExtractProgressLogger logger) {
+        doProgressLogWithoutInterruption(logger, MailExtractProgressLogger.WARNING,
+                "mbox: invalid slices index of file " + mboxFile.getPath() + ", mbox file rescanned", null);
+    }
+
+    /**
+     * Read the messages slices of a mbox file, if indexed and unchanged since.
+     * <p>
+     * The slices are only checked to be in sequence in the mbox file, the
+     * caller has to check that they match the mbox content.
+     *
+     * @param indexDirectory the index directory
+     * @param mboxFile       the mbox file
+     * @param logger         the logger
+     * @return the slices, begin and end position of each message in sequence, or null if no valid index
+     */
+    public static long[] read(File indexDirectory, File mboxFile, MailExtractProgressLogger logger) {
+        long[] result;
+
+        try {
+            File indexFile = getIndexFile(indexDirectory, mboxFile);
+            if (!indexFile.isFile())
+                return null;
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if ((dis.readInt() != INDEX_VERSION) || !dis.readUTF().equals(mboxFile.getCanonicalPath())
+                        || (dis.readLong() != mboxFile.length()) || (dis.readLong() != mboxFile.lastModified()))
+                    return null;
+                // each message has at least a "From " line, so a corrupted count is bounded by the mbox length
+                int count = dis.readInt();
+                if ((count < 0) || (count > mboxFile.length() / MIN_MESSAGE_LENGTH)) {
+                    logInvalidIndex(mboxFile, logger);
+                    return null;
+                }
+                result = new long[2 * count];
+                for (int i = 0; i < result.length; i++)
+                    result[i] = dis.readLong();
+            }
+            if (!isOrdered(result, mboxFile.length())) {
+                logInvalidIndex(mboxFile, logger);
+                return null;
+            }
+        } catch (IOException e) {
+            doProgressLogWithoutInterruption(logger, MailExtractProgressLogger.MESSAGE_DETAILS,
+                    "mbox: can't read slices index of file " + mboxFile.getPath(), e);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Write the messages slices of a mbox file.
+     * <p>
+     * Failure is only logged, as the index is only an optimisation.
+     *
+     * @param indexDirectory the index directory
+     * @param mboxFile       the mbox file
+     * @param slices         the slices, begin and end position of each message in sequence
+     * @param logger         the logger
+     */
+    public static void write(File indexDirectory, File mboxFile, long[] slices, MailExtractProgressLogger logger) {
+        File tmpFile = null;
+
+        try {
+            File indexFile = getIndexFile(indexDirectory, mboxFile);
+            Files.createDirectories(indexDirectory.toPath());
+            tmpFile = new File(indexFile.getPath() + ".tmp");
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.writeInt(INDEX_VERSION);
+                dos.writeUTF(mboxFile.getCanonicalPath());
+                dos.writeLong(mboxFile.length());
+                dos.writeLong(mboxFile.lastModified());
+                dos.writeInt(slices.length / 2);
+                for (long position : slices)
+                    dos.writeLong(position);
+            }
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            if (tmpFile != null)
+                tmpFile.delete();
+            doProgressLogWithoutInterruption(logger, MailExtractProgressLogger.WARNING,
+                    "mbox: can't write slices index of file " + mboxFile.getPath(), e);
+        }
+    }
+}
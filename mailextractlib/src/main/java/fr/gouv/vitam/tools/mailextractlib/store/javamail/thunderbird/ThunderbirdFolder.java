@@ -60,6 +60,8 @@ public class ThunderbirdFolder extends Folder {
     private File folderFile;
     private MboxReader mboxfilereader;
     private MailExtractProgressLogger logger;
+    private File slicesIndexDirectory;
+    private boolean memoryMapping = true;
 
     private class MessageFork {
         long beg, end;
@@ -83,6 +85,34 @@ public class ThunderbirdFolder extends Folder {
         this.logger = logger;
     }
 
+    /**
+     * Sets the slices index directory
+     * <p>
+     * This method is directly called from MailExtract library to enable this
+     * class to keep the messages slices of the mbox file between extractions,
+     * else the file is scanned at each opening
+     *
+     * @param slicesIndexDirectory
+     *            Slices index directory
+     */
+    public void setSlicesIndexDirectory(File slicesIndexDirectory) {
+        this.slicesIndexDirectory = slicesIndexDirectory;
+    }
+
+    /**
+     * Sets the memory mapping flag
+     * <p>
+     * This method is directly called from MailExtract library to choose if the
+     * mbox file is memory mapped, or read through the file kept open until the
+     * folder is closed, so that it's no longer locked after extraction
+     *
+     * @param memoryMapping
+     *            Memory mapping flag
+     */
+    public void setMemoryMapping(boolean memoryMapping) {
+        this.memoryMapping = memoryMapping;
+    }
+
     /**
      * Instantiates a new thunder mbox folder.
      *
@@ -495,17 +525,13 @@ public class ThunderbirdFolder extends Folder {
         MessageFork mf;
 
         try {
-            mboxfilereader = new MboxReader(logger, folderFile);
+            mboxfilereader = new MboxReader(logger, folderFile, memoryMapping);
             opened = true; // now really opened
-            long beg, end;
 
-            mboxfilereader.getNextFromLineBeg();
-            beg = mboxfilereader.getLastFromLineEnd();
-            while (beg != -1) {
-                end = mboxfilereader.getNextFromLineBeg();
-                mf = new MessageFork(beg, end);
+            long[] slices = mboxfilereader.getMessagesSlices(slicesIndexDirectory);
+            for (int i = 0; i < slices.length; i += 2) {
+                mf = new MessageFork(slices[i], slices[i + 1]);
                 messages.add(mf);
-                beg = mboxfilereader.getLastFromLineEnd();
             }
         } catch (IOException e) {
             throw new MessagingException("ThunderMBox: open failure, can't read: " + folderFile.getPath());
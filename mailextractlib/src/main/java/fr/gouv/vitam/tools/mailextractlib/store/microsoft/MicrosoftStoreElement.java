@@ -48,7 +48,9 @@ public interface MicrosoftStoreElement {
                         element.logMessageWarning("mailextractlib.microsoft: can't extract OLE attachment", null);
                         break;
                     case ATTACHMENT_METHOD_BY_VALUE:
-                        attachment = new StoreAttachment(element,nativeAttachments[i].byteArray, "file",
+                        attachment = new StoreAttachment(element,
+                                (nativeAttachments[i].spilledContent != null ? nativeAttachments[i].spilledContent
+                                        : nativeAttachments[i].byteArray), "file",
                                 getAttachementFilename(nativeAttachments[i]), nativeAttachments[i].creationTime,
                                 nativeAttachments[i].modificationTime, nativeAttachments[i].mimeTag,
                                 nativeAttachments[i].contentId, StoreAttachment.INLINE_ATTACHMENT);
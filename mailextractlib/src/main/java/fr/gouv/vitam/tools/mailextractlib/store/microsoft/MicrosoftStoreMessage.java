@@ -73,8 +73,8 @@ public abstract class MicrosoftStoreMessage extends StoreMessage implements Micr
     public long getMessageSize() {
         long result;
         result = getNativeMessageSize();
-        if ((result == 0) && (mimeContent != null))
-            result = mimeContent.length;
+        if ((result == 0) && hasMimeContent())
+            result = getMimeContentSize();
         return result;
     }
 
@@ -27,6 +27,8 @@
 
 package fr.gouv.vitam.tools.mailextractlib.store.microsoft;
 
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
+
 import java.util.Date;
 
 /**
@@ -58,6 +60,9 @@ public class MicrosoftStoreMessageAttachment {
     /** The byte array. */
     public byte[] byteArray;
 
+    /** The spilled content, when too big to be kept in memory, byteArray being then null. */
+    public SpillableBuffer spilledContent;
+
     /** The filename. */
     public String filename = "";
 
@@ -34,11 +34,12 @@ import fr.gouv.vitam.tools.mailextractlib.core.StoreExtractorOptions;
 import fr.gouv.vitam.tools.mailextractlib.nodes.ArchiveUnit;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
 import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 import org.apache.poi.hsmf.MAPIMessage;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 
 /**
@@ -110,10 +111,10 @@ public class MsgStoreExtractor extends StoreExtractor {
         this.attachment = attachment;
         if (attachment.getStoreContent() instanceof MAPIMessage)
             message = (MAPIMessage) attachment.getStoreContent();
-        else if (attachment.getStoreContent() instanceof byte[]) {
-            ByteArrayInputStream bais = new ByteArrayInputStream((byte[]) attachment.getStoreContent());
-            try {
-                message = new MAPIMessage(bais);
+        else if ((attachment.getStoreContent() instanceof byte[])
+                || (attachment.getStoreContent() instanceof SpillableBuffer)) {
+            try (InputStream is = attachment.getRawAttachmentInputStream()) {
+                message = new MAPIMessage(is);
             } catch (IOException e) {
                 throw new MailExtractLibException("mailextractlib.msg: can't extract msg store", e);
             }
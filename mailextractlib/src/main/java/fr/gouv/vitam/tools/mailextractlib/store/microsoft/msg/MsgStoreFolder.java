@@ -101,12 +101,14 @@ public class MsgStoreFolder extends StoreFolder {
      */
     @Override
     protected void doExtractFolderElements(boolean writeFlag) throws MailExtractLibException, InterruptedException {
+        // return to attachment the binary form if exists, which can be spilled if too big
+        StoreAttachment attachment = ((MsgStoreExtractor) storeExtractor).getAttachment();
+        if (attachment != null)
+            msgStoreMessage.retainMimeContent();
         msgStoreMessage.processElement(writeFlag);
 
-        // return to attachment the binary form if exists
-        StoreAttachment attachment = ((MsgStoreExtractor) storeExtractor).getAttachment();
         if (attachment != null) {
-            attachment.setStoreContent(msgStoreMessage.getMimeContent());
+            attachment.setStoreContent(msgStoreMessage.getMimeStoreContent());
             attachment.setMimeType("message/rfc822");
             if ((attachment.getName() == null) || attachment.getName().isEmpty())
                 attachment.setName(msgStoreMessage.getSubject() + ".eml");
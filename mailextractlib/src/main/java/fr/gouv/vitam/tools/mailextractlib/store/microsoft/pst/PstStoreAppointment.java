@@ -240,7 +240,8 @@ public class PstStoreAppointment extends StoreAppointment implements MicrosoftSt
                     continue;
             } catch (PSTException | IOException ignored) {
             }
-            nativeAttachments.add(new PstStoreMessageAttachment(message, i));
+            nativeAttachments.add(new PstStoreMessageAttachment(message, i,
+                    getStoreExtractor().getOptions().contentSpillThreshold));
         }
         if (nativeAttachments.size()==0)
             return new ArrayList<StoreAttachment>(0);
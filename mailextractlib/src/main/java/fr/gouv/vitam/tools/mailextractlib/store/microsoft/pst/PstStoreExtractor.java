@@ -119,7 +119,7 @@ public class PstStoreExtractor extends StoreExtractor {
     }
 
     // create a store temporary file
-    private static File writeStoreFile(String dirPath, byte[] byteContent) throws MailExtractLibException {
+    private static File writeStoreFile(String dirPath, StoreAttachment attachment) throws MailExtractLibException {
         File storeFile;
 
         OutputStream output = null;
@@ -127,8 +127,12 @@ public class PstStoreExtractor extends StoreExtractor {
             Files.createDirectories(Paths.get(dirPath));
             storeFile = getStoreTemporaryFile(dirPath);
             output = new BufferedOutputStream(new FileOutputStream(storeFile));
-            if (byteContent != null)
-                output.write(byteContent);
+            try (InputStream is = attachment.getRawAttachmentInputStream()) {
+                byte[] buf = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = is.read(buf)) != -1)
+                    output.write(buf, 0, bytesRead);
+            }
         } catch (IOException ex) {
             if (dirPath.length() + 8 > 250)
                 throw new MailExtractLibException(
@@ -160,7 +164,7 @@ public class PstStoreExtractor extends StoreExtractor {
     static private String generateFileAndUrl(StoreAttachment attachment, ArchiveUnit rootNode)
             throws MailExtractLibException {
         String result = null;
-        File storeFile = writeStoreFile(rootNode.getFullName(), attachment.getRawAttachmentContent());
+        File storeFile = writeStoreFile(rootNode.getFullName(), attachment);
         try {
             result = "pst://localhost/" + URLEncoder.encode(storeFile.getAbsolutePath(), "UTF-8");
         } catch (UnsupportedEncodingException e) {
@@ -139,7 +139,7 @@ public class PstStoreFolder extends StoreFolder {
                 extracted = new PstStoreAppointment(this, (PSTAppointment) message);
             else
                 extracted = new PstStoreMessage(this, message);
-            extracted.processElement(writeFlag);
+            extractElement(extracted, writeFlag);
         }
     }
 
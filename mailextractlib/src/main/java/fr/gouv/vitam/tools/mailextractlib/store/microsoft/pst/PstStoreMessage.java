@@ -372,7 +372,8 @@ public class PstStoreMessage extends MicrosoftStoreMessage {
 
         psmAttachment = new PstStoreMessageAttachment[message.getNumberOfAttachments()];
         for (int i = 0; i < message.getNumberOfAttachments(); i++) {
-            psmAttachment[i] = new PstStoreMessageAttachment(message, i);
+            psmAttachment[i] = new PstStoreMessageAttachment(message, i,
+                    getStoreExtractor().getOptions().contentSpillThreshold);
         }
         return psmAttachment;
     }
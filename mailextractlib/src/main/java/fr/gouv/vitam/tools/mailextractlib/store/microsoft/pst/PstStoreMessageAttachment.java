@@ -31,8 +31,8 @@ import com.pff.PSTAttachment;
 import com.pff.PSTException;
 import com.pff.PSTMessage;
 import fr.gouv.vitam.tools.mailextractlib.store.microsoft.MicrosoftStoreMessageAttachment;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -42,7 +42,14 @@ import java.io.InputStream;
  */
 public class PstStoreMessageAttachment extends MicrosoftStoreMessageAttachment {
 
-    public PstStoreMessageAttachment(PSTMessage message, int i) {
+    /**
+     * Instantiates a new pst store message attachment.
+     *
+     * @param message        the message
+     * @param i              the attachment index
+     * @param spillThreshold the size above which the content is spilled to a temporary file
+     */
+    public PstStoreMessageAttachment(PSTMessage message, int i, long spillThreshold) {
         PSTAttachment attachment;
 
         try {
@@ -54,13 +61,11 @@ public class PstStoreMessageAttachment extends MicrosoftStoreMessageAttachment {
             displayName = attachment.getDisplayName();
             try {
                 InputStream is = attachment.getFileInputStream();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                byte[] buf = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = is.read(buf)) != -1) {
-                    baos.write(buf, 0, bytesRead);
-                }
-                byteArray = baos.toByteArray();
+                Object content = SpillableBuffer.readContent(is, spillThreshold);
+                if (content instanceof SpillableBuffer)
+                    spilledContent = (SpillableBuffer) content;
+                else
+                    byteArray = (byte[]) content;
             } catch (PSTException | IOException e) {
                 byteArray = null;
             }
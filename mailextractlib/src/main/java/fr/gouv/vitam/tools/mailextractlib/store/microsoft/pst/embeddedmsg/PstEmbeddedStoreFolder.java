@@ -83,11 +83,12 @@ public class PstEmbeddedStoreFolder extends StoreFolder {
      */
     @Override
     protected void doExtractFolderElements(boolean writeFlag) throws MailExtractLibException, InterruptedException {
+        lpStoreMessage.retainMimeContent();
         lpStoreMessage.processElement(writeFlag);
 
-        // return to attachment the binary form
+        // return to attachment the binary form, which can be spilled if too big
         StoreAttachment attachment = ((PstEmbeddedStoreExtractor) storeExtractor).getAttachment();
-        attachment.setStoreContent(lpStoreMessage.getMimeContent());
+        attachment.setStoreContent(lpStoreMessage.getMimeStoreContent());
         attachment.setMimeType("message/rfc822");
         if ((attachment.getName() == null) || attachment.getName().isEmpty())
             attachment.setName(lpStoreMessage.getSubject() + ".eml");
@@ -42,6 +42,9 @@ public class RawDataSource implements DataSource {
     /** The input stream. */
     ByteArrayInputStream inputStream;
 
+    /** The spilled content, if too big to be kept in memory. */
+    SpillableBuffer spilledContent;
+
     /** The mime type. */
     String mimeType;
 
@@ -66,6 +69,23 @@ public class RawDataSource implements DataSource {
         this.name = name;
     }
 
+    /**
+     * Instantiates a new raw data source on a content spilled to a temporary
+     * file, which is streamed and never loaded in memory.
+     *
+     * @param spilledContent
+     *            the spilled content
+     * @param mimeType
+     *            the mime type
+     * @param name
+     *            the name
+     */
+    public RawDataSource(SpillableBuffer spilledContent, String mimeType, String name) {
+        this.spilledContent = spilledContent;
+        this.mimeType = mimeType;
+        this.name = name;
+    }
+
     /**
      * This method returns an <code>InputStream</code> representing the data and
      * throws the appropriate exception if it can not do so. Note that a new
@@ -77,6 +97,8 @@ public class RawDataSource implements DataSource {
      *             Signals that an I/O exception has occurred.
      */
     public InputStream getInputStream() throws IOException {
+        if (spilledContent != null)
+            return spilledContent.getInputStream();
         return inputStream;
     }
 
@@ -0,0 +1,250 @@
+/**
+ * Copyright French Prime minister Office/SGMAP/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@culture.gouv.fr
+ * <p>
+ * This software is a computer program whose purpose is to implement a digital archiving back-office system managing
+ * high volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA at the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+
+package fr.gouv.vitam.tools.mailextractlib.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Binary content buffer, kept in memory when small and spilled to a temporary
+ * file above a threshold, so that the memory used by a message doesn't depend
+ * on its attachments size.
+ * <p>
+ * The content is written as in an OutputStream and, once closed, can be read
+ * as many times as needed. A spilled buffer can be shared, for example between
+ * an attachment and the ArchiveUnit writing it, each user calling
+ * {@link #release release} when done, the temporary file being deleted with
+ * the last release.
+ */
+public class SpillableBuffer extends OutputStream {
+
+    /** The default spill threshold. */
+    public static final long DEFAULT_SPILL_THRESHOLD = 16L * 1024 * 1024;
+
+    // copy buffer size
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    // size above which the content is spilled
+    private final long spillThreshold;
+
+    // memory content until spilled
+    private ByteArrayOutputStream memoryContent;
+
+    // temporary file content when spilled
+    private File spillFile;
+    private OutputStream spillStream;
+
+    private long size;
+
+    // number of users of the spilled content
+    private final AtomicInteger users;
+
+    /**
+     * Instantiates a new spillable buffer.
+     *
+     * @param spillThreshold the size above which the content is spilled to a temporary file
+     */
+    public SpillableBuffer(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+        this.memoryContent = new ByteArrayOutputStream();
+        this.spillFile = null;
+        this.spillStream = null;
+        this.size = 0;
+        this.users = new AtomicInteger(1);
+    }
+
+    /**
+     * Read all the content of an input stream.
+     *
+     * @param is             the input stream
+     * @param spillThreshold the size above which the content is spilled to a temporary file
+     * @return the content, byte[] if kept in memory, or the spilled buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static Object readContent(InputStream is, long spillThreshold) throws IOException {
+        SpillableBuffer buffer = new SpillableBuffer(spillThreshold);
+        try {
+            byte[] buf = new byte[COPY_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = is.read(buf)) != -1)
+                buffer.write(buf, 0, bytesRead);
+            buffer.close();
+        } catch (IOException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer.getContent();
+    }
+
+    // move the memory content to a temporary file
+    private void spill() throws IOException {
+        spillFile = File.createTempFile("mailextract", ".tmp");
+        spillStream = new BufferedOutputStream(new FileOutputStream(spillFile), COPY_BUFFER_SIZE);
+        memoryContent.writeTo(spillStream);
+        memoryContent = null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if ((spillFile == null) && (size + 1 > spillThreshold))
+            spill();
+        if (spillFile == null)
+            memoryContent.write(b);
+        else
+            spillStream.write(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((spillFile == null) && (size + len > spillThreshold))
+            spill();
+        if (spillFile == null)
+            memoryContent.write(b, off, len);
+        else
+            spillStream.write(b, off, len);
+        size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (spillStream != null)
+            spillStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillStream != null) {
+            spillStream.close();
+            spillStream = null;
+        }
+    }
+
+    /**
+     * Checks if the content has been spilled to a temporary file.
+     *
+     * @return true, if spilled
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Gets the content size.
+     *
+     * @return the size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the content, to be used after close.
+     *
+     * @return the content, byte[] if kept in memory, or this buffer if spilled
+     */
+    public Object getContent() {
+        if (spillFile == null)
+            return memoryContent.toByteArray();
+        return this;
+    }
+
+    /**
+     * Gets a new input stream on the content, to be used after close.
+     *
+     * @return the input stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public InputStream getInputStream() throws IOException {
+        if (spillFile == null)
+            return new ByteArrayInputStream(memoryContent.toByteArray());
+        return new BufferedInputStream(new FileInputStream(spillFile), COPY_BUFFER_SIZE);
+    }
+
+    /**
+     * Gets the whole content in a byte array, which is to be avoided for spilled
+     * content.
+     *
+     * @return the byte array
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public byte[] toByteArray() throws IOException {
+        if (spillFile == null)
+            return memoryContent.toByteArray();
+        return Files.readAllBytes(spillFile.toPath());
+    }
+
+    /**
+     * Write the content to an output stream.
+     *
+     * @param os the output stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        if (spillFile == null)
+            memoryContent.writeTo(os);
+        else
+            Files.copy(spillFile.toPath(), os);
+    }
+
+    /**
+     * Add a user of the content, who will have to release it.
+     *
+     * @return this buffer
+     */
+    public SpillableBuffer share() {
+        users.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Release the content for one user, deleting the temporary file, if any,
+     * when there's no more user.
+     */
+    public void release() {
+        if (users.decrementAndGet() <= 0) {
+            try {
+                close();
+            } catch (IOException ignored) {
+                // forget it
+            }
+            if (spillFile != null)
+                spillFile.delete();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package fr.gouv.vitam.tools.mailextractlib.core;
+
+import fr.gouv.vitam.tools.mailextractlib.AllTests;
+import fr.gouv.vitam.tools.mailextractlib.utils.SpillableBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestStoreAttachment implements AllTests {
+
+    @Test
+    public void testDetectSpilledStoreAttachment() throws IOException {
+        //given an eml attachment spilled to a temporary file, and the same kept in memory
+        AllTests.initializeTests("testDetectSpilledStoreAttachment");
+        Object spilledContent;
+        Object memoryContent;
+        try (InputStream is = new FileInputStream("src/test/resources/eml/Test message 2.eml")) {
+            spilledContent = SpillableBuffer.readContent(is, 1024);
+        }
+        try (InputStream is = new FileInputStream("src/test/resources/eml/Test message 2.eml")) {
+            memoryContent = SpillableBuffer.readContent(is, SpillableBuffer.DEFAULT_SPILL_THRESHOLD);
+        }
+        StoreAttachment spilled = new StoreAttachment(null, spilledContent, "file", "spilled.eml", null, null,
+                "application/octet-stream", null, StoreAttachment.FILE_ATTACHMENT);
+        StoreAttachment memory = new StoreAttachment(null, memoryContent, "file", "memory.eml", null, null,
+                "application/octet-stream", null, StoreAttachment.FILE_ATTACHMENT);
+        List<StoreAttachment> attachments = new ArrayList<StoreAttachment>();
+        attachments.add(spilled);
+        attachments.add(memory);
+
+        //when
+        StoreAttachment.detectStoreAttachments(attachments);
+
+        //then both are store attachments
+        assertThat(spilledContent).isInstanceOf(SpillableBuffer.class);
+        assertThat(memoryContent).isInstanceOf(byte[].class);
+        assertThat(spilled.getScheme()).isEqualTo("eml");
+        assertThat(spilled.attachmentType).isEqualTo(StoreAttachment.STORE_ATTACHMENT);
+        assertThat(memory.getScheme()).isEqualTo("eml");
+        ((SpillableBuffer) spilledContent).release();
+    }
+}
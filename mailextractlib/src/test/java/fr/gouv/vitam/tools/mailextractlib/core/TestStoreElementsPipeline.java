@@ -0,0 +1,170 @@
+package fr.gouv.vitam.tools.mailextractlib.core;
+
+import fr.gouv.vitam.tools.mailextractlib.AllTests;
+import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractLibException;
+import fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestStoreElementsPipeline implements AllTests {
+
+    private static final Class<?>[] ELEMENT_CLASSES = {StoreFolder.class, StoreMessage.class,
+            StoreAppointment.class, StoreContact.class};
+
+    // extract a store with the given thread count and return the store extractor
+    private static StoreExtractor extract(String testName, String type, String container, int threadCount,
+                                          MailExtractProgressLogger mepl) throws MailExtractLibException, InterruptedException {
+        StoreExtractorOptions storeExtractorOptions = new StoreExtractorOptions(false,
+                true, true, 12, "windows-1252",
+                true, true, true, true,
+                true, 2);
+        storeExtractorOptions.threadCount = threadCount;
+        String urlString = StoreExtractor.composeStoreURL(type, "", "", "", container);
+        StoreExtractor storeExtractor = StoreExtractor.createStoreExtractor(urlString, "",
+                "target/tmpJUnit/" + testName + "/threads" + threadCount, storeExtractorOptions, mepl);
+        storeExtractor.extractAllFolders();
+        storeExtractor.endStoreExtractor();
+        return storeExtractor;
+    }
+
+    // generate a mbox content with messages having text bodies and attachments
+    private static byte[] generateMbox(String folderName, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("From sender").append(i).append("@example.org Mon Jan  1 10:00:00 2019\n");
+            sb.append("From: Sender <sender").append(i).append("@example.org>\n");
+            sb.append("To: Receiver <receiver@example.org>\n");
+            sb.append("Subject: ").append(folderName).append(" message ").append(i).append("\n");
+            sb.append("Date: ").append(1 + i % 28).append(" Jan 2019 10:").append(10 + i % 50).append(":00 +0100\n");
+            sb.append("Message-ID: <").append(folderName).append(".").append(i).append("@example.org>\n");
+            sb.append("MIME-Version: 1.0\n");
+            sb.append("Content-Type: multipart/mixed; boundary=\"boundary").append(i).append("\"\n\n");
+            sb.append("--boundary").append(i).append("\n");
+            sb.append("Content-Type: text/plain; charset=UTF-8\n\n");
+            for (int j = 0; j < 1 + i % 20; j++)
+                sb.append("Line ").append(j).append(" of message ").append(i).append(" body\n");
+            sb.append("--boundary").append(i).append("\n");
+            sb.append("Content-Type: text/plain; name=\"attachment").append(i).append(".txt\"\n");
+            sb.append("Content-Disposition: attachment; filename=\"attachment").append(i).append(".txt\"\n\n");
+            sb.append("Attachment of message ").append(i).append("\n");
+            sb.append("--boundary").append(i).append("--\n\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Path> listFiles(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.map(root::relativize).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // file content without the generated mime boundaries
+    private static String normalizedContent(Path file) throws IOException {
+        return FileUtils.readFileToString(file.toFile(), StandardCharsets.ISO_8859_1).replaceAll("----=_Part.*", "");
+    }
+
+    // check that a concurrent extraction gives the same counters, tree and files as a sequential one
+    private static void assertSameExtraction(String testName, StoreExtractor sequentialExtractor,
+                                             StoreExtractor concurrentExtractor) throws IOException {
+        for (Class<?> elementClass : ELEMENT_CLASSES) {
+            assertThat(concurrentExtractor.getElementCounter(elementClass, false))
+                    .isEqualTo(sequentialExtractor.getElementCounter(elementClass, false));
+            assertThat(concurrentExtractor.getElementCounter(elementClass, true))
+                    .isEqualTo(sequentialExtractor.getElementCounter(elementClass, true));
+        }
+        Path sequentialRoot = Paths.get("target/tmpJUnit/" + testName + "/threads1");
+        Path concurrentRoot = Paths.get("target/tmpJUnit/" + testName + "/threads4");
+        List<Path> sequentialFiles = listFiles(sequentialRoot);
+        assertThat(sequentialFiles.size()).isGreaterThan(1);
+        assertThat(listFiles(concurrentRoot)).isEqualTo(sequentialFiles);
+        for (Path file : sequentialFiles) {
+            if (Files.isRegularFile(sequentialRoot.resolve(file)))
+                assertThat(normalizedContent(concurrentRoot.resolve(file))).as(file.toString())
+                        .isEqualTo(normalizedContent(sequentialRoot.resolve(file)));
+        }
+    }
+
+    @Test
+    public void testPstConcurrentExtraction() throws MailExtractLibException, InterruptedException, IOException {
+        //given
+        AllTests.initializeTests("testPstConcurrentExtraction");
+        MailExtractProgressLogger mepl = AllTests.initLogger("testPstConcurrentExtraction");
+
+        //when
+        StoreExtractor sequentialExtractor = extract("testPstConcurrentExtraction", "pst",
+                "src/test/resources/pst/Test.pst", 1, mepl);
+        StoreExtractor concurrentExtractor = extract("testPstConcurrentExtraction", "pst",
+                "src/test/resources/pst/Test.pst", 4, mepl);
+
+        //then
+        assertSameExtraction("testPstConcurrentExtraction", sequentialExtractor, concurrentExtractor);
+    }
+
+    @Test
+    public void testMboxConcurrentExtraction() throws MailExtractLibException, InterruptedException, IOException {
+        //given
+        AllTests.initializeTests("testMboxConcurrentExtraction");
+        MailExtractProgressLogger mepl = AllTests.initLogger("testMboxConcurrentExtraction");
+
+        //when
+        StoreExtractor sequentialExtractor = extract("testMboxConcurrentExtraction", "mbox",
+                "src/test/resources/mbox/Sent.mbox", 1, mepl);
+        StoreExtractor concurrentExtractor = extract("testMboxConcurrentExtraction", "mbox",
+                "src/test/resources/mbox/Sent.mbox", 4, mepl);
+
+        //then
+        assertSameExtraction("testMboxConcurrentExtraction", sequentialExtractor, concurrentExtractor);
+    }
+
+    @Test
+    public void testGeneratedMboxConcurrentExtraction() throws MailExtractLibException, InterruptedException, IOException {
+        //given
+        AllTests.initializeTests("testGeneratedMboxConcurrentExtraction");
+        MailExtractProgressLogger mepl = AllTests.initLogger("testGeneratedMboxConcurrentExtraction");
+        File mbox = new File("target/tmpJUnit/testGeneratedMboxConcurrentExtraction/store/Inbox.mbox");
+        FileUtils.writeByteArrayToFile(mbox, generateMbox("Inbox", 100));
+
+        //when
+        StoreExtractor sequentialExtractor = extract("testGeneratedMboxConcurrentExtraction", "mbox",
+                mbox.getPath(), 1, mepl);
+        StoreExtractor concurrentExtractor = extract("testGeneratedMboxConcurrentExtraction", "mbox",
+                mbox.getPath(), 4, mepl);
+
+        //then
+        assertThat(concurrentExtractor.getElementCounter(StoreMessage.class, false)).isEqualTo(100);
+        assertSameExtraction("testGeneratedMboxConcurrentExtraction", sequentialExtractor, concurrentExtractor);
+    }
+
+    @Test
+    public void testThunderbirdConcurrentExtraction() throws MailExtractLibException, InterruptedException, IOException {
+        //given
+        AllTests.initializeTests("testThunderbirdConcurrentExtraction");
+        MailExtractProgressLogger mepl = AllTests.initLogger("testThunderbirdConcurrentExtraction");
+        File store = new File("target/tmpJUnit/testThunderbirdConcurrentExtraction/store");
+        FileUtils.writeByteArrayToFile(new File(store, "Inbox"), generateMbox("Inbox", 60));
+        FileUtils.writeByteArrayToFile(new File(store, "Inbox.sbd/Archives"), generateMbox("Archives", 40));
+        FileUtils.writeByteArrayToFile(new File(store, "Sent"), generateMbox("Sent", 5));
+
+        //when
+        StoreExtractor sequentialExtractor = extract("testThunderbirdConcurrentExtraction", "thunderbird",
+                store.getPath(), 1, mepl);
+        StoreExtractor concurrentExtractor = extract("testThunderbirdConcurrentExtraction", "thunderbird",
+                store.getPath(), 4, mepl);
+
+        //then
+        assertThat(concurrentExtractor.getElementCounter(StoreMessage.class, false)).isEqualTo(105);
+        assertSameExtraction("testThunderbirdConcurrentExtraction", sequentialExtractor, concurrentExtractor);
+    }
+}
@@ -0,0 +1,269 @@
+package fr.gouv.vitam.tools.mailextractlib.store;
+
+import fr.gouv.vitam.tools.mailextractlib.AllTests;
+import fr.gouv.vitam.tools.mailextractlib.store.javamail.mbox.MboxReader;
+import fr.gouv.vitam.tools.mailextractlib.store.javamail.mbox.MboxSlicesIndex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.internet.SharedInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger.GLOBAL;
+import static fr.gouv.vitam.tools.mailextractlib.utils.MailExtractProgressLogger.doProgressLogWithoutInterruption;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMboxReader implements AllTests {
+
+    // generate a mbox content with delimiter like lines that are not delimiters
+    private static byte[] generateMbox(int count) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("garbage before first message\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("From sender").append(i).append("@example.org Mon Jan  1 10:00:00 2019\n");
+            sb.append("From: Sender <sender").append(i).append("@example.org>\n");
+            sb.append("Subject: message ").append(i).append("\r\n\r\n");
+            sb.append("Fr\nFrom\n>From the body\n From with space\n");
+            for (int j = 0; j < i % 50; j++)
+                sb.append("Line ").append(j).append(" of message body with some text to scan\n");
+            sb.append("\n");
+        }
+        sb.append("From sender@example.org without new line");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // reference slicing, line by line
+    private static List<Long> referenceSlices(InputStream is) throws IOException {
+        List<Long> result = new ArrayList<Long>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long pos = 0;
+        long lineBeg = 0;
+        int b;
+        while ((b = is.read()) != -1) {
+            pos++;
+            if (b == '\n') {
+                byte[] lineBytes = line.toByteArray();
+                if ((lineBytes.length >= 5) && new String(lineBytes, 0, 5, StandardCharsets.US_ASCII).equals("From ")) {
+                    result.add(lineBeg);
+                    result.add(pos);
+                }
+                line.reset();
+                lineBeg = pos;
+            } else
+                line.write(b);
+        }
+        return result;
+    }
+
+    // baseline MboxReader scanning, byte by byte through a RandomAccessFile buffer
+    private static List<Long> baselineSlices(File file) throws IOException {
+        List<Long> result = new ArrayList<Long>();
+        byte[] buffer = new byte[4096];
+        byte[] line = new byte[64];
+        int len = 0;
+        int curPos = 0;
+        long bufferPos = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            while (true) {
+                long beg = bufferPos + curPos;
+                int i = 0;
+                int b;
+                while (true) {
+                    if (curPos >= len) {
+                        bufferPos = raf.getFilePointer();
+                        if ((len = raf.read(buffer)) == -1)
+                            return result;
+                        curPos = 0;
+                    }
+                    b = buffer[curPos++];
+                    if (b == '\n')
+                        break;
+                    if (i < 64)
+                        line[i++] = (byte) b;
+                }
+                if ((line[0] == 'F') && (line[1] == 'r') && (line[2] == 'o') && (line[3] == 'm') && (line[4] == ' ')) {
+                    result.add(beg);
+                    result.add(bufferPos + curPos);
+                    Arrays.fill(line, (byte) 0);
+                }
+            }
+        }
+    }
+
+    private static List<Long> readerSlices(MboxReader mboxReader) throws IOException {
+        List<Long> result = new ArrayList<Long>();
+        long beg = mboxReader.getNextFromLineBeg();
+        while (beg != -1) {
+            result.add(beg);
+            result.add(mboxReader.getLastFromLineEnd());
+            beg = mboxReader.getNextFromLineBeg();
+        }
+        return result;
+    }
+
+    @Test
+    public void testMboxReaderSlicing() throws IOException {
+        //given
+        AllTests.initializeTests("testMboxReaderSlicing");
+        byte[] content = generateMbox(200);
+        File file = new File("target/tmpJUnit/testMboxReaderSlicing/test.mbox");
+        FileUtils.writeByteArrayToFile(file, content);
+        List<Long> expected = referenceSlices(new BufferedInputStream(new FileInputStream(file)));
+
+        //when
+        MboxReader fileReader = new MboxReader(null, file);
+        List<Long> fileSlices = readerSlices(fileReader);
+        MboxReader bytesReader = new MboxReader(null, content);
+        List<Long> bytesSlices = readerSlices(bytesReader);
+
+        //then
+        assertThat(expected).hasSize(400);
+        assertThat(fileSlices).isEqualTo(expected);
+        assertThat(bytesSlices).isEqualTo(expected);
+
+        // message streams and sub streams
+        long beg = expected.get(3);
+        long end = expected.get(4);
+        InputStream is = fileReader.newStream(beg, end);
+        byte[] message = IOUtils.toByteArray(is);
+        assertThat(message).isEqualTo(Arrays.copyOfRange(content, (int) beg, (int) end));
+        assertThat(((SharedInputStream) is).getPosition()).isEqualTo(end - beg);
+        InputStream subStream = ((SharedInputStream) is).newStream(5, -1);
+        assertThat(IOUtils.toByteArray(subStream)).isEqualTo(Arrays.copyOfRange(content, (int) beg + 5, (int) end));
+        assertThat(IOUtils.toByteArray(bytesReader.newStream(expected.get(expected.size() - 1), -1)))
+                .isEqualTo(Arrays.copyOfRange(content, (int) (long) expected.get(expected.size() - 1), content.length));
+        fileReader.close();
+        bytesReader.close();
+    }
+
+    @Test
+    public void testMboxReaderSlicesIndex() throws IOException {
+        //given
+        AllTests.initializeTests("testMboxReaderSlicesIndex");
+        File file = new File("target/tmpJUnit/testMboxReaderSlicesIndex/test.mbox");
+        File indexDirectory = new File("target/tmpJUnit/testMboxReaderSlicesIndex/index");
+        FileUtils.writeByteArrayToFile(file, generateMbox(100));
+
+        //when
+        // not mapped readers, so that the file is no longer locked when closed and can be rewritten
+        long[] scannedSlices = getMessagesSlices(file, indexDirectory);
+        long[] indexedSlices = getMessagesSlices(file, indexDirectory);
+        FileUtils.writeByteArrayToFile(file, generateMbox(10));
+        long[] changedSlices = getMessagesSlices(file, indexDirectory);
+
+        //then
+        assertThat(indexDirectory.list()).hasSize(1);
+        assertThat(scannedSlices).hasSize(200);
+        assertThat(indexedSlices).isEqualTo(scannedSlices);
+        assertThat(changedSlices).isEqualTo(getMessagesSlices(file, null));
+        assertThat(changedSlices).hasSize(20);
+    }
+
+    @Test
+    public void testMboxReaderCorruptedSlicesIndex() throws IOException {
+        //given
+        AllTests.initializeTests("testMboxReaderCorruptedSlicesIndex");
+        File file = new File("target/tmpJUnit/testMboxReaderCorruptedSlicesIndex/test.mbox");
+        File indexDirectory = new File("target/tmpJUnit/testMboxReaderCorruptedSlicesIndex/index");
+        FileUtils.writeByteArrayToFile(file, generateMbox(100));
+        long[] scannedSlices = getMessagesSlices(file, indexDirectory);
+        File indexFile = indexDirectory.listFiles()[0];
+
+        //when
+        // count overflowing the mbox length, just after version, path, length and last modified time
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            raf.seek(4 + 2 + file.getCanonicalPath().getBytes(StandardCharsets.UTF_8).length + 8 + 8);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        long[] overflowingCountSlices = getMessagesSlices(file, indexDirectory);
+        // slices in sequence but not after "From " lines
+        long[] shiftedSlices = new long[scannedSlices.length];
+        for (int i = 0; i < scannedSlices.length; i++)
+            shiftedSlices[i] = (scannedSlices[i] == -1 ? -1 : scannedSlices[i] + 1);
+        MboxSlicesIndex.write(indexDirectory, file, shiftedSlices, null);
+        long[] shiftedIndexSlices = getMessagesSlices(file, indexDirectory);
+
+        //then
+        assertThat(overflowingCountSlices).isEqualTo(scannedSlices);
+        assertThat(shiftedIndexSlices).isEqualTo(scannedSlices);
+        assertThat(MboxSlicesIndex.read(indexDirectory, file, null)).isEqualTo(scannedSlices);
+    }
+
+    private static long[] getMessagesSlices(File file, File indexDirectory) throws IOException {
+        MboxReader mboxReader = new MboxReader(null, file, false);
+        try {
+            return mboxReader.getMessagesSlices(indexDirectory);
+        } finally {
+            mboxReader.close();
+        }
+    }
+
+    @Test
+    public void testMboxReaderUnmappedSlicing() throws IOException {
+        //given
+        AllTests.initializeTests("testMboxReaderUnmappedSlicing");
+        byte[] content = generateMbox(200);
+        File file = new File("target/tmpJUnit/testMboxReaderUnmappedSlicing/test.mbox");
+        FileUtils.writeByteArrayToFile(file, content);
+        List<Long> expected;
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            expected = referenceSlices(is);
+        }
+
+        //when
+        MboxReader fileReader = new MboxReader(null, file, false);
+        List<Long> fileSlices = readerSlices(fileReader);
+        long beg = expected.get(expected.size() - 3);
+        long end = expected.get(expected.size() - 2);
+        byte[] message;
+        try (InputStream is = fileReader.newStream(beg, end)) {
+            message = IOUtils.toByteArray(is);
+        }
+        fileReader.close();
+
+        //then
+        assertThat(content.length).isGreaterThan(4 * 64 * 1024);
+        assertThat(fileSlices).isEqualTo(expected);
+        assertThat(message).isEqualTo(Arrays.copyOfRange(content, (int) beg, (int) end));
+        assertThat(file.delete()).isTrue();
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void testMboxReaderScanDuration() throws IOException {
+        //given
+        AllTests.initializeTests("testMboxReaderScanDuration");
+        File file = new File("target/tmpJUnit/testMboxReaderScanDuration/test.mbox");
+        byte[] content = generateMbox(2000);
+        for (int i = 0; i < 20; i++)
+            FileUtils.writeByteArrayToFile(file, content, true);
+
+        //when
+        long start = System.nanoTime();
+        List<Long> expected = baselineSlices(file);
+        long baselineDuration = System.nanoTime() - start;
+        start = System.nanoTime();
+        MboxReader mboxReader = new MboxReader(null, file);
+        List<Long> slices = readerSlices(mboxReader);
+        mboxReader.close();
+        long readerDuration = System.nanoTime() - start;
+
+        //then same slices, durations reported
+        doProgressLogWithoutInterruption(AllTests.initLogger("testMboxReaderScanDuration"), GLOBAL,
+                "mbox: scan of " + file.length() + " bytes in " + (readerDuration / 1000000) + " ms, baseline scan in "
+                        + (baselineDuration / 1000000) + " ms", null);
+        assertThat(slices).isEqualTo(expected);
+    }
+}
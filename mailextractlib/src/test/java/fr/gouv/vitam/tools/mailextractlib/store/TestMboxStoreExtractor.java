@@ -62,4 +62,37 @@ public class TestMboxStoreExtractor implements AllTests {
         resultMail=resultMail.replaceAll("----=_Part.*","");
         assertThat(mail).isEqualToNormalizingNewlines(resultMail);
     }
+
+    @Test
+    public void testMboxExtractorSlicesIndexOption() throws MailExtractLibException, InterruptedException, IOException {
+        //given
+        AllTests.initializeTests("testMboxExtractorSlicesIndexOption");
+        AllTests.initializeTests("testMboxExtractorDefaultSlicesIndexOption");
+        File indexDirectory = new File("target/tmpJUnit/testMboxExtractorSlicesIndexOption.index");
+        File defaultIndexDirectory = new File("target/tmpJUnit/testMboxExtractorDefaultSlicesIndexOption.index");
+        FileUtils.deleteDirectory(indexDirectory);
+        FileUtils.deleteDirectory(defaultIndexDirectory);
+        StoreExtractorOptions defaultStoreExtractorOptions = new StoreExtractorOptions();
+        StoreExtractorOptions storeExtractorOptions = new StoreExtractorOptions();
+        storeExtractorOptions.mboxSlicesIndex = true;
+        MailExtractProgressLogger mepl = AllTests.initLogger("testMboxExtractorSlicesIndexOption");
+        String urlString = StoreExtractor.composeStoreURL("mbox", "", "", "",
+                "src/test/resources/mbox/Sent.mbox");
+
+        //when
+        StoreExtractor defaultStoreExtractor = StoreExtractor.createStoreExtractor(urlString, "",
+                "target/tmpJUnit/testMboxExtractorDefaultSlicesIndexOption", defaultStoreExtractorOptions, mepl);
+        defaultStoreExtractor.extractAllFolders();
+        defaultStoreExtractor.endStoreExtractor();
+        StoreExtractor storeExtractor = StoreExtractor.createStoreExtractor(urlString, "",
+                "target/tmpJUnit/testMboxExtractorSlicesIndexOption", storeExtractorOptions, mepl);
+        storeExtractor.extractAllFolders();
+        storeExtractor.endStoreExtractor();
+
+        //then no index by default, and an index when the option is set
+        assertThat(defaultIndexDirectory).doesNotExist();
+        assertThat(indexDirectory.listFiles()).isNotEmpty();
+        assertThat(storeExtractor.getElementCounter(StoreMessage.class, false))
+                .isEqualTo(defaultStoreExtractor.getElementCounter(StoreMessage.class, false));
+    }
 }
@@ -0,0 +1,116 @@
+package fr.gouv.vitam.tools.mailextractlib.utils;
+
+import fr.gouv.vitam.tools.mailextractlib.AllTests;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSpillableBuffer implements AllTests {
+
+    private static byte[] generateContent(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++)
+            content[i] = (byte) (i * 31 + i / 7);
+        return content;
+    }
+
+    // temporary files that may have been created by spillable buffers
+    private static Set<File> spillFiles() {
+        Set<File> result = new HashSet<File>();
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+                .listFiles((dir, name) -> name.startsWith("mailextract") && name.endsWith(".tmp"));
+        if (files != null)
+            result.addAll(Arrays.asList(files));
+        return result;
+    }
+
+    @Test
+    public void testSpillableBufferThreshold() throws IOException {
+        //given
+        byte[] small = generateContent(1000);
+        byte[] big = generateContent(1001);
+
+        //when
+        Object smallContent = SpillableBuffer.readContent(new ByteArrayInputStream(small), 1000);
+        Object bigContent = SpillableBuffer.readContent(new ByteArrayInputStream(big), 1000);
+
+        //then
+        assertThat(smallContent).isInstanceOf(byte[].class);
+        assertThat((byte[]) smallContent).isEqualTo(small);
+        assertThat(bigContent).isInstanceOf(SpillableBuffer.class);
+        SpillableBuffer buffer = (SpillableBuffer) bigContent;
+        assertThat(buffer.isSpilled()).isTrue();
+        assertThat(buffer.size()).isEqualTo(big.length);
+        assertThat(buffer.toByteArray()).isEqualTo(big);
+        try (InputStream is = buffer.getInputStream()) {
+            assertThat(IOUtils.toByteArray(is)).isEqualTo(big);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        buffer.writeTo(baos);
+        assertThat(baos.toByteArray()).isEqualTo(big);
+        buffer.release();
+    }
+
+    @Test
+    public void testSpillableBufferShareRelease() throws IOException {
+        //given
+        byte[] big = generateContent(5000);
+        Set<File> before = spillFiles();
+        SpillableBuffer buffer = (SpillableBuffer) SpillableBuffer.readContent(new ByteArrayInputStream(big), 1000);
+        Set<File> created = spillFiles();
+        created.removeAll(before);
+
+        //when shared, released by the first user, and then by the second one
+        buffer.share();
+        buffer.release();
+        boolean existsAfterFirstRelease = created.stream().allMatch(File::exists);
+        byte[] readAfterFirstRelease = buffer.toByteArray();
+        buffer.release();
+
+        //then
+        assertThat(created).hasSize(1);
+        assertThat(existsAfterFirstRelease).isTrue();
+        assertThat(readAfterFirstRelease).isEqualTo(big);
+        assertThat(created.iterator().next()).doesNotExist();
+    }
+
+    @Test
+    public void testSpillableBufferReleaseOnFailure() {
+        //given a stream failing after the threshold
+        Set<File> before = spillFiles();
+        InputStream failing = new InputStream() {
+            private int count = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (count++ > 2000)
+                    throw new IOException("read failure");
+                return 'a';
+            }
+        };
+
+        //when
+        IOException exception = null;
+        try {
+            SpillableBuffer.readContent(failing, 1000);
+        } catch (IOException e) {
+            exception = e;
+        }
+
+        //then no temporary file left
+        Set<File> created = spillFiles();
+        created.removeAll(before);
+        assertThat(exception).hasMessage("read failure");
+        assertThat(created).isEmpty();
+    }
+}
@@ -45,6 +45,7 @@ import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.viewers.DataObjectP
 import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.viewers.DataObjectPackageTreeNode;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
 import fr.gouv.vitam.tools.sedalib.droid.DroidIdentifier;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 
 import javax.swing.*;
 import javax.swing.tree.TreePath;
@@ -681,7 +682,9 @@ public class ResipGraphicApp implements ActionListener, Runnable {
             if (fileChooser.showOpenDialog(mainWindow) == JFileChooser.APPROVE_OPTION) {
                 mainWindow.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
                 filename = fileChooser.getSelectedFile().getCanonicalPath();
-                currentWork = Work.createFromFile(filename);
+                Work loadedWork = Work.createFromFile(filename);
+                releaseCurrentWork();
+                currentWork = loadedWork;
                 ResipLogger.getGlobalLogger().log(ResipLogger.GLOBAL, "Fichier [" + filename + "] chargé");
                 mainWindow.load();
                 mainWindow.setCursor(Cursor.getDefaultCursor());
@@ -755,6 +758,21 @@ public class ResipGraphicApp implements ActionListener, Runnable {
         }
     }
 
+    /**
+     * Release the resources held by the current work, before it is replaced or
+     * closed, as the SIP kept open when its files are extracted on demand.
+     */
+    public void releaseCurrentWork() {
+        if ((currentWork == null) || (currentWork.getDataObjectPackage() == null))
+            return;
+        try {
+            currentWork.getDataObjectPackage().closeLazyZipExtractor();
+        } catch (SEDALibException e) {
+            ResipLogger.getGlobalLogger().log(ResipLogger.STEP, "resip: impossible de libérer le contexte en cours\n->"
+                    + e.getMessage());
+        }
+    }
+
     // MenuItem Close
     private void closeWork() {
         try {
@@ -766,6 +784,7 @@ public class ResipGraphicApp implements ActionListener, Runnable {
                     null) != OK_DIALOG)
                 return;
 
+            releaseCurrentWork();
             currentWork = null;
             setFilenameWork(null);
             setModifiedContext(false);
@@ -119,8 +119,11 @@ public class DustbinItem {
      * @param at the at
      */
     public void removeContentFromDataObjectPackage(DataObjectPackage at) {
-		for (ArchiveUnit au:removedArchiveUnitList)
+		for (ArchiveUnit au:removedArchiveUnitList) {
 			at.getAuInDataObjectPackageIdMap().remove(au.getInDataObjectPackageId());
+			if (at.getArchiveUnitMetadataCache() != null)
+				at.getArchiveUnitMetadataCache().remove(au);
+		}
 		for (DataObjectGroup dog:removedDataObjectGroupList)
 			at.getDogInDataObjectPackageIdMap().remove(dog.getInDataObjectPackageId());
 		for (BinaryDataObject bdo:removedBinaryDataObjectList)
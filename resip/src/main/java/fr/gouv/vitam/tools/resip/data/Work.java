@@ -27,8 +27,12 @@
  */
 package fr.gouv.vitam.tools.resip.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import fr.gouv.vitam.tools.resip.parameters.CreationContext;
 import fr.gouv.vitam.tools.resip.parameters.ExportContext;
@@ -37,19 +41,36 @@ import fr.gouv.vitam.tools.resip.utils.ResipLogger;
 import fr.gouv.vitam.tools.sedalib.core.*;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageSerializer;
+import fr.gouv.vitam.tools.sedalib.utils.LazyZipExtractor;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
@@ -73,6 +94,61 @@ public class Work {
 	@SuppressWarnings("FieldCanBeLocal")
     private String serializationVersion;
 
+	/**
+	 * The Constant WORK_FILE_FORMAT_VERSION, version of the chunked work file format.
+	 */
+	static final String WORK_FILE_FORMAT_VERSION = "2.0";
+
+	/**
+	 * The zip entry of the previous work file format, with the whole work in json.
+	 */
+	private static final String LEGACY_WORK_ENTRY = "work.json";
+
+	/**
+	 * The zip entry of the work file header, with contexts and global
+	 * DataObjectPackage information.
+	 */
+	private static final String HEADER_ENTRY = "header.json";
+
+	/**
+	 * The zip entries prefix of the DataObjectGroups chunks.
+	 */
+	private static final String DATA_OBJECT_GROUPS_ENTRY_PREFIX = "dataObjectGroups/";
+
+	/**
+	 * The zip entries prefix of the ArchiveUnits chunks.
+	 */
+	private static final String ARCHIVE_UNITS_ENTRY_PREFIX = "archiveUnits/";
+
+	/**
+	 * The mean number of objects in a chunk.
+	 */
+	private static final int CHUNK_SIZE = 256;
+
+	/**
+	 * The normalized path of the file of the last load or save in chunked work file
+	 * format, or null.
+	 */
+	private String lastSavedFile;
+
+	/**
+	 * The ArchiveUnits chunks fingerprints in the file of the last load or save, or
+	 * null.
+	 */
+	private String[] lastSavedArchiveUnitsFingerprints;
+
+	/**
+	 * The DataObjectGroups chunks digests in the file of the last load or save, or
+	 * null.
+	 */
+	private String[] lastSavedDataObjectGroupsDigests;
+
+	/**
+	 * The number of chunks, and of chunks copied from the previous file, in the
+	 * last save.
+	 */
+	private int lastSaveChunkCount, lastSaveReusedChunkCount;
+
 	/** The SIP export context. */
 	private ExportContext exportContext;
 
@@ -126,8 +202,25 @@ public class Work {
 		return "Vérification de l'absence de cycle et normalisation Vitam effectuées";
 	}
 
+	/**
+	 * Gets the object mapper used for work files serialization.
+	 *
+	 * @return the object mapper
+	 */
+	private static ObjectMapper getWorkObjectMapper() {
+		ObjectMapper mapper = new ObjectMapper();
+		SimpleModule module = new SimpleModule();
+		module.addSerializer(DataObjectPackage.class, new DataObjectPackageSerializer());
+		module.addDeserializer(DataObjectPackage.class, new DataObjectPackageDeserializer());
+		mapper.registerModule(module);
+		return mapper;
+	}
+
 	/**
 	 * Creates the from file.
+	 * <p>
+	 * Both the chunked work file format and the previous single "work.json"
+	 * format are read.
 	 *
 	 * @param file the file
 	 * @return the work
@@ -135,23 +228,26 @@ public class Work {
 	 */
 	public static Work createFromFile(String file) throws ResipException {
 		Work ow;
-		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
-			ObjectMapper mapper = new ObjectMapper();
-			SimpleModule module = new SimpleModule();
-			module.addSerializer(DataObjectPackage.class, new DataObjectPackageSerializer());
-			module.addDeserializer(DataObjectPackage.class, new DataObjectPackageDeserializer());
-			mapper.registerModule(module);
-			ZipEntry ze = zis.getNextEntry();
-			if (!ze.getName().equals("work.json"))
+		try (ZipFile zf = new ZipFile(file)) {
+			ObjectMapper mapper = getWorkObjectMapper();
+			if (zf.getEntry(LEGACY_WORK_ENTRY) != null) {
+				try (InputStream is = zf.getInputStream(zf.getEntry(LEGACY_WORK_ENTRY))) {
+					ow = mapper.readValue(is, Work.class);
+				}
+			} else if (zf.getEntry(HEADER_ENTRY) != null) {
+				ow = readChunkedWork(mapper, zf);
+				ow.lastSavedFile = Paths.get(file).toAbsolutePath().normalize().toString();
+			} else
 				throw new ResipException(
 						"Resip: Le fichier [" + file + "] n'est pas une sauvegarde de session Resip");
-			ow = mapper.readValue(zis, Work.class);
 
 			// some fields need to be computed or defined after the load phase from Json
 			ow.getDataObjectPackage().getGhostRootAu().setDataObjectPackage(ow.getDataObjectPackage());
+			ow.getDataObjectPackage().getGhostRootAu().setModified(false);
 			for (Map.Entry<String, ArchiveUnit> pair : ow.getDataObjectPackage().getAuInDataObjectPackageIdMap()
 					.entrySet()) {
 				pair.getValue().setDataObjectPackage(ow.getDataObjectPackage());
+				pair.getValue().setModified(false);
 			}
 			for (Map.Entry<String, DataObjectGroup> pair : ow.getDataObjectPackage().getDogInDataObjectPackageIdMap()
 					.entrySet()) {
@@ -166,36 +262,407 @@ public class Work {
 					pdo.setDataObjectGroup(dog);
 				}
 			}
-		} catch (IOException e) {
+		} catch (IOException | SEDALibException e) {
 			throw new ResipException("Resip: La lecture du fichier [" + file
 					+ "] ne permet pas de retrouver une session Resip", e);
 		}
 		return ow;
 	}
 
+	/**
+	 * Read a work in chunked work file format.
+	 *
+	 * @param mapper the object mapper
+	 * @param zf     the work zip file
+	 * @return the work
+	 * @throws IOException      if the file is not readable or not a chunked work file
+	 * @throws SEDALibException if the DataObjectPackage can't be rebuilt
+	 */
+	private static Work readChunkedWork(ObjectMapper mapper, ZipFile zf) throws IOException, SEDALibException {
+		JsonNode header;
+		try (InputStream is = zf.getInputStream(zf.getEntry(HEADER_ENTRY))) {
+			header = mapper.readTree(is);
+		}
+		if (!WORK_FILE_FORMAT_VERSION.equals(header.path("formatVersion").asText()))
+			throw new IOException("Resip: Version de format de sauvegarde [" + header.path("formatVersion").asText()
+					+ "] non supportée");
+
+		DataObjectPackage dataObjectPackage = new DataObjectPackage();
+		int dogChunkCount = header.get("dataObjectGroupsChunkCount").asInt();
+		JsonNode digestsNode = header.get("dataObjectGroupsChunkDigests");
+		String[] digests = null;
+		if ((digestsNode != null) && (digestsNode.size() == dogChunkCount)) {
+			digests = new String[dogChunkCount];
+			for (int i = 0; i < dogChunkCount; i++)
+				digests[i] = digestsNode.get(i).asText();
+		}
+		for (int i = 0; i < dogChunkCount; i++) {
+			for (DataObjectGroup og : readChunk(mapper, zf, DATA_OBJECT_GROUPS_ENTRY_PREFIX + i, DataObjectGroup.class)) {
+				dataObjectPackage.addDataObjectGroup(og);
+				for (BinaryDataObject bdo : og.getBinaryDataObjectList())
+					dataObjectPackage.addBinaryDataObject(bdo);
+				for (PhysicalDataObject pdo : og.getPhysicalDataObjectList())
+					dataObjectPackage.addPhysicalDataObject(pdo);
+			}
+		}
+		JsonNode fingerprintsNode = header.get("archiveUnitsChunkFingerprints");
+		String[] fingerprints = new String[fingerprintsNode.size()];
+		for (int i = 0; i < fingerprints.length; i++) {
+			fingerprints[i] = fingerprintsNode.get(i).asText();
+			for (ArchiveUnit au : readChunk(mapper, zf, ARCHIVE_UNITS_ENTRY_PREFIX + i, ArchiveUnit.class))
+				dataObjectPackage.addArchiveUnit(au);
+		}
+		dataObjectPackage.setGhostRootAu(mapper.treeToValue(header.get("ghostRootAu"), ArchiveUnit.class));
+		dataObjectPackage.setVitamNormalizationStatus(header.get("vitamNormalizationStatus").asInt());
+		// reopen the SIP from which files not yet extracted are extracted on demand
+		if (header.has("lazyZipFile"))
+			dataObjectPackage.setLazyZipExtractor(new LazyZipExtractor(Paths.get(header.get("lazyZipFile").asText()),
+					Paths.get(header.get("lazyExtractDirectory").asText())));
+
+		Work ow = new Work(dataObjectPackage,
+				mapper.treeToValue(header.get("creationContext"), CreationContext.class),
+				mapper.treeToValue(header.get("exportContext"), ExportContext.class));
+		ow.lastSavedArchiveUnitsFingerprints = fingerprints;
+		ow.lastSavedDataObjectGroupsDigests = digests;
+		return ow;
+	}
+
+	/**
+	 * Read the objects list of a chunk entry.
+	 *
+	 * @param <T>        the objects type
+	 * @param mapper     the object mapper
+	 * @param zf         the work zip file
+	 * @param entryName  the chunk entry name
+	 * @param valueClass the objects class
+	 * @return the objects list
+	 * @throws IOException if the chunk entry is not readable
+	 */
+	private static <T> List<T> readChunk(ObjectMapper mapper, ZipFile zf, String entryName, Class<T> valueClass)
+			throws IOException {
+		ZipEntry ze = zf.getEntry(entryName);
+		if (ze == null)
+			throw new IOException("Resip: Elément [" + entryName + "] absent de la sauvegarde");
+		List<T> result = new ArrayList<T>();
+		try (JsonParser parser = mapper.getFactory()
+				.createParser(new InflaterInputStream(zf.getInputStream(ze)))) {
+			if (parser.nextToken() != JsonToken.START_ARRAY)
+				throw new IOException("Resip: Elément [" + entryName + "] mal formé dans la sauvegarde");
+			while (parser.nextToken() != JsonToken.END_ARRAY)
+				result.add(parser.readValueAs(valueClass));
+		}
+		return result;
+	}
+
 	/**
 	 * Save.
+	 * <p>
+	 * The work file is a zip with a header entry, for contexts and global
+	 * DataObjectPackage information, and chunk entries for DataObjectGroups and
+	 * ArchiveUnits. When saving again in the file of the last load or save, the
+	 * ArchiveUnits chunks without modified ArchiveUnit, and with the same
+	 * ArchiveUnits and links, are copied from the previous file without being
+	 * serialized again. The DataObjectGroups, which have no modified flag, are
+	 * serialized and their chunks copied from the previous file, without being
+	 * compressed again, when their json digest is unchanged.
 	 *
 	 * @param file the file
 	 */
 	public void save(String file) {
+		String normalizedFile = Paths.get(file).toAbsolutePath().normalize().toString();
+		Path tmpFile = Paths.get(normalizedFile + ".tmp");
 		try {
-			ObjectMapper mapper = new ObjectMapper();
-			SimpleModule module = new SimpleModule();
-			module.addSerializer(DataObjectPackage.class, new DataObjectPackageSerializer());
-			module.addDeserializer(DataObjectPackage.class, new DataObjectPackageDeserializer());
-			mapper.registerModule(module);
-			mapper.enable(SerializationFeature.INDENT_OUTPUT);
-			ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
-			ZipEntry e = new ZipEntry("work.json");
-			zos.putNextEntry(e);
-			mapper.writeValue(zos, this);
-			zos.closeEntry();
-			zos.close();
+			ObjectMapper mapper = getWorkObjectMapper();
+			List<List<ArchiveUnit>> auChunks = getChunks(dataObjectPackage.getAuInDataObjectPackageIdMap().values(),
+					lastSavedArchiveUnitsFingerprints);
+			List<List<DataObjectGroup>> dogChunks = getChunks(
+					dataObjectPackage.getDogInDataObjectPackageIdMap().values(), lastSavedDataObjectGroupsDigests);
+			String[] fingerprints = new String[auChunks.size()];
+			String[] digests = new String[dogChunks.size()];
+			boolean sameFileFlag = normalizedFile.equals(lastSavedFile) && Files.isRegularFile(Paths.get(normalizedFile));
+			boolean auIncrementalFlag = sameFileFlag && (lastSavedArchiveUnitsFingerprints != null)
+					&& (lastSavedArchiveUnitsFingerprints.length == fingerprints.length);
+			boolean dogIncrementalFlag = sameFileFlag && (lastSavedDataObjectGroupsDigests != null)
+					&& (lastSavedDataObjectGroupsDigests.length == digests.length);
+			int reusedCount = 0;
+			int dogReusedCount = 0;
+			try (ZipFile previous = (sameFileFlag ? new ZipFile(normalizedFile) : null);
+				 ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+				for (int i = 0; i < digests.length; i++) {
+					byte[] json = serializeChunk(mapper, dogChunks.get(i));
+					digests[i] = getDigest(json);
+					byte[] payload = null;
+					if (dogIncrementalFlag && digests[i].equals(lastSavedDataObjectGroupsDigests[i]))
+						payload = readStoredEntry(previous, DATA_OBJECT_GROUPS_ENTRY_PREFIX + i);
+					if (payload == null)
+						payload = deflate(json);
+					else
+						dogReusedCount++;
+					putStoredEntry(zos, DATA_OBJECT_GROUPS_ENTRY_PREFIX + i, payload);
+				}
+
+				for (int i = 0; i < fingerprints.length; i++) {
+					List<ArchiveUnit> auChunk = auChunks.get(i);
+					fingerprints[i] = getArchiveUnitsChunkFingerprint(auChunk);
+					byte[] payload = null;
+					if (auIncrementalFlag && fingerprints[i].equals(lastSavedArchiveUnitsFingerprints[i])
+							&& !isAnyArchiveUnitModified(auChunk))
+						payload = readStoredEntry(previous, ARCHIVE_UNITS_ENTRY_PREFIX + i);
+					if (payload == null)
+						payload = deflate(serializeChunk(mapper, auChunk));
+					else
+						reusedCount++;
+					putStoredEntry(zos, ARCHIVE_UNITS_ENTRY_PREFIX + i, payload);
+				}
+
+				zos.putNextEntry(new ZipEntry(HEADER_ENTRY));
+				JsonGenerator gen = mapper.getFactory().createGenerator(zos);
+				gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				gen.writeStartObject();
+				gen.writeStringField("formatVersion", WORK_FILE_FORMAT_VERSION);
+				gen.writeFieldName("creationContext");
+				mapper.writerFor(CreationContext.class).writeValue(gen, creationContext);
+				gen.writeFieldName("exportContext");
+				mapper.writerFor(ExportContext.class).writeValue(gen, exportContext);
+				gen.writeFieldName("ghostRootAu");
+				mapper.writeValue(gen, dataObjectPackage.getGhostRootAu());
+				gen.writeNumberField("vitamNormalizationStatus", dataObjectPackage.getVitamNormalizationStatus());
+				if (dataObjectPackage.getLazyZipExtractor() != null) {
+					gen.writeStringField("lazyZipFile",
+							dataObjectPackage.getLazyZipExtractor().getZipFilePath().toString());
+					gen.writeStringField("lazyExtractDirectory",
+							dataObjectPackage.getLazyZipExtractor().getExtractDirectory().toString());
+				}
+				gen.writeNumberField("dataObjectGroupsChunkCount", digests.length);
+				gen.writeArrayFieldStart("dataObjectGroupsChunkDigests");
+				for (String digest : digests)
+					gen.writeString(digest);
+				gen.writeEndArray();
+				gen.writeArrayFieldStart("archiveUnitsChunkFingerprints");
+				for (String fingerprint : fingerprints)
+					gen.writeString(fingerprint);
+				gen.writeEndArray();
+				gen.writeEndObject();
+				gen.close();
+				zos.closeEntry();
+			}
+			Files.move(tmpFile, Paths.get(normalizedFile), StandardCopyOption.REPLACE_EXISTING);
+
+			lastSavedFile = normalizedFile;
+			lastSavedArchiveUnitsFingerprints = fingerprints;
+			lastSavedDataObjectGroupsDigests = digests;
+			lastSaveChunkCount = fingerprints.length + digests.length;
+			lastSaveReusedChunkCount = reusedCount + dogReusedCount;
+			dataObjectPackage.getGhostRootAu().setModified(false);
+			for (List<ArchiveUnit> auChunk : auChunks)
+				for (ArchiveUnit au : auChunk)
+					au.setModified(false);
+			ResipLogger.getGlobalLogger().log(ResipLogger.STEP, "resip: session sauvegardée, " + reusedCount
+					+ " lot(s) d'ArchiveUnits sur " + fingerprints.length + " et " + dogReusedCount
+					+ " lot(s) de DataObjectGroups sur " + digests.length + " repris de la sauvegarde précédente");
 		} catch (IOException e) {
+			try {
+				Files.deleteIfExists(tmpFile);
+			} catch (IOException ignored) {
+			}
 			ResipLogger.getGlobalLogger().log(ResipLogger.STEP,"Impossible de sauvegarder la session\n->" + e.getMessage());
 		}
+	}
+
+	/**
+	 * Gets the ArchiveUnits or DataObjectGroups split in chunks.
+	 * <p>
+	 * An element stays in the same chunk, computed from its id, while the number
+	 * of chunks is unchanged, and this number is kept from the last load or save
+	 * while the elements count doesn't change too much, so that only the chunks
+	 * with modified elements have to be serialized again.
+	 *
+	 * @param <T>            the elements type
+	 * @param elements       the elements
+	 * @param lastSavedChunks the chunks fingerprints or digests of the last load or save, or null
+	 * @return the chunks, each sorted by id
+	 */
+	private static <T extends DataObjectPackageIdElement> List<List<T>> getChunks(Collection<T> elements,
+																				  String[] lastSavedChunks) {
+		int count = elements.size();
+		int chunkCount;
+		if ((lastSavedChunks != null) && (count <= 2 * lastSavedChunks.length * CHUNK_SIZE)
+				&& (count >= lastSavedChunks.length * CHUNK_SIZE / 2))
+			chunkCount = lastSavedChunks.length;
+		else
+			chunkCount = Math.max(1, (count + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+		List<List<T>> result = new ArrayList<List<T>>(chunkCount);
+		for (int i = 0; i < chunkCount; i++)
+			result.add(new ArrayList<T>());
+		for (T element : elements)
+			result.get((element.getInDataObjectPackageId().hashCode() & 0x7fffffff) % chunkCount).add(element);
+		for (List<T> chunk : result)
+			chunk.sort(Comparator.comparing(DataObjectPackageIdElement::getInDataObjectPackageId));
+		return result;
+	}
+
+	/**
+	 * Gets the fingerprint of an ArchiveUnits chunk, computed from the ArchiveUnits
+	 * ids and their children ArchiveUnits and DataObjects ids.
+	 *
+	 * @param auChunk the ArchiveUnits chunk
+	 * @return the fingerprint
+	 * @throws IOException if the digest algorithm is not available
+	 */
+	private static String getArchiveUnitsChunkFingerprint(List<ArchiveUnit> auChunk) throws IOException {
+		MessageDigest md = newMessageDigest();
+		StringBuilder sb = new StringBuilder();
+		for (ArchiveUnit au : auChunk) {
+			sb.setLength(0);
+			sb.append(au.getInDataObjectPackageId()).append('|');
+			for (String id : au.getChildrenAuList().peekInDataObjectPackageIdList())
+				sb.append(id).append(',');
+			sb.append('|');
+			for (String id : au.getDataObjectRefList().getInDataObjectPackageIdList())
+				sb.append(id).append(',');
+			sb.append('\n');
+			md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return Base64.getEncoder().encodeToString(md.digest());
+	}
+
+	/**
+	 * Checks if any ArchiveUnit of the list may have been modified.
+	 *
+	 * @param auList the ArchiveUnits list
+	 * @return true, if any ArchiveUnit may have been modified
+	 */
+	private static boolean isAnyArchiveUnitModified(List<ArchiveUnit> auList) {
+		for (ArchiveUnit au : auList)
+			if (au.isModified())
+				return true;
+		return false;
+	}
+
+	/**
+	 * Gets a new SHA-256 message digest.
+	 *
+	 * @return the message digest
+	 * @throws IOException if the digest algorithm is not available
+	 */
+	private static MessageDigest newMessageDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Resip: Algorithme SHA-256 indisponible", e);
+		}
+	}
+
+	/**
+	 * Gets the digest of a serialized chunk.
+	 *
+	 * @param json the serialized chunk
+	 * @return the digest
+	 * @throws IOException if the digest algorithm is not available
+	 */
+	private static String getDigest(byte[] json) throws IOException {
+		return Base64.getEncoder().encodeToString(newMessageDigest().digest(json));
+	}
 
+	/**
+	 * Serialize an objects list as a json array.
+	 *
+	 * @param mapper  the object mapper
+	 * @param objects the objects list
+	 * @return the json array
+	 * @throws IOException if the objects can't be serialized
+	 */
+	private static byte[] serializeChunk(ObjectMapper mapper, List<?> objects) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (JsonGenerator gen = mapper.getFactory().createGenerator(baos)) {
+			gen.writeStartArray();
+			for (Object o : objects)
+				mapper.writeValue(gen, o);
+			gen.writeEndArray();
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Deflate a serialized chunk, to get the chunk entry payload.
+	 *
+	 * @param json the serialized chunk
+	 * @return the chunk entry payload
+	 * @throws IOException if the deflate fails
+	 */
+	private static byte[] deflate(byte[] json) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DeflaterOutputStream dos = new DeflaterOutputStream(baos)) {
+			dos.write(json);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Put a chunk entry payload, which is already deflated, as a stored entry so
+	 * that it can be copied as is from a work file to another.
+	 *
+	 * @param zos       the zip output stream
+	 * @param entryName the chunk entry name
+	 * @param payload   the chunk entry payload
+	 * @throws IOException if the entry can't be written
+	 */
+	private static void putStoredEntry(ZipOutputStream zos, String entryName, byte[] payload) throws IOException {
+		ZipEntry ze = new ZipEntry(entryName);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ze.setMethod(ZipEntry.STORED);
+		ze.setSize(payload.length);
+		ze.setCompressedSize(payload.length);
+		ze.setCrc(crc.getValue());
+		zos.putNextEntry(ze);
+		zos.write(payload);
+		zos.closeEntry();
+	}
+
+	/**
+	 * Read a stored chunk entry payload, as is.
+	 *
+	 * @param zf        the work zip file
+	 * @param entryName the chunk entry name
+	 * @return the chunk entry payload, or null if there's no such stored entry
+	 * @throws IOException if the entry can't be read
+	 */
+	private static byte[] readStoredEntry(ZipFile zf, String entryName) throws IOException {
+		ZipEntry ze = zf.getEntry(entryName);
+		if ((ze == null) || (ze.getMethod() != ZipEntry.STORED))
+			return null;
+		byte[] payload = new byte[(int) ze.getSize()];
+		try (InputStream is = zf.getInputStream(ze)) {
+			int offset = 0;
+			int read;
+			while ((offset < payload.length) && ((read = is.read(payload, offset, payload.length - offset)) > 0))
+				offset += read;
+			if (offset != payload.length)
+				return null;
+		}
+		return payload;
+	}
+
+	/**
+	 * Gets the number of chunks written in the last save.
+	 *
+	 * @return the chunk count
+	 */
+	@JsonIgnore
+	public int getLastSaveChunkCount() {
+		return lastSaveChunkCount;
+	}
+
+	/**
+	 * Gets the number of chunks copied from the previous file in the last save.
+	 *
+	 * @return the reused chunk count
+	 */
+	@JsonIgnore
+	public int getLastSaveReusedChunkCount() {
+		return lastSaveReusedChunkCount;
 	}
 
 	/**
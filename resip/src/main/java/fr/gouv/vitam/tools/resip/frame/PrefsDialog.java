@@ -79,6 +79,7 @@ public class PrefsDialog extends JDialog {
     private JCheckBox attachementMetadataCheckBox;
     private JTextArea ignorePatternsTextArea;
     private JCheckBox ignoreLinksChexBox;
+    private JCheckBox technicalElementsCacheCheckBox;
     private JComboBox csvCharsetCombobox;
     private JTextField csvDelimiterTextField;
 
@@ -885,7 +886,6 @@ public class PrefsDialog extends JDialog {
         ignoreLinksChexBox = new JCheckBox("ignorer les liens symboliques et rassourcis");
         ignoreLinksChexBox.setSelected(dic.isNoLinkFlag());
         gbc = new GridBagConstraints();
-        gbc.gridwidth = 2;
         gbc.insets = new Insets(5, 5, 5, 5);
         gbc.weightx = 1.0;
         gbc.anchor = GridBagConstraints.CENTER;
@@ -894,6 +894,18 @@ public class PrefsDialog extends JDialog {
         gbc.gridy = 6;
         importParametersPanel.add(ignoreLinksChexBox, gbc);
 
+        technicalElementsCacheCheckBox = new JCheckBox("réutiliser les informations techniques des fichiers inchangés");
+        technicalElementsCacheCheckBox.setToolTipText("Empreintes et identifications de format conservées entre imports dans le répertoire de travail");
+        technicalElementsCacheCheckBox.setSelected(dic.isTechnicalElementsCacheFlag());
+        gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.weightx = 1.0;
+        gbc.anchor = GridBagConstraints.CENTER;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 2;
+        gbc.gridy = 6;
+        importParametersPanel.add(technicalElementsCacheCheckBox, gbc);
+
         JLabel csvImportLabel = new JLabel("Import/export des csv");
         csvImportLabel.setFont(MainWindow.BOLD_LABEL_FONT);
         gbc = new GridBagConstraints();
@@ -1157,6 +1169,7 @@ public class PrefsDialog extends JDialog {
 
         dic.setIgnorePatternList(Arrays.asList(ignorePatternsTextArea.getText().split("\\s*\n\\s*")));
         dic.setNoLinkFlag(ignoreLinksChexBox.isSelected());
+        dic.setTechnicalElementsCacheFlag(technicalElementsCacheCheckBox.isSelected());
 
         mic.setExtractMessageTextMetadata(messageMetadataCheckBox.isSelected());
         mic.setExtractAttachmentTextMetadata(attachementMetadataCheckBox.isSelected());
@@ -23,6 +23,11 @@ public class DiskImportContext extends CreationContext {
      */
     boolean noLinkFlag;
 
+    /**
+     * The technical elements cache flag.
+     */
+    boolean technicalElementsCacheFlag;
+
 // session element
     /**
      * The model version.
@@ -51,6 +56,7 @@ public class DiskImportContext extends CreationContext {
 		else
 			this.ignorePatternList = ignorePatternList;
 		this.noLinkFlag=noLinkFlag;
+		this.technicalElementsCacheFlag=true;
 	}
 
 	/**
@@ -66,6 +72,7 @@ public class DiskImportContext extends CreationContext {
 		else
 			ignorePatternList = Arrays.asList(ignorePatternsString.split("\\s*\n\\s*"));
 		noLinkFlag=Boolean.parseBoolean(prefs.getPrefProperties().getProperty("importContext.disk.noLinkFlag", "false"));
+		technicalElementsCacheFlag=Boolean.parseBoolean(prefs.getPrefProperties().getProperty("importContext.disk.technicalElementsCacheFlag", "true"));
 	}
 
 	/* (non-Javadoc)
@@ -74,6 +81,7 @@ public class DiskImportContext extends CreationContext {
 	public void toPrefs(Prefs prefs) {
 		prefs.getPrefProperties().setProperty("importContext.disk.ignorePatternList", String.join("\n", ignorePatternList));
 		prefs.getPrefProperties().setProperty("importContext.disk.noLinkFlag",Boolean.toString(noLinkFlag));
+		prefs.getPrefProperties().setProperty("importContext.disk.technicalElementsCacheFlag",Boolean.toString(technicalElementsCacheFlag));
 	}
 
 	/* (non-Javadoc)
@@ -83,6 +91,7 @@ public class DiskImportContext extends CreationContext {
 		super.setDefaultPrefs();
 		ignorePatternList = Arrays.asList("Thumbs.db", "pagefile.sys");
 		noLinkFlag=false;
+		technicalElementsCacheFlag=true;
 	}
 
 	// Getters and setters
@@ -123,6 +132,26 @@ public class DiskImportContext extends CreationContext {
 		this.noLinkFlag = noLinkFlag;
 	}
 
+    /**
+     * Is technical elements cache flag boolean, true if the technical elements
+     * (digest and format identification) computed in previous imports are
+     * reused for unchanged files.
+     *
+     * @return the boolean
+     */
+    public boolean isTechnicalElementsCacheFlag() {
+		return technicalElementsCacheFlag;
+	}
+
+    /**
+     * Sets technical elements cache flag.
+     *
+     * @param technicalElementsCacheFlag the technical elements cache flag
+     */
+    public void setTechnicalElementsCacheFlag(boolean technicalElementsCacheFlag) {
+		this.technicalElementsCacheFlag = technicalElementsCacheFlag;
+	}
+
     /**
      * Gets the model version.
      *
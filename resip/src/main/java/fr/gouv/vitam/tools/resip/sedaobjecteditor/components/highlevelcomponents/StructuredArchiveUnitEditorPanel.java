@@ -171,9 +171,9 @@ public class StructuredArchiveUnitEditorPanel extends JPanel implements ArchiveU
             ResipGraphicApp.getTheWindow().dogMetadataPane.editDataObjectGroup(null);
         } else {
             try {
-                archiveUnit.getContent();
-                archiveUnit.getManagement();
-                archiveUnit.getArchiveUnitProfile();
+                archiveUnit.readContent();
+                archiveUnit.readManagement();
+                archiveUnit.readArchiveUnitProfile();
             } catch (SEDALibException e) {
                 String title = SEDAXMLEventReader.extractNamedElement("Title", archiveUnit.getContentXmlData());
                 warningText.setText(translateTag("ArchiveUnit") + " - " + (title != null ? title + " - " : "") + archiveUnit.getInDataObjectPackageId()
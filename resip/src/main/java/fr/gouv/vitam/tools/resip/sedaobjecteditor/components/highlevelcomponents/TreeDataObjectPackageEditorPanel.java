@@ -269,7 +269,7 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
     public void resetDisplayedTreeNodeTitle() {
         String title = null;
         try {
-            title = displayedTreeNode.getArchiveUnit().getContent().getSimpleMetadata("Title");
+            title = displayedTreeNode.getArchiveUnit().readContent().getSimpleMetadata("Title");
         } catch (SEDALibException ignored) {
         }
         if (title == null)
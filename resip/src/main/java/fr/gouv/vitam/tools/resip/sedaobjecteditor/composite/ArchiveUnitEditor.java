@@ -121,16 +121,16 @@ public class ArchiveUnitEditor extends CompositeEditor {
         for (int i = 0; i < 3; i++)
             objectEditorArray[i] = null;
         if (getArchiveUnitMetadata() != null) {
-            if (getArchiveUnitMetadata().getContent() != null) {
-                objectEditorArray[0] = SEDAObjectEditor.createSEDAObjectEditor(getArchiveUnitMetadata().getContent(), this);
+            if (getArchiveUnitMetadata().readContent() != null) {
+                objectEditorArray[0] = SEDAObjectEditor.createSEDAObjectEditor(getArchiveUnitMetadata().readContent(), this);
                 ((CompositeEditor) objectEditorArray[0]).doExpand(true, false);
             }
-            if (getArchiveUnitMetadata().getManagement() != null) {
-                objectEditorArray[1] = SEDAObjectEditor.createSEDAObjectEditor(getArchiveUnitMetadata().getManagement(), this);
+            if (getArchiveUnitMetadata().readManagement() != null) {
+                objectEditorArray[1] = SEDAObjectEditor.createSEDAObjectEditor(getArchiveUnitMetadata().readManagement(), this);
                 ((CompositeEditor) objectEditorArray[1]).doExpand(true, false);
             }
-            if (getArchiveUnitMetadata().getArchiveUnitProfile() != null)
-                objectEditorArray[2] = SEDAObjectEditor.createSEDAObjectEditor(getArchiveUnitMetadata().getArchiveUnitProfile(), this);
+            if (getArchiveUnitMetadata().readArchiveUnitProfile() != null)
+                objectEditorArray[2] = SEDAObjectEditor.createSEDAObjectEditor(getArchiveUnitMetadata().readArchiveUnitProfile(), this);
         }
 
         updateObjectEditorList();
@@ -89,18 +89,15 @@ public class DuplicatesThread extends SwingWorker<String, String> {
     }
 
     /**
-     * Recursively browse the ArchiveUnit tree to sort the DOG by DOG digest map and create the sorted ArchiveUnit by DOG digest map.
+     * Browse the ArchiveUnit tree below the given ArchiveUnit, each ArchiveUnit only once in depth-first pre-order
+     * without recursion, to sort the DOG by DOG digest map and create the sorted ArchiveUnit by DOG digest map.
      * The result is then sorted in the natural order of ArchiveUnit tree browsing.
      *
      * @param au                the au
      * @param dogByDogDigestMap the dog by digest map
      */
     void followTree(ArchiveUnit au, HashMap<String, List<DataObjectGroup>> dogByDogDigestMap) {
-        List<ArchiveUnit> auList = au.getChildrenAuList().getArchiveUnitList();
-
-        for (ArchiveUnit childUnit : auList) {
-            if (dataObjectPackage.isTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId()))
-                continue;
+        dataObjectPackage.visitArchiveUnits(au, childUnit -> {
             for (DataObject dataObject : childUnit.getDataObjectRefList().getDataObjectList()) {
                 if (dataObject instanceof DataObjectGroup) {
                     String dogKey = dogKeyMap.get(dataObject);
@@ -112,13 +109,10 @@ public class DuplicatesThread extends SwingWorker<String, String> {
                         sortedAuByDogDigestMap.get(dogKey).add(childUnit);
                 }
             }
-            dataObjectPackage.addTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId());
-            followTree(childUnit, dogByDogDigestMap);
-        }
+        });
     }
 
     private LinkedHashMap<String, List<DataObjectGroup>> treeSort(HashMap<String, List<DataObjectGroup>> dogByDogDigestMap) {
-        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
         sortedDogByDogDigestMap = new LinkedHashMap<String, List<DataObjectGroup>>();
         sortedAuByDogDigestMap = new HashMap<String, List<ArchiveUnit>>();
         for (String e : dogByDogDigestMap.keySet()) {
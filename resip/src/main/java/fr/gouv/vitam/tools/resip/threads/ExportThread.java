@@ -153,6 +153,7 @@ public class ExportThread extends SwingWorker<String, String> {
                 case SIP_ALL_EXPORT:
                     inOutDialog.extProgressTextArea.setText("Export du SIP SEDA en " + work.getExportContext().getOnDiskOutput() + "\n");
                     ArchiveTransferToSIPExporter smm = new ArchiveTransferToSIPExporter(archiveTransfer, spl);
+                    smm.setThreadCount(Runtime.getRuntime().availableProcessors());
                     smm.doExportToSEDASIP(work.getExportContext().getOnDiskOutput(), work.getExportContext().isHierarchicalArchiveUnits(),
                             work.getExportContext().isIndented());
                     doProgressLog(spl, GLOBAL,
@@ -40,6 +40,7 @@ import fr.gouv.vitam.tools.sedalib.core.ArchiveDeliveryRequestReply;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
 import fr.gouv.vitam.tools.sedalib.inout.importer.*;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.utils.TechnicalElementsCache;
 
 import javax.swing.*;
 import java.io.File;
@@ -161,6 +162,7 @@ public class ImportThread extends SwingWorker<String, String> {
                         spl);
                 for (String ip : zic.getIgnorePatternList())
                     zi.addIgnorePattern(ip);
+                zi.setThreadCount(Runtime.getRuntime().availableProcessors());
                 zi.doImport();
                 setWorkFromArchiveTransfer(zi.getArchiveTransfer());
                 summary = zi.getSummary();
@@ -172,7 +174,16 @@ public class ImportThread extends SwingWorker<String, String> {
                         spl);
                 for (String ip : diskImportContext.getIgnorePatternList())
                     di.addIgnorePattern(ip);
+                di.setThreadCount(Runtime.getRuntime().availableProcessors());
+                TechnicalElementsCache technicalElementsCache = null;
+                if (diskImportContext.isTechnicalElementsCacheFlag()) {
+                    technicalElementsCache = TechnicalElementsCache.open(
+                            Paths.get(diskImportContext.getWorkDir(), TechnicalElementsCache.DEFAULT_CACHE_FILENAME));
+                    di.setTechnicalElementsCache(technicalElementsCache);
+                }
                 di.doImport();
+                if (technicalElementsCache != null)
+                    technicalElementsCache.save();
                 diskImportContext.setModelVersion(di.getModelVersion());
                 setWorkFromArchiveTransfer(di.getArchiveTransfer());
                 summary = di.getSummary();
@@ -182,6 +193,7 @@ public class ImportThread extends SwingWorker<String, String> {
                 String target = getTmpDirTarget(sic.getWorkDir(), sic.getOnDiskInput());
                 SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(sic.getOnDiskInput(),
                         target, spl);
+                si.setThreadCount(Runtime.getRuntime().availableProcessors());
                 si.doImport();
                 setWorkFromArchiveTransfer(si.getArchiveTransfer());
                 summary = si.getSummary();
@@ -234,6 +246,7 @@ public class ImportThread extends SwingWorker<String, String> {
                 for (String ip : new DiskImportContext(Prefs.getInstance())
                         .getIgnorePatternList())
                     di.addIgnorePattern(ip);
+                di.setThreadCount(Runtime.getRuntime().availableProcessors());
                 di.doImport();
                 setWorkFromArchiveTransfer(di.getArchiveTransfer());
                 summary = mi.getSummary() + "\n" + di.getSummary();
@@ -261,6 +274,7 @@ public class ImportThread extends SwingWorker<String, String> {
             doProgressLogWithoutInterruption(spl, GLOBAL, "resip: erreur durant l'import, les données n'ont pas été modifiées", exitException);
         else {
             work.getCreationContext().setSummary(summary);
+            theApp.releaseCurrentWork();
             theApp.currentWork = work;
             theApp.setFilenameWork(null);
             theApp.setModifiedContext(true);
@@ -89,12 +89,9 @@ public class SearchThread extends SwingWorker<String, String> {
      * @param au the au
      */
     void searchInArchiveUnit(ArchiveUnit au) {
-        List<ArchiveUnit> auList = au.getChildrenAuList().getArchiveUnitList();
         TreeDataObjectPackageEditorPanel treePane = ResipGraphicApp.getTheWindow().treePane;
 
-        for (ArchiveUnit childUnit : auList) {
-            if (dataObjectPackage.isTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId()))
-                continue;
+        dataObjectPackage.visitArchiveUnits(au, childUnit -> {
             try {
                 String tmp;
                 int dataObjectCount = 0;
@@ -116,7 +113,7 @@ public class SearchThread extends SwingWorker<String, String> {
                             }
                         }
                     } else if (isMetadataCheck) {
-                        tmp = childUnit.getContent().toString();
+                        tmp = childUnit.readContentString();
                     } else
                         tmp = treePane.getTreeTitle(childUnit);
 
@@ -130,11 +127,9 @@ public class SearchThread extends SwingWorker<String, String> {
                             searchResult.add(childUnit);
                     }
                 }
-                dataObjectPackage.addTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId());
             } catch (SEDALibException ignored) {
             }
-            searchInArchiveUnit(childUnit);
-        }
+        });
     }
 
     @Override
@@ -144,7 +139,6 @@ public class SearchThread extends SwingWorker<String, String> {
         else if (!isCaseCheck) searchExp = searchExp.toLowerCase();
         if (isIdCheck) searchExp = "<" + searchExp + ">";
         dataObjectPackage=searchUnit.getDataObjectPackage();
-        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
         searchResult = new LinkedList<ArchiveUnit>();
 
         searchInArchiveUnit(searchUnit);
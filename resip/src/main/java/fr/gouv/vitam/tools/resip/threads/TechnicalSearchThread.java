@@ -115,11 +115,7 @@ public class TechnicalSearchThread extends SwingWorker<String, String> {
     }
 
     private void searchInArchiveUnit(ArchiveUnit au) {
-        List<ArchiveUnit> auList = au.getChildrenAuList().getArchiveUnitList();
-
-        for (ArchiveUnit childUnit : auList) {
-            if (dataObjectPackage.isTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId()))
-                continue;
+        dataObjectPackage.visitArchiveUnits(au, childUnit -> {
             for (DataObject dataObject : childUnit.getDataObjectRefList().getDataObjectList()) {
                 if (dataObject instanceof PhysicalDataObject)
                     continue;
@@ -135,16 +131,12 @@ public class TechnicalSearchThread extends SwingWorker<String, String> {
                     }
                 }
             }
-            dataObjectPackage.addTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId());
-
-            searchInArchiveUnit(childUnit);
-        }
+        });
     }
 
     @Override
     public String doInBackground() {
         dataObjectPackage =searchUnit.getDataObjectPackage();
-        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
         searchDataObjectResult = new LinkedHashMap<ArchiveUnit, List<BinaryDataObject>>();
 
         searchInArchiveUnit(searchUnit);
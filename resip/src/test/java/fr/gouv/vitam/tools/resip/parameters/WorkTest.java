@@ -8,6 +8,7 @@ import fr.gouv.vitam.tools.resip.data.Work;
 import fr.gouv.vitam.tools.resip.utils.ResipException;
 import fr.gouv.vitam.tools.resip.utils.ResipLogger;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageSerializer;
@@ -20,10 +21,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * The type Work test.
@@ -95,4 +101,110 @@ public class WorkTest implements UseTestFiles {
 		
 	}
 
+	private String toJsonString(Work work) throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		SimpleModule module = new SimpleModule();
+		module.addSerializer(DataObjectPackage.class, new DataObjectPackageSerializer());
+		module.addDeserializer(DataObjectPackage.class, new DataObjectPackageDeserializer());
+		mapper.registerModule(module);
+		mapper.enable(SerializationFeature.INDENT_OUTPUT);
+		return mapper.writeValueAsString(work);
+	}
+
+	/**
+	 * Test resip work save and load, in chunked format, incrementally and from previous format.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	void TestResipWorkSaveLoad() throws Exception {
+		// Given
+		List<String> ignorePatternList = new ArrayList<String>(2);
+		ignorePatternList.add("Thumbs.db");
+		ExportContext gmc = new ExportContext("src/test/resources/PacketSamples/ExportContext.config");
+		CreationContext oic = new DiskImportContext(ignorePatternList, false,
+				"src/test/resources/PacketSamples/SampleWithoutLinksModelV2", "./target/tmpJunit/junit_log.log");
+		Work ow = new Work(null, oic, gmc);
+		DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(ow.getCreationContext().getOnDiskInput(),
+				null);
+		di.addIgnorePattern("Thumbs.db");
+		di.doImport();
+		setWorkFromArchiveTransfer(ow, di.getArchiveTransfer());
+		String expected = toJsonString(ow);
+		new File("./target/tmpJunit").mkdirs();
+		String workFile = "./target/tmpJunit/junit_work.resip";
+		String legacyWorkFile = "./target/tmpJunit/junit_legacy_work.resip";
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(legacyWorkFile))) {
+			zos.putNextEntry(new ZipEntry("work.json"));
+			zos.write(expected.getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+		}
+
+		// When
+		ow.save(workFile);
+		Work loaded = Work.createFromFile(workFile);
+		Work legacyLoaded = Work.createFromFile(legacyWorkFile);
+
+		// Then
+		assertEquals(expected, toJsonString(loaded));
+		assertEquals(expected, toJsonString(legacyLoaded));
+
+		// When
+		for (ArchiveUnit readAu : loaded.getDataObjectPackage().getAuInDataObjectPackageIdMap().values()) {
+			readAu.readContent();
+			readAu.readManagement();
+		}
+		loaded.save(workFile);
+
+		// Then
+		for (ArchiveUnit readAu : loaded.getDataObjectPackage().getAuInDataObjectPackageIdMap().values())
+			assertFalse(readAu.isModified());
+		assertEquals(loaded.getLastSaveChunkCount(), loaded.getLastSaveReusedChunkCount());
+
+		// When
+		ArchiveUnit au = loaded.getDataObjectPackage().getAuInDataObjectPackageIdMap().values().iterator().next();
+		au.setDefaultContent("Titre modifié", "Item");
+		loaded.save(workFile);
+		Work reloaded = Work.createFromFile(workFile);
+
+		// Then
+		assertEquals(loaded.getLastSaveChunkCount() - 1, loaded.getLastSaveReusedChunkCount());
+		assertEquals(toJsonString(loaded), toJsonString(reloaded));
+		assertEquals(au.getContentXmlData(), reloaded.getDataObjectPackage()
+				.getArchiveUnitById(au.getInDataObjectPackageId()).getContentXmlData());
+	}
+
+	/**
+	 * Test resip work incremental save of an edit done on a Content object held after a previous save.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	void TestResipWorkSaveHeldContentEdit() throws Exception {
+		// Given
+		ExportContext gmc = new ExportContext("src/test/resources/PacketSamples/ExportContext.config");
+		CreationContext oic = new DiskImportContext(new ArrayList<String>(0), false,
+				"src/test/resources/PacketSamples/SampleWithoutLinksModelV2", "./target/tmpJunit/junit_log.log");
+		Work ow = new Work(null, oic, gmc);
+		DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(ow.getCreationContext().getOnDiskInput(),
+				null);
+		di.doImport();
+		setWorkFromArchiveTransfer(ow, di.getArchiveTransfer());
+		new File("./target/tmpJunit").mkdirs();
+		String workFile = "./target/tmpJunit/junit_held_content_work.resip";
+		ArchiveUnit au = ow.getDataObjectPackage().getAuInDataObjectPackageIdMap().values().iterator().next();
+		au.setDefaultContent("Titre modifié", "Item");
+		ow.save(workFile);
+
+		// When
+		au.getContent().addNewMetadata("Description", "Description ajoutée après sauvegarde");
+		ow.save(workFile);
+		Work reloaded = Work.createFromFile(workFile);
+
+		// Then
+		assertEquals(toJsonString(ow), toJsonString(reloaded));
+		assertTrue(reloaded.getDataObjectPackage().getArchiveUnitById(au.getInDataObjectPackageId())
+				.getContentXmlData().contains("Description ajoutée après sauvegarde"));
+	}
+
 }
@@ -33,13 +33,12 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import fr.gouv.vitam.tools.sedalib.xml.IndentXMLTool;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidatingOutputStream;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidator;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 import javax.xml.validation.Schema;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
 
@@ -99,7 +98,7 @@ public class ArchiveTransfer {
      * @throws SEDALibException if the XML can't be written
      */
 
-    private void exportStartDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportStartDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeStartDocument();
             xmlWriter.writeStartElement("ArchiveTransfer");
@@ -122,7 +121,7 @@ public class ArchiveTransfer {
      * @throws SEDALibException if the XML can't be written
      */
 
-    private void exportHeader(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportHeader(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeElementValueIfNotEmpty("Comment", globalMetadata.comment);
             if (globalMetadata.isNowFlag())
@@ -143,7 +142,7 @@ public class ArchiveTransfer {
      * @throws SEDALibException if the XML can't be written
      */
 
-    private void exportFooter(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportFooter(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeElementValueIfNotEmpty("TransferRequestReplyIdentifier",
                     globalMetadata.transferRequestReplyIdentifier);
@@ -166,7 +165,7 @@ public class ArchiveTransfer {
      * @param xmlWriter the SEDAXMLStreamWriter generating the SEDA manifest
      * @throws SEDALibException if the XML can't be written
      */
-    private void exportEndDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportEndDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeEndElement();
             xmlWriter.writeEndDocument();
@@ -188,9 +187,27 @@ public class ArchiveTransfer {
      */
     public void toSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, SEDALibProgressLogger sedaLibProgressLogger)
             throws SEDALibException, InterruptedException {
+        toSedaXml(xmlWriter, imbricateFlag, 1, sedaLibProgressLogger);
+    }
+
+    /**
+     * Export the whole structure in XML SEDA Manifest, the ArchiveUnits being
+     * written by the given number of threads in flat mode.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param imbricateFlag         indicates if the manifest ArchiveUnits are to be
+     *                              exported in imbricate mode (true) or in flat mode
+     *                              (false)
+     * @param threadCount           the number of threads writing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void toSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, int threadCount,
+                          SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
         exportStartDocument(xmlWriter);
         exportHeader(xmlWriter);
-        dataObjectPackage.toSedaXml(xmlWriter, imbricateFlag, sedaLibProgressLogger);
+        dataObjectPackage.toSedaXml(xmlWriter, imbricateFlag, threadCount, sedaLibProgressLogger);
         exportFooter(xmlWriter);
         exportEndDocument(xmlWriter);
 
@@ -312,12 +329,31 @@ public class ArchiveTransfer {
      */
     public static ArchiveTransfer fromSedaXml(SEDAXMLEventReader xmlReader, String rootDir,
                                               SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        return fromSedaXml(xmlReader, rootDir, 1, sedaLibProgressLogger);
+    }
+
+    /**
+     * Import the whole structure from XML SEDA Manifest, the ArchiveUnits being
+     * parsed by the given number of threads.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param rootDir               the directory where the BinaryDataObject files are
+     *                              exported
+     * @param threadCount           the number of threads parsing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the read ArchiveTransfer
+     * @throws SEDALibException     if the XML can't be read or is not in expected form
+     * @throws InterruptedException if export process is interrupted
+     */
+    public static ArchiveTransfer fromSedaXml(SEDAXMLEventReader xmlReader, String rootDir, int threadCount,
+                                              SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
         ArchiveTransfer archiveTransfer;
         importStartDocument(xmlReader, sedaLibProgressLogger);
         archiveTransfer = new ArchiveTransfer();
         archiveTransfer.setGlobalMetadata(new GlobalMetadata());
         importHeader(xmlReader, archiveTransfer, sedaLibProgressLogger);
-        archiveTransfer.setDataObjectPackage(DataObjectPackage.fromSedaXml(xmlReader, rootDir, sedaLibProgressLogger));
+        archiveTransfer.setDataObjectPackage(DataObjectPackage.fromSedaXml(xmlReader, rootDir, threadCount,
+                sedaLibProgressLogger));
         importFooter(xmlReader, archiveTransfer);
         importEndDocument(xmlReader, archiveTransfer);
 
@@ -329,29 +365,31 @@ public class ArchiveTransfer {
 
     // SEDA Validator
 
+    /**
+     * Validate the ArchiveTransfer with the SEDA 2.1 schema. The manifest is
+     * validated while it's written, without being kept in memory.
+     *
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the manifest is not valid or can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
     public void seda21Validate(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
-        String manifest;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(baos, IndentXMLTool.STANDARD_INDENT)) {
-            toSedaXml(ixsw, true, sedaLibProgressLogger);
-            manifest = baos.toString("UTF-8");
-        } catch (XMLStreamException | IOException e) {
-            throw new SEDALibException("Echec d'écriture XML du manifest", e);
-        }
         SEDAXMLValidator sedaXMLvalidator = new SEDAXMLValidator();
         Schema sedaSchema = sedaXMLvalidator.getSEDASchema();
-        sedaXMLvalidator.checkWithXSDSchema(manifest, sedaSchema);
+        validateWhileWriting(sedaSchema, false, sedaLibProgressLogger);
     }
 
+    /**
+     * Validate the ArchiveTransfer with a rng or xsd profile, depending on the
+     * file extension. The manifest is validated while it's written, without
+     * being kept in memory.
+     *
+     * @param profileFileName       the profile file name
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the manifest is not valid or can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
     public void sedaProfileValidate(String profileFileName, SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
-        String manifest;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(baos, IndentXMLTool.STANDARD_INDENT)) {
-            toSedaXml(ixsw, true, sedaLibProgressLogger);
-            manifest = baos.toString("UTF-8");
-        } catch (XMLStreamException | IOException e) {
-            throw new SEDALibException("Echec d'écriture XML du manifest", e);
-        }
         SEDAXMLValidator sedaXMLvalidator = new SEDAXMLValidator();
         Schema sedaSchema;
         if (profileFileName.endsWith(".rng"))
@@ -359,10 +397,32 @@ public class ArchiveTransfer {
         else
             sedaSchema = sedaXMLvalidator.getSchemaFromXSDFile(profileFileName);
 
-        if (profileFileName.endsWith(".rng"))
-            sedaXMLvalidator.checkWithRNGSchema(manifest, sedaSchema);
-        else
-            sedaXMLvalidator.checkWithXSDSchema(manifest, sedaSchema);
+        validateWhileWriting(sedaSchema, profileFileName.endsWith(".rng"), sedaLibProgressLogger);
+    }
+
+    /**
+     * Write the indented imbricated manifest in a validating stream.
+     *
+     * @param schema                the schema
+     * @param rngFlag               true if the schema is a rng one, false if xsd
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the manifest is not valid or can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void validateWhileWriting(Schema schema, boolean rngFlag, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        SEDAXMLValidatingOutputStream vos = new SEDAXMLValidatingOutputStream(null, schema, rngFlag);
+        boolean documentWrittenFlag = false;
+        try (SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(vos, IndentXMLTool.STANDARD_INDENT)) {
+            toSedaXml(ixsw, true, sedaLibProgressLogger);
+            ixsw.flush();
+            documentWrittenFlag = true;
+        } catch (XMLStreamException e) {
+            throw new SEDALibException("Echec d'écriture XML du manifest", e);
+        } finally {
+            // a validation failure is the cause of any write error
+            vos.endValidation(documentWrittenFlag);
+        }
     }
 
     // Getters and setters
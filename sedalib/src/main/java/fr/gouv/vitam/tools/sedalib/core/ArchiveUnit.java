@@ -33,6 +33,7 @@ import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
 import fr.gouv.vitam.tools.sedalib.metadata.management.Management;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.utils.XmlFragmentCompressor;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
@@ -41,6 +42,7 @@ import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
@@ -57,9 +59,10 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     // SEDA elements
 
     /**
-     * The ArchiveUnit profile xml element in String form.
+     * The ArchiveUnit profile xml element in String form, or in compact form (byte array) if the
+     * DataObjectPackage XML fragments compaction is active.
      */
-    private String archiveUnitProfileXmlData;
+    private Object archiveUnitProfileXmlData;
 
     /**
      * The ArchiveUnit profile xml element in metadata form.
@@ -68,9 +71,10 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     private ArchiveUnitProfile archiveUnitProfile;
 
     /**
-     * The Management xml element in String form.
+     * The Management xml element in String form, or in compact form (byte array) if the
+     * DataObjectPackage XML fragments compaction is active.
      */
-    private String managementXmlData;
+    private Object managementXmlData;
 
     /**
      * The Management xml element in metadata form.
@@ -79,9 +83,10 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     private Management management;
 
     /**
-     * The Content xml element in String form.
+     * The Content xml element in String form, or in compact form (byte array) if the
+     * DataObjectPackage XML fragments compaction is active.
      */
-    private String contentXmlData;
+    private Object contentXmlData;
 
     /**
      * The Content xml element in String form.
@@ -89,6 +94,31 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     @JsonIgnore
     private Content content;
 
+    /**
+     * True if the Management object has been parsed on demand, and can be released
+     * by the DataObjectPackage metadata cache.
+     */
+    @JsonIgnore
+    private boolean managementParsed;
+
+    /**
+     * True if the Content object has been parsed on demand, and can be released
+     * by the DataObjectPackage metadata cache.
+     */
+    @JsonIgnore
+    private boolean contentParsed;
+
+    /**
+     * True if the ArchiveUnit may have been modified since the last reset of this
+     * flag, used for example to save only the changed ArchiveUnits.
+     * <p>
+     * It's set by all setters and also when a metadata object, which can then be
+     * modified in place, is given by a getter, but not by the read only accessors
+     * as {@link #readContent()}.
+     */
+    @JsonIgnore
+    private volatile boolean modified;
+
     // ArchiveUnitReferenceAbstract
     // - specify system ArchiveUnit to link as child, not supported by SEDALib
 
@@ -114,6 +144,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         this.content = null;
         this.childrenAuList = new ArchiveUnitRefList(null);
         this.dataObjectRefList = new DataObjectRefList(null);
+        this.modified = true;
     }
 
     /**
@@ -134,6 +165,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         this.content = null;
         this.childrenAuList = new ArchiveUnitRefList(dataObjectPackage);
         this.dataObjectRefList = new DataObjectRefList(dataObjectPackage);
+        this.modified = true;
         if (dataObjectPackage != null)
             try {
                 dataObjectPackage.addArchiveUnit(this);
@@ -151,11 +183,12 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public String getArchiveUnitProfileXmlData() {
         if (archiveUnitProfileXmlData != null)
-            return archiveUnitProfileXmlData;
+            return expandXmlData(archiveUnitProfileXmlData);
         if (archiveUnitProfile == null)
             return null;
-        archiveUnitProfileXmlData = archiveUnitProfile.toString();
-        return archiveUnitProfileXmlData;
+        String result = archiveUnitProfile.toString();
+        archiveUnitProfileXmlData = compactXmlData(result);
+        return result;
     }
 
     /**
@@ -164,8 +197,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      * @param archiveUnitProfileXmlData the archive unit profile xml data
      */
     public void setArchiveUnitProfileXmlData(String archiveUnitProfileXmlData) {
-        this.archiveUnitProfileXmlData = archiveUnitProfileXmlData;
+        this.archiveUnitProfileXmlData = compactXmlData(archiveUnitProfileXmlData);
         this.archiveUnitProfile = null;
+        this.modified = true;
     }
 
     /**
@@ -177,17 +211,35 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     public ArchiveUnitProfile getArchiveUnitProfile() throws SEDALibException {
         if (archiveUnitProfile != null) {
             archiveUnitProfileXmlData = null;
+            modified = true;
             return archiveUnitProfile;
         }
         if (archiveUnitProfileXmlData == null)
             return null;
-        archiveUnitProfile = (ArchiveUnitProfile) ArchiveUnitProfile.fromString(archiveUnitProfileXmlData,
+        modified = true;
+        archiveUnitProfile = (ArchiveUnitProfile) ArchiveUnitProfile.fromString(expandXmlData(archiveUnitProfileXmlData),
                 ArchiveUnitProfile.class);
         // as fromString function normalise ArchiveUnitProfile had to destroy approximate version archiveUnitProfileXmlData
         archiveUnitProfileXmlData = null;
         return archiveUnitProfile;
     }
 
+    /**
+     * Gets archive unit profile for reading only, without marking the ArchiveUnit
+     * as possibly modified. The returned object must not be modified.
+     *
+     * @return the archive unit profile
+     * @throws SEDALibException if raw xml data is not convenient
+     */
+    public synchronized ArchiveUnitProfile readArchiveUnitProfile() throws SEDALibException {
+        if ((archiveUnitProfile == null) && (archiveUnitProfileXmlData != null)) {
+            archiveUnitProfile = (ArchiveUnitProfile) ArchiveUnitProfile.fromString(
+                    expandXmlData(archiveUnitProfileXmlData), ArchiveUnitProfile.class);
+            archiveUnitProfileXmlData = null;
+        }
+        return archiveUnitProfile;
+    }
+
     /**
      * Sets archive unit profile.
      *
@@ -196,6 +248,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     public void setArchiveUnitProfile(ArchiveUnitProfile archiveUnitProfile) {
         this.archiveUnitProfileXmlData = null;
         this.archiveUnitProfile = archiveUnitProfile;
+        this.modified = true;
     }
 
     /**
@@ -203,13 +256,14 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      *
      * @return the management xml data
      */
-    public String getManagementXmlData() {
+    public synchronized String getManagementXmlData() {
         if (managementXmlData != null)
-            return managementXmlData;
+            return expandXmlData(managementXmlData);
         if (management == null)
             return null;
-        managementXmlData = management.toString();
-        return managementXmlData;
+        String result = management.toString();
+        managementXmlData = compactXmlData(result);
+        return result;
     }
 
     /**
@@ -217,29 +271,79 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      *
      * @param managementXmlData the management xml data
      */
-    public void setManagementXmlData(String managementXmlData) {
-        this.managementXmlData = managementXmlData;
+    public synchronized void setManagementXmlData(String managementXmlData) {
+        this.managementXmlData = compactXmlData(managementXmlData);
         this.management = null;
+        this.managementParsed = false;
+        this.modified = true;
     }
 
     /**
      * Gets management.
+     * <p>
+     * If parsed from the xml data, the Management is kept in the DataObjectPackage
+     * metadata cache, and can later be written back in xml data form.
      *
      * @return the management
      * @throws SEDALibException if raw xml data is not convenient
      */
     public Management getManagement() throws SEDALibException {
-        if (management != null) {
-            managementXmlData = null;
-            return management;
+        Management result;
+        boolean parsed;
+        synchronized (this) {
+            if (management != null) {
+                managementXmlData = null;
+                modified = true;
+                if (!managementParsed)
+                    return management;
+                parsed = false;
+            } else {
+                if (managementXmlData == null)
+                    return null;
+                modified = true;
+                management = (Management) Management.fromString(expandXmlData(managementXmlData),
+                        Management.class);
+                // as fromString function normalise Management had to destroy approximate version managementXmlData
+                managementXmlData = null;
+                managementParsed = true;
+                parsed = true;
+            }
+            result = management;
         }
-        if (managementXmlData == null)
-            return null;
-        management = (Management) Management.fromString(managementXmlData,
-                Management.class);
-        // as fromString function normalise Management had to destroy approximate version managementXmlData
-        managementXmlData = null;
-        return management;
+        recordParsedMetadataAccess(parsed);
+        return result;
+    }
+
+    /**
+     * Gets management for reading only, without marking the ArchiveUnit as possibly
+     * modified. The returned object must not be modified.
+     * <p>
+     * If parsed from the xml data, the Management is kept as by
+     * {@link #getManagement()}.
+     *
+     * @return the management
+     * @throws SEDALibException if raw xml data is not convenient
+     */
+    public Management readManagement() throws SEDALibException {
+        Management result;
+        boolean parsed;
+        synchronized (this) {
+            if (management == null) {
+                if (managementXmlData == null)
+                    return null;
+                management = (Management) Management.fromString(expandXmlData(managementXmlData),
+                        Management.class);
+                managementXmlData = null;
+                managementParsed = true;
+                parsed = true;
+            } else if (!managementParsed)
+                return management;
+            else
+                parsed = false;
+            result = management;
+        }
+        recordParsedMetadataAccess(parsed);
+        return result;
     }
 
     /**
@@ -247,9 +351,11 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      *
      * @param management the management
      */
-    public void setManagement(Management management) {
+    public synchronized void setManagement(Management management) {
         this.managementXmlData = null;
         this.management = management;
+        this.managementParsed = false;
+        this.modified = true;
     }
 
     /**
@@ -257,13 +363,99 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      *
      * @return the content xml data
      */
-    public String getContentXmlData() {
+    public synchronized String getContentXmlData() {
         if (contentXmlData != null)
-            return contentXmlData;
+            return expandXmlData(contentXmlData);
         if (content == null)
             return null;
-        contentXmlData = content.toString();
-        return contentXmlData;
+        String result = content.toString();
+        contentXmlData = compactXmlData(result);
+        return result;
+    }
+
+    /**
+     * Parse the content from the xml data if not already done, the caller has to
+     * hold the ArchiveUnit lock.
+     *
+     * @return true, if parsed, false if the content was already there or there's
+     * no xml data
+     * @throws SEDALibException if raw xml data is not convenient
+     */
+    private boolean parseContentIfNeeded() throws SEDALibException {
+        if ((content != null) || (contentXmlData == null))
+            return false;
+        content = (Content) Content.fromString(expandXmlData(contentXmlData),
+                Content.class);
+        // as fromString function normalise Content had to destroy approximate version contentXmlData
+        contentXmlData = null;
+        contentParsed = true;
+        return true;
+    }
+
+    /**
+     * Record an access to parsed metadata in the DataObjectPackage metadata cache,
+     * if any.
+     *
+     * @param parsed true if the metadata has just been parsed
+     */
+    private void recordParsedMetadataAccess(boolean parsed) {
+        DataObjectPackage dataObjectPackage = getDataObjectPackage();
+        if ((dataObjectPackage != null) && (dataObjectPackage.getArchiveUnitMetadataCache() != null))
+            dataObjectPackage.getArchiveUnitMetadataCache().recordAccess(this, parsed);
+    }
+
+    /**
+     * Gets the stored form of a xml data, compacted if the DataObjectPackage XML
+     * fragments compaction is active.
+     *
+     * @param xmlData the xml data
+     * @return the stored form
+     */
+    private Object compactXmlData(String xmlData) {
+        DataObjectPackage dataObjectPackage = getDataObjectPackage();
+        if ((xmlData == null) || (dataObjectPackage == null)
+                || (dataObjectPackage.getXmlFragmentsCompactionMode() == XmlFragmentCompressor.NO_COMPACTION))
+            return xmlData;
+        return XmlFragmentCompressor.compact(xmlData, dataObjectPackage.getXmlFragmentsCompactionMode());
+    }
+
+    /**
+     * Gets the xml data from its stored form.
+     *
+     * @param storedXmlData the stored xml data
+     * @return the xml data
+     */
+    private static String expandXmlData(Object storedXmlData) {
+        if (storedXmlData instanceof byte[])
+            return XmlFragmentCompressor.expand((byte[]) storedXmlData);
+        return (String) storedXmlData;
+    }
+
+    /**
+     * Recompute the stored form of the xml data, after a change of the
+     * DataObjectPackage XML fragments compaction mode.
+     */
+    synchronized void recompactXmlData() {
+        archiveUnitProfileXmlData = compactXmlData(expandXmlData(archiveUnitProfileXmlData));
+        managementXmlData = compactXmlData(expandXmlData(managementXmlData));
+        contentXmlData = compactXmlData(expandXmlData(contentXmlData));
+    }
+
+    /**
+     * Write back in xml data form and release the Content and Management parsed on
+     * demand, used by the DataObjectPackage metadata cache on eviction.
+     */
+    synchronized void releaseParsedMetadata() {
+        if (contentParsed && (content != null)) {
+            contentXmlData = compactXmlData(content.toString());
+            content = null;
+        }
+        contentParsed = false;
+        if (managementParsed && (management != null)) {
+            managementXmlData = compactXmlData(management.toString());
+            management = null;
+        }
+        managementParsed = false;
     }
 
     /**
@@ -273,17 +465,19 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     @JsonIgnore
     public boolean isContentSEDACompliant() {
-        if (content != null)
-            return true;
-        if (contentXmlData == null)
-            return false;
-        try {
-            content = (Content) Content.fromString(contentXmlData,
-                    Content.class);
-            contentXmlData = null;
-        } catch (SEDALibException e) {
-            return false;
+        boolean parsed;
+        synchronized (this) {
+            if (content != null)
+                return true;
+            if (contentXmlData == null)
+                return false;
+            try {
+                parsed = parseContentIfNeeded();
+            } catch (SEDALibException e) {
+                return false;
+            }
         }
+        recordParsedMetadataAccess(parsed);
         return true;
     }
 
@@ -296,16 +490,20 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     public String getFilteredContentExportString() {
         if (getDataObjectPackage().getExportMetadataList() == null)
             return getContentXmlData();
-        if (content != null)
-            return content.filteredToString(getDataObjectPackage().getExportMetadataList());
-        try {
-            content = (Content) Content.fromString(contentXmlData,
-                    Content.class);
-            contentXmlData = null;
-        } catch (SEDALibException e) {
-            return contentXmlData;
+        String result;
+        boolean parsed, cached;
+        synchronized (this) {
+            try {
+                parsed = parseContentIfNeeded();
+            } catch (SEDALibException e) {
+                return expandXmlData(contentXmlData);
+            }
+            cached = contentParsed;
+            result = content.filteredToString(getDataObjectPackage().getExportMetadataList());
         }
-        return content.filteredToString(getDataObjectPackage().getExportMetadataList());
+        if (cached)
+            recordParsedMetadataAccess(parsed);
+        return result;
     }
 
     /**
@@ -313,29 +511,88 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      *
      * @param contentXmlData the content xml data
      */
-    public void setContentXmlData(String contentXmlData) {
-        this.contentXmlData = contentXmlData;
+    public synchronized void setContentXmlData(String contentXmlData) {
+        this.contentXmlData = compactXmlData(contentXmlData);
         this.content = null;
+        this.contentParsed = false;
+        this.modified = true;
     }
 
     /**
      * Gets content.
+     * <p>
+     * If parsed from the xml data, the Content is kept in the DataObjectPackage
+     * metadata cache, and can later be written back in xml data form.
      *
      * @return the content
      * @throws SEDALibException if raw xml data is not convenient
      */
     public Content getContent() throws SEDALibException {
-        if (content != null) {
+        Content result;
+        boolean parsed;
+        synchronized (this) {
+            modified = true;
+            if ((content != null) && !contentParsed) {
+                contentXmlData = null;
+                return content;
+            }
+            if ((content == null) && (contentXmlData == null))
+                return null;
+            parsed = parseContentIfNeeded();
             contentXmlData = null;
-            return content;
+            result = content;
         }
-        if (contentXmlData == null)
-            return null;
-        content = (Content) Content.fromString(contentXmlData,
-                Content.class);
-        // as fromString function normalise Content had to destroy approximate version contentXmlData
-        contentXmlData = null;
-        return content;
+        recordParsedMetadataAccess(parsed);
+        return result;
+    }
+
+    /**
+     * Gets content for reading only, without marking the ArchiveUnit as possibly
+     * modified, for example to display or search it. The returned object must not
+     * be modified.
+     * <p>
+     * If parsed from the xml data, the Content is kept as by {@link #getContent()}.
+     *
+     * @return the content
+     * @throws SEDALibException if raw xml data is not convenient
+     */
+    public Content readContent() throws SEDALibException {
+        Content result;
+        boolean parsed;
+        synchronized (this) {
+            if ((content != null) && !contentParsed)
+                return content;
+            if ((content == null) && (contentXmlData == null))
+                return null;
+            parsed = parseContentIfNeeded();
+            result = content;
+        }
+        recordParsedMetadataAccess(parsed);
+        return result;
+    }
+
+    /**
+     * Gets content in normalised xml form for reading only, without marking the
+     * ArchiveUnit as possibly modified.
+     * <p>
+     * If not already there, the Content is parsed from the xml data and then
+     * dropped, instead of being kept in the ArchiveUnit, so that going through all
+     * the ArchiveUnits, for example to search them, doesn't keep all their parsed
+     * Content in memory.
+     *
+     * @return the content xml form
+     * @throws SEDALibException if raw xml data is not convenient
+     */
+    public String readContentString() throws SEDALibException {
+        String xmlData;
+        synchronized (this) {
+            if (content != null)
+                return content.toString();
+            if (contentXmlData == null)
+                return null;
+            xmlData = expandXmlData(contentXmlData);
+        }
+        return Content.fromString(xmlData, Content.class).toString();
     }
 
     /**
@@ -343,13 +600,13 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      *
      * @param content the content
      */
-    public void setContent(Content content) {
+    public synchronized void setContent(Content content) {
         this.contentXmlData = null;
         this.content = content;
+        this.contentParsed = false;
+        this.modified = true;
     }
 
-    // Methods
-
     /**
      * Sets the Content xml element constructed with given title and description level.
      *
@@ -373,6 +630,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void addDataObjectById(String inDataPackageObjectId) {
         dataObjectRefList.addById(inDataPackageObjectId);
+        modified = true;
     }
 
     /**
@@ -382,6 +640,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void removeDataObjectById(String inDataPackageObjectId) {
         dataObjectRefList.removeById(inDataPackageObjectId);
+        modified = true;
     }
 
     /**
@@ -391,6 +650,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void addChildArchiveUnit(ArchiveUnit au) {
         childrenAuList.add(au);
+        modified = true;
     }
 
     /**
@@ -400,6 +660,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void removeChildArchiveUnit(ArchiveUnit au) {
         childrenAuList.remove(au);
+        modified = true;
     }
 
     /**
@@ -410,6 +671,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void addChildArchiveUnitById(String inDataPackageObjectId) {
         childrenAuList.addById(inDataPackageObjectId);
+        modified = true;
     }
 
     /**
@@ -420,6 +682,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void removeChildArchiveUnitById(String inDataPackageObjectId) {
         childrenAuList.removeById(inDataPackageObjectId);
+        modified = true;
     }
 
     // SEDA XML exporter
@@ -435,18 +698,62 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void toSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, SEDALibProgressLogger sedaLibProgressLogger)
             throws SEDALibException, InterruptedException {
-        try {
-            if (imbricateFlag) {
-                if (getDataObjectPackage().isTouchedInDataObjectPackageId(inDataPackageObjectId)) {
+        if (imbricateFlag) {
+            if (getDataObjectPackage().isTouchedInDataObjectPackageId(inDataPackageObjectId)) {
+                try {
                     xmlWriter.writeStartElement("ArchiveUnit");
                     xmlWriter.writeAttribute("id", getDataObjectPackage().getNextRefID());
                     xmlWriter.writeElementValue("ArchiveUnitRefId", inDataPackageObjectId);
                     xmlWriter.writeEndElement();
-                    return;
-                } else
-                    getDataObjectPackage().addTouchedInDataObjectPackageId(inDataPackageObjectId);
-            }
+                } catch (XMLStreamException e) {
+                    throw new SEDALibException(
+                            "Erreur d'écriture XML de l'ArchiveUnit [" + inDataPackageObjectId + "]", e);
+                }
+                return;
+            } else
+                getDataObjectPackage().addTouchedInDataObjectPackageId(inDataPackageObjectId);
+        }
+        writeSedaXml(xmlWriter, imbricateFlag, 0, sedaLibProgressLogger);
+
+        int counter = getDataObjectPackage().getNextInOutCounter();
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                "sedalib: " + counter + " métadonnées ArchiveUnit exportées");
+    }
+
+    /**
+     * Export the ArchiveUnit in flat mode XML expected form for the SEDA Manifest,
+     * without progress counting. The RefIDs of the children references are
+     * numbered from the given number and not taken from the DataObjectPackage
+     * counter, so that ArchiveUnits can be exported concurrently in different
+     * writers.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param firstRefIdNumber      the number of the first children reference RefID
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    void toFlatSedaXml(SEDAXMLStreamWriter xmlWriter, int firstRefIdNumber, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        writeSedaXml(xmlWriter, false, firstRefIdNumber, sedaLibProgressLogger);
+    }
 
+    /**
+     * Write the ArchiveUnit element.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param imbricateFlag         indicates if the manifest ArchiveUnits are to be
+     *                              exported in imbricate mode (true) or in flat mode
+     *                              (false)
+     * @param refIdNumber           the number of the first children reference RefID,
+     *                              or 0 to use the DataObjectPackage counter
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void writeSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, int refIdNumber,
+                              SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        try {
             xmlWriter.writeStartElement("ArchiveUnit");
             xmlWriter.writeAttribute("id", inDataPackageObjectId);
             xmlWriter.writeRawXMLBlockIfNotEmpty(getArchiveUnitProfileXmlData());
@@ -459,15 +766,18 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
                 xmlWriter.writeRawXMLBlockIfNotEmpty(getContentXmlData());
             } else
                 xmlWriter.writeRawXMLBlockIfNotEmpty(getFilteredContentExportString());
-            for (ArchiveUnit au : childrenAuList.getArchiveUnitList()) {
-                if (!imbricateFlag) {
+            if (!imbricateFlag) {
+                // in flat mode only ids are needed, so children don't have to be in the DataObjectPackage
+                for (String childId : childrenAuList.peekInDataObjectPackageIdList()) {
                     xmlWriter.writeStartElement("ArchiveUnit");
-                    xmlWriter.writeAttribute("id", getDataObjectPackage().getNextRefID());
-                    xmlWriter.writeElementValue("ArchiveUnitRefId", au.inDataPackageObjectId);
+                    xmlWriter.writeAttribute("id", (refIdNumber > 0 ? "RefID" + Integer.toString(refIdNumber++)
+                            : getDataObjectPackage().getNextRefID()));
+                    xmlWriter.writeElementValue("ArchiveUnitRefId", childId);
                     xmlWriter.writeEndElement();
-                } else {
-                    au.toSedaXml(xmlWriter, true, sedaLibProgressLogger);
                 }
+            } else {
+                for (ArchiveUnit au : childrenAuList.getArchiveUnitList())
+                    au.toSedaXml(xmlWriter, true, sedaLibProgressLogger);
             }
             for (DataObject dataObject : dataObjectRefList.getDataObjectList()) {
                 xmlWriter.writeStartElement("DataObjectReference");
@@ -482,10 +792,6 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
             throw new SEDALibException(
                     "Erreur d'écriture XML de l'ArchiveUnit [" + inDataPackageObjectId + "]", e);
         }
-
-        int counter = getDataObjectPackage().getNextInOutCounter();
-        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
-                "sedalib: " + counter + " métadonnées ArchiveUnit exportées");
     }
 
     /**
@@ -524,6 +830,30 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public static String idFromSedaXml(SEDAXMLEventReader xmlReader, DataObjectPackage dataObjectPackage,
                                        SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        return idFromSedaXml(xmlReader, dataObjectPackage, null, sedaLibProgressLogger);
+    }
+
+    /**
+     * Import the ArchiveUnit in XML expected form from the SEDA Manifest and
+     * return it's id in ArchiveTransfer.
+     * <p>
+     * If a list is given, the read ArchiveUnits (the imbricated ones included) are
+     * not added to the DataObjectPackage, which is then only read to verify the
+     * DataObject references, but to the list in manifest order. So ArchiveUnits
+     * can be read concurrently, before being added to the DataObjectPackage.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param dataObjectPackage     the DataObjectPackage to be completed
+     * @param readArchiveUnits      the list of read ArchiveUnits, or null to add them directly in the
+     *                              DataObjectPackage
+     * @param sedaLibProgressLogger the progress logger
+     * @return the inDataPackageObjectId of the read ArchiveUnit, or null if not an ArchiveUnit
+     * @throws SEDALibException     if the XML can't be read
+     * @throws InterruptedException if export process is interrupted
+     */
+    static String idFromSedaXml(SEDAXMLEventReader xmlReader, DataObjectPackage dataObjectPackage,
+                                List<ArchiveUnit> readArchiveUnits, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
         ArchiveUnit au = null;
         DataObject dataObject;
         String tmp;
@@ -539,7 +869,12 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
                 } else {
                     au = new ArchiveUnit();
                     au.inDataPackageObjectId = tmp;
-                    dataObjectPackage.addArchiveUnit(au);
+                    if (readArchiveUnits == null)
+                        dataObjectPackage.addArchiveUnit(au);
+                    else {
+                        au.setDataObjectPackage(dataObjectPackage);
+                        readArchiveUnits.add(au);
+                    }
                     au.setArchiveUnitProfileXmlData(xmlReader.nextBlockAsStringIfNamed("ArchiveUnitProfile"));
                     au.setManagementXmlData(xmlReader.nextBlockAsStringIfNamed("Management"));
                     au.setContentXmlData(xmlReader.nextBlockAsStringIfNamed("Content"));
@@ -549,7 +884,8 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
                             break;
                         switch (tmp) {
                             case "ArchiveUnit":
-                                String subAuId = idFromSedaXml(xmlReader, dataObjectPackage, sedaLibProgressLogger);
+                                String subAuId = idFromSedaXml(xmlReader, dataObjectPackage, readArchiveUnits,
+                                        sedaLibProgressLogger);
                                 au.addChildArchiveUnitById(subAuId);
                                 break;
                             case "DataObjectReference":
@@ -596,6 +932,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         // next XML element not an ArchiveUnit
         if (au == null)
             return null;
+        // progress is logged when added to the DataObjectPackage
+        if (readArchiveUnits != null)
+            return au.inDataPackageObjectId;
 
         int counter = dataObjectPackage.getNextInOutCounter();
         doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter, "sedalib: " + counter + " métadonnées ArchiveUnit importées");
@@ -674,6 +1013,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void setChildrenAuList(ArchiveUnitRefList childrenAuList) {
         this.childrenAuList = childrenAuList;
+        this.modified = true;
     }
 
     /**
@@ -692,6 +1032,28 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void setDataObjectRefList(DataObjectRefList dataObjectRefList) {
         this.dataObjectRefList = dataObjectRefList;
+        this.modified = true;
+    }
+
+    /**
+     * Checks if the ArchiveUnit may have been modified since the last reset of the
+     * modified flag.
+     *
+     * @return true, if it may have been modified
+     */
+    @JsonIgnore
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Sets the modified flag, for example reset when the ArchiveUnit has been saved.
+     *
+     * @param modified the modified flag
+     */
+    @JsonIgnore
+    public void setModified(boolean modified) {
+        this.modified = modified;
     }
 
     /**
@@ -745,6 +1107,10 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     @Override
     public void setDataObjectPackage(DataObjectPackage dataObjectPackage) {
+        DataObjectPackage previousDataObjectPackage = getDataObjectPackage();
+        if ((previousDataObjectPackage != null) && (previousDataObjectPackage != dataObjectPackage)
+                && (previousDataObjectPackage.getArchiveUnitMetadataCache() != null))
+            previousDataObjectPackage.getArchiveUnitMetadataCache().remove(this);
         super.setDataObjectPackage(dataObjectPackage);
         childrenAuList.setDataObjectPackage(dataObjectPackage);
         dataObjectRefList.setDataObjectPackage(dataObjectPackage);
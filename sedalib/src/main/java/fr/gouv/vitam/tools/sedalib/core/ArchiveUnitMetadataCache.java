@@ -0,0 +1,232 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The Class ArchiveUnitMetadataCache.
+ * <p>
+ * Bounded cache, in least recently used order, of the ArchiveUnits of a DataObjectPackage whose Content or
+ * Management have been parsed on demand from their XML form. When an ArchiveUnit is evicted, its parsed
+ * metadata are written back in XML form, which is the canonical cold form, and released. So that repeated
+ * metadata access doesn't reparse, while memory stays bounded for huge DataObjectPackages.
+ * <p>
+ * Only the metadata parsed on demand are concerned, the Content or Management objects explicitly set on an
+ * ArchiveUnit are kept as is. A parsed metadata object can be modified as long as it's used just after its get,
+ * but a reference to it has not to be kept while accessing many other ArchiveUnits metadata, as it may be
+ * evicted in the meantime and the later modifications lost.
+ * <p>
+ * This is why the cache is not activated by default, it has to be set on the DataObjectPackage by
+ * {@link DataObjectPackage#setArchiveUnitMetadataCache(ArchiveUnitMetadataCache)} when this usage is ensured.
+ */
+public class ArchiveUnitMetadataCache {
+
+    /**
+     * The default maximum number of ArchiveUnits with parsed metadata.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * The maximum number of ArchiveUnits with parsed metadata, 0 meaning no limit.
+     */
+    private int maxSize;
+
+    /**
+     * The ArchiveUnits with parsed metadata, in access order.
+     */
+    private final LinkedHashMap<ArchiveUnit, Boolean> lruMap;
+
+    /**
+     * The count of metadata access without parsing.
+     */
+    private long hitCount;
+
+    /**
+     * The count of metadata parsing.
+     */
+    private long missCount;
+
+    /**
+     * The count of evicted ArchiveUnits.
+     */
+    private long evictionCount;
+
+    /**
+     * Instantiates a new ArchiveUnit metadata cache with default maximum size.
+     */
+    public ArchiveUnitMetadataCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Instantiates a new ArchiveUnit metadata cache.
+     *
+     * @param maxSize the maximum number of ArchiveUnits with parsed metadata, 0 meaning no limit
+     */
+    public ArchiveUnitMetadataCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.lruMap = new LinkedHashMap<ArchiveUnit, Boolean>(16, 0.75f, true);
+        this.hitCount = 0;
+        this.missCount = 0;
+        this.evictionCount = 0;
+    }
+
+    /**
+     * Record an access to the parsed metadata of an ArchiveUnit, and evict the least recently used ArchiveUnits
+     * if the cache is full.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @param parsed      true if the metadata has just been parsed, false if it was already there
+     */
+    void recordAccess(ArchiveUnit archiveUnit, boolean parsed) {
+        List<ArchiveUnit> evicted = null;
+        synchronized (this) {
+            if (parsed)
+                missCount++;
+            else
+                hitCount++;
+            lruMap.put(archiveUnit, Boolean.TRUE);
+            if ((maxSize > 0) && (lruMap.size() > maxSize))
+                evicted = evictOverflow();
+        }
+        // written back out of the cache lock, as it takes the ArchiveUnits lock
+        if (evicted != null)
+            for (ArchiveUnit au : evicted)
+                au.releaseParsedMetadata();
+    }
+
+    private List<ArchiveUnit> evictOverflow() {
+        List<ArchiveUnit> evicted = new ArrayList<ArchiveUnit>();
+        Iterator<ArchiveUnit> it = lruMap.keySet().iterator();
+        while (lruMap.size() > maxSize) {
+            evicted.add(it.next());
+            it.remove();
+            evictionCount++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Remove an ArchiveUnit from the cache, without writing back or releasing its metadata. To be used when the
+     * ArchiveUnit is removed from, or moved out of, the DataObjectPackage.
+     *
+     * @param archiveUnit the ArchiveUnit
+     */
+    public synchronized void remove(ArchiveUnit archiveUnit) {
+        lruMap.remove(archiveUnit);
+    }
+
+    /**
+     * Write back and release all the parsed metadata.
+     */
+    public void clear() {
+        List<ArchiveUnit> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<ArchiveUnit>(lruMap.keySet());
+            lruMap.clear();
+        }
+        for (ArchiveUnit au : evicted)
+            au.releaseParsedMetadata();
+    }
+
+    /**
+     * Gets the maximum number of ArchiveUnits with parsed metadata.
+     *
+     * @return the max size, 0 meaning no limit
+     */
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of ArchiveUnits with parsed metadata, evicting if needed.
+     *
+     * @param maxSize the max size, 0 meaning no limit
+     */
+    public void setMaxSize(int maxSize) {
+        List<ArchiveUnit> evicted = null;
+        synchronized (this) {
+            this.maxSize = maxSize;
+            if ((maxSize > 0) && (lruMap.size() > maxSize))
+                evicted = evictOverflow();
+        }
+        if (evicted != null)
+            for (ArchiveUnit au : evicted)
+                au.releaseParsedMetadata();
+    }
+
+    /**
+     * Gets the number of ArchiveUnits with parsed metadata.
+     *
+     * @return the size
+     */
+    public synchronized int getSize() {
+        return lruMap.size();
+    }
+
+    /**
+     * Gets the count of metadata access without parsing.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the count of metadata parsing.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the count of evicted ArchiveUnits.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the statistics summary.
+     *
+     * @return the statistics summary
+     */
+    public synchronized String getStatistics() {
+        return "cache de métadonnées: " + lruMap.size() + "/" + maxSize + " ArchiveUnits, " + hitCount
+                + " accès sans analyse, " + missCount + " analyses XML, " + evictionCount + " libérations";
+    }
+}
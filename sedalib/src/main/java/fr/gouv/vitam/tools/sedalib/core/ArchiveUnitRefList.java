@@ -93,6 +93,27 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
         return inDataObjectPackageIdList;
     }
 
+    /**
+     * Gets the inDataPackageObjectId list without switching the list to id mode,
+     * and so without having to resolve ArchiveUnits in the DataObjectPackage.
+     * <p>
+     * When in id mode the inner list is returned, when in object mode a new list
+     * is built, in both cases it has not to be modified.
+     *
+     * @return the inDataPackageObjectId list
+     */
+    @JsonIgnore
+    public List<String> peekInDataObjectPackageIdList() {
+        if (inDataObjectPackageIdList != null)
+            return inDataObjectPackageIdList;
+        if (archiveUnitList == null)
+            return new ArrayList<String>(0);
+        List<String> result = new ArrayList<String>(archiveUnitList.size());
+        for (ArchiveUnit au : archiveUnitList)
+            result.add(au.inDataPackageObjectId);
+        return result;
+    }
+
     /**
      * Sets the inDataPackageObjectId list.
      *
@@ -0,0 +1,160 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The Class ArchiveUnitSpliterator.
+ * <p>
+ * Spliterator going through the ArchiveUnits graph below a start ArchiveUnit, each ArchiveUnit being given
+ * only one time even if it has many fathers. The start ArchiveUnit itself is not given.
+ * <p>
+ * The traversal is iterative, using an explicit stack of pending ArchiveUnits, so that deep trees can't
+ * overflow the thread stack, and ArchiveUnits already given are recognized by the traversal epoch mark, so
+ * there is no allocation by visited ArchiveUnit. In sequential use the ArchiveUnits are given in depth-first
+ * pre-order, children in list order, as the former recursive walkers did. The spliterator can be split, all
+ * the parts sharing the same epoch, for parallel traversal.
+ */
+public class ArchiveUnitSpliterator implements Spliterator<ArchiveUnit> {
+
+    /**
+     * The traversal epoch.
+     */
+    private final long epoch;
+
+    /**
+     * The pending ArchiveUnits stack, the top being at the end.
+     */
+    private ArchiveUnit[] stack;
+
+    /**
+     * The pending ArchiveUnits count.
+     */
+    private int top;
+
+    /**
+     * The ArchiveUnit already marked during split, to be given first.
+     */
+    private ArchiveUnit ready;
+
+    /**
+     * Instantiates a new ArchiveUnit spliterator.
+     *
+     * @param epoch the traversal epoch
+     * @param stack the pending ArchiveUnits stack
+     * @param top   the pending ArchiveUnits count
+     */
+    private ArchiveUnitSpliterator(long epoch, ArchiveUnit[] stack, int top) {
+        this.epoch = epoch;
+        this.stack = stack;
+        this.top = top;
+        this.ready = null;
+    }
+
+    /**
+     * Instantiates a new ArchiveUnit spliterator on the children of the start ArchiveUnit.
+     *
+     * @param startAu the start ArchiveUnit
+     * @param epoch   the traversal epoch, obtained by {@link DataObjectPackage#startTraversal()}
+     */
+    ArchiveUnitSpliterator(ArchiveUnit startAu, long epoch) {
+        this(epoch, new ArchiveUnit[16], 0);
+        pushChildren(startAu);
+    }
+
+    private void pushChildren(ArchiveUnit au) {
+        List<ArchiveUnit> children = au.getChildrenAuList().getArchiveUnitList();
+        int count = children.size();
+        if (top + count > stack.length)
+            stack = Arrays.copyOf(stack, Math.max(top + count, stack.length * 2));
+        for (int i = count - 1; i >= 0; i--)
+            stack[top++] = children.get(i);
+    }
+
+    private ArchiveUnit nextUnvisited() {
+        while (top > 0) {
+            ArchiveUnit au = stack[--top];
+            stack[top] = null;
+            if (au.markVisited(epoch))
+                return au;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ArchiveUnit> action) {
+        if (ready != null) {
+            // already marked and children pushed during split
+            ArchiveUnit au = ready;
+            ready = null;
+            action.accept(au);
+            return true;
+        }
+        ArchiveUnit au = nextUnvisited();
+        if (au == null)
+            return false;
+        action.accept(au);
+        // children are read after the action, as it may have modified them
+        pushChildren(au);
+        return true;
+    }
+
+    @Override
+    public Spliterator<ArchiveUnit> trySplit() {
+        // when only one ArchiveUnit is pending, go down to have siblings to share
+        while ((top == 1) && (ready == null)) {
+            ready = nextUnvisited();
+            if (ready != null)
+                pushChildren(ready);
+        }
+        if (top < 2)
+            return null;
+        // the bottom of the stack is what would be treated last, give it to the new spliterator
+        int half = top / 2;
+        ArchiveUnit[] splitStack = new ArchiveUnit[Math.max(half, 16)];
+        System.arraycopy(stack, 0, splitStack, 0, half);
+        System.arraycopy(stack, half, stack, 0, top - half);
+        Arrays.fill(stack, top - half, top, null);
+        top -= half;
+        return new ArchiveUnitSpliterator(epoch, splitStack, half);
+    }
+
+    @Override
+    public long estimateSize() {
+        return (top == 0) && (ready == null) ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | NONNULL;
+    }
+}
@@ -37,8 +37,10 @@ import fr.gouv.vitam.tools.sedalib.metadata.namedtype.AnyXMLType;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.DigestType;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.IntegerType;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.StringType;
+import fr.gouv.vitam.tools.sedalib.utils.LazyZipExtractor;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.utils.TechnicalElementsCache;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
@@ -46,13 +48,16 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Formatter;
 import java.util.List;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.*;
@@ -146,6 +151,13 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
     @JsonIgnore
     private DataObjectGroup dataObjectGroup;
 
+    /**
+     * The on disk file extracted flag, true when the file, extracted on demand
+     * from a SIP, is known to be on disk.
+     */
+    @JsonIgnore
+    private volatile boolean onDiskFileExtracted;
+
     // Constructors
 
     /**
@@ -259,6 +271,63 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
 
     // Methods
 
+    /**
+     * Extract the BinaryDataObject file, if the DataObjectPackage files are
+     * extracted on demand from a SIP and this has not already been done.
+     *
+     * @throws SEDALibException if the file can't be extracted
+     */
+    public void extractOnDiskFile() throws SEDALibException {
+        try {
+            extractOnDiskFileIfNeeded();
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'extraire du SIP le fichier [" + onDiskPath + "]", e);
+        }
+    }
+
+    // extract the file from the SIP, if not already known to be on disk
+    private void extractOnDiskFileIfNeeded() throws IOException {
+        if (onDiskFileExtracted || (onDiskPath == null) || (getDataObjectPackage() == null))
+            return;
+        LazyZipExtractor lazyZipExtractor = getDataObjectPackage().getLazyZipExtractor();
+        if (lazyZipExtractor == null)
+            return;
+        lazyZipExtractor.extractIfNeeded(onDiskPath);
+        onDiskFileExtracted = true;
+    }
+
+    /**
+     * Gets the disk path of the BinaryDataObject file.
+     * <p>
+     * If the DataObjectPackage files are extracted on demand from a SIP, the file
+     * is extracted the first time its path is needed.
+     *
+     * @return the disk path
+     * @throws UncheckedIOException if the file can't be extracted
+     */
+    @JsonIgnore
+    @Override
+    public Path getOnDiskPath() {
+        try {
+            extractOnDiskFileIfNeeded();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible d'extraire du SIP le fichier [" + onDiskPath + "]", e);
+        }
+        return onDiskPath;
+    }
+
+    /**
+     * Sets the disk Path of the BinaryDataObject file.
+     *
+     * @param onDiskPath the new on disk path
+     */
+    @JsonIgnore
+    @Override
+    public void setOnDiskPath(Path onDiskPath) {
+        super.setOnDiskPath(onDiskPath);
+        onDiskFileExtracted = false;
+    }
+
     /**
      * Gets the extension of a file name.
      *
@@ -272,9 +341,29 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
         return i < 0 ? "seda" : fileName.substring(i + 1);
     }
 
+    /**
+     * The digest read buffer size, large enough to limit the number of read calls on network storage.
+     */
+    private static final int DIGEST_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The per thread digest read buffer, reused from one file to the other.
+     */
+    private static final ThreadLocal<ByteBuffer> digestBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(DIGEST_BUFFER_SIZE));
+
+    /**
+     * The hexadecimal digits used for digest encoding.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Gets the digest sha 512.
+     * <p>
+     * The file is read sequentially through a channel with a large buffer, so that the following DROID
+     * identification, which only reads the beginning and the end of the file, is served from the system cache.
      *
+     * @param path the file path
      * @return the digest sha 512
      * @throws SEDALibException if unable to get digest
      */
@@ -286,10 +375,13 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
             throw new SEDALibException("Impossible de mobiliser l'algorithme de hashage SHA-512", e1);
         }
 
-        try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
-            final byte[] buffer = new byte[4096];
-            for (int read; (read = is.read(buffer)) != -1; ) {
-                messageDigest.update(buffer, 0, read);
+        ByteBuffer buffer = digestBuffer.get();
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (fileChannel.read(buffer) != -1) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
             }
         } catch (Exception e) {
             throw new SEDALibException(
@@ -297,56 +389,95 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
         }
 
         // Convert the byte to hex format
-        try (Formatter formatter = new Formatter()) {
-            for (final byte b : messageDigest.digest()) {
-                formatter.format("%02x", b);
-            }
-            return formatter.toString();
-        } catch (Exception e) {
-            throw new SEDALibException(
-                    "Impossible d'encoder le hash du fichier [" + path.toString() + "]", e);
+        byte[] digest = messageDigest.digest();
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0F];
         }
+        return new String(hex);
     }
 
     /**
      * Extract technical elements (lastmodified date, size, format, digest...) from
      * file and complete the BinaryDataObject metadata.
+     * <p>
+     * The file attributes are read only once and shared between digest and DROID identification, and the file
+     * content is read in one sequential pass for digest before identification.
      *
      * @param sedaLibProgressLogger the progress logger or null if no progress log expected
      * @throws SEDALibException if unable to get size or lastmodified date (probably
      *                          can't access file)
      */
     public void extractTechnicalElements(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException {
+        extractTechnicalElements(sedaLibProgressLogger, null);
+    }
+
+    /**
+     * Extract technical elements (lastmodified date, size, format, digest...) from
+     * file and complete the BinaryDataObject metadata, using a technical elements cache.
+     * <p>
+     * If the cache has a valid entry for the file (same path, size and last modified time) the digest and format
+     * identification are taken from it, without reading the file content. If not, they are computed and put in
+     * the cache.
+     *
+     * @param sedaLibProgressLogger   the progress logger or null if no progress log expected
+     * @param technicalElementsCache  the technical elements cache or null if no cache is used
+     * @throws SEDALibException if unable to get size or lastmodified date (probably
+     *                          can't access file)
+     */
+    public void extractTechnicalElements(SEDALibProgressLogger sedaLibProgressLogger,
+                                         TechnicalElementsCache technicalElementsCache) throws SEDALibException {
         IdentificationResult ir = null;
         String lfilename = null;
         long lsize;
         FileTime llastModified;
+        TechnicalElementsCache.Entry cacheEntry = null;
+        boolean identificationFailed = false;
 
         if (fileInfo != null)
             lfilename = fileInfo.getSimpleMetadata("Filename");
+        extractOnDiskFile();
         try {
-            lsize = Files.size(onDiskPath);
+            BasicFileAttributes attributes = Files.readAttributes(onDiskPath, BasicFileAttributes.class);
+            lsize = attributes.size();
             if (lfilename == null)
                 lfilename = onDiskPath.getFileName().toString();
-            llastModified = Files.getLastModifiedTime(onDiskPath);
+            llastModified = attributes.lastModifiedTime();
         } catch (IOException e) {
             throw new SEDALibException("Impossible de générer les infos techniques pour le fichier ["
                     + onDiskPath.toString() + "]", e);
         }
 
-        messageDigest = new DigestType("MessageDigest", getDigestSha512(onDiskPath), "SHA-512");
+        if (technicalElementsCache != null)
+            cacheEntry = technicalElementsCache.get(onDiskPath, lsize, llastModified.toMillis());
         size = new IntegerType("Size", lsize);
+        if (cacheEntry != null) {
+            messageDigest = new DigestType("MessageDigest", cacheEntry.getDigest(), "SHA-512");
+            formatIdentification = new FormatIdentification(cacheEntry.getFormatLitteral(), cacheEntry.getMimeType(),
+                    cacheEntry.getFormatId(), null);
+        } else {
+            messageDigest = new DigestType("MessageDigest", getDigestSha512(onDiskPath), "SHA-512");
 
-        try {
-            ir = DroidIdentifier.getInstance().getIdentificationResult(onDiskPath);
-        } catch (SEDALibException e) {
-            doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS, "sedalib: impossible de faire l'identification Droid pour le fichier ["
-                    + onDiskPath.toString() + "]", e);
+            try {
+                ir = DroidIdentifier.getInstance().getIdentificationResult(onDiskPath, lsize, llastModified.toMillis());
+            } catch (SEDALibException e) {
+                identificationFailed = true;
+                doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS, "sedalib: impossible de faire l'identification Droid pour le fichier ["
+                        + onDiskPath.toString() + "]", e);
+            }
+            if (ir != null)
+                formatIdentification = new FormatIdentification(ir.getName(), ir.getMimeType(), ir.getPuid(), null);
+            else
+                formatIdentification = new FormatIdentification("Unknown", null, "UNKNOWN", null);
+
+            // don't keep a transient identification failure
+            if ((technicalElementsCache != null) && !identificationFailed)
+                technicalElementsCache.put(onDiskPath, new TechnicalElementsCache.Entry(lsize, llastModified.toMillis(),
+                        messageDigest.getValue(), formatIdentification.getSimpleMetadata("FormatLitteral"),
+                        formatIdentification.getSimpleMetadata("MimeType"),
+                        formatIdentification.getSimpleMetadata("FormatId")));
         }
-        if (ir != null)
-            formatIdentification = new FormatIdentification(ir.getName(), ir.getMimeType(), ir.getPuid(), null);
-        else
-            formatIdentification = new FormatIdentification("Unknown", null, "UNKNOWN", null);
 
         if (fileInfo == null)
             fileInfo = new FileInfo();
@@ -29,18 +29,36 @@ package fr.gouv.vitam.tools.sedalib.core;
 
 import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.IntegerType;
+import fr.gouv.vitam.tools.sedalib.utils.IdIndexMap;
+import fr.gouv.vitam.tools.sedalib.utils.IdTouchedSet;
+import fr.gouv.vitam.tools.sedalib.utils.LazyZipExtractor;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.utils.XmlFragmentCompressor;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
 
 /**
  * The Class DataObjectPackage
@@ -59,22 +77,22 @@ public class DataObjectPackage {
     /**
      * The map of all the ArchiveUnits by inDataPackageObjectId.
      */
-    private HashMap<String, ArchiveUnit> auInDataObjectPackageIdMap;
+    private IdIndexMap<ArchiveUnit> auInDataObjectPackageIdMap;
 
     /**
      * The map of all the DataObjectGroups by inDataPackageObjectId.
      */
-    private HashMap<String, DataObjectGroup> dogInDataObjectPackageIdMap;
+    private IdIndexMap<DataObjectGroup> dogInDataObjectPackageIdMap;
 
     /**
      * The map of all the BinaryDataObjects by inDataPackageObjectId.
      */
-    private HashMap<String, BinaryDataObject> bdoInDataObjectPackageIdMap;
+    private IdIndexMap<BinaryDataObject> bdoInDataObjectPackageIdMap;
 
     /**
      * The map of all the PhysicalDataObjects by inDataPackageObjectId.
      */
-    private HashMap<String, PhysicalDataObject> pdoInDataObjectPackageIdMap;
+    private IdIndexMap<PhysicalDataObject> pdoInDataObjectPackageIdMap;
 
     /**
      * The management metadata xml data.
@@ -110,12 +128,19 @@ public class DataObjectPackage {
     private int inOutCounter;
 
     /**
-     * The map used to accumulate the touched ArchiveUnits or DataObjects
+     * The set used to accumulate the touched ArchiveUnits or DataObjects
      * inDataObjectPackageIds during a treatment. It's useful to touch only one time
      * all ArchiveUnits or DataObjects in the graph, or to count the time they are
      * touched.
      */
-    private HashMap<String, Integer> touchedInDataObjectPackageIdMap;
+    private IdTouchedSet touchedInDataObjectPackageIdSet;
+
+    /**
+     * The last traversal epoch, used to mark the elements visited during a
+     * traversal without having to reset marks between traversals. It is shared by
+     * all DataObjectPackages, as elements can be moved from one to another.
+     */
+    private static final AtomicLong LAST_TRAVERSAL_EPOCH = new AtomicLong();
 
     /**
      * The Constant NORMALIZATION_STATUS_UNKNOWN.
@@ -132,22 +157,44 @@ public class DataObjectPackage {
      */
     public static final int NORMALIZATION_STATUS_KO = 2;
 
+    /**
+     * The number of ArchiveUnits fragments parsed, or written, together in
+     * concurrent import, or export.
+     */
+    private static final int ARCHIVE_UNITS_CHUNK_SIZE = 128;
+
     /**
      * The indicator of Vitam SIP rules respect.
      */
     private int vitamNormalizationStatus;
 
+    /**
+     * The lazy zip extractor, if the BinaryDataObject files are extracted on demand from a SIP.
+     */
+    private LazyZipExtractor lazyZipExtractor;
+
+    /**
+     * The bounded cache of the ArchiveUnits Content and Management parsed on demand, null if not activated.
+     */
+    private ArchiveUnitMetadataCache archiveUnitMetadataCache;
+
+    /**
+     * The in-memory compaction mode of the ArchiveUnits XML fragments (one of XmlFragmentCompressor
+     * NO_COMPACTION, UTF8_COMPACTION or DEFLATE_COMPACTION).
+     */
+    private int xmlFragmentsCompactionMode;
+
     // Constructors
 
     /**
      * Instantiates a new archive transfer. Used for json deserialization.
      */
     public DataObjectPackage() {
-        this.auInDataObjectPackageIdMap = new HashMap<String, ArchiveUnit>();
-        this.dogInDataObjectPackageIdMap = new HashMap<String, DataObjectGroup>();
+        this.auInDataObjectPackageIdMap = new IdIndexMap<ArchiveUnit>();
+        this.dogInDataObjectPackageIdMap = new IdIndexMap<DataObjectGroup>();
 
-        this.bdoInDataObjectPackageIdMap = new HashMap<String, BinaryDataObject>();
-        this.pdoInDataObjectPackageIdMap = new HashMap<String, PhysicalDataObject>();
+        this.bdoInDataObjectPackageIdMap = new IdIndexMap<BinaryDataObject>();
+        this.pdoInDataObjectPackageIdMap = new IdIndexMap<PhysicalDataObject>();
         this.ghostRootAu = new ArchiveUnit();
         Content c = new Content();
         try {
@@ -160,8 +207,10 @@ public class DataObjectPackage {
         this.resetIdCounter();
         this.resetRefIdCounter();
         this.resetInOutCounter();
-        this.touchedInDataObjectPackageIdMap = new HashMap<String, Integer>();
+        this.touchedInDataObjectPackageIdSet = new IdTouchedSet();
         this.vitamNormalizationStatus = NORMALIZATION_STATUS_UNKNOWN;
+        this.archiveUnitMetadataCache = null;
+        this.xmlFragmentsCompactionMode = XmlFragmentCompressor.NO_COMPACTION;
     }
 
     // Methods
@@ -276,7 +325,7 @@ public class DataObjectPackage {
      * Map is then empty and ready to use.
      */
     public void resetTouchedInDataObjectPackageIdMap() {
-        touchedInDataObjectPackageIdMap.clear();
+        touchedInDataObjectPackageIdSet.clear();
     }
 
     /**
@@ -287,7 +336,7 @@ public class DataObjectPackage {
      * @return true, if has been touched
      */
     public boolean isTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        return touchedInDataObjectPackageIdMap.containsKey(inDataObjectPackageId);
+        return touchedInDataObjectPackageIdSet.contains(inDataObjectPackageId);
     }
 
     /**
@@ -301,7 +350,7 @@ public class DataObjectPackage {
      * @param inDataObjectPackageId the id in DataObjectPackage
      */
     public void addTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        touchedInDataObjectPackageIdMap.put(inDataObjectPackageId, 1);
+        touchedInDataObjectPackageIdSet.add(inDataObjectPackageId);
     }
 
     /**
@@ -311,11 +360,7 @@ public class DataObjectPackage {
      * @param inDataObjectPackageId the id in DataObjectPackage
      */
     public void incTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        Integer value = touchedInDataObjectPackageIdMap.get(inDataObjectPackageId);
-        if (value == null)
-            touchedInDataObjectPackageIdMap.put(inDataObjectPackageId, 1);
-        else
-            touchedInDataObjectPackageIdMap.put(inDataObjectPackageId, value + 1);
+        touchedInDataObjectPackageIdSet.increment(inDataObjectPackageId);
     }
 
     /**
@@ -326,7 +371,57 @@ public class DataObjectPackage {
      * not touched
      */
     public Integer getTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        return touchedInDataObjectPackageIdMap.get(inDataObjectPackageId);
+        int count = touchedInDataObjectPackageIdSet.getCount(inDataObjectPackageId);
+        return count == 0 ? null : count;
+    }
+
+    /**
+     * Start a new traversal of the DataObjectPackage elements, and get its epoch.
+     * <p>
+     * An element is marked as visited in a traversal with the epoch, which avoids
+     * to reset marks between traversals. Epochs are unique for all the
+     * DataObjectPackages, so that elements moved from one to another keep no
+     * stale mark. Only one traversal has to be running at a time on a
+     * DataObjectPackage, but it can be split in parallel parts.
+     *
+     * @return the traversal epoch
+     */
+    public long startTraversal() {
+        return LAST_TRAVERSAL_EPOCH.incrementAndGet();
+    }
+
+    /**
+     * Gets a spliterator on all the ArchiveUnits below the start ArchiveUnit, each
+     * one being given only one time, in a new traversal.
+     *
+     * @param startAu the start ArchiveUnit, not included in traversal
+     * @return the ArchiveUnit spliterator
+     */
+    public Spliterator<ArchiveUnit> archiveUnitSpliterator(ArchiveUnit startAu) {
+        return new ArchiveUnitSpliterator(startAu, startTraversal());
+    }
+
+    /**
+     * Gets a stream on all the ArchiveUnits below the start ArchiveUnit, each one
+     * being given only one time, in a new traversal.
+     *
+     * @param startAu  the start ArchiveUnit, not included in traversal
+     * @param parallel true if the stream is parallel
+     * @return the ArchiveUnit stream
+     */
+    public Stream<ArchiveUnit> archiveUnitStream(ArchiveUnit startAu, boolean parallel) {
+        return StreamSupport.stream(archiveUnitSpliterator(startAu), parallel);
+    }
+
+    /**
+     * Visit all the ArchiveUnits below the start ArchiveUnit, each one only one
+     * time, in depth-first pre-order.
+     *
+     * @param startAu the start ArchiveUnit, not included in traversal
+     * @param visitor the visitor called on each ArchiveUnit
+     */
+    public void visitArchiveUnits(ArchiveUnit startAu, Consumer<ArchiveUnit> visitor) {
+        archiveUnitSpliterator(startAu).forEachRemaining(visitor);
     }
 
     /**
@@ -573,10 +668,10 @@ public class DataObjectPackage {
         for (ArchiveUnit au : childDataObjectPackage.ghostRootAu.getChildrenAuList().getArchiveUnitList())
             targetAU.addChildArchiveUnit(au);
 
-        childDataObjectPackage.setAuInDataObjectPackageIdMap(new HashMap<String, ArchiveUnit>());
-        childDataObjectPackage.setDogInDataObjectPackageIdMap(new HashMap<String, DataObjectGroup>());
-        childDataObjectPackage.setBdoInDataObjectPackageIdMap(new HashMap<String, BinaryDataObject>());
-        childDataObjectPackage.setPdoInDataObjectPackageIdMap(new HashMap<String, PhysicalDataObject>());
+        childDataObjectPackage.setAuInDataObjectPackageIdMap(new IdIndexMap<ArchiveUnit>());
+        childDataObjectPackage.setDogInDataObjectPackageIdMap(new IdIndexMap<DataObjectGroup>());
+        childDataObjectPackage.setBdoInDataObjectPackageIdMap(new IdIndexMap<BinaryDataObject>());
+        childDataObjectPackage.setPdoInDataObjectPackageIdMap(new IdIndexMap<PhysicalDataObject>());
         childDataObjectPackage.setGhostRootAu(new ArchiveUnit());
         Content c = new Content();
         try {
@@ -738,14 +833,16 @@ public class DataObjectPackage {
      * @throws InterruptedException the interrupted exception
      */
     public void removeUnusedDataObjects(SEDALibProgressLogger spl) throws InterruptedException {
-        HashSet<DataObject> usedDataObjects = new HashSet<DataObject>(1000);
-        for (Entry<String, ArchiveUnit> pair : getAuInDataObjectPackageIdMap().entrySet()) {
-            DataObjectRefList dorl = pair.getValue().getDataObjectRefList();
+        long epoch = startTraversal();
+        for (ArchiveUnit au : getAuInDataObjectPackageIdMap().values()) {
+            DataObjectRefList dorl = au.getDataObjectRefList();
             for (DataObject dataObject : dorl.getDataObjectList()) {
-                usedDataObjects.add(dataObject);
+                ((DataObjectPackageIdElement) dataObject).markVisited(epoch);
                 if (dataObject instanceof DataObjectGroup) {
-                    usedDataObjects.addAll(((DataObjectGroup) dataObject).getPhysicalDataObjectList());
-                    usedDataObjects.addAll(((DataObjectGroup) dataObject).getBinaryDataObjectList());
+                    for (PhysicalDataObject pdo : ((DataObjectGroup) dataObject).getPhysicalDataObjectList())
+                        pdo.markVisited(epoch);
+                    for (BinaryDataObject bdo : ((DataObjectGroup) dataObject).getBinaryDataObjectList())
+                        bdo.markVisited(epoch);
                 }
             }
         }
@@ -753,7 +850,7 @@ public class DataObjectPackage {
         Iterator<Entry<String, DataObjectGroup>> iteratorDog = getDogInDataObjectPackageIdMap().entrySet().iterator();
         while (iteratorDog.hasNext()) {
             Entry<String, DataObjectGroup> entry = iteratorDog.next();
-            if (!usedDataObjects.contains(entry.getValue())) {
+            if (!entry.getValue().isVisited(epoch)) {
                 iteratorDog.remove();
                 doProgressLog(spl, SEDALibProgressLogger.GLOBAL, "sedalib: un DataObjectGroup [" + entry.getKey() + "] déclaré n'est pas utilisé, il est déréférencé.", null);
             }
@@ -762,7 +859,7 @@ public class DataObjectPackage {
         Iterator<Entry<String, BinaryDataObject>> iteratorBdo = getBdoInDataObjectPackageIdMap().entrySet().iterator();
         while (iteratorBdo.hasNext()) {
             Entry<String, BinaryDataObject> entry = iteratorBdo.next();
-            if (!usedDataObjects.contains(entry.getValue())) {
+            if (!entry.getValue().isVisited(epoch)) {
                 iteratorBdo.remove();
                 doProgressLog(spl, SEDALibProgressLogger.GLOBAL, "sedalib: un BinaryDataObject [" + entry.getKey() + "] déclaré n'est pas utilisé, il est déréférencé.", null);
             }
@@ -771,7 +868,7 @@ public class DataObjectPackage {
         Iterator<Entry<String, PhysicalDataObject>> iteratorPdo = getPdoInDataObjectPackageIdMap().entrySet().iterator();
         while (iteratorPdo.hasNext()) {
             Entry<String, PhysicalDataObject> entry = iteratorPdo.next();
-            if (!usedDataObjects.contains(entry.getValue())) {
+            if (!entry.getValue().isVisited(epoch)) {
                 iteratorPdo.remove();
                 doProgressLog(spl, SEDALibProgressLogger.GLOBAL, "sedalib: un PhysicalDataObject [" + entry.getKey() + "] déclaré n'est pas utilisé, il est déréférencé.", null);
             }
@@ -850,10 +947,10 @@ public class DataObjectPackage {
         removeArchiveUnitAndDataObjectGroupId();
         resetIdCounter();
 
-        auInDataObjectPackageIdMap = new HashMap<String, ArchiveUnit>();
-        dogInDataObjectPackageIdMap = new HashMap<String, DataObjectGroup>();
-        bdoInDataObjectPackageIdMap = new HashMap<String, BinaryDataObject>();
-        pdoInDataObjectPackageIdMap = new HashMap<String, PhysicalDataObject>();
+        auInDataObjectPackageIdMap = new IdIndexMap<ArchiveUnit>();
+        dogInDataObjectPackageIdMap = new IdIndexMap<DataObjectGroup>();
+        bdoInDataObjectPackageIdMap = new IdIndexMap<BinaryDataObject>();
+        pdoInDataObjectPackageIdMap = new IdIndexMap<PhysicalDataObject>();
 
         resetInOutCounter();
         List<DataObjectGroup> orderedDataObjectGroupList = new ArrayList<DataObjectGroup>(
@@ -904,6 +1001,8 @@ public class DataObjectPackage {
         for (Map.Entry<String,ArchiveUnit> e:auInDataObjectPackageIdMap.entrySet()){
             e.getValue().getChildrenAuList().getArchiveUnitList().remove(archiveUnit);
         }
+        if (archiveUnitMetadataCache != null)
+            archiveUnitMetadataCache.remove(archiveUnit);
         return auInDataObjectPackageIdMap.remove(archiveUnit.inDataPackageObjectId)!=null;
     }
 
@@ -941,7 +1040,7 @@ public class DataObjectPackage {
             PhysicalDataObject pdo;
             String[] tempArray;
 
-            resetTouchedInDataObjectPackageIdMap();
+            long epoch = startTraversal();
             // first write all DataObjectGroup
             Set<String> dogSet = dogInDataObjectPackageIdMap.keySet();
             tempArray = dogSet.toArray(new String[0]);
@@ -950,9 +1049,9 @@ public class DataObjectPackage {
                 dog = dogInDataObjectPackageIdMap.get(s);
                 dog.toSedaXml(xmlWriter, sedaLibProgressLogger);
                 for (BinaryDataObject b : dog.getBinaryDataObjectList())
-                    addTouchedInDataObjectPackageId(b.inDataPackageObjectId);
+                    b.markVisited(epoch);
                 for (PhysicalDataObject p : dog.getPhysicalDataObjectList())
-                    addTouchedInDataObjectPackageId(p.inDataPackageObjectId);
+                    p.markVisited(epoch);
             }
 
             // then all alone BinaryDataObject
@@ -961,7 +1060,7 @@ public class DataObjectPackage {
             Arrays.sort(tempArray);
             for (String s : tempArray) {
                 bdo = bdoInDataObjectPackageIdMap.get(s);
-                if (!isTouchedInDataObjectPackageId(bdo.inDataPackageObjectId))
+                if (!bdo.isVisited(epoch))
                     bdo.toSedaXml(xmlWriter, sedaLibProgressLogger);
             }
 
@@ -971,7 +1070,7 @@ public class DataObjectPackage {
             Arrays.sort(tempArray);
             for (String s : tempArray) {
                 pdo = pdoInDataObjectPackageIdMap.get(s);
-                if (!isTouchedInDataObjectPackageId(pdo.inDataPackageObjectId))
+                if (!pdo.isVisited(epoch))
                     pdo.toSedaXml(xmlWriter, sedaLibProgressLogger);
             }
         } catch (XMLStreamException e) {
@@ -995,6 +1094,30 @@ public class DataObjectPackage {
      */
     public void exportDataObjectPackageMetadata(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag,
                                                 SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        exportDataObjectPackageMetadata(xmlWriter, imbricateFlag, 1, sedaLibProgressLogger);
+    }
+
+    /**
+     * Export data object package, ArchiveUnits and global metadata part, of SEDA
+     * DataObjectPackage XML, the ArchiveUnits being written by the given number
+     * of threads.
+     * <p>
+     * In flat mode, if there is more than one thread, chunks of ArchiveUnits are
+     * written concurrently in XML fragments which are then inserted in the
+     * manifest in the same order, so that the result is the same as the one of
+     * the sequential export. The imbricate mode is always sequential.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param imbricateFlag         indicates if the manifest ArchiveUnits are to be
+     *                              exported in imbricate mode (true) or in flat mode
+     *                              (false)
+     * @param threadCount           the number of threads writing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void exportDataObjectPackageMetadata(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, int threadCount,
+                                                SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
         try {
             resetTouchedInDataObjectPackageIdMap();
             xmlWriter.writeStartElement("DescriptiveMetadata");
@@ -1002,8 +1125,11 @@ public class DataObjectPackage {
                 Set<String> auSet = auInDataObjectPackageIdMap.keySet();
                 String[] tempArray = auSet.toArray(new String[0]);
                 Arrays.sort(tempArray, IDComparator);
-                for (String s : tempArray)
-                    auInDataObjectPackageIdMap.get(s).toSedaXml(xmlWriter, false, sedaLibProgressLogger);
+                if (threadCount > 1)
+                    exportArchiveUnitsConcurrently(xmlWriter, tempArray, threadCount, sedaLibProgressLogger);
+                else
+                    for (String s : tempArray)
+                        auInDataObjectPackageIdMap.get(s).toSedaXml(xmlWriter, false, sedaLibProgressLogger);
             } else {
                 List<String> roots = ghostRootAu.getChildrenAuList().getInDataObjectPackageIdList();
                 if (roots != null) {
@@ -1024,6 +1150,106 @@ public class DataObjectPackage {
                 " métadonnées ArchiveUnit exportées dans le DataObjectPackage", null);
     }
 
+    /**
+     * Write concurrently, in flat mode, the ArchiveUnits by chunks in XML
+     * fragments and insert them in the manifest in the given order.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param auIds                 the ArchiveUnits ids in manifest order
+     * @param threadCount           the number of threads writing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void exportArchiveUnitsConcurrently(SEDAXMLStreamWriter xmlWriter, String[] auIds, int threadCount,
+                                                SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        ArrayDeque<Future<byte[]>> futures = new ArrayDeque<Future<byte[]>>();
+        int writtenCount = 0;
+
+        try {
+            for (int start = 0; start < auIds.length; start += ARCHIVE_UNITS_CHUNK_SIZE) {
+                List<ArchiveUnit> chunk = new ArrayList<ArchiveUnit>(ARCHIVE_UNITS_CHUNK_SIZE);
+                // RefIDs are reserved in manifest order, as in sequential export
+                int firstRefIdNumber = refIdCounter;
+                for (int i = start; i < Math.min(start + ARCHIVE_UNITS_CHUNK_SIZE, auIds.length); i++) {
+                    ArchiveUnit au = auInDataObjectPackageIdMap.get(auIds[i]);
+                    refIdCounter += au.getChildrenAuList().getCount();
+                    chunk.add(au);
+                }
+                futures.add(executor.submit(newArchiveUnitsChunkWriter(chunk, firstRefIdNumber, xmlWriter,
+                        sedaLibProgressLogger)));
+                // bound the fragments kept in memory
+                if (futures.size() > 2 * threadCount)
+                    writtenCount = writeArchiveUnitsFragment(xmlWriter, futures.poll().get(), auIds.length,
+                            writtenCount, sedaLibProgressLogger);
+            }
+            while (!futures.isEmpty())
+                writtenCount = writeArchiveUnitsFragment(xmlWriter, futures.poll().get(), auIds.length,
+                        writtenCount, sedaLibProgressLogger);
+        } catch (ExecutionException e) {
+            throw new SEDALibException("Erreur d'écriture parallèle des ArchiveUnits", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create the task writing a chunk of ArchiveUnits in a XML fragment.
+     *
+     * @param archiveUnits          the ArchiveUnits in manifest order
+     * @param firstRefIdNumber      the number of the first children reference RefID
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the task giving the XML fragment in UTF-8 bytes
+     */
+    private static Callable<byte[]> newArchiveUnitsChunkWriter(List<ArchiveUnit> archiveUnits, int firstRefIdNumber,
+                                                               SEDAXMLStreamWriter xmlWriter,
+                                                               SEDALibProgressLogger sedaLibProgressLogger) {
+        return () -> {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            int refIdNumber = firstRefIdNumber;
+            try (SEDAXMLStreamWriter fragmentWriter = xmlWriter.createFragmentWriter(baos)) {
+                for (ArchiveUnit au : archiveUnits) {
+                    au.toFlatSedaXml(fragmentWriter, refIdNumber, sedaLibProgressLogger);
+                    refIdNumber += au.getChildrenAuList().getCount();
+                }
+                fragmentWriter.flush();
+            }
+            return baos.toByteArray();
+        };
+    }
+
+    /**
+     * Write a concurrently generated ArchiveUnits XML fragment in the manifest.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param fragment              the ArchiveUnits XML fragment
+     * @param totalCount            the total number of ArchiveUnits to write
+     * @param writtenCount          the number of ArchiveUnits already written
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the number of ArchiveUnits written
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private int writeArchiveUnitsFragment(SEDAXMLStreamWriter xmlWriter, byte[] fragment, int totalCount,
+                                          int writtenCount, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        try {
+            xmlWriter.writeRawXMLFragment(fragment);
+        } catch (XMLStreamException e) {
+            throw new SEDALibException("Erreur d'écriture XML d'un fragment d'ArchiveUnits", e);
+        }
+        int chunkCount = Math.min(ARCHIVE_UNITS_CHUNK_SIZE, totalCount - writtenCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int counter = getNextInOutCounter();
+            doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                    "sedalib: " + counter + " métadonnées ArchiveUnit exportées");
+        }
+        return writtenCount + chunkCount;
+    }
+
     /**
      * Export the whole structure in XML SEDA Manifest.
      *
@@ -1037,11 +1263,29 @@ public class DataObjectPackage {
      */
     public void toSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, SEDALibProgressLogger sedaLibProgressLogger)
             throws SEDALibException, InterruptedException {
+        toSedaXml(xmlWriter, imbricateFlag, 1, sedaLibProgressLogger);
+    }
+
+    /**
+     * Export the whole structure in XML SEDA Manifest, the ArchiveUnits being
+     * written by the given number of threads in flat mode.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param imbricateFlag         indicates if the manifest ArchiveUnits are to be
+     *                              exported in imbricate mode (true) or in flat mode
+     *                              (false)
+     * @param threadCount           the number of threads writing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void toSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, int threadCount,
+                          SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
         resetRefIdCounter();
         resetInOutCounter();
         exportDataObjectPackageObjects(xmlWriter, sedaLibProgressLogger);
         resetInOutCounter();
-        exportDataObjectPackageMetadata(xmlWriter, imbricateFlag, sedaLibProgressLogger);
+        exportDataObjectPackageMetadata(xmlWriter, imbricateFlag, threadCount, sedaLibProgressLogger);
     }
 
     // SEDA XML importer
@@ -1112,12 +1356,37 @@ public class DataObjectPackage {
     public static void importDataObjectPackageMetadata(SEDAXMLEventReader xmlReader,
                                                        DataObjectPackage dataObjectPackage, SEDALibProgressLogger sedaLibProgressLogger)
             throws SEDALibException, InterruptedException {
+        importDataObjectPackageMetadata(xmlReader, dataObjectPackage, 1, sedaLibProgressLogger);
+    }
+
+    /**
+     * Import data object package, ArchiveUnits and global metadata part, of SEDA
+     * DataObjectPackage XML.
+     * <p>
+     * With more than one thread, the manifest is cut in raw ArchiveUnits fragments
+     * by the calling thread and the fragments are parsed concurrently, the
+     * ArchiveUnits being then added to the DataObjectPackage in manifest order.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param dataObjectPackage     the DataObjectPackage to be completed
+     * @param threadCount           the number of threads parsing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be read or SEDA scheme is not
+     *                              respected
+     * @throws InterruptedException if export process is interrupted
+     */
+    public static void importDataObjectPackageMetadata(SEDAXMLEventReader xmlReader,
+                                                       DataObjectPackage dataObjectPackage, int threadCount,
+                                                       SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
         String tmp;
-        boolean inArchiveUnits = true;
+        boolean inArchiveUnits = (threadCount <= 1);
 
         try {
             if (!xmlReader.nextBlockIfNamed("DescriptiveMetadata"))
                 throw new SEDALibException("Pas d'élément DescriptiveMetadata");
+            if (threadCount > 1)
+                importArchiveUnitsConcurrently(xmlReader, dataObjectPackage, threadCount, sedaLibProgressLogger);
             while (inArchiveUnits) {
                 tmp = xmlReader.peekName();
                 if (tmp == null)
@@ -1141,6 +1410,94 @@ public class DataObjectPackage {
                 "sedalib: " + dataObjectPackage.getNextInOutCounter() + " métadonnées ArchiveUnit importées depuis le DataObjectPackage", null);
     }
 
+    /**
+     * Parse concurrently the ArchiveUnits, cut in raw fragments chunks by the
+     * calling thread, and add them to the DataObjectPackage in manifest order.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param dataObjectPackage     the DataObjectPackage to be completed
+     * @param threadCount           the number of threads parsing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be read or SEDA scheme is not
+     *                              respected
+     * @throws InterruptedException if export process is interrupted
+     */
+    private static void importArchiveUnitsConcurrently(SEDAXMLEventReader xmlReader,
+                                                       DataObjectPackage dataObjectPackage, int threadCount,
+                                                       SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        ArrayDeque<Future<List<ArchiveUnit>>> futures = new ArrayDeque<Future<List<ArchiveUnit>>>();
+        StringBuilder chunk = new StringBuilder();
+        int chunkCount = 0;
+
+        try {
+            while ("ArchiveUnit".equals(xmlReader.peekName())) {
+                chunk.append(xmlReader.nextBlockAsStringIfNamed("ArchiveUnit"));
+                if (++chunkCount == ARCHIVE_UNITS_CHUNK_SIZE) {
+                    futures.add(executor.submit(newArchiveUnitsChunkReader(chunk.toString(), dataObjectPackage)));
+                    chunk.setLength(0);
+                    chunkCount = 0;
+                    // bound the fragments kept in memory
+                    if (futures.size() > 2 * threadCount)
+                        addReadArchiveUnits(futures.poll().get(), dataObjectPackage, sedaLibProgressLogger);
+                }
+            }
+            if (chunkCount > 0)
+                futures.add(executor.submit(newArchiveUnitsChunkReader(chunk.toString(), dataObjectPackage)));
+            while (!futures.isEmpty())
+                addReadArchiveUnits(futures.poll().get(), dataObjectPackage, sedaLibProgressLogger);
+        } catch (XMLStreamException e) {
+            throw new SEDALibException("Erreur de découpage des ArchiveUnits", e);
+        } catch (ExecutionException e) {
+            throw new SEDALibException("Erreur de lecture parallèle des ArchiveUnits", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create the task parsing a chunk of ArchiveUnits raw fragments.
+     *
+     * @param fragments         the ArchiveUnits fragments
+     * @param dataObjectPackage the DataObjectPackage used to verify DataObject references
+     * @return the task giving the read ArchiveUnits in manifest order
+     */
+    private static Callable<List<ArchiveUnit>> newArchiveUnitsChunkReader(String fragments,
+                                                                          DataObjectPackage dataObjectPackage) {
+        return () -> {
+            List<ArchiveUnit> result = new ArrayList<ArchiveUnit>(ARCHIVE_UNITS_CHUNK_SIZE);
+            try (ByteArrayInputStream bais = new ByteArrayInputStream(fragments.getBytes(StandardCharsets.UTF_8));
+                 SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
+                // jump StartDocument
+                xmlReader.nextUsefullEvent();
+                while ("ArchiveUnit".equals(xmlReader.peekName()))
+                    ArchiveUnit.idFromSedaXml(xmlReader, dataObjectPackage, result, null);
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Add the concurrently read ArchiveUnits to the DataObjectPackage.
+     *
+     * @param archiveUnits          the read ArchiveUnits
+     * @param dataObjectPackage     the DataObjectPackage to be completed
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if an ArchiveUnit id is already used
+     * @throws InterruptedException if export process is interrupted
+     */
+    private static void addReadArchiveUnits(List<ArchiveUnit> archiveUnits, DataObjectPackage dataObjectPackage,
+                                            SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        for (ArchiveUnit au : archiveUnits) {
+            dataObjectPackage.addArchiveUnit(au);
+            int counter = dataObjectPackage.getNextInOutCounter();
+            doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                    "sedalib: " + counter + " métadonnées ArchiveUnit importées");
+        }
+    }
+
     /**
      * Import the whole structure in XML SEDA Manifest.
      *
@@ -1155,11 +1512,30 @@ public class DataObjectPackage {
      */
     public static DataObjectPackage fromSedaXml(SEDAXMLEventReader xmlReader, String rootDir,
                                                 SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        return fromSedaXml(xmlReader, rootDir, 1, sedaLibProgressLogger);
+    }
+
+    /**
+     * Import the whole structure in XML SEDA Manifest, the ArchiveUnits being
+     * parsed by the given number of threads.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param rootDir               the directory where the BinaryDataObject files are
+     *                              exported
+     * @param threadCount           the number of threads parsing the ArchiveUnits
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the read DataObjectPackage
+     * @throws SEDALibException     if the XML can't be read or SEDA scheme is not
+     *                              respected
+     * @throws InterruptedException if export process is interrupted
+     */
+    public static DataObjectPackage fromSedaXml(SEDAXMLEventReader xmlReader, String rootDir, int threadCount,
+                                                SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
         DataObjectPackage dataObjectPackage = new DataObjectPackage();
         dataObjectPackage.resetInOutCounter();
         importDataObjectPackageObjects(xmlReader, dataObjectPackage, rootDir, sedaLibProgressLogger);
         dataObjectPackage.resetInOutCounter();
-        importDataObjectPackageMetadata(xmlReader, dataObjectPackage, sedaLibProgressLogger);
+        importDataObjectPackageMetadata(xmlReader, dataObjectPackage, threadCount, sedaLibProgressLogger);
 
         // verify ArchiveUnit references && find roots
         dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
@@ -1191,7 +1567,7 @@ public class DataObjectPackage {
      *
      * @return the BinaryDataObject in inDataPackageObjectId map
      */
-    public HashMap<String, BinaryDataObject> getBdoInDataObjectPackageIdMap() {
+    public Map<String, BinaryDataObject> getBdoInDataObjectPackageIdMap() {
         return bdoInDataObjectPackageIdMap;
     }
 
@@ -1201,8 +1577,8 @@ public class DataObjectPackage {
      * @param bdoInDataObjectPackageIdMap the BinaryDataObject in
      *                                    inDataPackageObjectId map
      */
-    public void setBdoInDataObjectPackageIdMap(HashMap<String, BinaryDataObject> bdoInDataObjectPackageIdMap) {
-        this.bdoInDataObjectPackageIdMap = bdoInDataObjectPackageIdMap;
+    public void setBdoInDataObjectPackageIdMap(Map<String, BinaryDataObject> bdoInDataObjectPackageIdMap) {
+        this.bdoInDataObjectPackageIdMap = new IdIndexMap<BinaryDataObject>(bdoInDataObjectPackageIdMap);
     }
 
     /**
@@ -1210,7 +1586,7 @@ public class DataObjectPackage {
      *
      * @return the PhysicalDataObject in inDataPackageObjectId map
      */
-    public HashMap<String, PhysicalDataObject> getPdoInDataObjectPackageIdMap() {
+    public Map<String, PhysicalDataObject> getPdoInDataObjectPackageIdMap() {
         return pdoInDataObjectPackageIdMap;
     }
 
@@ -1220,8 +1596,8 @@ public class DataObjectPackage {
      * @param pdoInDataObjectPackageIdMap the PhysicalDataObject in
      *                                    inDataPackageObjectId map
      */
-    public void setPdoInDataObjectPackageIdMap(HashMap<String, PhysicalDataObject> pdoInDataObjectPackageIdMap) {
-        this.pdoInDataObjectPackageIdMap = pdoInDataObjectPackageIdMap;
+    public void setPdoInDataObjectPackageIdMap(Map<String, PhysicalDataObject> pdoInDataObjectPackageIdMap) {
+        this.pdoInDataObjectPackageIdMap = new IdIndexMap<PhysicalDataObject>(pdoInDataObjectPackageIdMap);
     }
 
     /**
@@ -1229,7 +1605,7 @@ public class DataObjectPackage {
      *
      * @return the DataObjectGroup in inDataPackageObjectId map
      */
-    public HashMap<String, DataObjectGroup> getDogInDataObjectPackageIdMap() {
+    public Map<String, DataObjectGroup> getDogInDataObjectPackageIdMap() {
         return dogInDataObjectPackageIdMap;
     }
 
@@ -1239,8 +1615,8 @@ public class DataObjectPackage {
      * @param dogInDataObjectPackageIdMap the DataObjectGroup in
      *                                    inDataPackageObjectId map
      */
-    public void setDogInDataObjectPackageIdMap(HashMap<String, DataObjectGroup> dogInDataObjectPackageIdMap) {
-        this.dogInDataObjectPackageIdMap = dogInDataObjectPackageIdMap;
+    public void setDogInDataObjectPackageIdMap(Map<String, DataObjectGroup> dogInDataObjectPackageIdMap) {
+        this.dogInDataObjectPackageIdMap = new IdIndexMap<DataObjectGroup>(dogInDataObjectPackageIdMap);
     }
 
     /**
@@ -1248,7 +1624,7 @@ public class DataObjectPackage {
      *
      * @return the ArchiveUnit in inDataPackageObjectId map
      */
-    public HashMap<String, ArchiveUnit> getAuInDataObjectPackageIdMap() {
+    public Map<String, ArchiveUnit> getAuInDataObjectPackageIdMap() {
         return auInDataObjectPackageIdMap;
     }
 
@@ -1258,8 +1634,8 @@ public class DataObjectPackage {
      * @param auInDataObjectPackageIdMap the ArchiveUnit in inDataPackageObjectId
      *                                   map
      */
-    public void setAuInDataObjectPackageIdMap(HashMap<String, ArchiveUnit> auInDataObjectPackageIdMap) {
-        this.auInDataObjectPackageIdMap = auInDataObjectPackageIdMap;
+    public void setAuInDataObjectPackageIdMap(Map<String, ArchiveUnit> auInDataObjectPackageIdMap) {
+        this.auInDataObjectPackageIdMap = new IdIndexMap<ArchiveUnit>(auInDataObjectPackageIdMap);
     }
 
     /**
@@ -1383,4 +1759,102 @@ public class DataObjectPackage {
     public void setExportMetadataList(List<String> exportMetadataList) {
         this.exportMetadataList = exportMetadataList;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the lazy zip extractor.
+     *
+     * @return the lazy zip extractor, or null if BinaryDataObject files are on disk
+     */
+    public LazyZipExtractor getLazyZipExtractor() {
+        return lazyZipExtractor;
+    }
+
+    /**
+     * Sets the lazy zip extractor, used to extract on demand the BinaryDataObject
+     * files when their on disk path is needed.
+     * <p>
+     * The DataObjectPackage owns the extractor, which has to be closed with
+     * {@link #closeLazyZipExtractor} when the DataObjectPackage is no longer used.
+     * A previous different extractor is closed.
+     *
+     * @param lazyZipExtractor the lazy zip extractor, or null
+     * @throws SEDALibException if the previous extractor can't be closed
+     */
+    public void setLazyZipExtractor(LazyZipExtractor lazyZipExtractor) throws SEDALibException {
+        if ((this.lazyZipExtractor != null) && (this.lazyZipExtractor != lazyZipExtractor))
+            closeLazyZipExtractor();
+        this.lazyZipExtractor = lazyZipExtractor;
+    }
+
+    /**
+     * Close the lazy zip extractor, if any. The BinaryDataObject files not yet
+     * extracted from the SIP are then no longer available.
+     *
+     * @throws SEDALibException if the extractor can't be closed
+     */
+    public void closeLazyZipExtractor() throws SEDALibException {
+        if (lazyZipExtractor == null)
+            return;
+        try {
+            lazyZipExtractor.close();
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de fermer le SIP [" + lazyZipExtractor.getZipFilePath()
+                    + "] utilisé pour l'extraction à la demande", e);
+        } finally {
+            lazyZipExtractor = null;
+        }
+    }
+
+    /**
+     * Gets the bounded cache of the ArchiveUnits Content and Management parsed on demand.
+     *
+     * @return the ArchiveUnit metadata cache, or null if none
+     */
+    public ArchiveUnitMetadataCache getArchiveUnitMetadataCache() {
+        return archiveUnitMetadataCache;
+    }
+
+    /**
+     * Sets the bounded cache of the ArchiveUnits Content and Management parsed on demand.
+     * If null, which is the default, parsed metadata are kept for ever.
+     * <p>
+     * With a cache, a parsed Content or Management reference must not be kept and modified later, see
+     * {@link ArchiveUnitMetadataCache}.
+     *
+     * @param archiveUnitMetadataCache the ArchiveUnit metadata cache
+     */
+    public void setArchiveUnitMetadataCache(ArchiveUnitMetadataCache archiveUnitMetadataCache) {
+        this.archiveUnitMetadataCache = archiveUnitMetadataCache;
+    }
+
+    /**
+     * Gets the in-memory compaction mode of the ArchiveUnits XML fragments.
+     *
+     * @return the XML fragments compaction mode
+     */
+    public int getXmlFragmentsCompactionMode() {
+        return xmlFragmentsCompactionMode;
+    }
+
+    /**
+     * Sets the in-memory compaction mode of the ArchiveUnits XML fragments, and
+     * converts the fragments already stored in the ArchiveUnits.
+     * <p>
+     * The compaction is transparent for ArchiveUnit XmlData getters and setters,
+     * it only trades a bit of CPU for a much smaller heap footprint on big
+     * DataObjectPackages.
+     *
+     * @param xmlFragmentsCompactionMode the XML fragments compaction mode, one of XmlFragmentCompressor
+     *                                   NO_COMPACTION, UTF8_COMPACTION or DEFLATE_COMPACTION
+     */
+    public void setXmlFragmentsCompactionMode(int xmlFragmentsCompactionMode) {
+        if ((xmlFragmentsCompactionMode < XmlFragmentCompressor.NO_COMPACTION)
+                || (xmlFragmentsCompactionMode > XmlFragmentCompressor.DEFLATE_COMPACTION))
+            throw new IllegalArgumentException("Mode de compaction des fragments XML inconnu [" + xmlFragmentsCompactionMode + "]");
+        if (this.xmlFragmentsCompactionMode == xmlFragmentsCompactionMode)
+            return;
+        this.xmlFragmentsCompactionMode = xmlFragmentsCompactionMode;
+        for (ArchiveUnit au : auInDataObjectPackageIdMap.values())
+            au.recompactXmlData();
+    }
+}
@@ -33,6 +33,7 @@ import com.fasterxml.jackson.annotation.JsonSetter;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * The Class DataObjectPackageIdElement.
@@ -54,6 +55,19 @@ public class DataObjectPackageIdElement extends DataObjectPackageElement {
      */
     protected Path onDiskPath;
 
+    /**
+     * The last traversal epoch in which this element has been visited, see
+     * {@link DataObjectPackage#startTraversal()}.
+     */
+    @JsonIgnore
+    private volatile long traversalEpoch;
+
+    /**
+     * The atomic updater of the traversal epoch, used by parallel traversals.
+     */
+    private static final AtomicLongFieldUpdater<DataObjectPackageIdElement> TRAVERSAL_EPOCH_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(DataObjectPackageIdElement.class, "traversalEpoch");
+
     /**
      * Instantiates a new DataObjectPackage id element.
      */
@@ -138,5 +152,29 @@ public class DataObjectPackageIdElement extends DataObjectPackageElement {
             this.onDiskPath = Paths.get(onDiskPathString).toAbsolutePath().normalize();
     }
 
+    /**
+     * Mark this element as visited in the given traversal epoch.
+     *
+     * @param epoch the traversal epoch
+     * @return true, if it was not already visited in this epoch
+     */
+    boolean markVisited(long epoch) {
+        long current;
+        do {
+            current = traversalEpoch;
+            if (current == epoch)
+                return false;
+        } while (!TRAVERSAL_EPOCH_UPDATER.compareAndSet(this, current, epoch));
+        return true;
+    }
 
+    /**
+     * Checks if this element has been visited in the given traversal epoch.
+     *
+     * @param epoch the traversal epoch
+     * @return true, if visited
+     */
+    boolean isVisited(long epoch) {
+        return traversalEpoch == epoch;
+    }
 }
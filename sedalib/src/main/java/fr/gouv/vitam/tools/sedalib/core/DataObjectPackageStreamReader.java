@@ -0,0 +1,411 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import fr.gouv.vitam.tools.sedalib.utils.IdTouchedSet;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
+
+/**
+ * The Class DataObjectPackageStreamReader.
+ * <p>
+ * Streaming reader of the DataObjectPackage part of a SEDA manifest, giving one by one the DataObjectGroups,
+ * BinaryDataObjects, PhysicalDataObjects and then the ArchiveUnits, as they are read. It's used to compute
+ * statistics, verify or convert manifests whose whole DataObjectPackage would not fit in memory.
+ * <p>
+ * The elements are read with the same functions as in {@link DataObjectPackage#fromSedaXml}, in an inner
+ * DataObjectPackage which only keeps what is needed to verify the references. When the next element is asked
+ * for, the previous one is released: an ArchiveUnit is forgotten, and a DataObject is replaced by a light
+ * placeholder. So the given elements have to be used by ids for their references to other elements, and a
+ * given DataObjectGroup contains its DataObjects only if they are declared in it (SEDA 2.1 form).
+ * <p>
+ * Imbricated ArchiveUnits are given in depth-first pre-order once their whole root ArchiveUnit has been read.
+ * As the whole ArchiveUnits graph is never known, the root ArchiveUnits are not computed and the uniqueness of
+ * ArchiveUnits ids is not verified.
+ */
+public class DataObjectPackageStreamReader implements AutoCloseable {
+
+    /**
+     * The reading step before the DataObjectPackage element.
+     */
+    private static final int BEFORE_DATA_OBJECT_PACKAGE = 0;
+
+    /**
+     * The reading step in the DataObjects elements.
+     */
+    private static final int IN_DATA_OBJECTS = 1;
+
+    /**
+     * The reading step in the ArchiveUnits elements.
+     */
+    private static final int IN_ARCHIVE_UNITS = 2;
+
+    /**
+     * The reading step after the DataObjectPackage element.
+     */
+    private static final int AFTER_DATA_OBJECT_PACKAGE = 3;
+
+    /**
+     * The xml reader.
+     */
+    private final SEDAXMLEventReader xmlReader;
+
+    /**
+     * The xml reader ownership flag, true if it has to be closed with this reader.
+     */
+    private final boolean ownXmlReader;
+
+    /**
+     * The directory where the BinaryDataObject files are.
+     */
+    private final String rootDir;
+
+    /**
+     * The progress logger.
+     */
+    private final SEDALibProgressLogger sedaLibProgressLogger;
+
+    /**
+     * The inner DataObjectPackage used for reading.
+     */
+    private final DataObjectPackage dataObjectPackage;
+
+    /**
+     * The ids of the elements already given or pending.
+     */
+    private final IdTouchedSet queuedIdSet;
+
+    /**
+     * The elements read and not yet given.
+     */
+    private final ArrayDeque<DataObjectPackageIdElement> pendingElements;
+
+    /**
+     * The last given element, to be released.
+     */
+    private DataObjectPackageIdElement lastGivenElement;
+
+    /**
+     * The BinaryDataObject placeholder.
+     */
+    private final BinaryDataObject binaryDataObjectPlaceholder;
+
+    /**
+     * The PhysicalDataObject placeholder.
+     */
+    private final PhysicalDataObject physicalDataObjectPlaceholder;
+
+    /**
+     * The reading step.
+     */
+    private int step;
+
+    /**
+     * The management metadata xml data, read at the end of the DataObjectPackage.
+     */
+    private String managementMetadataXmlData;
+
+    /**
+     * Instantiates a new DataObjectPackage stream reader on a SEDA manifest reader,
+     * positioned anywhere before the DataObjectPackage element.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param rootDir               the directory where the BinaryDataObject files are
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     */
+    public DataObjectPackageStreamReader(SEDAXMLEventReader xmlReader, String rootDir,
+                                         SEDALibProgressLogger sedaLibProgressLogger) {
+        this(xmlReader, false, rootDir, sedaLibProgressLogger);
+    }
+
+    /**
+     * Instantiates a new DataObjectPackage stream reader on a SEDA manifest.
+     *
+     * @param manifestInputStream   the SEDA manifest input stream
+     * @param rootDir               the directory where the BinaryDataObject files are
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException if impossible to open the stream
+     */
+    public DataObjectPackageStreamReader(InputStream manifestInputStream, String rootDir,
+                                         SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException {
+        this(new SEDAXMLEventReader(manifestInputStream), true, rootDir, sedaLibProgressLogger);
+    }
+
+    /**
+     * Instantiates a new DataObjectPackage stream reader.
+     *
+     * @param xmlReader             the SEDAXMLEventReader reading the SEDA manifest
+     * @param ownXmlReader          true if the xml reader has to be closed with this reader
+     * @param rootDir               the directory where the BinaryDataObject files are
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     */
+    private DataObjectPackageStreamReader(SEDAXMLEventReader xmlReader, boolean ownXmlReader, String rootDir,
+                                          SEDALibProgressLogger sedaLibProgressLogger) {
+        this.xmlReader = xmlReader;
+        this.ownXmlReader = ownXmlReader;
+        this.rootDir = rootDir;
+        this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.dataObjectPackage = new DataObjectPackage();
+        this.dataObjectPackage.setArchiveUnitMetadataCache(null);
+        this.dataObjectPackage.resetInOutCounter();
+        this.queuedIdSet = new IdTouchedSet();
+        this.pendingElements = new ArrayDeque<DataObjectPackageIdElement>();
+        this.lastGivenElement = null;
+        this.binaryDataObjectPlaceholder = new BinaryDataObject();
+        this.physicalDataObjectPlaceholder = new PhysicalDataObject();
+        this.step = BEFORE_DATA_OBJECT_PACKAGE;
+        this.managementMetadataXmlData = null;
+    }
+
+    /**
+     * Gets the next element of the DataObjectPackage, a DataObjectGroup, a
+     * BinaryDataObject, a PhysicalDataObject or an ArchiveUnit.
+     *
+     * @return the next element, or null if the whole DataObjectPackage has been read
+     * @throws SEDALibException     if the XML can't be read or SEDA scheme is not
+     *                              respected
+     * @throws InterruptedException if import process is interrupted
+     */
+    public DataObjectPackageIdElement next() throws SEDALibException, InterruptedException {
+        releaseLastGivenElement();
+        while (pendingElements.isEmpty() && (step != AFTER_DATA_OBJECT_PACKAGE))
+            readNextElements();
+        lastGivenElement = pendingElements.poll();
+        return lastGivenElement;
+    }
+
+    /**
+     * Give all the remaining elements of the DataObjectPackage to the consumer.
+     *
+     * @param consumer the consumer
+     * @throws SEDALibException     if the XML can't be read or SEDA scheme is not
+     *                              respected
+     * @throws InterruptedException if import process is interrupted
+     */
+    public void forEachRemaining(Consumer<DataObjectPackageIdElement> consumer)
+            throws SEDALibException, InterruptedException {
+        DataObjectPackageIdElement element;
+
+        while ((element = next()) != null)
+            consumer.accept(element);
+    }
+
+    /**
+     * Read the next elements in the manifest, until at least one can be given or
+     * the end of the DataObjectPackage.
+     *
+     * @throws SEDALibException     if the XML can't be read or SEDA scheme is not
+     *                              respected
+     * @throws InterruptedException if import process is interrupted
+     */
+    private void readNextElements() throws SEDALibException, InterruptedException {
+        String tmp;
+
+        try {
+            switch (step) {
+                case BEFORE_DATA_OBJECT_PACKAGE:
+                    while (!xmlReader.peekBlockIfNamed("DataObjectPackage")) {
+                        if (xmlReader.peekUsefullEvent().isEndDocument())
+                            throw new SEDALibException("Pas d'élément DataObjectPackage");
+                        xmlReader.nextUsefullEvent();
+                    }
+                    xmlReader.nextUsefullEvent();
+                    step = IN_DATA_OBJECTS;
+                    break;
+                case IN_DATA_OBJECTS:
+                    tmp = xmlReader.peekName();
+                    if ("DataObjectGroup".equals(tmp)) {
+                        String dogId = DataObjectGroup.idFromSedaXml(xmlReader, dataObjectPackage, rootDir,
+                                sedaLibProgressLogger);
+                        DataObjectGroup dog = dataObjectPackage.getDataObjectGroupById(dogId);
+                        addPendingElement(dog);
+                        for (BinaryDataObject bdo : dog.getBinaryDataObjectList())
+                            addPendingElement(bdo);
+                        for (PhysicalDataObject pdo : dog.getPhysicalDataObjectList())
+                            addPendingElement(pdo);
+                    } else if ("BinaryDataObject".equals(tmp)) {
+                        BinaryDataObject bdo = BinaryDataObject.fromSedaXml(xmlReader, dataObjectPackage, rootDir,
+                                sedaLibProgressLogger);
+                        //noinspection ConstantConditions
+                        bdo.setOnDiskPathFromString(rootDir + File.separator + bdo.uri.getValue());
+                        addNewDataObjectGroup(bdo.getDataObjectGroup());
+                        addPendingElement(bdo);
+                    } else if ("PhysicalDataObject".equals(tmp)) {
+                        PhysicalDataObject pdo = PhysicalDataObject.fromSedaXml(xmlReader, dataObjectPackage,
+                                sedaLibProgressLogger);
+                        addNewDataObjectGroup(pdo.getDataObjectGroup());
+                        addPendingElement(pdo);
+                    } else {
+                        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " +
+                                dataObjectPackage.getNextInOutCounter() + " métadonnées DataObject lues en flux", null);
+                        dataObjectPackage.resetInOutCounter();
+                        if (!xmlReader.nextBlockIfNamed("DescriptiveMetadata"))
+                            throw new SEDALibException("Pas d'élément DescriptiveMetadata");
+                        step = IN_ARCHIVE_UNITS;
+                    }
+                    break;
+                case IN_ARCHIVE_UNITS:
+                    tmp = xmlReader.peekName();
+                    if ("ArchiveUnit".equals(tmp)) {
+                        String auId = ArchiveUnit.idFromSedaXml(xmlReader, dataObjectPackage, sedaLibProgressLogger);
+                        addNewArchiveUnits(auId);
+                    } else {
+                        xmlReader.endBlockNamed("DescriptiveMetadata");
+                        managementMetadataXmlData = xmlReader.nextMandatoryBlockAsString("ManagementMetadata");
+                        xmlReader.endBlockNamed("DataObjectPackage");
+                        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " +
+                                dataObjectPackage.getNextInOutCounter() + " métadonnées ArchiveUnit lues en flux", null);
+                        step = AFTER_DATA_OBJECT_PACKAGE;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (XMLStreamException | SEDALibException e) {
+            throw new SEDALibException("Erreur de lecture en flux du DataObjectPackage", e);
+        }
+    }
+
+    /**
+     * Add an element to the pending elements.
+     *
+     * @param element the element
+     */
+    private void addPendingElement(DataObjectPackageIdElement element) {
+        pendingElements.add(element);
+        queuedIdSet.add(element.inDataPackageObjectId);
+    }
+
+    /**
+     * Add to pending elements the DataObjectGroup of a DataObject if it has just
+     * been created.
+     *
+     * @param dog the DataObjectGroup, or null
+     */
+    private void addNewDataObjectGroup(DataObjectGroup dog) {
+        if ((dog != null) && !queuedIdSet.contains(dog.inDataPackageObjectId))
+            addPendingElement(dog);
+    }
+
+    /**
+     * Add to pending elements the ArchiveUnits just read below a root ArchiveUnit,
+     * in depth-first pre-order.
+     *
+     * @param rootAuId the root ArchiveUnit id
+     */
+    private void addNewArchiveUnits(String rootAuId) {
+        ArrayDeque<String> stack = new ArrayDeque<String>();
+
+        stack.push(rootAuId);
+        while (!stack.isEmpty()) {
+            ArchiveUnit au = dataObjectPackage.getArchiveUnitById(stack.pop());
+            if ((au == null) || queuedIdSet.contains(au.inDataPackageObjectId))
+                continue;
+            addPendingElement(au);
+            List<String> childrenIds = au.getChildrenAuList().peekInDataObjectPackageIdList();
+            for (int i = childrenIds.size() - 1; i >= 0; i--)
+                stack.push(childrenIds.get(i));
+        }
+    }
+
+    /**
+     * Release the last given element, keeping only in the inner
+     * DataObjectPackage what is needed to verify the next references.
+     */
+    private void releaseLastGivenElement() {
+        if (lastGivenElement == null)
+            return;
+        String id = lastGivenElement.inDataPackageObjectId;
+        if (lastGivenElement instanceof ArchiveUnit)
+            dataObjectPackage.getAuInDataObjectPackageIdMap().remove(id);
+        else if (lastGivenElement instanceof DataObjectGroup) {
+            DataObjectGroup placeholder = new DataObjectGroup();
+            placeholder.inDataPackageObjectId = id;
+            placeholder.setDataObjectPackage(dataObjectPackage);
+            dataObjectPackage.getDogInDataObjectPackageIdMap().put(id, placeholder);
+        } else if (lastGivenElement instanceof BinaryDataObject) {
+            BinaryDataObject bdo = (BinaryDataObject) lastGivenElement;
+            dataObjectPackage.getBdoInDataObjectPackageIdMap().put(id, binaryDataObjectPlaceholder);
+            if (isDataObjectGroupPlaceholder(bdo.getDataObjectGroup()))
+                bdo.getDataObjectGroup().getBinaryDataObjectList().remove(bdo);
+        } else if (lastGivenElement instanceof PhysicalDataObject) {
+            PhysicalDataObject pdo = (PhysicalDataObject) lastGivenElement;
+            dataObjectPackage.getPdoInDataObjectPackageIdMap().put(id, physicalDataObjectPlaceholder);
+            if (isDataObjectGroupPlaceholder(pdo.getDataObjectGroup()))
+                pdo.getDataObjectGroup().getPhysicalDataObjectList().remove(pdo);
+        }
+        lastGivenElement = null;
+    }
+
+    /**
+     * Checks if a DataObjectGroup is a placeholder of an already given one. As a
+     * DataObjectGroup is always given before its DataObjects, the one in the inner
+     * DataObjectPackage is then a placeholder.
+     *
+     * @param dog the DataObjectGroup, or null
+     * @return true, if it's a placeholder
+     */
+    private boolean isDataObjectGroupPlaceholder(DataObjectGroup dog) {
+        return (dog != null) && (dataObjectPackage.getDataObjectGroupById(dog.inDataPackageObjectId) == dog);
+    }
+
+    /**
+     * Gets the management metadata xml data, available once the whole
+     * DataObjectPackage has been read.
+     *
+     * @return the management metadata xml data, or null if not yet read
+     */
+    public String getManagementMetadataXmlData() {
+        return managementMetadataXmlData;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.AutoCloseable#close()
+     */
+    public void close() throws SEDALibException {
+        if (ownXmlReader) {
+            try {
+                xmlReader.close();
+            } catch (XMLStreamException e) {
+                throw new SEDALibException("Impossible de fermer le flux de lecture XML", e);
+            }
+        }
+    }
+}
@@ -32,10 +32,12 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.*;
+import fr.gouv.vitam.tools.sedalib.utils.LazyZipExtractor;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibJsonProcessingException;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * The Class DataObjectPackageDeserializer.
@@ -72,6 +74,8 @@ public class DataObjectPackageDeserializer extends StdDeserializer<DataObjectPac
     public DataObjectPackage deserialize(JsonParser parser, DeserializationContext deserializer)
             throws IOException {
         DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        String lazyZipFile = null;
+        String lazyExtractDirectory = null;
 
         parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
         try {
@@ -103,6 +107,22 @@ public class DataObjectPackageDeserializer extends StdDeserializer<DataObjectPac
                         int status = parser.readValueAs(Integer.class);
                         dataObjectPackage.setVitamNormalizationStatus(status);
                         break;
+                    case "lazyZipFile":
+                        lazyZipFile = parser.getText();
+                        break;
+                    case "lazyExtractDirectory":
+                        lazyExtractDirectory = parser.getText();
+                        break;
+                }
+            }
+            // reopen the SIP from which files not yet extracted are extracted on demand
+            if ((lazyZipFile != null) && (lazyExtractDirectory != null)) {
+                try {
+                    dataObjectPackage.setLazyZipExtractor(new LazyZipExtractor(Paths.get(lazyZipFile),
+                            Paths.get(lazyExtractDirectory)));
+                } catch (IOException e) {
+                    throw new SEDALibJsonProcessingException("Impossible de rouvrir le SIP [" + lazyZipFile
+                            + "] utilisé pour l'extraction à la demande\n->" + e.getMessage());
                 }
             }
         } catch (SEDALibException e) {
@@ -101,6 +101,14 @@ public class DataObjectPackageSerializer extends StdSerializer<DataObjectPackage
 
             jGen.writeObjectField("vitamNormalizationStatus", dataObjectPackage.getVitamNormalizationStatus());
 
+            // SIP from which files are extracted on demand, if any
+            if (dataObjectPackage.getLazyZipExtractor() != null) {
+                jGen.writeStringField("lazyZipFile",
+                        dataObjectPackage.getLazyZipExtractor().getZipFilePath().toString());
+                jGen.writeStringField("lazyExtractDirectory",
+                        dataObjectPackage.getLazyZipExtractor().getExtractDirectory().toString());
+            }
+
             jGen.writeEndObject();
         }
     }
@@ -103,7 +103,7 @@ public class DroidIdentifier {
      * @return single instance of DroidIdentifier
      * @throws SEDALibException if the identifier can't be initialised, may be due to wrong signatures files
      */
-    static public DroidIdentifier init(SEDALibProgressLogger sedaLibProgressLogger, String configDir) throws SEDALibException {
+    static public synchronized DroidIdentifier init(SEDALibProgressLogger sedaLibProgressLogger, String configDir) throws SEDALibException {
         instance = new DroidIdentifier(sedaLibProgressLogger, configDir);
         return instance;
     }
@@ -113,7 +113,7 @@ public class DroidIdentifier {
      *
      * @return single instance of DroidIdentifier
      */
-    static public DroidIdentifier getInstance() {
+    static public synchronized DroidIdentifier getInstance() {
         if (instance == null)
             try {
                 instance = new DroidIdentifier(null, "./config");
@@ -344,13 +344,30 @@ public class DroidIdentifier {
      * @throws SEDALibException if the file can't be read
      */
     public IdentificationResult getIdentificationResult(Path path) throws SEDALibException {
+        try {
+            return getIdentificationResult(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'accéder au fichier [" + path.normalize().toString() + "]");
+        }
+    }
+
+    /**
+     * Gets the identification result, when size and last modified time of the file are already known.
+     *
+     * @param path         the path of file to identify
+     * @param size         the file size
+     * @param lastModified the file last modified time in milliseconds
+     * @return the identification result
+     * @throws SEDALibException if the file can't be read
+     */
+    public IdentificationResult getIdentificationResult(Path path, long size, long lastModified) throws SEDALibException {
         List<IdentificationResult> irl;
         String filename = path.normalize().toString();
         FileSystemIdentificationRequest request;
 
         RequestMetaData metaData;
         try {
-            metaData = new RequestMetaData(Files.size(path), Files.getLastModifiedTime(path).toMillis(), filename);
+            metaData = new RequestMetaData(size, lastModified, filename);
             RequestIdentifier identifier = new RequestIdentifier(path.toUri());
             identifier.setParentId(1L);
             request = new FileSystemIdentificationRequest(metaData, identifier);
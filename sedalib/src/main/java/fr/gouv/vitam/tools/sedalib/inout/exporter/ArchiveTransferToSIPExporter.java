@@ -30,11 +30,13 @@ package fr.gouv.vitam.tools.sedalib.inout.exporter;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
 import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.utils.ParallelZipWriter;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import fr.gouv.vitam.tools.sedalib.xml.IndentXMLTool;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
-import org.apache.commons.io.IOUtils;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidatingOutputStream;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidator;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.*;
@@ -44,10 +46,7 @@ import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Date;
-import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.*;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
@@ -60,6 +59,28 @@ import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgress
  */
 public class ArchiveTransferToSIPExporter {
 
+    /**
+     * The default PRONOM format ids of already compressed formats (images, audio,
+     * video, archives, PDF and office zip based documents), stored without
+     * compression in SIP.
+     */
+    public static final Set<String> DEFAULT_STORED_FORMAT_IDS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            // JPEG, JPEG2000, PNG, GIF, WebP
+            "fmt/41", "fmt/42", "fmt/43", "fmt/44", "fmt/645", "x-fmt/392", "fmt/11", "fmt/12", "fmt/13",
+            "fmt/3", "fmt/4", "fmt/566",
+            // MP3, Ogg Vorbis, FLAC
+            "fmt/134", "fmt/203", "fmt/279",
+            // MPEG-4, QuickTime, Matroska, WebM, MPEG-2, AVI
+            "fmt/199", "x-fmt/384", "fmt/569", "fmt/573", "fmt/640", "fmt/5",
+            // Zip, Gzip, 7z, RAR, Bzip2
+            "x-fmt/263", "x-fmt/266", "fmt/484", "x-fmt/264", "fmt/411", "fmt/613", "x-fmt/268",
+            // Office Open XML, OpenDocument and EPUB
+            "fmt/189", "fmt/412", "fmt/214", "fmt/215", "fmt/290", "fmt/291", "fmt/294", "fmt/295",
+            "fmt/292", "fmt/293", "fmt/483",
+            // PDF and PDF/A
+            "fmt/14", "fmt/15", "fmt/16", "fmt/17", "fmt/18", "fmt/19", "fmt/20", "fmt/276",
+            "fmt/95", "fmt/354", "fmt/476", "fmt/477", "fmt/478", "fmt/479", "fmt/480")));
+
     /** The archiveTransfer. */
     protected ArchiveTransfer archiveTransfer;
 
@@ -81,6 +102,24 @@ public class ArchiveTransferToSIPExporter {
     /** The export mode. */
     private boolean manifestOnly;
 
+    /** The number of threads used to compress binary files in SIP and to write the flat manifest ArchiveUnits. */
+    private int threadCount;
+
+    /** The PRONOM format ids of binary files stored without compression in SIP. */
+    private Set<String> storedFormatIds;
+
+    /** The flag for choosing by entropy sample if files not in stored format ids are compressed. */
+    private boolean entropyFallbackFlag;
+
+    /** The compression statistics of the last SIP export. */
+    private String compressionStatistics;
+
+    /** The manifest validation flag. */
+    private boolean manifestValidationFlag;
+
+    /** The profile file name used for manifest validation, or null for SEDA 2.1 schema validation. */
+    private String manifestValidationProfileFileName;
+
     /**
      * Instantiates a new ArchiveTransfer to SIP exporter.
      *
@@ -90,6 +129,110 @@ public class ArchiveTransferToSIPExporter {
     public ArchiveTransferToSIPExporter(ArchiveTransfer archiveTransfer, SEDALibProgressLogger sedaLibProgressLogger) {
         this.archiveTransfer = archiveTransfer;
         this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.threadCount = 1;
+        this.storedFormatIds = DEFAULT_STORED_FORMAT_IDS;
+        this.entropyFallbackFlag = false;
+        this.manifestValidationFlag = false;
+        this.manifestValidationProfileFileName = null;
+    }
+
+    /**
+     * Sets the manifest validation. When true, the manifest is validated while
+     * it's exported, with the rng or xsd profile if defined, depending on the
+     * file extension, or else with the SEDA 2.1 schema. The export fails as soon
+     * as the manifest is not valid.
+     *
+     * @param manifestValidationFlag the manifest validation flag
+     * @param profileFileName        the profile file name, or null for SEDA 2.1
+     *                               schema validation
+     */
+    public void setManifestValidation(boolean manifestValidationFlag, String profileFileName) {
+        this.manifestValidationFlag = manifestValidationFlag;
+        this.manifestValidationProfileFileName = profileFileName;
+    }
+
+    /**
+     * Sets the number of threads used to compress binary files in SIP and to
+     * write the ArchiveUnits of a flat manifest. The manifest is the same
+     * whatever the number of threads, and is the first zip entry, but binary
+     * files entries order depends on the compression threads.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Gets the number of threads used to compress binary files in SIP and to
+     * write the ArchiveUnits of a flat manifest.
+     *
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the PRONOM format ids of binary files stored without compression in SIP,
+     * by default {@link #DEFAULT_STORED_FORMAT_IDS}.
+     *
+     * @param storedFormatIds the stored format ids
+     */
+    public void setStoredFormatIds(Collection<String> storedFormatIds) {
+        this.storedFormatIds = new HashSet<String>(storedFormatIds);
+    }
+
+    /**
+     * Gets the PRONOM format ids of binary files stored without compression in SIP.
+     *
+     * @return the stored format ids
+     */
+    public Set<String> getStoredFormatIds() {
+        return storedFormatIds;
+    }
+
+    /**
+     * Sets the entropy fallback flag. When true, the binary files whose format id is
+     * not in stored format ids are stored without compression if a sample of their
+     * beginning looks already compressed, and are compressed otherwise. By default
+     * false, all these files being compressed as before.
+     *
+     * @param entropyFallbackFlag the entropy fallback flag
+     */
+    public void setEntropyFallbackFlag(boolean entropyFallbackFlag) {
+        this.entropyFallbackFlag = entropyFallbackFlag;
+    }
+
+    /**
+     * Checks if the BinaryDataObject format, as identified by its PRONOM format id,
+     * is in stored format ids, so that it's stored in the SIP without compression.
+     *
+     * @param bo the BinaryDataObject
+     * @return true if stored format
+     */
+    private boolean isStoredFormat(BinaryDataObject bo) {
+        if (bo.formatIdentification == null)
+            return false;
+        String formatId = bo.formatIdentification.getSimpleMetadata("FormatId");
+        return (formatId != null) && storedFormatIds.contains(formatId);
+    }
+
+    /**
+     * Gets the compression statistics of the SIP zip writer.
+     *
+     * @param zipWriter the zip writer
+     * @return the statistics String
+     */
+    private static String getCompressionStatistics(ParallelZipWriter zipWriter) {
+        String result = zipWriter.getStoredEntriesCount() + " fichiers stockés sans compression ("
+                + zipWriter.getStoredBytes() + " octets), ";
+        result += zipWriter.getDeflatedEntriesCount() + " fichiers compressés (" + zipWriter.getDeflatedBytes()
+                + " octets en " + zipWriter.getDeflatedCompressedBytes() + ")\n";
+        result += "temps CPU de compression " + Duration.ofNanos(zipWriter.getDeflateCpuTime()).toString().substring(2)
+                + ", temps CPU économisé estimé "
+                + Duration.ofNanos(zipWriter.getEstimatedSavedCpuTime()).toString().substring(2) + "\n";
+        return result;
     }
 
     /**
@@ -103,12 +246,45 @@ public class ArchiveTransferToSIPExporter {
      */
     public void exportManifestOutputStream(OutputStream os, boolean hierarchicalFlag, boolean indentedFlag)
             throws SEDALibException, InterruptedException {
-        try (SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(os, (indentedFlag ? IndentXMLTool.STANDARD_INDENT : 0))) {
+        SEDAXMLValidatingOutputStream vos = null;
+        boolean documentWrittenFlag = false;
+        if (manifestValidationFlag)
+            vos = newManifestValidatingOutputStream(os);
+        try (SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter((vos == null ? os : vos),
+                (indentedFlag ? IndentXMLTool.STANDARD_INDENT : 0))) {
             xmlWriter = ixsw;
-            archiveTransfer.toSedaXml(xmlWriter, hierarchicalFlag, sedaLibProgressLogger);
+            archiveTransfer.toSedaXml(xmlWriter, hierarchicalFlag, threadCount, sedaLibProgressLogger);
+            xmlWriter.flush();
+            documentWrittenFlag = true;
         } catch (XMLStreamException e) {
             throw new SEDALibException("Echec d'écriture XML du manifest", e);
+        } finally {
+            // a validation failure is the cause of any write error
+            if (vos != null)
+                vos.endValidation(documentWrittenFlag);
         }
+        if (vos != null)
+            doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: manifest validé", null);
+    }
+
+    /**
+     * Create the stream validating the manifest while passing it to the output
+     * stream.
+     *
+     * @param os the OutputStream
+     * @return the validating output stream
+     * @throws SEDALibException if the schema can't be loaded
+     */
+    private SEDAXMLValidatingOutputStream newManifestValidatingOutputStream(OutputStream os) throws SEDALibException {
+        SEDAXMLValidator sedaXMLValidator = new SEDAXMLValidator();
+        if (manifestValidationProfileFileName == null)
+            return new SEDAXMLValidatingOutputStream(os, sedaXMLValidator.getSEDASchema(), false);
+        else if (manifestValidationProfileFileName.endsWith(".rng"))
+            return new SEDAXMLValidatingOutputStream(os,
+                    sedaXMLValidator.getSchemaFromRNGFile(manifestValidationProfileFileName), true);
+        else
+            return new SEDAXMLValidatingOutputStream(os,
+                    sedaXMLValidator.getSchemaFromXSDFile(manifestValidationProfileFileName), false);
     }
 
     /**
@@ -201,32 +377,34 @@ public class ArchiveTransferToSIPExporter {
         this.hierarchicalFlag = hierarchicalFlag;
         this.indentedFlag = indentedFlag;
         this.manifestOnly = false;
+        this.compressionStatistics = null;
 
         try {
             Files.createDirectories(Paths.get(fileName).toAbsolutePath().getParent());
         } catch (IOException e1) {
             throw new SEDALibException("Impossible de créer le répertoire [" + Paths.get(fileName).toAbsolutePath().getParent().toString() + "]", e1);
         }
-        try (ZipOutputStream zipout = new ZipOutputStream(new FileOutputStream(fileName))) {
-            ZipEntry e = new ZipEntry("manifest.xml");
+        ParallelZipWriter zipWriter = null;
+        try {
+            zipWriter = new ParallelZipWriter(new File(fileName), threadCount);
             // manifest
-            zipout.putNextEntry(e);
-            exportManifestOutputStream(zipout, hierarchicalFlag, indentedFlag);
-            zipout.closeEntry();
+            try (OutputStream manifestOutputStream = zipWriter.putStreamEntry("manifest.xml")) {
+                exportManifestOutputStream(manifestOutputStream, hierarchicalFlag, indentedFlag);
+            }
             doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, "sedalib: manifest exporté", null);
-            // all binary objects
+            // all binary objects, compressed in parallel and written in the zip in this order
             if (archiveTransfer.getDataObjectPackage().getDataObjectGroupCount() > 0) {
                 for (Map.Entry<String, DataObjectGroup> pair : archiveTransfer.getDataObjectPackage()
                         .getDogInDataObjectPackageIdMap().entrySet()) {
                     DataObjectGroup og = pair.getValue();
                     if (og.getBinaryDataObjectList() != null) {
                         for (BinaryDataObject bo : og.getBinaryDataObjectList()) {
-                            e = new ZipEntry(bo.uri.getValue());
-                            zipout.putNextEntry(e);
-                            FileInputStream fis = new FileInputStream(bo.getOnDiskPath().toFile());
-                            IOUtils.copy(fis, zipout);
-                            fis.close();
-                            zipout.closeEntry();
+                            if (isStoredFormat(bo))
+                                zipWriter.addFileEntry(bo.uri.getValue(), bo.getOnDiskPath(), true);
+                            else if (entropyFallbackFlag)
+                                zipWriter.addAutomaticFileEntry(bo.uri.getValue(), bo.getOnDiskPath());
+                            else
+                                zipWriter.addFileEntry(bo.uri.getValue(), bo.getOnDiskPath(), false);
                             counter++;
                             doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
                                     "sedalib: " + counter + " fichiers BinaryDataObject exportés");
@@ -234,8 +412,14 @@ public class ArchiveTransferToSIPExporter {
                     }
                 }
             }
+            zipWriter.close();
+            compressionStatistics = getCompressionStatistics(zipWriter);
+            doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " + compressionStatistics, null);
         } catch (IOException | SEDALibException e) {
             throw new SEDALibException("Echec de l'export du SIP dans le fichier [" + fileName + "]", e);
+        } finally {
+            if (zipWriter != null)
+                zipWriter.abort();
         }
 
         doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, "sedalib: export d'un ArchiveTransfer dans un SIP terminé", null);
@@ -263,6 +447,8 @@ public class ArchiveTransferToSIPExporter {
         else
             result += "en XML continu\n";
 
+        if (!manifestOnly && (compressionStatistics != null))
+            result += compressionStatistics;
         if ((start != null) && (end != null))
             result += "effectué en " + Duration.between(start, end).toString().substring(2) + "\n";
         return result;
@@ -0,0 +1,404 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.exporter;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.IndentXMLTool;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
+
+/**
+ * The Class ArchiveTransferToSIPStreamExporter.
+ * <p>
+ * Class for streaming export in a SEDA Submission Information Packet (SIP),
+ * where DataObjectGroups and ArchiveUnits are given one by one and written
+ * directly in the manifest.xml entry of the zip file, so that the manifest is
+ * never built in memory and the ArchiveTransfer doesn't have to be fully loaded.
+ * <p>
+ * The ArchiveTransfer gives the global metadata and the DataObjectPackage used as
+ * export context (RefID generation, export metadata list, management metadata).
+ * The DataObjectGroups and ArchiveUnits have to be attached to this
+ * DataObjectPackage but it's up to the caller to keep in it only the ones needed.
+ * ArchiveUnits are exported in flat mode, so their children are written by id
+ * and don't have to be in the DataObjectPackage, but their DataObjectGroup
+ * references have to be resolvable (either in object mode or in the
+ * DataObjectPackage).
+ * <p>
+ * All DataObjectGroups have to be written before the ArchiveUnits. The binary
+ * files to put in the SIP are only remembered, in a temporary spool file, and
+ * are copied in the zip file after the manifest.
+ */
+public class ArchiveTransferToSIPStreamExporter {
+
+    /** The export state before start. */
+    private static final int NOT_STARTED = 0;
+
+    /** The export state when writing DataObjectGroups. */
+    private static final int DATA_OBJECTS = 1;
+
+    /** The export state when writing ArchiveUnits. */
+    private static final int ARCHIVE_UNITS = 2;
+
+    /** The export state after end. */
+    private static final int ENDED = 3;
+
+    /** The archiveTransfer. */
+    private ArchiveTransfer archiveTransfer;
+
+    /** The export path. */
+    private Path exportPath;
+
+    /** The parameter flag for manifest generation. */
+    private boolean indentedFlag;
+
+    /** The zip output stream. */
+    private ZipOutputStream zipOutputStream;
+
+    /** The xml writer. */
+    private SEDAXMLStreamWriter xmlWriter;
+
+    /** The binary files spool path and output stream. */
+    private Path binarySpoolPath;
+    private DataOutputStream binarySpool;
+
+    /** The export state. */
+    private int state;
+
+    /** The exported objects counters. */
+    private int dataObjectGroupCounter, archiveUnitCounter, binaryDataObjectCounter;
+
+    /** The start and end instants, for duration computation. */
+    private Instant start, end;
+
+    /** The progress logger. */
+    private SEDALibProgressLogger sedaLibProgressLogger;
+
+    /**
+     * Instantiates a new ArchiveTransfer to SIP stream exporter.
+     *
+     * @param archiveTransfer       the ArchiveTransfer giving global metadata and export context
+     * @param sedaLibProgressLogger the progress logger
+     */
+    public ArchiveTransferToSIPStreamExporter(ArchiveTransfer archiveTransfer, SEDALibProgressLogger sedaLibProgressLogger) {
+        this.archiveTransfer = archiveTransfer;
+        this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.state = NOT_STARTED;
+    }
+
+    /**
+     * Start the export in the SIP file, writing the manifest beginning and the
+     * global metadata header.
+     *
+     * @param fileName     the file name
+     * @param indentedFlag the indentedFlag
+     * @throws SEDALibException if writing has failed
+     */
+    public void startExport(String fileName, boolean indentedFlag) throws SEDALibException {
+        if (state != NOT_STARTED)
+            throw new SEDALibException("Export en flux déjà démarré");
+        Date d = new Date();
+        start = Instant.now();
+        String log = "sedalib: début de l'export en flux d'un ArchiveTransfer dans un SIP\n";
+        log += "en [" + fileName + "]";
+        log += " date=" + DateFormat.getDateTimeInstance().format(d);
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL, log, null);
+
+        this.exportPath = Paths.get(fileName);
+        this.indentedFlag = indentedFlag;
+        this.dataObjectGroupCounter = 0;
+        this.archiveUnitCounter = 0;
+        this.binaryDataObjectCounter = 0;
+
+        try {
+            Files.createDirectories(exportPath.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de créer le répertoire [" + exportPath.toAbsolutePath().getParent().toString() + "]", e);
+        }
+        try {
+            binarySpoolPath = Files.createTempFile("sedalib-sip", ".spool");
+            binarySpool = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binarySpoolPath)));
+            zipOutputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+            zipOutputStream.putNextEntry(new ZipEntry("manifest.xml"));
+            xmlWriter = new SEDAXMLStreamWriter(zipOutputStream, (indentedFlag ? IndentXMLTool.STANDARD_INDENT : 0));
+
+            DataObjectPackage dataObjectPackage = archiveTransfer.getDataObjectPackage();
+            dataObjectPackage.resetRefIdCounter();
+            dataObjectPackage.resetInOutCounter();
+            archiveTransfer.exportStartDocument(xmlWriter);
+            archiveTransfer.exportHeader(xmlWriter);
+            xmlWriter.writeStartElement("DataObjectPackage");
+        } catch (IOException | XMLStreamException | SEDALibException e) {
+            abortExport();
+            throw new SEDALibException("Echec du démarrage de l'export du SIP dans le fichier [" + fileName + "]", e);
+        }
+        state = DATA_OBJECTS;
+    }
+
+    /**
+     * Write a DataObjectGroup in the manifest and remember its binary files to put
+     * in the SIP.
+     *
+     * @param dataObjectGroup the DataObjectGroup
+     * @throws SEDALibException     if writing has failed or if ArchiveUnits have already been written
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void writeDataObjectGroup(DataObjectGroup dataObjectGroup) throws SEDALibException, InterruptedException {
+        if (state != DATA_OBJECTS)
+            throw new SEDALibException("Les DataObjectGroup doivent être exportés en flux avant les ArchiveUnit");
+        try {
+            dataObjectGroup.toSedaXml(xmlWriter, sedaLibProgressLogger);
+            if (dataObjectGroup.getBinaryDataObjectList() != null) {
+                for (BinaryDataObject bo : dataObjectGroup.getBinaryDataObjectList()) {
+                    binarySpool.writeUTF(bo.uri.getValue());
+                    binarySpool.writeUTF(bo.getOnDiskPath().toString());
+                }
+            }
+        } catch (IOException | SEDALibException e) {
+            abortExport();
+            throw new SEDALibException("Echec de l'export en flux du DataObjectGroup ["
+                    + dataObjectGroup.getInDataObjectPackageId() + "]", e);
+        }
+        dataObjectGroupCounter++;
+    }
+
+    /**
+     * Write an ArchiveUnit in the manifest, in flat mode.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @throws SEDALibException     if writing has failed or if export is not started
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void writeArchiveUnit(ArchiveUnit archiveUnit) throws SEDALibException, InterruptedException {
+        if (state == DATA_OBJECTS) {
+            try {
+                xmlWriter.writeStartElement("DescriptiveMetadata");
+            } catch (XMLStreamException e) {
+                abortExport();
+                throw new SEDALibException("Erreur d'écriture XML des métadonnées des ArchiveUnits", e);
+            }
+            doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP,
+                    "sedalib: " + dataObjectGroupCounter + " DataObjectGroup exportés en flux dans le DataObjectPackage", null);
+            archiveTransfer.getDataObjectPackage().resetInOutCounter();
+            state = ARCHIVE_UNITS;
+        } else if (state != ARCHIVE_UNITS)
+            throw new SEDALibException("Export en flux non démarré ou déjà terminé");
+        try {
+            archiveUnit.toSedaXml(xmlWriter, false, sedaLibProgressLogger);
+        } catch (SEDALibException e) {
+            abortExport();
+            throw new SEDALibException("Echec de l'export en flux de l'ArchiveUnit ["
+                    + archiveUnit.getInDataObjectPackageId() + "]", e);
+        }
+        archiveUnitCounter++;
+    }
+
+    /**
+     * End the export, writing the management metadata and the global metadata
+     * footer of the manifest, then copying all the remembered binary files in the
+     * SIP.
+     *
+     * @throws SEDALibException     if writing has failed or if export is not started
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void endExport() throws SEDALibException, InterruptedException {
+        if ((state != DATA_OBJECTS) && (state != ARCHIVE_UNITS))
+            throw new SEDALibException("Export en flux non démarré ou déjà terminé");
+        try {
+            if (state == DATA_OBJECTS)
+                xmlWriter.writeStartElement("DescriptiveMetadata");
+            xmlWriter.writeEndElement();
+            xmlWriter.writeRawXMLBlockIfNotEmpty(archiveTransfer.getDataObjectPackage().getManagementMetadataXmlData());
+            xmlWriter.writeEndElement();
+            archiveTransfer.exportFooter(xmlWriter);
+            archiveTransfer.exportEndDocument(xmlWriter);
+            xmlWriter.close();
+            xmlWriter = null;
+            zipOutputStream.closeEntry();
+            doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL, "sedalib: " + archiveUnitCounter +
+                    " ArchiveUnit exportées en flux, manifest exporté", null);
+
+            binarySpool.close();
+            binarySpool = null;
+            copyBinaryFiles();
+            zipOutputStream.close();
+            zipOutputStream = null;
+        } catch (XMLStreamException | IOException | SEDALibException e) {
+            abortExport();
+            throw new SEDALibException("Echec de l'export du SIP dans le fichier [" + exportPath + "]", e);
+        } finally {
+            deleteBinarySpool();
+        }
+        state = ENDED;
+
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL, "sedalib: export en flux d'un ArchiveTransfer dans un SIP terminé", null);
+        end = Instant.now();
+    }
+
+    /**
+     * Copy all the binary files remembered in the spool file in the SIP.
+     *
+     * @throws IOException          if reading or writing has failed
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void copyBinaryFiles() throws IOException, InterruptedException {
+        byte[] buffer = new byte[65536];
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(binarySpoolPath)))) {
+            while (true) {
+                String uri;
+                try {
+                    uri = dis.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                String onDiskPath = dis.readUTF();
+                zipOutputStream.putNextEntry(new ZipEntry(uri));
+                try (InputStream is = Files.newInputStream(Paths.get(onDiskPath))) {
+                    int len;
+                    while ((len = is.read(buffer)) != -1)
+                        zipOutputStream.write(buffer, 0, len);
+                }
+                zipOutputStream.closeEntry();
+                binaryDataObjectCounter++;
+                doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, binaryDataObjectCounter,
+                        "sedalib: " + binaryDataObjectCounter + " fichiers BinaryDataObject exportés");
+            }
+        }
+    }
+
+    /**
+     * Close all the export streams, ignoring errors, after a failure.
+     */
+    private void abortExport() {
+        state = ENDED;
+        try {
+            if (xmlWriter != null)
+                xmlWriter.close();
+        } catch (XMLStreamException ignored) {
+            // already in error
+        }
+        xmlWriter = null;
+        try {
+            if (zipOutputStream != null)
+                zipOutputStream.close();
+        } catch (IOException ignored) {
+            // already in error
+        }
+        zipOutputStream = null;
+        deleteBinarySpool();
+    }
+
+    /**
+     * Close and delete the binary files spool, ignoring errors.
+     */
+    private void deleteBinarySpool() {
+        try {
+            if (binarySpool != null)
+                binarySpool.close();
+        } catch (IOException ignored) {
+            // only temporary file
+        }
+        binarySpool = null;
+        try {
+            if (binarySpoolPath != null)
+                Files.deleteIfExists(binarySpoolPath);
+        } catch (IOException ignored) {
+            // only temporary file
+        }
+        binarySpoolPath = null;
+    }
+
+    /**
+     * Do export in streaming mode to SEDA Submission Information Packet (SIP), all
+     * DataObjectGroups and then all ArchiveUnits given by iterators.
+     *
+     * @param fileName                the file name
+     * @param indentedFlag            the indentedFlag
+     * @param dataObjectGroupIterator the DataObjectGroup iterator, can be null
+     * @param archiveUnitIterator     the ArchiveUnit iterator, can be null
+     * @throws SEDALibException     if writing has failed
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void doExportToSEDASIP(String fileName, boolean indentedFlag, Iterator<DataObjectGroup> dataObjectGroupIterator,
+                                  Iterator<ArchiveUnit> archiveUnitIterator)
+            throws SEDALibException, InterruptedException {
+        startExport(fileName, indentedFlag);
+        try {
+            if (dataObjectGroupIterator != null)
+                while (dataObjectGroupIterator.hasNext())
+                    writeDataObjectGroup(dataObjectGroupIterator.next());
+            if (archiveUnitIterator != null)
+                while (archiveUnitIterator.hasNext())
+                    writeArchiveUnit(archiveUnitIterator.next());
+            endExport();
+        } catch (InterruptedException | RuntimeException e) {
+            abortExport();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the summary of the export process.
+     *
+     * @return the summary String
+     */
+    public String getSummary() {
+        String result = "Export en flux d'un ArchiveTransfer dans un SIP\n";
+        result += "en [" + exportPath + "]\n";
+        result += "avec une structure à plat ";
+        if (indentedFlag)
+            result += "en XML identé\n";
+        else
+            result += "en XML continu\n";
+        result += dataObjectGroupCounter + " DataObjectGroup, " + archiveUnitCounter + " ArchiveUnit et "
+                + binaryDataObjectCounter + " fichiers BinaryDataObject\n";
+        if ((start != null) && (end != null))
+            result += "effectué en " + Duration.between(start, end).toString().substring(2) + "\n";
+        return result;
+    }
+}
@@ -35,13 +35,18 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -49,15 +54,22 @@ import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogWithoutInterruption;
 
 /**
  * The Class CompressedFileToArchiveTransferImporter.
@@ -131,6 +143,22 @@ public class CompressedFileToArchiveTransferImporter {
      */
     private SEDALibProgressLogger sedaLibProgressLogger;
 
+    /**
+     * The number of threads used to uncompress zip files and to extract technical elements.
+     */
+    private int threadCount;
+
+    /**
+     * The maximum size of an entry read in memory to be written by the writer thread, when uncompressing
+     * sequentially.
+     */
+    private static final int PIPELINE_MAX_BUFFERED_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum number of entries waiting to be written, per writer thread.
+     */
+    private static final int PIPELINE_QUEUE_SIZE = 32;
+
     /**
      * The constant ZIP.
      */
@@ -172,12 +200,9 @@ public class CompressedFileToArchiveTransferImporter {
         }
     }
 
-    private ArchiveInputStream createArchiveInputStream(String filename)
-            throws SEDALibException, InterruptedException {
+    private String getCompressedFileMimeType(String filename) throws SEDALibException, InterruptedException {
         Path onDiskPath = null;
         String mimeType;
-        FileInputStream fis;
-        ArchiveInputStream ais;
 
         try {
             onDiskPath = Paths.get(filename);
@@ -187,6 +212,14 @@ public class CompressedFileToArchiveTransferImporter {
             throw new SEDALibException("Impossible de faire l'identification de format Droid pour le fichier compressé ["
                     + onDiskPath.toString() + "]", e);
         }
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,"mimetype=" + mimeType, null);
+        return mimeType;
+    }
+
+    private ArchiveInputStream createArchiveInputStream(String filename, String mimeType)
+            throws SEDALibException {
+        FileInputStream fis;
+        ArchiveInputStream ais;
 
         try {
             fis = new FileInputStream(filename);
@@ -209,29 +242,145 @@ public class CompressedFileToArchiveTransferImporter {
             }
         } catch (IOException e) {
             throw new SEDALibException("Impossible d'ouvrir le fichier compressé ["
-                    + onDiskPath.toString() + "]", e);
+                    + filename + "]", e);
         }
-        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,"mimetype=" + mimeType, null);
         return ais;
     }
 
+    private String getSafeEntryName(String entryName) throws InterruptedException {
+        if (entryName.contains("?")) {
+            entryName = entryName.replace("?", "_");
+            doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL,
+                    "Le nom du fichier [" + entryName + "] a un problème d'encodage, le(s) caratère(s) problématique à été rempalcé par _ ", null);
+        }
+        return entryName;
+    }
+
+    private void setReadOnlyIfWindows(Path target) {
+        // Fix for xls 97 2003 on windows
+        if (isWindows) {
+            // Set read-only
+            try {
+                Files.setAttribute(target, "dos:readonly", true);
+            } catch (IOException e) {
+                doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS,
+                        "Impossible de passer Le chemin [" + target.toString() + "] en lecture seule", e);
+            }
+        }
+    }
+
     private void unCompressContainer(String containerFile, String outputFolder)
             throws SEDALibException, InterruptedException {
+        String mimeType = getCompressedFileMimeType(containerFile);
+
+        outputFolder = Paths.get(outputFolder).toAbsolutePath().normalize().toString();
+        if (mimeType.equals(ZIP) && (threadCount > 1))
+            unCompressZipFile(containerFile, outputFolder);
+        else
+            unCompressArchiveStream(containerFile, mimeType, outputFolder);
+    }
+
+    /**
+     * Count an extracted file, and log progress if needed.
+     */
+    private int countExtractedFile(int counter) throws InterruptedException {
+        counter++;
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                Integer.toString(counter) +
+                " fichiers extraits");
+        return counter;
+    }
+
+    /**
+     * Wait for the oldest pending write to complete, and count it.
+     */
+    private int waitFirstWrite(Deque<Future<Path>> pendingWrites, Map<Path, Future<Path>> lastWriteByTarget,
+                               int counter) throws InterruptedException, ExecutionException {
+        Future<Path> write = pendingWrites.poll();
+        Path target = write.get();
+        if (lastWriteByTarget != null)
+            lastWriteByTarget.remove(target, write);
+        return countExtractedFile(counter);
+    }
+
+    /**
+     * Uncompress a zip file using its central directory, entries being inflated
+     * and written concurrently by the extraction threads. Entries with the same
+     * target path are written in the archive order, so that the last one is kept
+     * as when uncompressing sequentially.
+     */
+    private void unCompressZipFile(String containerFile, String outputFolder)
+            throws SEDALibException, InterruptedException {
+        int counter = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Deque<Future<Path>> pendingWrites = new ArrayDeque<Future<Path>>();
+        Map<Path, Future<Path>> lastWriteByTarget = new HashMap<Path, Future<Path>>();
+
+        try (final ZipFile zf = new ZipFile(new File(containerFile), encoding)) {
+            Enumeration<ZipArchiveEntry> entries = zf.getEntries();
+            while (entries.hasMoreElements()) {
+                final ZipArchiveEntry entry = entries.nextElement();
+                if (!zf.canReadEntryData(entry))
+                    continue;
+                String entryName = getSafeEntryName(entry.getName());
+                final Path target = Paths.get(outputFolder, entryName).normalize();
+                final Path parent = target.getParent();
+
+                if (parent != null && !Files.exists(parent)) {
+                    Files.createDirectories(parent);
+                }
+                if (!entry.isDirectory()) {
+                    doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS,
+                            "Décompresse le fichier [" + entryName + "]", null);
+                    // the previous write to the same target is taken by a thread before this one, so waiting it
+                    // can't block the pool
+                    final Future<Path> previousWrite = lastWriteByTarget.get(target);
+                    Future<Path> write = executor.submit(() -> {
+                        if (previousWrite != null)
+                            previousWrite.get();
+                        try (InputStream is = zf.getInputStream(entry)) {
+                            Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        setReadOnlyIfWindows(target);
+                        return target;
+                    });
+                    lastWriteByTarget.put(target, write);
+                    pendingWrites.add(write);
+                    if (pendingWrites.size() >= threadCount * PIPELINE_QUEUE_SIZE)
+                        counter = waitFirstWrite(pendingWrites, lastWriteByTarget, counter);
+                } else if (!Files.exists(target)) {
+                    Files.createDirectories(target);
+                }
+            }
+            while (!pendingWrites.isEmpty())
+                counter = waitFirstWrite(pendingWrites, lastWriteByTarget, counter);
+        } catch (final IOException | ExecutionException e) {
+            throw new SEDALibException("Impossible d'extraire le fichier compressé [" + containerFile + "]",
+                    (e instanceof ExecutionException ? e.getCause() : e));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Uncompress a compressed file read sequentially, with entries data read by
+     * the calling thread and written to disk by a writer thread, so that reading
+     * and decompressing overlap with writing. Entries too big to be read in memory
+     * are written by the calling thread once the pending writes are done, so that
+     * all entries are written in the archive order.
+     */
+    private void unCompressArchiveStream(String containerFile, String mimeType, String outputFolder)
+            throws SEDALibException, InterruptedException {
         int counter = 0;
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Deque<Future<Path>> pendingWrites = new ArrayDeque<Future<Path>>();
 
-        try (final ArchiveInputStream archiveInputStream = createArchiveInputStream(containerFile)) {
+        try (final ArchiveInputStream archiveInputStream = createArchiveInputStream(containerFile, mimeType)) {
             ArchiveEntry entry;
 
-            outputFolder = Paths.get(outputFolder).toAbsolutePath().normalize().toString();
-
             while ((entry = archiveInputStream.getNextEntry()) != null) {
                 if (archiveInputStream.canReadEntryData(entry)) {
-                    String entryName = entry.getName();
-                    if (entryName.contains("?")) {
-                        entryName = entryName.replace("?", "_");
-                        doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL,
-                                "Le nom du fichier [" + entryName + "] a un problème d'encodage, le(s) caratère(s) problématique à été rempalcé par _ ", null);
-                    }
+                    String entryName = getSafeEntryName(entry.getName());
                     final Path target = Paths.get(outputFolder, entryName);
                     final Path parent = target.getParent();
 
@@ -241,28 +390,35 @@ public class CompressedFileToArchiveTransferImporter {
                     if (!entry.isDirectory()) {
                         doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS,
                                 "Décompresse le fichier [" + entryName + "]", null);
-                        Files.copy(archiveInputStream, target, StandardCopyOption.REPLACE_EXISTING);
-                        // Fix for xls 97 2003 on windows
-                        if (isWindows) {
-                            // Set read-only
-                            try {
-                                Files.setAttribute(target, "dos:readonly", true);
-                            } catch (IOException e) {
-                                doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS,
-                                        "Impossible de passer Le chemin [" + target.toString() + "] en lecture seule", e);
-                            }
+                        long size = entry.getSize();
+                        if ((size >= 0) && (size <= PIPELINE_MAX_BUFFERED_SIZE)) {
+                            final byte[] content = IOUtils.toByteArray(archiveInputStream, size);
+                            pendingWrites.add(writer.submit(() -> {
+                                Files.write(target, content);
+                                setReadOnlyIfWindows(target);
+                                return target;
+                            }));
+                            if (pendingWrites.size() >= PIPELINE_QUEUE_SIZE)
+                                counter = waitFirstWrite(pendingWrites, null, counter);
+                        } else {
+                            while (!pendingWrites.isEmpty())
+                                counter = waitFirstWrite(pendingWrites, null, counter);
+                            Files.copy(archiveInputStream, target, StandardCopyOption.REPLACE_EXISTING);
+                            setReadOnlyIfWindows(target);
+                            counter = countExtractedFile(counter);
                         }
-                        counter++;
-                        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
-                                Integer.toString(counter) +
-                                " fichiers extraits");
                     } else if (!Files.exists(target)) {
                         Files.createDirectories(target);
                     }
                 }
             }
-        } catch (final IOException e) {
-            throw new SEDALibException("Impossible d'extraire le fichier compressé [" + containerFile + "]", e);
+            while (!pendingWrites.isEmpty())
+                counter = waitFirstWrite(pendingWrites, null, counter);
+        } catch (final IOException | ExecutionException e) {
+            throw new SEDALibException("Impossible d'extraire le fichier compressé [" + containerFile + "]",
+                    (e instanceof ExecutionException ? e.getCause() : e));
+        } finally {
+            writer.shutdownNow();
         }
     }
 
@@ -290,6 +446,7 @@ public class CompressedFileToArchiveTransferImporter {
         this.encoding=encoding;
         this.ignorePatternStrings = new ArrayList<String>();
         this.onDiskRootPaths = new ArrayList<Path>();
+        this.threadCount = 1;
 
         zipFilePath = Paths.get(zipFile);
         if (!Files.isRegularFile(zipFilePath, java.nio.file.LinkOption.NOFOLLOW_LINKS))
@@ -306,6 +463,16 @@ public class CompressedFileToArchiveTransferImporter {
             throw new SEDALibException("Le chemin [" + unCompressDirectory + "] pointant le répertoire d'extraction ne désigne pas un répertoire");
     }
 
+    /**
+     * Sets the number of threads used to uncompress zip files, using their central
+     * directory, and to extract technical elements of the uncompressed files.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
     /**
      * Adds the ignore pattern string.
      *
@@ -379,6 +546,7 @@ public class CompressedFileToArchiveTransferImporter {
             archiveTransfer.setGlobalMetadata(processGlobalMetadata(onDiskGlobalMetadataPath));
         for (String patternString : ignorePatternStrings)
             diskToDataObjectPackageImporter.addIgnorePattern(patternString);
+        diskToDataObjectPackageImporter.setThreadCount(threadCount);
         diskToDataObjectPackageImporter.doImport();
         archiveTransfer.setDataObjectPackage(diskToDataObjectPackageImporter.getDataObjectPackage());
 
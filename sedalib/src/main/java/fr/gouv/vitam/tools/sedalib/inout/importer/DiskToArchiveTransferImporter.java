@@ -31,6 +31,7 @@ import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
 import fr.gouv.vitam.tools.sedalib.core.GlobalMetadata;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.utils.TechnicalElementsCache;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -223,6 +224,26 @@ public class DiskToArchiveTransferImporter {
         diskToDataObjectPackageImporter.addIgnorePattern(patternString);
     }
 
+    /**
+     * Sets the number of threads used for BinaryDataObject technical elements extraction, see
+     * {@link DiskToDataObjectPackageImporter#setThreadCount(int)}.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        diskToDataObjectPackageImporter.setThreadCount(threadCount);
+    }
+
+    /**
+     * Sets the technical elements cache, see
+     * {@link DiskToDataObjectPackageImporter#setTechnicalElementsCache(TechnicalElementsCache)}.
+     *
+     * @param technicalElementsCache the technical elements cache, or null if no cache is used
+     */
+    public void setTechnicalElementsCache(TechnicalElementsCache technicalElementsCache) {
+        diskToDataObjectPackageImporter.setTechnicalElementsCache(technicalElementsCache);
+    }
+
     /**
      * Process the GlobalMetadata file.
      *
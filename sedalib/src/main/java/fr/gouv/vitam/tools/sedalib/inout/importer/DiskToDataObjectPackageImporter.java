@@ -28,9 +28,11 @@
 package fr.gouv.vitam.tools.sedalib.inout.importer;
 
 import fr.gouv.vitam.tools.sedalib.core.*;
+import fr.gouv.vitam.tools.sedalib.droid.DroidIdentifier;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.StringType;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.utils.TechnicalElementsCache;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 
 import javax.xml.stream.XMLStreamException;
@@ -43,6 +45,7 @@ import java.text.ParseException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -141,6 +144,10 @@ import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgress
  * <li>noLinkFlag: determine if the windows shortcut or windows/linux symbolic link are ignored (default false)</li>
  * <li>extractTitleFromFileNameFunction: define the function used to extract Title from file name (default simple copy)</li>
  * </ul>
+ * <p>
+ * The technical elements extraction (digest, size, format identification...) of BinaryDataObjects can be done
+ * on a pool of threads, see {@link #setThreadCount(int)}. In this case the files found during the hierarchy
+ * walk are analysed while the walk goes on.
  */
 public class DiskToDataObjectPackageImporter {
 
@@ -215,6 +222,26 @@ public class DiskToDataObjectPackageImporter {
      */
     private SEDALibProgressLogger sedaLibProgressLogger;
 
+    /**
+     * The number of threads used for BinaryDataObject technical elements extraction, 1 for sequential extraction.
+     */
+    private int threadCount;
+
+    /**
+     * The executor used for parallel technical elements extraction, or null if sequential.
+     */
+    private ThreadPoolExecutor extractionExecutor;
+
+    /**
+     * The technical elements cache, or null if no cache is used.
+     */
+    private TechnicalElementsCache technicalElementsCache;
+
+    /**
+     * The technical elements extraction results, in submission order.
+     */
+    private LinkedHashMap<BinaryDataObject, Future<BinaryDataObject>> extractionFutureMap;
+
     private DiskToDataObjectPackageImporter(boolean noLinkFlag, Function<String, String> extractTitleFromFileNameFunction,
                                             SEDALibProgressLogger sedaLibProgressLogger) {
         this.onDiskRootPaths = new ArrayList<Path>();
@@ -232,6 +259,10 @@ public class DiskToDataObjectPackageImporter {
 
         this.inCounter = 0;
         this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.threadCount = 1;
+        this.extractionExecutor = null;
+        this.technicalElementsCache = null;
+        this.extractionFutureMap = new LinkedHashMap<BinaryDataObject, Future<BinaryDataObject>>();
     }
 
     /**
@@ -322,6 +353,120 @@ public class DiskToDataObjectPackageImporter {
     }
 
 
+    /**
+     * Sets the number of threads used for BinaryDataObject technical elements extraction (SHA-512 digest and
+     * DROID format identification). With a value greater than 1 files are analysed on a bounded pool of threads
+     * while the hierarchy is walked, and results are collected in the walk order.
+     *
+     * @param threadCount the thread count, values lower than 1 are considered as 1 (sequential extraction)
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Gets the number of threads used for BinaryDataObject technical elements extraction.
+     *
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the technical elements cache used to avoid computing again digest and format identification of
+     * unchanged files, see {@link TechnicalElementsCache}. Saving the cache is left to the caller.
+     *
+     * @param technicalElementsCache the technical elements cache, or null if no cache is used
+     */
+    public void setTechnicalElementsCache(TechnicalElementsCache technicalElementsCache) {
+        this.technicalElementsCache = technicalElementsCache;
+    }
+
+    /**
+     * Submit the BinaryDataObject technical elements extraction to the extraction thread pool, if parallel
+     * extraction is activated. When the pool queue is full the extraction is done in the calling thread, which
+     * bounds the walk advance.
+     *
+     * @param bdo the BinaryDataObject
+     */
+    private void submitTechnicalElementsExtraction(BinaryDataObject bdo) {
+        if ((extractionExecutor == null) || extractionFutureMap.containsKey(bdo))
+            return;
+        extractionFutureMap.put(bdo, extractionExecutor.submit(() -> {
+            bdo.extractTechnicalElements(sedaLibProgressLogger, technicalElementsCache);
+            return bdo;
+        }));
+    }
+
+    /**
+     * Extract technical elements of all BinaryDataObjects which have not been yet analysed, either sequentially or
+     * by waiting for all the extraction threads in submission order.
+     *
+     * @throws SEDALibException     if a technical elements extraction has failed
+     * @throws InterruptedException if import process is interrupted
+     */
+    private void extractAllTechnicalElements() throws SEDALibException, InterruptedException {
+        inCounter = 0;
+        if (extractionExecutor == null) {
+            for (Map.Entry<String, BinaryDataObject> pair : dataObjectPackage.getBdoInDataObjectPackageIdMap().entrySet()) {
+                if (pair.getValue().fileInfo.getSimpleMetadata("LastModified") == null)
+                    pair.getValue().extractTechnicalElements(sedaLibProgressLogger, technicalElementsCache);
+                inCounter++;
+                doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, inCounter, "sedalib: " + inCounter +
+                        " fichiers BinaryDataObject analysés");
+            }
+            return;
+        }
+
+        for (Map.Entry<String, BinaryDataObject> pair : dataObjectPackage.getBdoInDataObjectPackageIdMap().entrySet()) {
+            if (!extractionFutureMap.containsKey(pair.getValue())
+                    && (pair.getValue().fileInfo.getSimpleMetadata("LastModified") == null))
+                submitTechnicalElementsExtraction(pair.getValue());
+        }
+        int alreadyDone = dataObjectPackage.getBinaryDataObjectCount() - extractionFutureMap.size();
+        for (Map.Entry<BinaryDataObject, Future<BinaryDataObject>> pair : extractionFutureMap.entrySet()) {
+            try {
+                pair.getValue().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SEDALibException)
+                    throw (SEDALibException) e.getCause();
+                throw new SEDALibException("Erreur dans l'analyse du fichier [" + pair.getKey().getOnDiskPath() + "]",
+                        e.getCause());
+            }
+            inCounter++;
+            doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, inCounter, "sedalib: " + inCounter +
+                    " fichiers BinaryDataObject analysés");
+        }
+        inCounter += alreadyDone;
+    }
+
+    /**
+     * Start the technical elements extraction thread pool if parallel extraction is activated.
+     */
+    private void startExtractionExecutor() {
+        extractionFutureMap.clear();
+        if (threadCount <= 1)
+            extractionExecutor = null;
+        else {
+            // initialise the DROID singleton before any concurrent use
+            DroidIdentifier.getInstance();
+            extractionExecutor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(threadCount * 64), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    /**
+     * Stop the technical elements extraction thread pool if any, cancelling all the pending extractions.
+     */
+    private void stopExtractionExecutor() {
+        if (extractionExecutor != null) {
+            extractionExecutor.shutdownNow();
+            extractionExecutor = null;
+        }
+        extractionFutureMap.clear();
+    }
+
     /**
      * Test if a file name is compliant to one of ignore patterns.
      *
@@ -805,6 +950,8 @@ public class DiskToDataObjectPackageImporter {
         dogPathStringMap.put(dog.getOnDiskPath().toString(), dog);
         dog.addDataObject(bdo);
         au.addDataObjectById(dog.getInDataObjectPackageId());
+        // no metadata file can complete this BinaryDataObject, so it can be analysed during the walk
+        submitTechnicalElementsExtraction(bdo);
 
         return au;
     }
@@ -882,34 +1029,32 @@ public class DiskToDataObjectPackageImporter {
         ArchiveUnit au;
         start = Instant.now();
 
-        try (Stream<Path> sp = onDiskRootPaths.stream()) {
-            inCounter=0;
-            pi = sp.iterator();
-            while (pi.hasNext()) {
-                nextPath = pi.next();
-                if (nextPath.getFileName().toString().equals("__ManagementMetadata.xml")) {
-                    dataObjectPackage.setManagementMetadataXmlData(processManagementMetadata(nextPath));
-                    continue;
+        startExtractionExecutor();
+        try {
+            try (Stream<Path> sp = onDiskRootPaths.stream()) {
+                inCounter = 0;
+                pi = sp.iterator();
+                while (pi.hasNext()) {
+                    nextPath = pi.next();
+                    if (nextPath.getFileName().toString().equals("__ManagementMetadata.xml")) {
+                        dataObjectPackage.setManagementMetadataXmlData(processManagementMetadata(nextPath));
+                        continue;
+                    }
+                    au = processPath(nextPath);
+                    if (au != null)
+                        dataObjectPackage.addRootAu(au);
                 }
-                au = processPath(nextPath);
-                if (au != null)
-                    dataObjectPackage.addRootAu(au);
+                doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " + inCounter + " métadonnées ArchiveUnits importées dans le DataObjectPackage", null);
+            } catch (SEDALibException e) {
+                throw new SEDALibException("Impossible d'importer les ressources du répertoire ["
+                        + nextPath.toString() + "]", e);
             }
-            doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " + inCounter + " métadonnées ArchiveUnits importées dans le DataObjectPackage", null);
-        } catch (SEDALibException e) {
-            throw new SEDALibException("Impossible d'importer les ressources du répertoire ["
-                    + nextPath.toString() + "]",e);
-        }
 
-        inCounter = 0;
-        for (Map.Entry<String, BinaryDataObject> pair : dataObjectPackage.getBdoInDataObjectPackageIdMap().entrySet()) {
-            if (pair.getValue().fileInfo.getSimpleMetadata("LastModified") == null)
-                pair.getValue().extractTechnicalElements(sedaLibProgressLogger);
-            inCounter++;
-            doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, inCounter, "sedalib: " + inCounter +
-                        " fichiers BinaryDataObject analysés");
+            extractAllTechnicalElements();
+        } finally {
+            stopExtractionExecutor();
         }
-        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: "+ inCounter + " fichiers BinaryDataObject analysés et importés dans le DataObjectPackage", null);
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " + inCounter + " fichiers BinaryDataObject analysés et importés dans le DataObjectPackage", null);
         end = Instant.now();
     }
 
@@ -28,10 +28,12 @@
 package fr.gouv.vitam.tools.sedalib.inout.importer;
 
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
+import fr.gouv.vitam.tools.sedalib.utils.LazyZipExtractor;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.io.IOUtils;
 
@@ -40,6 +42,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -47,6 +50,7 @@ import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Enumeration;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
@@ -56,6 +60,13 @@ import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgress
  * <p>
  * Class for SEDA Submission Information Packet (SIP) import in
  * ArchiveTransfer object.
+ * <p>
+ * By default the whole SIP is extracted in the uncompress directory before
+ * the manifest is read. In lazy extraction mode, the manifest is read directly
+ * from the zip and the BinaryDataObject files are only extracted when their on
+ * disk path is needed, through a {@link LazyZipExtractor} kept in the
+ * DataObjectPackage, which has to be closed by the caller when the
+ * ArchiveTransfer is no more used.
  */
 public class SIPToArchiveTransferImporter {
 
@@ -89,6 +100,16 @@ public class SIPToArchiveTransferImporter {
      */
     private boolean isWindows;
 
+    /**
+     * The lazy extraction mode flag.
+     */
+    private boolean lazyExtractionFlag;
+
+    /**
+     * The number of threads used to parse the manifest ArchiveUnits.
+     */
+    private int threadCount;
+
     /**
      * Unzip file.
      *
@@ -167,6 +188,44 @@ public class SIPToArchiveTransferImporter {
         return manifest;
     }
 
+    /**
+     * Find the manifest entry in the zip and parse it, without extracting files.
+     *
+     * @param lazyZipExtractor the lazy zip extractor on the SIP
+     * @return the manifest entry name
+     * @throws SEDALibException     if there is no or more than one manifest, or if
+     *                              the manifest can't be read or is not in expected
+     *                              form
+     * @throws InterruptedException if import process is interrupted
+     */
+    private String importManifestFromZip(LazyZipExtractor lazyZipExtractor)
+            throws SEDALibException, InterruptedException {
+        ZipArchiveEntry manifestEntry = null;
+        Enumeration<ZipArchiveEntry> entries = lazyZipExtractor.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (!entry.isDirectory() &&
+                    LazyZipExtractor.getExtractedName(entry.getName()).toLowerCase().matches("[^/\\\\]*manifest.*\\.xml")) {
+                if (manifestEntry != null)
+                    throw new SEDALibException("SIP mal formé, plusieurs fichiers manifest potentiels");
+                manifestEntry = entry;
+            }
+        }
+        if (manifestEntry == null)
+            throw new SEDALibException("SIP mal formé, pas de manifest");
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS, "sedalib: lecture directe du manifest [" + zipFile + "]", null);
+
+        try (InputStream is = lazyZipExtractor.getInputStream(manifestEntry);
+             SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(is)) {
+            archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory, threadCount,
+                    sedaLibProgressLogger);
+        } catch (XMLStreamException | IOException e) {
+            throw new SEDALibException("Impossible d'importer le fichier [" + manifestEntry.getName()
+                    + "] comme manifest du SIP", e);
+        }
+        return manifestEntry.getName();
+    }
+
     /**
      * Instantiates a new SEDA SIP importer.
      *
@@ -196,6 +255,27 @@ public class SIPToArchiveTransferImporter {
         this.zipFile = zipFile;
         this.unCompressDirectory = unCompressDirectoryPath.normalize().toString();
         this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.lazyExtractionFlag = false;
+        this.threadCount = 1;
+    }
+
+    /**
+     * Sets the lazy extraction mode flag. When true, the manifest is read directly
+     * from the zip and BinaryDataObject files are extracted on demand.
+     *
+     * @param lazyExtractionFlag the lazy extraction flag
+     */
+    public void setLazyExtractionFlag(boolean lazyExtractionFlag) {
+        this.lazyExtractionFlag = lazyExtractionFlag;
+    }
+
+    /**
+     * Sets the number of threads used to parse the manifest ArchiveUnits.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
     }
 
     /**
@@ -215,11 +295,35 @@ public class SIPToArchiveTransferImporter {
         log += " date=" + DateFormat.getDateTimeInstance().format(d);
         doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, log, null);
 
+        if (lazyExtractionFlag) {
+            LazyZipExtractor lazyZipExtractor;
+            try {
+                lazyZipExtractor = new LazyZipExtractor(Paths.get(zipFile), Paths.get(unCompressDirectory));
+            } catch (IOException e) {
+                throw new SEDALibException("Impossible d'ouvrir le fichier [" + zipFile + "] comme zip", e);
+            }
+            try {
+                importManifestFromZip(lazyZipExtractor);
+            } catch (SEDALibException | InterruptedException e) {
+                try {
+                    lazyZipExtractor.close();
+                } catch (IOException ignored) {
+                    // already in error
+                }
+                throw e;
+            }
+            archiveTransfer.getDataObjectPackage().setLazyZipExtractor(lazyZipExtractor);
+            end = Instant.now();
+            doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, "sedalib: import du SIP terminé", null);
+            return;
+        }
+
         manifest = unZipSip(zipFile, unCompressDirectory);
 
         try (FileInputStream fis = new FileInputStream(unCompressDirectory + File.separator + manifest);
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(fis)) {
-            archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory, sedaLibProgressLogger);
+            archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory, threadCount,
+                    sedaLibProgressLogger);
         } catch (XMLStreamException | IOException e) {
             throw new SEDALibException("Impossible d'importer le fichier [" + manifest
                     + "] comme manifest du SIP", e);
@@ -37,15 +37,12 @@ import fr.gouv.vitam.tools.sedalib.metadata.namedtype.*;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
-import org.apache.commons.lang3.reflect.ConstructorUtils;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.LinkedHashMap;
 
 /**
@@ -129,22 +126,15 @@ public abstract class SEDAMetadata {
      */
     static public SEDAMetadata fromSedaXml(SEDAXMLEventReader xmlReader, Class<?> target) throws SEDALibException {
         try {
-            boolean needName = target.getName().contains(".namedtype.");
-            SEDAMetadata sm;
-            if (needName) {
+            String elementName = null;
+            if (target.getName().contains(".namedtype.")) {
                 XMLEvent event = xmlReader.peekUsefullEvent();
-                sm = (SEDAMetadata) ConstructorUtils.invokeConstructor(target, event.asStartElement().getName().getLocalPart());
-            } else
-                sm = (SEDAMetadata) ConstructorUtils.invokeConstructor(target, (Object[])null);
+                elementName = event.asStartElement().getName().getLocalPart();
+            }
+            SEDAMetadata sm = SEDAMetadataFactory.newEmptySEDAMetadata(target, elementName);
             if (sm.fillFromSedaXml(xmlReader))
                 return sm;
-            Method method = target.getMethod("fromSedaXml", SEDAXMLEventReader.class);
-            return (SEDAMetadata) method.invoke(null, xmlReader);
-        } catch (IllegalAccessException | IllegalArgumentException | NoSuchMethodException
-                | SecurityException | InstantiationException e) {
-            throw new SEDALibException("Erreur de construction du " + target.getSimpleName(), e);
-        } catch (InvocationTargetException te) {
-            throw new SEDALibException("Erreur de construction du " + target.getSimpleName(), te.getTargetException());
+            return SEDAMetadataFactory.callFromSedaXml(target, xmlReader);
         } catch (XMLStreamException e) {
             throw new SEDALibException("Erreur de lecture XML dans un élément de type "+target.getSimpleName(), e);
         }
@@ -0,0 +1,352 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.metadata;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.ConstructorUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Class SEDAMetadataFactory.
+ * <p>
+ * Registry of the SEDAMetadata sub-classes constructors, used when parsing XML and when adding metadata from
+ * args. The constructors are resolved one time by class, and by args types for the args constructors, and kept
+ * as MethodHandles, so that the reflective lookups are not done for each constructed metadata.
+ */
+public class SEDAMetadataFactory {
+
+    /**
+     * The lookup used to get the constructors handles.
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    /**
+     * The constructors by SEDAMetadata sub-class.
+     */
+    private static final ConcurrentHashMap<Class<?>, ClassConstructors> classConstructorsMap =
+            new ConcurrentHashMap<Class<?>, ClassConstructors>();
+
+    /**
+     * The Class ClassConstructors.
+     * <p>
+     * Constructors of one SEDAMetadata sub-class.
+     */
+    private static class ClassConstructors {
+
+        /**
+         * The sub-class.
+         */
+        final Class<?> metadataClass;
+
+        /**
+         * True if the sub-class is a named type, whose constructors need the element name as first argument.
+         */
+        final boolean needName;
+
+        /**
+         * The constructor used for XML parsing, with element name for named types or without argument, or null
+         * if none.
+         */
+        final MethodHandle xmlConstructor;
+
+        /**
+         * The static fromSedaXml(SEDAXMLEventReader) method, or null if none.
+         */
+        final MethodHandle fromSedaXmlMethod;
+
+        /**
+         * The args constructors by args types.
+         */
+        final ConcurrentHashMap<ArgsTypesKey, ArgsConstructor> argsConstructorsMap;
+
+        ClassConstructors(Class<?> metadataClass) {
+            this.metadataClass = metadataClass;
+            this.needName = metadataClass.getName().contains(".namedtype.");
+            MethodHandle handle;
+            try {
+                Constructor<?> constructor;
+                if (needName)
+                    constructor = ConstructorUtils.getMatchingAccessibleConstructor(metadataClass, String.class);
+                else
+                    constructor = ConstructorUtils.getMatchingAccessibleConstructor(metadataClass);
+                if ((constructor == null) || (constructor.isVarArgs() && !needName))
+                    handle = null;
+                else if (needName)
+                    handle = LOOKUP.unreflectConstructor(constructor)
+                            .asType(MethodType.methodType(Object.class, String.class));
+                else
+                    handle = LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+            } catch (IllegalAccessException | SecurityException e) {
+                handle = null;
+            }
+            this.xmlConstructor = handle;
+            try {
+                Method method = metadataClass.getMethod("fromSedaXml", SEDAXMLEventReader.class);
+                if (Modifier.isStatic(method.getModifiers()))
+                    handle = LOOKUP.unreflect(method)
+                            .asType(MethodType.methodType(Object.class, SEDAXMLEventReader.class));
+                else
+                    handle = null;
+            } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                handle = null;
+            }
+            this.fromSedaXmlMethod = handle;
+            this.argsConstructorsMap = new ConcurrentHashMap<ArgsTypesKey, ArgsConstructor>();
+        }
+    }
+
+    /**
+     * The Class ArgsTypesKey.
+     * <p>
+     * Key of args types, null meaning a null arg compatible with any type.
+     */
+    private static class ArgsTypesKey {
+        final Class<?>[] types;
+        final int hash;
+
+        ArgsTypesKey(Class<?>[] types) {
+            this.types = types;
+            this.hash = Arrays.hashCode(types);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof ArgsTypesKey) && Arrays.equals(types, ((ArgsTypesKey) o).types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The args given as the only argument, packed in an Object[].
+     */
+    private static final int PACKED_ARGS = 1;
+
+    /**
+     * The element name and the args packed in an Object[].
+     */
+    private static final int NAME_AND_PACKED_ARGS = 2;
+
+    /**
+     * The args, after the element name for named types, given one by one.
+     */
+    private static final int SPREAD_ARGS = 3;
+
+    /**
+     * The Class ArgsConstructor.
+     * <p>
+     * Constructor resolved for given args types, and the way args are given to it.
+     */
+    private static class ArgsConstructor {
+
+        /**
+         * The constructor handle, taking an Object[] of the arguments to spread.
+         */
+        final MethodHandle handle;
+
+        /**
+         * The way args are given to the constructor (PACKED_ARGS, NAME_AND_PACKED_ARGS or SPREAD_ARGS).
+         */
+        final int argsMode;
+
+        ArgsConstructor(MethodHandle handle, int argsMode) {
+            this.handle = handle;
+            this.argsMode = argsMode;
+        }
+    }
+
+    /**
+     * Gets the constructors of a SEDAMetadata sub-class, resolving them if needed.
+     *
+     * @param metadataClass the metadata class
+     * @return the class constructors
+     */
+    private static ClassConstructors getClassConstructors(Class<?> metadataClass) {
+        ClassConstructors classConstructors = classConstructorsMap.get(metadataClass);
+        if (classConstructors == null)
+            classConstructors = classConstructorsMap.computeIfAbsent(metadataClass, ClassConstructors::new);
+        return classConstructors;
+    }
+
+    /**
+     * Register a SEDAMetadata sub-class, so that its constructors are resolved before use.
+     *
+     * @param metadataClass the metadata class
+     */
+    public static void register(Class<?> metadataClass) {
+        getClassConstructors(metadataClass);
+    }
+
+    private static ArgsConstructor resolveArgsConstructor(ClassConstructors classConstructors, String elementName,
+                                                          Class<?>[] parameterTypes) throws SEDALibException {
+        Class<?> metadataClass = classConstructors.metadataClass;
+        try {
+            Constructor<?> constructor = ConstructorUtils.getMatchingAccessibleConstructor(metadataClass, parameterTypes);
+            int argsMode;
+            if (constructor == null) {
+                try {
+                    if (classConstructors.needName) {
+                        constructor = metadataClass.getConstructor(String.class, Object[].class);
+                        argsMode = NAME_AND_PACKED_ARGS;
+                    } else {
+                        constructor = metadataClass.getConstructor(Object[].class);
+                        argsMode = PACKED_ARGS;
+                    }
+                } catch (NoSuchMethodException e) {
+                    throw new SEDALibException("Pas de constructeur de l'élément [" + elementName + "]", e);
+                }
+            } else {
+                Class<?>[] types = constructor.getParameterTypes();
+                if ((types.length == 1) && types[0].equals(Object[].class))
+                    argsMode = PACKED_ARGS;
+                else if (types.length == parameterTypes.length)
+                    argsMode = SPREAD_ARGS;
+                else
+                    throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]",
+                            new IllegalArgumentException("wrong number of arguments"));
+            }
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor).asFixedArity();
+            handle = handle.asType(handle.type().changeReturnType(Object.class))
+                    .asSpreader(Object[].class, handle.type().parameterCount());
+            return new ArgsConstructor(handle, argsMode);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", e);
+        }
+    }
+
+    private static SEDAMetadata invoke(MethodHandle handle, Object[] args, String elementName)
+            throws SEDALibException {
+        try {
+            return (SEDAMetadata) (Object) handle.invokeExact(args);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", t);
+        }
+    }
+
+    /**
+     * Construct a new SEDA metadata of the given class from args, as the addNewMetadata of ComplexListType
+     * does.
+     * <p>
+     * The constructor is chosen by args types, the element name being added as first arg for named types, and
+     * if none is convenient the constructor with an Object[] args (after element name for named types) is used.
+     * The choice is kept by class and args types.
+     *
+     * @param metadataClass the metadata class
+     * @param elementName   the element name
+     * @param args          the args
+     * @return the SEDA metadata
+     * @throws SEDALibException if no constructor is convenient or if failed in construction
+     */
+    public static SEDAMetadata newSEDAMetadata(Class<?> metadataClass, String elementName, Object[] args)
+            throws SEDALibException {
+        ClassConstructors classConstructors = getClassConstructors(metadataClass);
+        Object[] newArgs;
+        args = ArrayUtils.nullToEmpty(args);
+        if (classConstructors.needName) {
+            newArgs = new Object[args.length + 1];
+            newArgs[0] = elementName;
+            System.arraycopy(args, 0, newArgs, 1, args.length);
+        } else
+            newArgs = args;
+        ArgsTypesKey key = new ArgsTypesKey(ClassUtils.toClass(newArgs));
+        ArgsConstructor argsConstructor = classConstructors.argsConstructorsMap.get(key);
+        if (argsConstructor == null) {
+            argsConstructor = resolveArgsConstructor(classConstructors, elementName, key.types);
+            classConstructors.argsConstructorsMap.putIfAbsent(key, argsConstructor);
+        }
+        if (argsConstructor.argsMode == PACKED_ARGS)
+            newArgs = new Object[]{args};
+        else if (argsConstructor.argsMode == NAME_AND_PACKED_ARGS)
+            newArgs = new Object[]{elementName, args};
+        return invoke(argsConstructor.handle, newArgs, elementName);
+    }
+
+    /**
+     * Construct an empty SEDA metadata of the given class, before filling it from XML.
+     *
+     * @param metadataClass the metadata class
+     * @param elementName   the element name, used for named types
+     * @return the SEDA metadata
+     * @throws SEDALibException if no constructor is convenient or if failed in construction
+     */
+    public static SEDAMetadata newEmptySEDAMetadata(Class<?> metadataClass, String elementName)
+            throws SEDALibException {
+        ClassConstructors classConstructors = getClassConstructors(metadataClass);
+        if (classConstructors.xmlConstructor == null)
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName(),
+                    new NoSuchMethodException(metadataClass.getName() + ".<init>"));
+        try {
+            if (classConstructors.needName)
+                return (SEDAMetadata) (Object) classConstructors.xmlConstructor.invokeExact(elementName);
+            return (SEDAMetadata) (Object) classConstructors.xmlConstructor.invokeExact();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName(), t);
+        }
+    }
+
+    /**
+     * Call the static fromSedaXml(SEDAXMLEventReader) method of the given class.
+     *
+     * @param metadataClass the metadata class
+     * @param xmlReader     the xml reader
+     * @return the read SEDA metadata
+     * @throws SEDALibException if there's no such method or if it fails
+     */
+    public static SEDAMetadata callFromSedaXml(Class<?> metadataClass, SEDAXMLEventReader xmlReader)
+            throws SEDALibException {
+        ClassConstructors classConstructors = getClassConstructors(metadataClass);
+        if (classConstructors.fromSedaXmlMethod == null)
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName(),
+                    new NoSuchMethodException(metadataClass.getName() + ".fromSedaXml"));
+        try {
+            return (SEDAMetadata) (Object) classConstructors.fromSedaXmlMethod.invokeExact(xmlReader);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName(), t);
+        }
+    }
+}
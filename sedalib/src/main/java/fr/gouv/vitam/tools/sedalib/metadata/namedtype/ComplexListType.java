@@ -29,22 +29,17 @@ package fr.gouv.vitam.tools.sedalib.metadata.namedtype;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadata;
+import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadataFactory;
 import fr.gouv.vitam.tools.sedalib.metadata.content.Gps;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.ClassUtils;
-import org.apache.commons.lang3.reflect.ConstructorUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -87,52 +82,6 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         this.metadataList = new ArrayList<SEDAMetadata>();
     }
 
-    /**
-     * Gets convenient constructor for args.
-     *
-     * @param metadataClass the metadata class
-     * @param args          the args
-     * @return the convenient constructor for args
-     * @throws SEDALibException the seda lib exception
-     */
-    private static SEDAMetadata getClassMemberConstructedFromArgs(Class<?> metadataClass, String elementName, Object[] args) throws SEDALibException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        Object[] newArgs;
-        boolean needName = metadataClass.getName().contains(".namedtype.");
-        SEDAMetadata sm;
-        args = ArrayUtils.nullToEmpty(args);
-        if (needName) {
-            newArgs = new Object[args.length + 1];
-            newArgs[0] = elementName;
-            System.arraycopy(args, 0, newArgs, 1, args.length);
-        } else
-            newArgs = args;
-        Class<?>[] parameterTypes = ClassUtils.toClass(newArgs);
-        Constructor theConstructor = ConstructorUtils.getMatchingAccessibleConstructor(metadataClass, parameterTypes);
-        if (theConstructor == null) {
-            try {
-                if (metadataClass.getName().contains(".namedtype."))
-                    sm = (SEDAMetadata) metadataClass.getConstructor(String.class, Object[].class).newInstance(elementName, args);
-                else {
-                    newArgs = new Object[1];
-                    newArgs[0] = args;
-                    sm = (SEDAMetadata) metadataClass.getConstructor(Object[].class).newInstance(newArgs);
-                }
-            } catch (NoSuchMethodException e) {
-                throw new SEDALibException("Pas de constructeur de l'élément [" + elementName + "]", e);
-            }
-        } else {
-            Type[] types = theConstructor.getGenericParameterTypes();
-            if ((types.length != 1) || (!types[0].equals(Object[].class)))
-                sm = (SEDAMetadata) theConstructor.newInstance(newArgs);
-            else {
-                newArgs = new Object[1];
-                newArgs[0] = args;
-                sm = (SEDAMetadata) theConstructor.newInstance(newArgs);
-            }
-        }
-        return sm;
-    }
-
     /**
      * Construct a new SEDA metadata.
      *
@@ -143,24 +92,12 @@ public abstract class ComplexListType extends NamedTypeMetadata {
      */
     private SEDAMetadata newSEDAMetadata(String elementName, Object[] args) throws SEDALibException {
         ComplexListMetadataKind mi = getMetadataMap().get(elementName);
-        Constructor<?> constructor;
-        int i;
-        try {
-            Class metadataClass;
-            if (mi == null)
-                metadataClass = AnyXMLType.class;
-            else
-                metadataClass = mi.metadataClass;
-            SEDAMetadata sm = getClassMemberConstructedFromArgs(metadataClass, elementName, args);
-            if (sm == null)
-                throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]");
-            return sm;
-        } catch (SecurityException | InstantiationException | IllegalAccessException
-                | IllegalArgumentException e) {
-            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", e);
-        } catch (InvocationTargetException te) {
-            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", te.getTargetException());
-        }
+        Class<?> metadataClass;
+        if (mi == null)
+            metadataClass = AnyXMLType.class;
+        else
+            metadataClass = mi.metadataClass;
+        return SEDAMetadataFactory.newSEDAMetadata(metadataClass, elementName, args);
     }
 
     /**
@@ -426,6 +363,8 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         } catch (ClassCastException e) {
             throw new SEDALibException("La variable " + fields.get(0) + " annotée @ComplexListMetadataMap du type " + subClass + " n'est pas de type LinkedHashMap<String,ComplexListMetadataKind>", e);
         }
+        for (ComplexListMetadataKind mi : metadataMap.values())
+            SEDAMetadataFactory.register(mi.metadataClass);
         subTypeMetadataMapMap.put(subClass, metadataMap);
         subTypeMetadataOrderedListMap.put(subClass, new ArrayList(metadataMap.keySet()));
         subTypeNotExpandableMap.put(subClass, !fields.get(0).getAnnotation(ComplexListMetadataMap.class).isExpandable());
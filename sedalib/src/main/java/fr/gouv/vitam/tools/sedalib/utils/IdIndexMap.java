@@ -0,0 +1,357 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import java.util.*;
+
+/**
+ * The Class IdIndexMap.
+ * <p>
+ * Map keyed by inDataObjectPackageId, optimized for the "IDnnn" ids generated in DataObjectPackage. The values of
+ * such ids are kept in an array indexed by the id number, which costs one reference per id instead of a hash
+ * entry, and the other ids (imported ones in another form, or too sparse numbers) are kept in a HashMap.
+ * <p>
+ * Iteration is done by increasing id number for generated ids, then on the other ids. Null values are not
+ * supported.
+ *
+ * @param <V> the values type
+ */
+public class IdIndexMap<V> extends AbstractMap<String, V> {
+
+    /**
+     * The minimum number up to which generated ids are always kept in the array.
+     */
+    private static final int MIN_DENSE_LIMIT = 1024;
+
+    /**
+     * The values by id number.
+     */
+    private Object[] denseValues;
+
+    /**
+     * The number of values in array.
+     */
+    private int denseCount;
+
+    /**
+     * The values for other ids, created when needed.
+     */
+    private HashMap<String, V> sparseMap;
+
+    /**
+     * The modification counter, for iterators.
+     */
+    private int modCount;
+
+    /**
+     * Instantiates a new empty id index map.
+     */
+    public IdIndexMap() {
+        this.denseValues = new Object[16];
+        this.denseCount = 0;
+        this.sparseMap = null;
+        this.modCount = 0;
+    }
+
+    /**
+     * Instantiates a new id index map with the content of a map.
+     *
+     * @param map the map
+     */
+    public IdIndexMap(Map<String, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    /**
+     * Gets the number of a generated id in "IDnnn" form, without leading zero.
+     *
+     * @param id the id
+     * @return the id number, or -1 if not a generated id
+     */
+    public static int getIdNumber(Object id) {
+        if (!(id instanceof String))
+            return -1;
+        String s = (String) id;
+        int len = s.length();
+        if ((len < 3) || (len > 12) || (s.charAt(0) != 'I') || (s.charAt(1) != 'D'))
+            return -1;
+        if ((s.charAt(2) == '0') && (len > 3))
+            return -1;
+        long result = 0;
+        for (int i = 2; i < len; i++) {
+            char c = s.charAt(i);
+            if ((c < '0') || (c > '9'))
+                return -1;
+            result = result * 10 + (c - '0');
+        }
+        if (result >= Integer.MAX_VALUE)
+            return -1;
+        return (int) result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V getDense(int number) {
+        if ((number < 0) || (number >= denseValues.length))
+            return null;
+        return (V) denseValues[number];
+    }
+
+    private boolean isDenseCandidate(int number) {
+        return (number >= 0) && ((number < denseValues.length)
+                || (number < Math.max(MIN_DENSE_LIMIT, 4 * (denseCount + 1))));
+    }
+
+    @Override
+    public int size() {
+        return denseCount + (sparseMap == null ? 0 : sparseMap.size());
+    }
+
+    /**
+     * Gets the number of values kept in the hash map, that is for ids not stored by number.
+     *
+     * @return the number of values
+     */
+    int getSparseCount() {
+        return (sparseMap == null ? 0 : sparseMap.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        V value = getDense(getIdNumber(key));
+        if ((value == null) && (sparseMap != null))
+            value = sparseMap.get(key);
+        return value;
+    }
+
+    @Override
+    public V put(String key, V value) {
+        if (value == null)
+            throw new NullPointerException("IdIndexMap doesn't support null values");
+        int number = getIdNumber(key);
+        if (isDenseCandidate(number) && ((sparseMap == null) || !sparseMap.containsKey(key))) {
+            if (number >= denseValues.length)
+                denseValues = Arrays.copyOf(denseValues, Math.max(number + 1, denseValues.length + (denseValues.length >> 1)));
+            V previous = getDense(number);
+            denseValues[number] = value;
+            if (previous == null) {
+                denseCount++;
+                modCount++;
+            }
+            return previous;
+        }
+        if (sparseMap == null)
+            sparseMap = new HashMap<String, V>();
+        int previousSize = sparseMap.size();
+        V previous = sparseMap.put(key, value);
+        if (sparseMap.size() != previousSize)
+            modCount++;
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int number = getIdNumber(key);
+        V previous = getDense(number);
+        if (previous != null) {
+            denseValues[number] = null;
+            denseCount--;
+            modCount++;
+            return previous;
+        }
+        if (sparseMap != null) {
+            previous = sparseMap.remove(key);
+            if (previous != null)
+                modCount++;
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        denseValues = new Object[16];
+        denseCount = 0;
+        sparseMap = null;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return IdIndexMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                IdIndexMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * The Class DenseEntry.
+     * <p>
+     * Map entry on a generated id value, writing through to the array.
+     */
+    private class DenseEntry implements Entry<String, V> {
+        private final int number;
+        private V value;
+
+        DenseEntry(int number, V value) {
+            this.number = number;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return "ID" + number;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException("IdIndexMap doesn't support null values");
+            V previous = this.value;
+            denseValues[number] = value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + value;
+        }
+    }
+
+    /**
+     * The Class EntryIterator.
+     * <p>
+     * Iterator on the array values by increasing id number, then on the other ids values.
+     */
+    private class EntryIterator implements Iterator<Entry<String, V>> {
+        private int nextNumber;
+        private Iterator<Entry<String, V>> sparseIterator;
+        private int lastNumber;
+        private boolean lastInSparse;
+        private int expectedModCount;
+
+        EntryIterator() {
+            this.nextNumber = advance(0);
+            this.sparseIterator = null;
+            this.lastNumber = -1;
+            this.lastInSparse = false;
+            this.expectedModCount = modCount;
+        }
+
+        private int advance(int from) {
+            while ((from < denseValues.length) && (denseValues[from] == null))
+                from++;
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextNumber < denseValues.length)
+                return true;
+            if (sparseIterator == null)
+                sparseIterator = (sparseMap == null ? Collections.<String, V>emptyMap() : sparseMap).entrySet().iterator();
+            return sparseIterator.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<String, V> next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            if (nextNumber < denseValues.length) {
+                lastNumber = nextNumber;
+                lastInSparse = false;
+                nextNumber = advance(nextNumber + 1);
+                return new DenseEntry(lastNumber, (V) denseValues[lastNumber]);
+            }
+            lastInSparse = true;
+            lastNumber = -1;
+            return sparseIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastInSparse) {
+                sparseIterator.remove();
+                lastInSparse = false;
+            } else {
+                if (lastNumber < 0)
+                    throw new IllegalStateException();
+                denseValues[lastNumber] = null;
+                denseCount--;
+                lastNumber = -1;
+            }
+            modCount++;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * The Class IdTouchedSet.
+ * <p>
+ * Set of touched inDataObjectPackageIds with a touch count, used during graph treatments. The generated "IDnnn"
+ * ids are marked in a BitSet by id number and their counts, only needed when incremented, are kept in an int
+ * array, the other ids are kept in a HashMap.
+ */
+public class IdTouchedSet {
+
+    /**
+     * The touched generated ids numbers.
+     */
+    private BitSet touchedNumbers;
+
+    /**
+     * The counts by generated id number, created on first increment.
+     */
+    private int[] counts;
+
+    /**
+     * The counts for other ids, created when needed.
+     */
+    private HashMap<String, Integer> sparseCounts;
+
+    /**
+     * Instantiates a new empty touched set.
+     */
+    public IdTouchedSet() {
+        this.touchedNumbers = new BitSet();
+        this.counts = null;
+        this.sparseCounts = null;
+    }
+
+    /**
+     * Clear the set.
+     */
+    public void clear() {
+        touchedNumbers.clear();
+        if (counts != null)
+            Arrays.fill(counts, 0);
+        if (sparseCounts != null)
+            sparseCounts.clear();
+    }
+
+    /**
+     * Checks if the id has been touched.
+     *
+     * @param id the id
+     * @return true, if touched
+     */
+    public boolean contains(String id) {
+        int number = IdIndexMap.getIdNumber(id);
+        if (number >= 0)
+            return touchedNumbers.get(number);
+        return (sparseCounts != null) && sparseCounts.containsKey(id);
+    }
+
+    /**
+     * Touch the id with a count set to 1.
+     *
+     * @param id the id
+     */
+    public void add(String id) {
+        int number = IdIndexMap.getIdNumber(id);
+        if (number >= 0) {
+            touchedNumbers.set(number);
+            if ((counts != null) && (number < counts.length))
+                counts[number] = 0;
+        } else {
+            if (sparseCounts == null)
+                sparseCounts = new HashMap<String, Integer>();
+            sparseCounts.put(id, 1);
+        }
+    }
+
+    /**
+     * Increment the id touch count, set to 1 if touched for the first time.
+     *
+     * @param id the id
+     */
+    public void increment(String id) {
+        int number = IdIndexMap.getIdNumber(id);
+        if (number >= 0) {
+            if (!touchedNumbers.get(number)) {
+                add(id);
+                return;
+            }
+            if (counts == null)
+                counts = new int[Math.max(number + 1, touchedNumbers.length())];
+            else if (number >= counts.length)
+                counts = Arrays.copyOf(counts, Math.max(number + 1, counts.length + (counts.length >> 1)));
+            // counts are stored minus one, so that a touched number has an implicit count of 1
+            counts[number]++;
+        } else {
+            if (sparseCounts == null)
+                sparseCounts = new HashMap<String, Integer>();
+            Integer value = sparseCounts.get(id);
+            sparseCounts.put(id, value == null ? 1 : value + 1);
+        }
+    }
+
+    /**
+     * Gets the id touch count.
+     *
+     * @param id the id
+     * @return the count, or 0 if not touched
+     */
+    public int getCount(String id) {
+        int number = IdIndexMap.getIdNumber(id);
+        if (number >= 0) {
+            if (!touchedNumbers.get(number))
+                return 0;
+            if ((counts == null) || (number >= counts.length))
+                return 1;
+            return counts[number] + 1;
+        }
+        if (sparseCounts == null)
+            return 0;
+        Integer value = sparseCounts.get(id);
+        return value == null ? 0 : value;
+    }
+}
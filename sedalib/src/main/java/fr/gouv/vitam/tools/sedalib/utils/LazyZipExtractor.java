@@ -0,0 +1,230 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Class LazyZipExtractor.
+ * <p>
+ * Class for extracting on demand the files of a zip, using its central directory for random access, so that a SIP
+ * can be imported without extracting all its content in the work directory. Each file is extracted in the extract
+ * directory, at the path corresponding to its entry name, only the first time it's needed.
+ * <p>
+ * As done when a SIP is fully extracted, entry names beginning by "content" in any case are extracted in the
+ * lowercase "content" directory.
+ */
+public class LazyZipExtractor implements Closeable {
+
+    /**
+     * The zip file.
+     */
+    private ZipFile zipFile;
+
+    /**
+     * The zip file path.
+     */
+    private Path zipFilePath;
+
+    /**
+     * The extract directory.
+     */
+    private Path extractDirectory;
+
+    /**
+     * The entries whose extracted name is not the entry name, by extracted name.
+     */
+    private Map<String, ZipArchiveEntry> renamedEntryMap;
+
+    /**
+     * The extracted files counter.
+     */
+    private int extractedCount;
+
+    /**
+     * The closed flag.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new lazy zip extractor.
+     *
+     * @param zipFilePath      the zip file path
+     * @param extractDirectory the extract directory
+     * @throws IOException if the zip file can't be opened
+     */
+    public LazyZipExtractor(Path zipFilePath, Path extractDirectory) throws IOException {
+        this.zipFile = new ZipFile(zipFilePath.toFile());
+        this.zipFilePath = zipFilePath.toAbsolutePath().normalize();
+        this.extractDirectory = extractDirectory.toAbsolutePath().normalize();
+        this.renamedEntryMap = new HashMap<String, ZipArchiveEntry>();
+        this.extractedCount = 0;
+        this.closed = false;
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            String extractedName = getExtractedName(entry.getName());
+            if (!extractedName.equals(entry.getName()))
+                renamedEntryMap.put(extractedName, entry);
+        }
+    }
+
+    /**
+     * Gets the zip file path.
+     *
+     * @return the zip file path
+     */
+    public Path getZipFilePath() {
+        return zipFilePath;
+    }
+
+    /**
+     * Gets the extract directory.
+     *
+     * @return the extract directory
+     */
+    public Path getExtractDirectory() {
+        return extractDirectory;
+    }
+
+    /**
+     * Gets the name where the entry is extracted, relative to the extract directory.
+     *
+     * @param entryName the entry name
+     * @return the extracted name
+     */
+    public static String getExtractedName(String entryName) {
+        String result = entryName.trim();
+        if (result.toLowerCase().startsWith("content"))
+            result = "content" + result.substring(7);
+        return result;
+    }
+
+    /**
+     * Gets the zip entry to be extracted in a given relative name.
+     *
+     * @param extractedName the extracted name, relative to the extract directory, with '/' separators
+     * @return the zip entry, or null if none
+     */
+    public ZipArchiveEntry getEntry(String extractedName) {
+        ZipArchiveEntry entry = renamedEntryMap.get(extractedName);
+        if (entry == null)
+            entry = zipFile.getEntry(extractedName);
+        return entry;
+    }
+
+    /**
+     * Gets all the zip entries.
+     *
+     * @return the entries enumeration
+     */
+    public Enumeration<ZipArchiveEntry> getEntries() {
+        return zipFile.getEntries();
+    }
+
+    /**
+     * Gets the input stream on an entry content, without extracting it.
+     *
+     * @param entry the zip entry
+     * @return the input stream
+     * @throws IOException if the entry can't be read
+     */
+    public InputStream getInputStream(ZipArchiveEntry entry) throws IOException {
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Extract, if not already done, the zip entry corresponding to a path in the extract directory.
+     *
+     * @param path the path in the extract directory
+     * @return true if the path is now extracted or was already present, false if it doesn't correspond to an entry
+     * @throws IOException if extraction has failed, or the extractor is closed
+     */
+    public boolean extractIfNeeded(Path path) throws IOException {
+        Path target = path.toAbsolutePath().normalize();
+        if (Files.exists(target))
+            return true;
+        if (closed)
+            throw new IOException("Extraction de [" + target + "] impossible, le zip [" + zipFilePath
+                    + "] est fermé");
+        if (!target.startsWith(extractDirectory))
+            return false;
+        String extractedName = extractDirectory.relativize(target).toString().replace('\\', '/');
+        ZipArchiveEntry entry = getEntry(extractedName);
+        if ((entry == null) || entry.isDirectory())
+            return false;
+        synchronized (this) {
+            if (Files.exists(target))
+                return true;
+            if (closed)
+                throw new IOException("Extraction de [" + target + "] impossible, le zip [" + zipFilePath
+                        + "] est fermé");
+            Files.createDirectories(target.getParent());
+            Path tmpTarget = target.resolveSibling(target.getFileName().toString() + ".part");
+            try (InputStream is = zipFile.getInputStream(entry)) {
+                Files.copy(is, tmpTarget, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmpTarget, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmpTarget);
+            }
+            extractedCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of files extracted since creation.
+     *
+     * @return the extracted count
+     */
+    public synchronized int getExtractedCount() {
+        return extractedCount;
+    }
+
+    /**
+     * Close the zip file. The files not yet extracted can't be extracted any more.
+     *
+     * @throws IOException if closing has failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            zipFile.close();
+        }
+    }
+}
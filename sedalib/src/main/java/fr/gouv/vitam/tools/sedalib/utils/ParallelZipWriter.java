@@ -0,0 +1,688 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * The Class ParallelZipWriter.
+ * <p>
+ * Class for writing a zip file where file entries are deflated in parallel by a pool of worker threads, and
+ * written in the zip by the calling thread in adding order, so that the same entries always give the same zip
+ * whatever the thread count. Each deflated entry is kept in memory, or in a temporary file when bigger than
+ * {@link #MAX_MEMORY_ENTRY_SIZE}, until written, and the number of entries waiting to be written is bounded, so
+ * memory use doesn't depend on files size or count. Stored entries, and all entries when there is only one
+ * thread, are directly written in the zip from their source.
+ * <p>
+ * File entries can be either deflated or stored, for example for already compressed formats. They can also let
+ * the compression method be chosen by the worker thread, from the entropy of a sample of the file beginning, so
+ * that files with no format based decision are not deflated for nothing when they look already compressed.
+ * Statistics are kept on stored and deflated entries, and on the compression CPU time.
+ * <p>
+ * Zip64 extensions are used when needed (more than 65535 entries, files or zip bigger than 4GB), the zip being
+ * written in a file so that streamed entries headers can be completed.
+ */
+public class ParallelZipWriter implements Closeable {
+
+    /**
+     * The default entropy, in bits per byte, over which an entry with automatic method is stored.
+     */
+    public static final double DEFAULT_STORED_ENTROPY_THRESHOLD = 7.5;
+
+    /**
+     * The maximum deflated size of an entry kept in memory until written, bigger ones being kept in a temporary
+     * file.
+     */
+    public static final int MAX_MEMORY_ENTRY_SIZE = 1024 * 1024;
+
+    /**
+     * The size of the file beginning sample used to compute entropy.
+     */
+    private static final int ENTROPY_SAMPLE_SIZE = 65536;
+
+    /**
+     * The copy buffer size.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The Class StreamEntryOutputStream.
+     * <p>
+     * Output stream writing a streamed entry in the zip, the entry being closed, but not the zip, on close.
+     */
+    private class StreamEntryOutputStream extends FilterOutputStream {
+        private boolean closed;
+
+        StreamEntryOutputStream() {
+            super(zipOutputStream);
+            this.closed = false;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed)
+                throw new IOException("Entrée zip déjà fermée");
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // the zip is flushed when closed
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            zipOutputStream.closeArchiveEntry();
+            streamEntry = null;
+        }
+    }
+
+    /**
+     * The Class MeasuredInputStream.
+     * <p>
+     * Input stream of a file entry source written directly in the zip, measuring read bytes and the calling
+     * thread CPU time spent between opening and closing, that is to say reading and compressing the entry.
+     */
+    private class MeasuredInputStream extends FilterInputStream {
+        private final int method;
+        private final long startCpuTime;
+        private long size;
+        private boolean closed;
+
+        MeasuredInputStream(InputStream in, int method) {
+            super(in);
+            this.method = method;
+            this.startCpuTime = getCurrentThreadCpuTime();
+            this.size = 0;
+            this.closed = false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1)
+                size++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = in.read(b, off, len);
+            if (count > 0)
+                size += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            in.close();
+            if (method == ZipEntry.STORED) {
+                storedEntriesCount.incrementAndGet();
+                storedBytes.addAndGet(size);
+            } else {
+                deflatedEntriesCount.incrementAndGet();
+                deflatedBytes.addAndGet(size);
+                deflateCpuTime.addAndGet(getCurrentThreadCpuTime() - startCpuTime);
+            }
+        }
+    }
+
+    /**
+     * The Class EntryBuffer.
+     * <p>
+     * Output stream keeping a deflated entry in memory, or in a temporary file once bigger than
+     * {@link #MAX_MEMORY_ENTRY_SIZE}.
+     */
+    private class EntryBuffer extends OutputStream {
+        private ByteArrayOutputStream memory;
+        private File file;
+        private OutputStream fileOutputStream;
+        private long size;
+
+        EntryBuffer() {
+            this.memory = new ByteArrayOutputStream();
+            this.size = 0;
+            entryBuffers.add(this);
+        }
+
+        private OutputStream getOutputStream(int len) throws IOException {
+            if ((file == null) && (size + len > MAX_MEMORY_ENTRY_SIZE)) {
+                file = Files.createTempFile("sedalib-zip", ".tmp").toFile();
+                fileOutputStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+                memory.writeTo(fileOutputStream);
+                memory = null;
+            }
+            return (file == null ? memory : fileOutputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            getOutputStream(1).write(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            getOutputStream(len).write(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOutputStream != null)
+                fileOutputStream.close();
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        InputStream newInputStream() throws IOException {
+            if (file == null)
+                return new ByteArrayInputStream(memory.toByteArray());
+            return new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        }
+
+        void release() {
+            memory = null;
+            closeQuietly(fileOutputStream);
+            if (file != null)
+                file.delete();
+            entryBuffers.remove(this);
+        }
+    }
+
+    /**
+     * The Class PreparedEntry.
+     * <p>
+     * File entry ready to be written in the zip, either already deflated in a buffer, or to be directly written
+     * from its source.
+     */
+    private class PreparedEntry {
+        private final ZipArchiveEntry entry;
+        private final EntryBuffer buffer;
+        private final Path path;
+        private final InputStream source;
+
+        PreparedEntry(ZipArchiveEntry entry, EntryBuffer buffer) {
+            this.entry = entry;
+            this.buffer = buffer;
+            this.path = null;
+            this.source = null;
+        }
+
+        PreparedEntry(ZipArchiveEntry entry, Path path, InputStream source) {
+            this.entry = entry;
+            this.buffer = null;
+            this.path = path;
+            this.source = source;
+        }
+
+        void writeTo(ZipArchiveOutputStream zipOutputStream) throws IOException {
+            if (buffer != null) {
+                try (InputStream is = buffer.newInputStream()) {
+                    zipOutputStream.addRawArchiveEntry(entry, is);
+                }
+            } else {
+                zipOutputStream.putArchiveEntry(entry);
+                try (InputStream is = new MeasuredInputStream(source != null ? source : Files.newInputStream(path),
+                        entry.getMethod())) {
+                    copy(is, zipOutputStream);
+                }
+                zipOutputStream.closeArchiveEntry();
+            }
+            if (entry.getMethod() == ZipEntry.DEFLATED)
+                deflatedCompressedBytes.addAndGet(entry.getCompressedSize());
+        }
+
+        void release() {
+            if (buffer != null)
+                buffer.release();
+            closeQuietly(source);
+        }
+    }
+
+    /**
+     * The zip output stream.
+     */
+    private ZipArchiveOutputStream zipOutputStream;
+
+    /**
+     * The compression workers pool, or null if entries are compressed by the calling thread.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The entries being prepared or waiting to be written, in adding order.
+     */
+    private Deque<Future<PreparedEntry>> pendingEntries;
+
+    /**
+     * The maximum number of entries waiting to be written before the calling thread writes the oldest one.
+     */
+    private int maxPendingEntries;
+
+    /**
+     * The deflated entries buffers, to be released in any case.
+     */
+    private Set<EntryBuffer> entryBuffers;
+
+    /**
+     * The current streamed entry output stream, if any.
+     */
+    private StreamEntryOutputStream streamEntry;
+
+    /**
+     * The entries modification time.
+     */
+    private long entriesTime;
+
+    /**
+     * The entropy over which an entry with automatic method is stored.
+     */
+    private double storedEntropyThreshold;
+
+    /**
+     * The statistics counters.
+     */
+    private AtomicLong storedEntriesCount, storedBytes;
+    private AtomicLong deflatedEntriesCount, deflatedBytes, deflatedCompressedBytes;
+    private AtomicLong deflateCpuTime;
+
+    /**
+     * Instantiates a new parallel zip writer.
+     *
+     * @param zipFile     the zip file
+     * @param threadCount the number of compression threads, 1 for compression by the calling thread
+     * @throws IOException if the zip file can't be created
+     */
+    public ParallelZipWriter(File zipFile, int threadCount) throws IOException {
+        this.zipOutputStream = new ZipArchiveOutputStream(zipFile);
+        this.zipOutputStream.setUseZip64(Zip64Mode.AsNeeded);
+        if (threadCount > 1) {
+            this.executor = Executors.newFixedThreadPool(threadCount);
+            this.maxPendingEntries = 2 * threadCount;
+        } else {
+            this.executor = null;
+            this.maxPendingEntries = 0;
+        }
+        this.pendingEntries = new ArrayDeque<Future<PreparedEntry>>();
+        this.entryBuffers = ConcurrentHashMap.newKeySet();
+        this.streamEntry = null;
+        this.entriesTime = System.currentTimeMillis();
+        this.storedEntropyThreshold = DEFAULT_STORED_ENTROPY_THRESHOLD;
+        this.storedEntriesCount = new AtomicLong();
+        this.storedBytes = new AtomicLong();
+        this.deflatedEntriesCount = new AtomicLong();
+        this.deflatedBytes = new AtomicLong();
+        this.deflatedCompressedBytes = new AtomicLong();
+        this.deflateCpuTime = new AtomicLong();
+    }
+
+    /**
+     * Sets the entropy, in bits per byte from 0 to 8, over which an entry with automatic method is stored.
+     *
+     * @param storedEntropyThreshold the stored entropy threshold
+     */
+    public void setStoredEntropyThreshold(double storedEntropyThreshold) {
+        this.storedEntropyThreshold = storedEntropyThreshold;
+    }
+
+    /**
+     * Adds a file entry, deflated by a worker thread if not stored, and written in the zip in adding order.
+     *
+     * @param name       the entry name
+     * @param path       the file path
+     * @param storedFlag true if the file has to be stored without compression
+     * @throws IOException if a streamed entry is not closed or if writing a previous entry has failed
+     */
+    public void addFileEntry(String name, Path path, boolean storedFlag) throws IOException {
+        checkNoStreamEntry();
+        if (storedFlag || (executor == null))
+            addEntry(() -> new PreparedEntry(newEntry(name, storedFlag ? ZipEntry.STORED : ZipEntry.DEFLATED),
+                    path, null), false);
+        else
+            addEntry(() -> deflate(newEntry(name, ZipEntry.DEFLATED), Files.newInputStream(path)), true);
+    }
+
+    /**
+     * Adds a file entry whose compression method is chosen by the worker thread, the file being stored if the
+     * entropy of its beginning sample is over the stored entropy threshold and deflated otherwise. The file is
+     * read only once, the sample being reused.
+     *
+     * @param name the entry name
+     * @param path the file path
+     * @throws IOException if a streamed entry is not closed or if writing a previous entry has failed
+     */
+    public void addAutomaticFileEntry(String name, Path path) throws IOException {
+        checkNoStreamEntry();
+        addEntry(() -> {
+            InputStream is = Files.newInputStream(path);
+            try {
+                byte[] sample = new byte[ENTROPY_SAMPLE_SIZE];
+                int sampleSize = 0;
+                int len;
+                while ((sampleSize < sample.length)
+                        && ((len = is.read(sample, sampleSize, sample.length - sampleSize)) != -1))
+                    sampleSize += len;
+                int method = (getEntropy(sample, sampleSize) > storedEntropyThreshold ? ZipEntry.STORED
+                        : ZipEntry.DEFLATED);
+                InputStream source = new SequenceInputStream(new ByteArrayInputStream(sample, 0, sampleSize), is);
+                if ((method == ZipEntry.STORED) || (executor == null))
+                    return new PreparedEntry(newEntry(name, method), path, source);
+                return deflate(newEntry(name, method), source);
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(is);
+                throw e;
+            }
+        }, true);
+    }
+
+    /**
+     * Starts a streamed entry, deflated and written directly in the zip by the calling thread, after all the
+     * previously added entries. The returned output stream has to be closed before adding another entry.
+     *
+     * @param name the entry name
+     * @return the output stream where to write the entry content
+     * @throws IOException if a streamed entry is not closed or if writing has failed
+     */
+    public OutputStream putStreamEntry(String name) throws IOException {
+        checkNoStreamEntry();
+        writePendingEntries(0);
+        zipOutputStream.putArchiveEntry(newEntry(name, ZipEntry.DEFLATED));
+        streamEntry = new StreamEntryOutputStream();
+        return streamEntry;
+    }
+
+    /**
+     * Gets the number of stored entries.
+     *
+     * @return the stored entries count
+     */
+    public long getStoredEntriesCount() {
+        return storedEntriesCount.get();
+    }
+
+    /**
+     * Gets the total size of stored entries.
+     *
+     * @return the stored bytes count
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * Gets the number of deflated file entries, streamed entries being not counted.
+     *
+     * @return the deflated entries count
+     */
+    public long getDeflatedEntriesCount() {
+        return deflatedEntriesCount.get();
+    }
+
+    /**
+     * Gets the total uncompressed size of deflated entries.
+     *
+     * @return the deflated bytes count
+     */
+    public long getDeflatedBytes() {
+        return deflatedBytes.get();
+    }
+
+    /**
+     * Gets the total compressed size of deflated file entries, known once they are written.
+     *
+     * @return the deflated compressed bytes count
+     */
+    public long getDeflatedCompressedBytes() {
+        return deflatedCompressedBytes.get();
+    }
+
+    /**
+     * Gets the CPU time spent by worker threads to read and deflate file entries.
+     *
+     * @return the deflate CPU time in nanoseconds
+     */
+    public long getDeflateCpuTime() {
+        return deflateCpuTime.get();
+    }
+
+    /**
+     * Gets the estimated CPU time saved by storing entries, computed from the deflate time per byte measured on
+     * deflated file entries.
+     *
+     * @return the estimated saved CPU time in nanoseconds
+     */
+    public long getEstimatedSavedCpuTime() {
+        long deflated = deflatedBytes.get();
+        if (deflated == 0)
+            return 0;
+        return (long) ((double) deflateCpuTime.get() * storedBytes.get() / deflated);
+    }
+
+    /**
+     * Finish the zip, waiting for all file entries to be compressed and writing them in the zip, then writing
+     * the central directory.
+     *
+     * @throws IOException if writing has failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (zipOutputStream == null)
+            return;
+        try {
+            checkNoStreamEntry();
+            writePendingEntries(0);
+            zipOutputStream.close();
+            zipOutputStream = null;
+        } finally {
+            abort();
+        }
+    }
+
+    /**
+     * Abort the zip writing, stopping workers and releasing temporary data, without finishing the zip file.
+     */
+    public void abort() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Future<PreparedEntry> future : pendingEntries) {
+            try {
+                if (future.isDone())
+                    future.get().release();
+            } catch (InterruptedException | ExecutionException | CancellationException ignored) {
+                // nothing to release
+            }
+        }
+        pendingEntries.clear();
+        for (EntryBuffer buffer : entryBuffers)
+            buffer.release();
+        if (zipOutputStream != null) {
+            try {
+                zipOutputStream.close();
+            } catch (IOException ignored) {
+                // already in error
+            }
+            zipOutputStream = null;
+        }
+    }
+
+    // prepare the entry by a worker thread, or by the calling thread if no worker or not worth it, then write the
+    // oldest entries if too many are waiting
+    private void addEntry(Callable<PreparedEntry> preparation, boolean workerFlag) throws IOException {
+        Future<PreparedEntry> future;
+        if (workerFlag && (executor != null))
+            future = executor.submit(preparation);
+        else {
+            FutureTask<PreparedEntry> task = new FutureTask<PreparedEntry>(preparation);
+            task.run();
+            future = task;
+        }
+        pendingEntries.add(future);
+        writePendingEntries(maxPendingEntries);
+    }
+
+    // write the oldest entries, in adding order, until no more than maxCount are waiting
+    private void writePendingEntries(int maxCount) throws IOException {
+        while (pendingEntries.size() > maxCount) {
+            PreparedEntry preparedEntry;
+            try {
+                preparedEntry = pendingEntries.peek().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ecriture zip interrompue");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException)
+                    cause = cause.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                throw new IOException("Echec de compression d'une entrée zip", cause);
+            }
+            pendingEntries.poll();
+            try {
+                preparedEntry.writeTo(zipOutputStream);
+            } finally {
+                preparedEntry.release();
+            }
+        }
+    }
+
+    // deflate the source in a buffer, by a worker thread
+    private PreparedEntry deflate(ZipArchiveEntry entry, InputStream source) throws IOException {
+        long startCpuTime = getCurrentThreadCpuTime();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        EntryBuffer buffer = new EntryBuffer();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (InputStream is = source;
+             DeflaterOutputStream dos = new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE)) {
+            byte[] b = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = is.read(b)) != -1) {
+                crc.update(b, 0, len);
+                dos.write(b, 0, len);
+                size += len;
+            }
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        entry.setSize(size);
+        entry.setCompressedSize(buffer.getSize());
+        entry.setCrc(crc.getValue());
+        deflatedEntriesCount.incrementAndGet();
+        deflatedBytes.addAndGet(size);
+        deflateCpuTime.addAndGet(getCurrentThreadCpuTime() - startCpuTime);
+        return new PreparedEntry(entry, buffer);
+    }
+
+    private void checkNoStreamEntry() throws IOException {
+        if (streamEntry != null)
+            throw new IOException("Entrée zip en flux non fermée");
+    }
+
+    private ZipArchiveEntry newEntry(String name, int method) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(method);
+        entry.setTime(entriesTime);
+        return entry;
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        byte[] b = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = is.read(b)) != -1)
+            os.write(b, 0, len);
+    }
+
+    private static double getEntropy(byte[] sample, int sampleSize) {
+        if (sampleSize == 0)
+            return 0;
+        int[] frequencies = new int[256];
+        for (int i = 0; i < sampleSize; i++)
+            frequencies[sample[i] & 0xff]++;
+        double entropy = 0;
+        for (int frequency : frequencies) {
+            if (frequency > 0) {
+                double p = (double) frequency / sampleSize;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    private static long getCurrentThreadCpuTime() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported())
+            return threadMXBean.getCurrentThreadCpuTime();
+        return System.nanoTime();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // already in error
+            }
+        }
+    }
+}
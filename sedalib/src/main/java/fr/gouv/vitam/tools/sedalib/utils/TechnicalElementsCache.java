@@ -0,0 +1,383 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Class TechnicalElementsCache.
+ * <p>
+ * Class for a persistent cache of the technical elements (SHA-512 digest and format identification) computed
+ * from on disk files during BinaryDataObject analysis. Entries are keyed by the normalized absolute file path and
+ * are only valid while the file size and last modified time are unchanged, so that re-importing an unchanged
+ * hierarchy doesn't read again the files content.
+ * <p>
+ * The cache is kept in memory with a maximum number of entries, the least recently used ones being evicted, and
+ * is loaded from and saved to a binary file, typically in the work directory. All methods are thread safe.
+ */
+public class TechnicalElementsCache {
+
+    /**
+     * The default cache file name.
+     */
+    public static final String DEFAULT_CACHE_FILENAME = "technicalElementsCache.bin";
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000000;
+
+    /**
+     * The cache file magic number and format version.
+     */
+    private static final int MAGIC = 0x53544543;
+    private static final int VERSION = 1;
+
+    /**
+     * The Class Entry.
+     * <p>
+     * Technical elements of one file, with the file size and last modified time they were computed for.
+     */
+    public static class Entry {
+
+        /**
+         * The file size.
+         */
+        private final long size;
+
+        /**
+         * The file last modified time in milliseconds.
+         */
+        private final long lastModified;
+
+        /**
+         * The SHA-512 digest.
+         */
+        private final String digest;
+
+        /**
+         * The format litteral, mime type and format id (PUID).
+         */
+        private final String formatLitteral, mimeType, formatId;
+
+        /**
+         * Instantiates a new entry.
+         *
+         * @param size           the file size
+         * @param lastModified   the file last modified time in milliseconds
+         * @param digest         the SHA-512 digest
+         * @param formatLitteral the format litteral
+         * @param mimeType       the mime type
+         * @param formatId       the format id
+         */
+        public Entry(long size, long lastModified, String digest, String formatLitteral, String mimeType,
+                     String formatId) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.formatLitteral = formatLitteral;
+            this.mimeType = mimeType;
+            this.formatId = formatId;
+        }
+
+        /**
+         * Gets the SHA-512 digest.
+         *
+         * @return the digest
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Gets the format litteral.
+         *
+         * @return the format litteral
+         */
+        public String getFormatLitteral() {
+            return formatLitteral;
+        }
+
+        /**
+         * Gets the mime type.
+         *
+         * @return the mime type
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Gets the format id.
+         *
+         * @return the format id
+         */
+        public String getFormatId() {
+            return formatId;
+        }
+    }
+
+    /**
+     * The cache file path.
+     */
+    private Path cacheFilePath;
+
+    /**
+     * The entries by normalized path, in access order.
+     */
+    private LinkedHashMap<String, Entry> entryMap;
+
+    /**
+     * The modified flag, true if entries changed since last load or save.
+     */
+    private boolean modified;
+
+    /**
+     * The hit and miss counters.
+     */
+    private long hitCount, missCount;
+
+    /**
+     * Instantiates a new empty technical elements cache.
+     *
+     * @param cacheFilePath the cache file path used by save
+     * @param maxEntries    the maximum number of entries kept
+     */
+    public TechnicalElementsCache(Path cacheFilePath, final int maxEntries) {
+        this.cacheFilePath = cacheFilePath;
+        this.entryMap = new LinkedHashMap<String, Entry>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TechnicalElementsCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.modified = false;
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+
+    /**
+     * Open a technical elements cache from its file, with the default maximum number of entries. If the file
+     * doesn't exist or can't be read (old format, corruption...) the cache is empty.
+     *
+     * @param cacheFilePath the cache file path
+     * @return the technical elements cache
+     */
+    public static TechnicalElementsCache open(Path cacheFilePath) {
+        TechnicalElementsCache cache = new TechnicalElementsCache(cacheFilePath, DEFAULT_MAX_ENTRIES);
+        if (Files.isRegularFile(cacheFilePath)) {
+            try {
+                cache.load();
+            } catch (IOException e) {
+                cache.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the normalized key string of a path.
+     *
+     * @param path the path
+     * @return the key string
+     */
+    private static String getKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Gets the technical elements entry of a file if known and still valid. An entry computed for another size
+     * or last modified time is invalidated.
+     *
+     * @param path         the file path
+     * @param size         the actual file size
+     * @param lastModified the actual file last modified time in milliseconds
+     * @return the entry or null if unknown
+     */
+    public synchronized Entry get(Path path, long size, long lastModified) {
+        String key = getKey(path);
+        Entry entry = entryMap.get(key);
+        if ((entry != null) && ((entry.size != size) || (entry.lastModified != lastModified))) {
+            entryMap.remove(key);
+            modified = true;
+            entry = null;
+        }
+        if (entry == null)
+            missCount++;
+        else
+            hitCount++;
+        return entry;
+    }
+
+    /**
+     * Puts the technical elements entry of a file.
+     *
+     * @param path  the file path
+     * @param entry the entry
+     */
+    public synchronized void put(Path path, Entry entry) {
+        entryMap.put(getKey(path), entry);
+        modified = true;
+    }
+
+    /**
+     * Invalidate the entry of a file, if any.
+     *
+     * @param path the file path
+     */
+    public synchronized void invalidate(Path path) {
+        if (entryMap.remove(getKey(path)) != null)
+            modified = true;
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public synchronized void clear() {
+        if (!entryMap.isEmpty())
+            modified = true;
+        entryMap.clear();
+    }
+
+    /**
+     * Write a nullable string.
+     *
+     * @param dos   the data output stream
+     * @param value the value or null
+     * @throws IOException if writing fails
+     */
+    private static void writeNullableString(DataOutputStream dos, String value) throws IOException {
+        dos.writeBoolean(value != null);
+        if (value != null)
+            dos.writeUTF(value);
+    }
+
+    /**
+     * Read a nullable string.
+     *
+     * @param dis the data input stream
+     * @return the value or null
+     * @throws IOException if reading fails
+     */
+    private static String readNullableString(DataInputStream dis) throws IOException {
+        if (dis.readBoolean())
+            return dis.readUTF();
+        return null;
+    }
+
+    /**
+     * Load the entries from the cache file, least recently used first.
+     *
+     * @throws IOException if the file can't be read or has not the expected format
+     */
+    private synchronized void load() throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFilePath),
+                65536))) {
+            if ((dis.readInt() != MAGIC) || (dis.readInt() != VERSION))
+                throw new IOException("Format de cache inconnu");
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = dis.readUTF();
+                long size = dis.readLong();
+                long lastModified = dis.readLong();
+                entryMap.put(key, new Entry(size, lastModified, readNullableString(dis),
+                        readNullableString(dis), readNullableString(dis), readNullableString(dis)));
+            }
+        }
+        modified = false;
+    }
+
+    /**
+     * Save the entries in the cache file, if modified since last load or save. The file is written in a
+     * temporary file and then moved, so that an interrupted save doesn't corrupt the previous cache.
+     *
+     * @throws SEDALibException if the cache file can't be written
+     */
+    public synchronized void save() throws SEDALibException {
+        if (!modified)
+            return;
+        Path tmpPath = Paths.get(cacheFilePath.toString() + ".tmp");
+        try {
+            if (cacheFilePath.toAbsolutePath().getParent() != null)
+                Files.createDirectories(cacheFilePath.toAbsolutePath().getParent());
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath),
+                    65536))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeInt(entryMap.size());
+                for (Map.Entry<String, Entry> e : entryMap.entrySet()) {
+                    dos.writeUTF(e.getKey());
+                    dos.writeLong(e.getValue().size);
+                    dos.writeLong(e.getValue().lastModified);
+                    writeNullableString(dos, e.getValue().digest);
+                    writeNullableString(dos, e.getValue().formatLitteral);
+                    writeNullableString(dos, e.getValue().mimeType);
+                    writeNullableString(dos, e.getValue().formatId);
+                }
+            }
+            Files.move(tmpPath, cacheFilePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de sauvegarder le cache des informations techniques ["
+                    + cacheFilePath.toString() + "]", e);
+        }
+        modified = false;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the entries count
+     */
+    public synchronized int getCount() {
+        return entryMap.size();
+    }
+
+    /**
+     * Gets the number of valid entries found since creation.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of entries not found or invalidated since creation.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+}
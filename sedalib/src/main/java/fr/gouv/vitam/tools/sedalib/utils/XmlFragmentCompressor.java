@@ -0,0 +1,188 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The Class XmlFragmentCompressor.
+ * <p>
+ * Compact in-memory form of XML fragments (ArchiveUnit Content, Management...), either UTF-8 encoded or
+ * deflated with a dictionary of the usual SEDA elements shared by all fragments, so that the small fragments
+ * also compress well. The compact form is a byte array beginning by a format byte, so it can always be expanded
+ * whatever the compaction mode used to create it.
+ */
+public class XmlFragmentCompressor {
+
+    /**
+     * The Constant NO_COMPACTION, fragments are kept as String.
+     */
+    public static final int NO_COMPACTION = 0;
+
+    /**
+     * The Constant UTF8_COMPACTION, fragments are kept as UTF-8 bytes.
+     */
+    public static final int UTF8_COMPACTION = 1;
+
+    /**
+     * The Constant DEFLATE_COMPACTION, fragments are kept deflated with the shared dictionary, or as UTF-8
+     * bytes when too small to gain anything.
+     */
+    public static final int DEFLATE_COMPACTION = 2;
+
+    /**
+     * The format byte of UTF-8 bytes form.
+     */
+    private static final byte UTF8_FORMAT = 0;
+
+    /**
+     * The format byte of deflated form.
+     */
+    private static final byte DEFLATE_FORMAT = 1;
+
+    /**
+     * The minimum UTF-8 length to try deflate.
+     */
+    private static final int MIN_DEFLATE_LENGTH = 64;
+
+    /**
+     * The shared dictionary, the most frequent strings being at the end.
+     */
+    private static final byte[] DICTIONARY = ("<ArchiveUnitProfile></ArchiveUnitProfile>"
+            + "<AccessRule><Rule></Rule><StartDate></StartDate></AccessRule>"
+            + "<AppraisalRule><Rule></Rule><StartDate></StartDate><FinalAction>Keep</FinalAction></AppraisalRule>"
+            + "<Management></Management>"
+            + "<CustodialHistory><CustodialHistoryItem></CustodialHistoryItem></CustodialHistory>"
+            + "<OriginatingAgencyArchiveUnitIdentifier></OriginatingAgencyArchiveUnitIdentifier>"
+            + "<Keyword><KeywordContent></KeywordContent><KeywordType>subject</KeywordType></Keyword>"
+            + "<Writer><FullName></FullName><FirstName></FirstName><BirthName></BirthName><Identifier></Identifier></Writer>"
+            + "<Addressee><Identifier></Identifier></Addressee>"
+            + "<Recipient><Identifier></Identifier></Recipient>"
+            + "<Sender><Identifier></Identifier></Sender>"
+            + "<OriginatingAgency><Identifier></Identifier></OriginatingAgency>"
+            + "<SubmissionAgency><Identifier></Identifier></SubmissionAgency>"
+            + "<SentDate></SentDate><ReceivedDate></ReceivedDate><CreatedDate></CreatedDate>"
+            + "<TransactedDate></TransactedDate><AcquiredDate></AcquiredDate>"
+            + "<StartDate></StartDate><EndDate></EndDate>"
+            + "<Event><EventIdentifier></EventIdentifier><EventType></EventType><EventDateTime></EventDateTime>"
+            + "<EventDetail></EventDetail></Event>"
+            + "<TextContent></TextContent>"
+            + "<Description></Description>"
+            + "<Title></Title>"
+            + "<Content>\n  <DescriptionLevel>RecordGrp</DescriptionLevel>\n  <DescriptionLevel>Item</DescriptionLevel>\n"
+            + "  <DescriptionLevel>File</DescriptionLevel>\n  <Title></Title>\n  <Description></Description>\n"
+            + "</Content>").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The per thread deflater.
+     */
+    private static final ThreadLocal<Deflater> deflaterThreadLocal =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    /**
+     * The per thread inflater.
+     */
+    private static final ThreadLocal<Inflater> inflaterThreadLocal =
+            ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * Instantiates a new XML fragment compressor, not used as only static methods.
+     */
+    private XmlFragmentCompressor() {
+    }
+
+    /**
+     * Compact an XML fragment.
+     *
+     * @param xmlData        the xml data
+     * @param compactionMode the compaction mode (UTF8_COMPACTION or DEFLATE_COMPACTION)
+     * @return the compact form
+     */
+    public static byte[] compact(String xmlData, int compactionMode) {
+        byte[] utf8 = xmlData.getBytes(StandardCharsets.UTF_8);
+        if ((compactionMode == DEFLATE_COMPACTION) && (utf8.length >= MIN_DEFLATE_LENGTH)) {
+            Deflater deflater = deflaterThreadLocal.get();
+            deflater.reset();
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(utf8);
+            deflater.finish();
+            // keep deflated form only if it saves something
+            byte[] result = new byte[utf8.length];
+            result[0] = DEFLATE_FORMAT;
+            result[1] = (byte) (utf8.length >>> 24);
+            result[2] = (byte) (utf8.length >>> 16);
+            result[3] = (byte) (utf8.length >>> 8);
+            result[4] = (byte) utf8.length;
+            int length = 5;
+            while (!deflater.finished() && (length < result.length))
+                length += deflater.deflate(result, length, result.length - length);
+            if (deflater.finished())
+                return Arrays.copyOf(result, length);
+        }
+        byte[] result = new byte[utf8.length + 1];
+        result[0] = UTF8_FORMAT;
+        System.arraycopy(utf8, 0, result, 1, utf8.length);
+        return result;
+    }
+
+    /**
+     * Expand an XML fragment from its compact form.
+     *
+     * @param compactData the compact data
+     * @return the xml data
+     */
+    public static String expand(byte[] compactData) {
+        if (compactData[0] == UTF8_FORMAT)
+            return new String(compactData, 1, compactData.length - 1, StandardCharsets.UTF_8);
+        int length = ((compactData[1] & 0xFF) << 24) | ((compactData[2] & 0xFF) << 16)
+                | ((compactData[3] & 0xFF) << 8) | (compactData[4] & 0xFF);
+        byte[] utf8 = new byte[length];
+        Inflater inflater = inflaterThreadLocal.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(compactData, 5, compactData.length - 5);
+        try {
+            int done = 0;
+            while (done < length) {
+                int count = inflater.inflate(utf8, done, length - done);
+                if ((count == 0) && (inflater.finished() || inflater.needsInput()))
+                    break;
+                done += count;
+            }
+            if (done != length)
+                throw new IllegalStateException("Fragment XML compacté tronqué");
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Fragment XML compacté corrompu", e);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -32,6 +32,7 @@ import com.ctc.wstx.api.WstxOutputProperties;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.codehaus.stax2.XMLOutputFactory2;
+import org.codehaus.stax2.ri.Stax2EventAllocatorImpl;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.*;
@@ -39,10 +40,12 @@ import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventAllocator;
 import java.io.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.NoSuchElementException;
 
 import static java.time.format.DateTimeFormatter.ISO_DATE;
 import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
@@ -53,6 +56,11 @@ import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
  * Wrapper class for XMLEventReader for high level functions used in all SEDA
  * metadata readers. It can read either XML document, either XML fragments. It's
  * based on WoodStox STAX objects.
+ * <p>
+ * In cursor mode, globally selected by {@link #setCursorMode(boolean)}, it's
+ * based on a XMLStreamReader and the high level functions don't allocate any
+ * event object, which is much lighter on big manifests. The xmlReader and the
+ * event functions stay available, the events being then created on demand.
  */
 public class SEDAXMLEventReader implements AutoCloseable {
 
@@ -68,6 +76,12 @@ public class SEDAXMLEventReader implements AutoCloseable {
     /** The XMLOutputFactory for fragments. */
     private static XMLOutputFactory xmlofFragments;
 
+    /** The event allocator used in cursor mode. */
+    private static XMLEventAllocator eventAllocator;
+
+    /** The cursor mode flag for new readers. */
+    private static volatile boolean cursorMode = false;
+
     static {
         try {
             xmlif = XMLInputFactory.newInstance();
@@ -75,6 +89,10 @@ public class SEDAXMLEventReader implements AutoCloseable {
             // Warning it's a Woodstox specific mode
             xmlifFragments.setProperty(WstxInputProperties.P_INPUT_PARSING_MODE,
                     WstxInputProperties.PARSING_MODE_FRAGMENT);
+            // Warning it's a Woodstox specific mode, needed in cursor mode to have full text as in events
+            xmlif.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, Integer.MAX_VALUE);
+            xmlifFragments.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, Integer.MAX_VALUE);
+            eventAllocator = new Stax2EventAllocatorImpl();
             xmlof = XMLOutputFactory.newInstance();
             xmlofFragments = XMLOutputFactory2.newInstance();
             xmlofFragments.setProperty(WstxOutputProperties.P_OUTPUT_VALIDATE_STRUCTURE, false);
@@ -88,6 +106,36 @@ public class SEDAXMLEventReader implements AutoCloseable {
     /** The xml reader. */
     public XMLEventReader xmlReader;
 
+    /**
+     * The xml cursor reader, only in cursor mode. Its current event is the next
+     * one to be read.
+     */
+    private XMLStreamReader cursorReader;
+
+    /** The event created on demand for the cursor current event, if any. */
+    private XMLEvent cursorEvent;
+
+    /** The cursor end flag, true when the end of document event has been read. */
+    private boolean cursorEnded;
+
+    /**
+     * Sets the cursor mode for all readers created afterwards.
+     *
+     * @param cursorMode true to use XMLStreamReader based readers
+     */
+    public static void setCursorMode(boolean cursorMode) {
+        SEDAXMLEventReader.cursorMode = cursorMode;
+    }
+
+    /**
+     * Checks if the readers are created in cursor mode.
+     *
+     * @return true, if in cursor mode
+     */
+    public static boolean isCursorMode() {
+        return cursorMode;
+    }
+
     /**
      * Gets the named element.
      *
@@ -181,7 +229,13 @@ public class SEDAXMLEventReader implements AutoCloseable {
         InputStreamReader readerFIS = null;
         try {
             readerFIS = new InputStreamReader(is, "UTF-8");
-            if (isForElements)
+            if (cursorMode) {
+                if (isForElements)
+                    cursorReader = xmlifFragments.createXMLStreamReader(readerFIS);
+                else
+                    cursorReader = xmlif.createXMLStreamReader(readerFIS);
+                xmlReader = new CursorEventReader();
+            } else if (isForElements)
                 xmlReader = xmlifFragments.createXMLEventReader(readerFIS);
             else
                 xmlReader = xmlif.createXMLEventReader(readerFIS);
@@ -243,6 +297,11 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekName() throws XMLStreamException {
+        if (cursorReader != null) {
+            if (peekUsefullCursorEventType() != XMLStreamConstants.START_ELEMENT)
+                return null;
+            return cursorReader.getLocalName();
+        }
         XMLEvent event = peekUsefullEvent();
 
         if (!event.isStartElement())
@@ -259,6 +318,10 @@ public class SEDAXMLEventReader implements AutoCloseable {
     public XMLEvent peekUsefullEvent() throws XMLStreamException {
         XMLEvent result;
 
+        if (cursorReader != null) {
+            peekUsefullCursorEventType();
+            return xmlReader.peek();
+        }
         result = xmlReader.peek();
         while ((result.getEventType() == XMLEvent.COMMENT)
                 || (result.isCharacters() && result.asCharacters().isWhiteSpace())) {
@@ -276,6 +339,11 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekAttribute(String attribute) throws XMLStreamException {
+        if (cursorReader != null) {
+            if (peekUsefullCursorEventType() != XMLStreamConstants.START_ELEMENT)
+                return null;
+            return getCursorAttributeValue("", attribute);
+        }
         XMLEvent peek = peekUsefullEvent();
         String result = null;
 
@@ -296,6 +364,11 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekAttribute(String namespace, String attribute) throws XMLStreamException {
+        if (cursorReader != null) {
+            if (peekUsefullCursorEventType() != XMLStreamConstants.START_ELEMENT)
+                return null;
+            return getCursorAttributeValue(namespace, attribute);
+        }
         XMLEvent peek = peekUsefullEvent();
         String result = null;
 
@@ -316,6 +389,10 @@ public class SEDAXMLEventReader implements AutoCloseable {
     public XMLEvent nextUsefullEvent() throws XMLStreamException {
         XMLEvent result;
 
+        if (cursorReader != null) {
+            peekUsefullCursorEventType();
+            return xmlReader.nextEvent();
+        }
         result = xmlReader.nextEvent();
         while ((result.getEventType() == XMLEvent.COMMENT)
                 || (result.isCharacters() && result.asCharacters().isWhiteSpace()))
@@ -331,6 +408,12 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public boolean nextBlockIfNamed(String tag) throws XMLStreamException {
+        if (cursorReader != null) {
+            if (!peekBlockIfNamed(tag))
+                return false;
+            nextCursorEvent();
+            return true;
+        }
         XMLEvent peek = peekUsefullEvent();
 
         if (!peek.isStartElement())
@@ -349,6 +432,9 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public boolean peekBlockIfNamed(String tag) throws XMLStreamException {
+        if (cursorReader != null)
+            return (peekUsefullCursorEventType() == XMLStreamConstants.START_ELEMENT)
+                    && tag.equals(cursorReader.getLocalName());
         XMLEvent peek = peekUsefullEvent();
 
         if (!peek.isStartElement())
@@ -366,6 +452,11 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekAttributeBlockIfNamed(String tag, String attribute) throws XMLStreamException {
+        if (cursorReader != null) {
+            if (!peekBlockIfNamed(tag))
+                return null;
+            return getCursorAttributeValue("", attribute);
+        }
         XMLEvent peek = peekUsefullEvent();
         String result = null;
 
@@ -382,6 +473,14 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws SEDALibException   if "tag" element is ended here
      */
     public void endBlockNamed(String tag) throws XMLStreamException, SEDALibException {
+        if (cursorReader != null) {
+            boolean isTagEnd = (peekUsefullCursorEventType() == XMLStreamConstants.END_ELEMENT)
+                    && tag.equals(cursorReader.getLocalName());
+            nextCursorEvent();
+            if (!isTagEnd)
+                throw new SEDALibException("Elément " + tag + " mal terminé");
+            return;
+        }
         XMLEvent event = nextUsefullEvent();
 
         if (!event.isEndElement())
@@ -403,6 +502,15 @@ public class SEDAXMLEventReader implements AutoCloseable {
         XMLEvent event;
         String result = null;
 
+        if (cursorReader != null) {
+            if (nextBlockIfNamed(tag)) {
+                result = nextCursorValue(tag);
+                if (result == null)
+                    throw new SEDALibException("Elément " + tag + " mal formé");
+            }
+            return result;
+        }
+
         if (nextBlockIfNamed(tag)) {
             event = nextUsefullEvent();
             if (event.isCharacters()) {
@@ -431,6 +539,19 @@ public class SEDAXMLEventReader implements AutoCloseable {
         String tmp = null;
         LocalDateTime result = null;
 
+        if (cursorReader != null) {
+            if (nextBlockIfNamed(tag)) {
+                tmp = nextCursorValue(tag);
+                if ((tmp == null) || tmp.isEmpty())
+                    throw new SEDALibException("Elément date " + tag + " mal formé");
+                try {
+                    result = getDateTimeFromString(tmp);
+                } catch (DateTimeParseException e) {
+                    throw new SEDALibException("Valeur non interprétable [" + tmp + "] dans l'élément date " + tag, e);
+                }
+            }
+            return result;
+        }
         if (nextBlockIfNamed(tag)) {
             event = nextUsefullEvent();
             if (event.isCharacters()) {
@@ -463,13 +584,19 @@ public class SEDAXMLEventReader implements AutoCloseable {
         Boolean result = null;
 
         if (nextBlockIfNamed(tag)) {
-            event = nextUsefullEvent();
-            if (event.isCharacters()) {
-                tmp = event.asCharacters().getData();
+            if (cursorReader != null) {
+                tmp = nextCursorValue(tag);
+                if ((tmp == null) || tmp.isEmpty())
+                    throw new SEDALibException("Elément booléen " + tag + " mal formé");
+            } else {
                 event = nextUsefullEvent();
+                if (event.isCharacters()) {
+                    tmp = event.asCharacters().getData();
+                    event = nextUsefullEvent();
+                }
+                if (!event.isEndElement() || !event.asEndElement().getName().getLocalPart().equals(tag) || (tmp == null))
+                    throw new SEDALibException("Elément booléen " + tag + " mal formé");
             }
-            if (!event.isEndElement() || !event.asEndElement().getName().getLocalPart().equals(tag) || (tmp == null))
-                throw new SEDALibException("Elément booléen " + tag + " mal formé");
             switch (tmp) {
                 case "true":
                 case "1":
@@ -510,6 +637,11 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String nextBlockAsStringIfNamed(String tag) throws XMLStreamException {
+        if (cursorReader != null) {
+            if (!peekBlockIfNamed(tag))
+                return null;
+            return nextCursorBlockAsString(tag);
+        }
         XMLEvent event = peekUsefullEvent();
 
         if (event.isStartElement() && tag.equals(event.asStartElement().getName().getLocalPart())) {
@@ -549,4 +681,242 @@ public class SEDAXMLEventReader implements AutoCloseable {
             throw new SEDALibException("Elément " + tag + " non trouvé");
         return nextBlockAsStringIfNamed(tag);
     }
+
+    // Cursor mode
+
+    /**
+     * Go to the next cursor event.
+     *
+     * @throws XMLStreamException the XML stream exception
+     */
+    private void nextCursorEvent() throws XMLStreamException {
+        if (cursorEnded)
+            throw new NoSuchElementException("Fin du flux XML atteinte");
+        cursorEvent = null;
+        if (cursorReader.hasNext())
+            cursorReader.next();
+        else
+            cursorEnded = true;
+    }
+
+    /**
+     * Skip comments and white spaces, and give the type of the cursor current
+     * event.
+     *
+     * @return the cursor event type
+     * @throws XMLStreamException the XML stream exception
+     */
+    private int peekUsefullCursorEventType() throws XMLStreamException {
+        int type = cursorReader.getEventType();
+
+        while (!cursorEnded && ((type == XMLStreamConstants.COMMENT)
+                || (((type == XMLStreamConstants.CHARACTERS) || (type == XMLStreamConstants.CDATA)
+                || (type == XMLStreamConstants.SPACE)) && cursorReader.isWhiteSpace()))) {
+            nextCursorEvent();
+            type = cursorReader.getEventType();
+        }
+        return type;
+    }
+
+    /**
+     * Gets the value of an attribute of the cursor current start element.
+     *
+     * @param namespace the namespace, empty for no namespace
+     * @param attribute the attribute
+     * @return the attribute string value, or null if the "attribute" isn't set
+     */
+    private String getCursorAttributeValue(String namespace, String attribute) {
+        for (int i = 0; i < cursorReader.getAttributeCount(); i++) {
+            if (attribute.equals(cursorReader.getAttributeLocalName(i))) {
+                String attributeNamespace = cursorReader.getAttributeNamespace(i);
+                if (namespace.equals(attributeNamespace == null ? "" : attributeNamespace))
+                    return cursorReader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the value of the "tag" element, whose start has already been read, and
+     * its end.
+     *
+     * @param tag the tag
+     * @return the value String, empty if no value, or null if the element is not
+     *         well formed
+     * @throws XMLStreamException the XML stream exception
+     */
+    private String nextCursorValue(String tag) throws XMLStreamException {
+        String result = "";
+        int type = peekUsefullCursorEventType();
+
+        if ((type == XMLStreamConstants.CHARACTERS) || (type == XMLStreamConstants.CDATA)
+                || (type == XMLStreamConstants.SPACE)) {
+            result = cursorReader.getText();
+            nextCursorEvent();
+            type = peekUsefullCursorEventType();
+        }
+        if ((type != XMLStreamConstants.END_ELEMENT) || !tag.equals(cursorReader.getLocalName()))
+            return null;
+        nextCursorEvent();
+        return result;
+    }
+
+    /**
+     * Read the "tag" element, which is the cursor current event, as a String
+     * without creating events.
+     *
+     * @param tag the tag
+     * @return the String containing all the "tag" element (with begin and end
+     *         tags)
+     * @throws XMLStreamException the XML stream exception
+     */
+    private String nextCursorBlockAsString(String tag) throws XMLStreamException {
+        int count = 0;
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter xw = xmlof.createXMLStreamWriter(sw);
+
+        while (!cursorEnded) {
+            switch (cursorReader.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    xw.writeStartElement(nullToEmpty(cursorReader.getPrefix()), cursorReader.getLocalName(),
+                            nullToEmpty(cursorReader.getNamespaceURI()));
+                    for (int i = 0; i < cursorReader.getNamespaceCount(); i++) {
+                        String prefix = cursorReader.getNamespacePrefix(i);
+                        if ((prefix == null) || prefix.isEmpty())
+                            xw.writeDefaultNamespace(nullToEmpty(cursorReader.getNamespaceURI(i)));
+                        else
+                            xw.writeNamespace(prefix, nullToEmpty(cursorReader.getNamespaceURI(i)));
+                    }
+                    for (int i = 0; i < cursorReader.getAttributeCount(); i++)
+                        xw.writeAttribute(nullToEmpty(cursorReader.getAttributePrefix(i)),
+                                nullToEmpty(cursorReader.getAttributeNamespace(i)),
+                                cursorReader.getAttributeLocalName(i), cursorReader.getAttributeValue(i));
+                    if (tag.equals(cursorReader.getLocalName()))
+                        count++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    xw.writeEndElement();
+                    if (tag.equals(cursorReader.getLocalName()))
+                        count--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    xw.writeCharacters(cursorReader.getTextCharacters(), cursorReader.getTextStart(),
+                            cursorReader.getTextLength());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    xw.writeCData(cursorReader.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    xw.writeComment(cursorReader.getText());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    xw.writeProcessingInstruction(cursorReader.getPITarget(), cursorReader.getPIData());
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    xw.writeEntityRef(cursorReader.getLocalName());
+                    break;
+                default:
+                    break;
+            }
+            nextCursorEvent();
+            if (count == 0)
+                break;
+        }
+        xw.close();
+        return sw.toString();
+    }
+
+    /**
+     * Null to empty String.
+     *
+     * @param value the value
+     * @return the value, or empty String if null
+     */
+    private static String nullToEmpty(String value) {
+        return (value == null ? "" : value);
+    }
+
+    /**
+     * The Class CursorEventReader.
+     * <p>
+     * XMLEventReader view of the cursor reader, creating the events on demand.
+     */
+    private class CursorEventReader implements XMLEventReader {
+
+        @Override
+        public XMLEvent nextEvent() throws XMLStreamException {
+            XMLEvent result = peek();
+
+            if (result == null)
+                throw new NoSuchElementException("Fin du flux XML atteinte");
+            nextCursorEvent();
+            return result;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursorEnded;
+        }
+
+        @Override
+        public XMLEvent peek() throws XMLStreamException {
+            if (cursorEnded)
+                return null;
+            if (cursorEvent == null)
+                cursorEvent = eventAllocator.allocate(cursorReader);
+            return cursorEvent;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            StringBuilder sb = new StringBuilder();
+            XMLEvent event = nextEvent();
+
+            while (!event.isEndElement()) {
+                if (event.isCharacters())
+                    sb.append(event.asCharacters().getData());
+                else if (event.isStartElement() || event.isEndDocument())
+                    throw new XMLStreamException("Elément texte attendu", event.getLocation());
+                event = nextEvent();
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public XMLEvent nextTag() throws XMLStreamException {
+            XMLEvent event = nextEvent();
+
+            while ((event.isCharacters() && event.asCharacters().isWhiteSpace())
+                    || event.isProcessingInstruction() || (event.getEventType() == XMLStreamConstants.COMMENT))
+                event = nextEvent();
+            if (!event.isStartElement() && !event.isEndElement())
+                throw new XMLStreamException("Elément attendu", event.getLocation());
+            return event;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return cursorReader.getProperty(name);
+        }
+
+        @Override
+        public void close() throws XMLStreamException {
+            cursorReader.close();
+        }
+
+        @Override
+        public Object next() {
+            try {
+                return nextEvent();
+            } catch (XMLStreamException e) {
+                throw new NoSuchElementException(e.getMessage());
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -76,6 +76,11 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
      */
     private static XMLOutputFactory xmlofFragments;
 
+    /**
+     * The output stream.
+     */
+    private OutputStream outputStream;
+
     /**
      * The raw writer.
      */
@@ -156,6 +161,7 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
      */
     public SEDAXMLStreamWriter(OutputStream os, int indentLength, boolean isForElements) throws SEDALibException {
         try {
+            outputStream = os;
             // for xml raw writing
             rawWriter = new OutputStreamWriter(os, "UTF-8");
             // for xml indentend structured writing
@@ -177,6 +183,27 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
         this.idCounter = 1;
     }
 
+    /**
+     * Create a writer for XML fragments in the given output stream, with the
+     * same indentation state as this writer, so that the elements written in it
+     * can then be inserted at the current position by
+     * {@link #writeRawXMLFragment(byte[])}. This writer has not to be modified
+     * between the two calls and an element has to be already written.
+     * <p>
+     * This is used to generate concurrently, in different threads, parts of the
+     * same XML document.
+     *
+     * @param os the os
+     * @return the SEDAXML stream writer for fragments
+     * @throws SEDALibException the SEDALibException
+     */
+    public SEDAXMLStreamWriter createFragmentWriter(OutputStream os) throws SEDALibException {
+        SEDAXMLStreamWriter result = new SEDAXMLStreamWriter(os, indentLength, true);
+        result.depth = depth;
+        result.firstLineFlag = false;
+        return result;
+    }
+
     /**
      * Reset id counter.
      */
@@ -367,6 +394,32 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
         }
     }
 
+    /**
+     * Write a raw xml fragment, in UTF-8 bytes, generated by a writer created by
+     * {@link #createFragmentWriter(OutputStream)}.
+     *
+     * @param fragment the fragment
+     * @throws XMLStreamException the XML stream exception
+     */
+    public void writeRawXMLFragment(byte[] fragment) throws XMLStreamException {
+        if ((fragment != null) && (fragment.length > 0)) {
+            xmlWriter.writeCharacters("");
+            xmlWriter.flush();
+            try {
+                rawWriter.flush();
+                outputStream.write(fragment);
+            } catch (IOException e) {
+                throw new XMLStreamException("Erreur d'écriture d'un fragment XML", e);
+            }
+            firstLineFlag = false;
+            if (indentFlag) {
+                if (depth > 0) {
+                    hasChildElement.put(depth - 1, true);
+                }
+            }
+        }
+    }
+
     /**
      * Gets the xml writer.
      *
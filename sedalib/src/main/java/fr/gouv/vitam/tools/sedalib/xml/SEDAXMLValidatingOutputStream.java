@@ -0,0 +1,439 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Class SEDAXMLValidatingOutputStream.
+ * <p>
+ * OutputStream validating with a schema the XML written in it, while passing it
+ * to an other output stream if any. The validation is done in a dedicated thread
+ * reading the written XML by chunks, so that a manifest can be validated while
+ * it's exported without being serialized and parsed a second time. As soon as
+ * the validation has failed, writing throws an IOException.
+ * <p>
+ * The last validated chunks are kept to give, on error, the same context as
+ * {@link SEDAXMLValidator}.
+ */
+public class SEDAXMLValidatingOutputStream extends OutputStream {
+
+    /**
+     * The size of chunks given to the validation thread.
+     */
+    private static final int CHUNK_SIZE = 65536;
+
+    /**
+     * The maximum number of chunks waiting for validation.
+     */
+    private static final int MAX_QUEUED_CHUNKS = 16;
+
+    /**
+     * The number of last validated chunks kept for the error context.
+     */
+    private static final int CONTEXT_CHUNKS = 32;
+
+    /**
+     * The chunk marking the end of written XML.
+     */
+    private static final byte[] END_CHUNK = new byte[0];
+
+    /**
+     * The output stream where the XML is passed, or null.
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * The chunks waiting for validation.
+     */
+    private final BlockingQueue<byte[]> chunkQueue;
+
+    /**
+     * The chunk being filled and its length.
+     */
+    private byte[] chunk;
+    private int chunkLength;
+
+    /**
+     * The validation thread.
+     */
+    private final Thread validationThread;
+
+    /**
+     * The validation ended flag.
+     */
+    private volatile boolean validationEnded;
+
+    /**
+     * The validation exception, or null if the validation has succeeded or is not
+     * ended.
+     */
+    private volatile SEDALibException validationException;
+
+    /**
+     * The end chunk sent flag.
+     */
+    private boolean endSent;
+
+    /**
+     * Instantiates a new SEDA XML validating output stream.
+     *
+     * @param outputStream the output stream where the XML is passed, or null if
+     *                     only validated
+     * @param schema       the schema
+     * @param rngFlag      true if the schema is a rng one, false if xsd
+     */
+    public SEDAXMLValidatingOutputStream(OutputStream outputStream, Schema schema, boolean rngFlag) {
+        this.outputStream = outputStream;
+        this.chunkQueue = new ArrayBlockingQueue<byte[]>(MAX_QUEUED_CHUNKS);
+        this.chunk = new byte[CHUNK_SIZE];
+        this.chunkLength = 0;
+        this.validationEnded = false;
+        this.validationException = null;
+        this.endSent = false;
+        ChunksInputStream chunksInputStream = new ChunksInputStream();
+        this.validationThread = new Thread(() -> runValidation(chunksInputStream, schema, rngFlag),
+                "SEDAXMLValidation");
+        this.validationThread.setDaemon(true);
+        this.validationThread.start();
+    }
+
+    /**
+     * Validate the written XML, in the validation thread.
+     *
+     * @param chunksInputStream the input stream reading the written XML chunks
+     * @param schema            the schema
+     * @param rngFlag           true if the schema is a rng one, false if xsd
+     */
+    private void runValidation(ChunksInputStream chunksInputStream, Schema schema, boolean rngFlag) {
+        try {
+            new SEDAXMLValidator().validate(chunksInputStream, schema, rngFlag);
+        } catch (SAXException e) {
+            SAXParseException spe = getSAXParseException(e);
+            if (spe != null)
+                validationException = new SEDALibException("Le flux XML n'est pas conforme\n-> "
+                        + chunksInputStream.getContextualErrorMessage(spe));
+            else
+                validationException = new SEDALibException("Le flux XML n'est pas conforme", e);
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            validationException = new SEDALibException("Erreur d'accès au flux XML", e);
+        } finally {
+            validationEnded = true;
+        }
+    }
+
+    /**
+     * Gets the SAX parse exception, with error position, in the exception or its
+     * causes, as some validators wrap it.
+     *
+     * @param e the SAX exception
+     * @return the SAX parse exception or null if none
+     */
+    private static SAXParseException getSAXParseException(SAXException e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof SAXParseException)
+                return (SAXParseException) cause;
+            cause = cause.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * Give a chunk to the validation thread, unless the validation is already
+     * ended.
+     *
+     * @param data the chunk
+     * @throws IOException if the validation has failed
+     */
+    private void sendChunk(byte[] data) throws IOException {
+        try {
+            while (!validationEnded) {
+                if (chunkQueue.offer(data, 100, TimeUnit.MILLISECONDS))
+                    return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Validation du flux XML interrompue");
+        }
+        if (validationException != null)
+            throw new IOException("Le flux XML n'est pas conforme", validationException);
+    }
+
+    /**
+     * Give the filled chunk to the validation thread.
+     *
+     * @throws IOException if the validation has failed
+     */
+    private void sendFilledChunk() throws IOException {
+        if (chunkLength > 0) {
+            byte[] data = (chunkLength == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, chunkLength));
+            chunk = new byte[CHUNK_SIZE];
+            chunkLength = 0;
+            sendChunk(data);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (validationException != null)
+            throw new IOException("Le flux XML n'est pas conforme", validationException);
+        if (outputStream != null)
+            outputStream.write(b);
+        chunk[chunkLength++] = (byte) b;
+        if (chunkLength == CHUNK_SIZE)
+            sendFilledChunk();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (validationException != null)
+            throw new IOException("Le flux XML n'est pas conforme", validationException);
+        if (outputStream != null)
+            outputStream.write(b, off, len);
+        while (len > 0) {
+            int length = Math.min(len, CHUNK_SIZE - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, length);
+            chunkLength += length;
+            off += length;
+            len -= length;
+            if (chunkLength == CHUNK_SIZE)
+                sendFilledChunk();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (outputStream != null)
+            outputStream.flush();
+    }
+
+    /**
+     * Flush, the passed output stream is not closed and
+     * {@link #endValidation(boolean)} has to be called to get the validation
+     * result.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Checks if the validation has already failed.
+     *
+     * @return true if failed
+     */
+    public boolean isValidationFailed() {
+        return validationException != null;
+    }
+
+    /**
+     * End the validation and wait for its result.
+     *
+     * @param documentWrittenFlag true if the whole XML document has been written,
+     *                            false if writing has been interrupted, and then
+     *                            the validation error is only thrown if it has
+     *                            occurred before
+     * @throws SEDALibException     if the XML is not valid
+     * @throws InterruptedException if the wait is interrupted
+     */
+    public void endValidation(boolean documentWrittenFlag) throws SEDALibException, InterruptedException {
+        boolean failedBeforeEnd = isValidationFailed();
+        if (!endSent) {
+            endSent = true;
+            try {
+                sendFilledChunk();
+                sendChunk(END_CHUNK);
+            } catch (InterruptedIOException e) {
+                throw new InterruptedException(e.getMessage());
+            } catch (IOException ignored) {
+                // the validation has failed, the exception is thrown hereafter
+            }
+        }
+        validationThread.join();
+        if ((documentWrittenFlag || failedBeforeEnd) && (validationException != null))
+            throw validationException;
+    }
+
+    /**
+     * The Class ChunksInputStream.
+     * <p>
+     * InputStream reading, in the validation thread, the written XML chunks and
+     * keeping the last ones for the error context.
+     */
+    private class ChunksInputStream extends InputStream {
+
+        /**
+         * The chunk being read and the position in it.
+         */
+        private byte[] current;
+        private int position;
+
+        /**
+         * The ended flag.
+         */
+        private boolean ended;
+
+        /**
+         * The last read chunks, and their first line number, by chunk number modulo
+         * CONTEXT_CHUNKS.
+         */
+        private final byte[][] keptChunks;
+        private final int[] keptChunksFirstLineNumbers;
+
+        /**
+         * The number of read chunks.
+         */
+        private int chunkCount;
+
+        /**
+         * The current line number, from 1.
+         */
+        private int lineNumber;
+
+        /**
+         * Instantiates a new chunks input stream.
+         */
+        ChunksInputStream() {
+            this.current = null;
+            this.position = 0;
+            this.ended = false;
+            this.keptChunks = new byte[CONTEXT_CHUNKS][];
+            this.keptChunksFirstLineNumbers = new int[CONTEXT_CHUNKS];
+            this.chunkCount = 0;
+            this.lineNumber = 1;
+        }
+
+        /**
+         * Get the next chunk if the current one is completely read.
+         *
+         * @return false if the end is reached
+         * @throws InterruptedIOException if interrupted
+         */
+        private boolean nextChunkIfNeeded() throws InterruptedIOException {
+            while ((current == null) || (position >= current.length)) {
+                if (ended)
+                    return false;
+                try {
+                    current = chunkQueue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Validation du flux XML interrompue");
+                }
+                position = 0;
+                if (current == END_CHUNK) {
+                    ended = true;
+                    current = null;
+                    return false;
+                }
+                keptChunks[chunkCount % CONTEXT_CHUNKS] = current;
+                keptChunksFirstLineNumbers[chunkCount % CONTEXT_CHUNKS] = lineNumber;
+                chunkCount++;
+            }
+            return true;
+        }
+
+        /**
+         * Count the lines in the read bytes.
+         *
+         * @param len the length read from current position
+         */
+        private void countLines(int len) {
+            for (int i = position; i < position + len; i++)
+                if (current[i] == '\n')
+                    lineNumber++;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunkIfNeeded())
+                return -1;
+            countLines(1);
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!nextChunkIfNeeded())
+                return -1;
+            int length = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, length);
+            countLines(length);
+            position += length;
+            return length;
+        }
+
+        /**
+         * Gets the contextual error message, if the error line is in the kept
+         * chunks, or only the position error message.
+         *
+         * @param e the SAX parse exception
+         * @return the error message
+         */
+        String getContextualErrorMessage(SAXParseException e) {
+            int firstChunk = Math.max(0, chunkCount - CONTEXT_CHUNKS);
+            if ((chunkCount == 0) || (e.getLineNumber() < keptChunksFirstLineNumbers[firstChunk % CONTEXT_CHUNKS]))
+                return SEDAXMLValidator.getPositionErrorMessage(e);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            for (int i = firstChunk; i < chunkCount; i++)
+                baos.write(keptChunks[i % CONTEXT_CHUNKS], 0, keptChunks[i % CONTEXT_CHUNKS].length);
+            int i = keptChunksFirstLineNumbers[firstChunk % CONTEXT_CHUNKS];
+            String line = "", inArchiveUnit = "";
+            Scanner scanner = new Scanner(new String(baos.toByteArray(), StandardCharsets.UTF_8));
+            while (scanner.hasNextLine() && (i <= e.getLineNumber())) {
+                line = scanner.nextLine();
+                if (line.trim().startsWith("<ArchiveUnit "))
+                    inArchiveUnit = line.trim();
+                i++;
+            }
+            scanner.close();
+            return SEDAXMLValidator.getContextualErrorMessage(line, inArchiveUnit, e);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import javax.xml.XMLConstants;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
 import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
@@ -17,10 +18,30 @@ import javax.xml.validation.Validator;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * The Class SEDAXMLValidator.
+ * <p>
+ * Class for validating SEDA manifests with the SEDA XSD schema or with XSD or
+ * RNG profiles. Compiled schemas are kept in a process-wide cache, keyed by the
+ * schema file real path, size and last modification time, and validators are
+ * pooled by schema, so that validating many manifests in batch doesn't compile
+ * schemas again. Only the last compiled version of a schema file is kept. The
+ * manifest can be given as a String, or streamed from an InputStream or a
+ * file.
+ */
 public class SEDAXMLValidator {
 
     private static final String SEDA_VITAM_VALIDATION_RESOURCE = "seda-vitam-2.1-main.xsd";
@@ -29,15 +50,53 @@ public class SEDAXMLValidator {
     private static final String RNG_FACTORY = "com.thaiopensource.relaxng.jaxp.XMLSyntaxSchemaFactory";
     private static final String RNG_PROPERTY_KEY = "javax.xml.validation.SchemaFactory:" + XMLConstants.RELAXNG_NS_URI;
 
+    /**
+     * The maximum number of pooled validators by schema.
+     */
+    private static final int MAX_POOLED_VALIDATORS = 16;
+
+    /**
+     * The compiled SEDA schema.
+     */
     private static Schema sedaSchema = null;
 
+    /**
+     * The compiled schemas cache, by type and file real path, size and modification time, or resource URL.
+     */
+    private static final Map<String, Schema> schemaCache = new ConcurrentHashMap<String, Schema>();
+
+    /**
+     * The pooled validators, by cached schema.
+     */
+    private static final Map<Schema, Queue<Validator>> validatorPools = new ConcurrentHashMap<Schema, Queue<Validator>>();
+
+    /**
+     * Gets the SEDA 2.1 Vitam schema, compiled only once in the process.
+     *
+     * @return the SEDA schema
+     * @throws SEDALibException the seda lib exception
+     */
     public Schema getSEDASchema() throws SEDALibException {
-        if (sedaSchema == null)
-            sedaSchema = getSchemaFromXSDResource(getClass().getClassLoader().getResource(SEDA_VITAM_VALIDATION_RESOURCE));
-        return sedaSchema;
+        synchronized (SEDAXMLValidator.class) {
+            if (sedaSchema == null)
+                sedaSchema = getSchemaFromXSDResource(getClass().getClassLoader().getResource(SEDA_VITAM_VALIDATION_RESOURCE));
+            return sedaSchema;
+        }
     }
 
+    /**
+     * Gets schema from xsd resource, from the cache if already compiled.
+     *
+     * @param xsdResource the xsd resource
+     * @return the schema from xsd resource
+     * @throws SEDALibException the seda lib exception
+     */
     public Schema getSchemaFromXSDResource(URL xsdResource) throws SEDALibException {
+        String key = "xsd:" + xsdResource;
+        Schema schema = schemaCache.get(key);
+        if (schema != null)
+            return schema;
+
         // Was XMLConstants.W3C_XML_SCHEMA_NS_URI
         final SchemaFactory factory =
                 SchemaFactory.newInstance(HTTP_WWW_W3_ORG_XML_XML_SCHEMA_V1_1);
@@ -46,20 +105,26 @@ public class SEDAXMLValidator {
         factory.setResourceResolver(new XMLCatalogResolver(new String[]{catalogUrl.toString()}, false));
 
         try {
-            return factory.newSchema(xsdResource);
+            return cacheSchema(key, factory.newSchema(xsdResource));
         } catch (SAXException e) {
             throw new SEDALibException("Impossible de charger le schéma " + xsdResource, e);
         }
     }
 
     /**
-     * Gets schema from xsd file.
+     * Gets schema from xsd file, from the cache if the same unmodified file has
+     * already been compiled.
      *
      * @param xsdFile the xsd file
      * @return the schema from xsd file
      * @throws SEDALibException the seda lib exception
      */
     public Schema getSchemaFromXSDFile(String xsdFile) throws SEDALibException {
+        String key = "xsd:" + getFileKey(xsdFile);
+        Schema schema = schemaCache.get(key);
+        if (schema != null)
+            return schema;
+
         SchemaFactory factory = SchemaFactory.newInstance(HTTP_WWW_W3_ORG_XML_XML_SCHEMA_V1_1);
 
         // Load catalog to resolve external schemas even offline.
@@ -67,20 +132,26 @@ public class SEDAXMLValidator {
         factory.setResourceResolver(new XMLCatalogResolver(new String[]{catalogUrl.toString()}, false));
 
         try {
-            return factory.newSchema(new File(xsdFile));
+            return cacheSchema(key, factory.newSchema(new File(xsdFile)));
         } catch (SAXException e) {
             throw new SEDALibException("Impossible de charger le schéma " + xsdFile, e);
         }
     }
 
     /**
-     * Gets schema from rng file.
+     * Gets schema from rng file, from the cache if the same unmodified file has
+     * already been compiled.
      *
      * @param rngFile the rng file
      * @return the schema from rng file
      * @throws SEDALibException the seda lib exception
      */
     public Schema getSchemaFromRNGFile(String rngFile) throws SEDALibException {
+        String key = "rng:" + getFileKey(rngFile);
+        Schema schema = schemaCache.get(key);
+        if (schema != null)
+            return schema;
+
         System.setProperty(RNG_PROPERTY_KEY, RNG_FACTORY);
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.RELAXNG_NS_URI);
 
@@ -89,29 +160,202 @@ public class SEDAXMLValidator {
         factory.setResourceResolver(new XMLCatalogResolver(new String[]{catalogUrl.toString()}, false));
 
         try {
-            return factory.newSchema(new File(rngFile));
+            return cacheSchema(key, factory.newSchema(new File(rngFile)));
         } catch (SAXException e) {
             throw new SEDALibException("Impossible de charger le schéma " + rngFile, e);
         }
     }
 
-    private String getContextualErrorMessage(String manifest, SAXParseException e) {
+    /**
+     * Clear the compiled schemas cache and the pooled validators.
+     */
+    public static void clearSchemaCache() {
+        synchronized (SEDAXMLValidator.class) {
+            sedaSchema = null;
+        }
+        schemaCache.clear();
+        validatorPools.clear();
+    }
+
+    /**
+     * Gets the schemas cache size.
+     *
+     * @return the number of cached compiled schemas
+     */
+    public static int getSchemaCacheSize() {
+        return schemaCache.size();
+    }
+
+    /**
+     * Put a compiled schema in cache, if not already done by another thread, and
+     * create its validators pool. For a schema file, the schemas compiled from
+     * previous versions of the same file are dropped with their validators pool.
+     *
+     * @param key    the schema key
+     * @param schema the compiled schema
+     * @return the cached schema
+     */
+    private static Schema cacheSchema(String key, Schema schema) {
+        Schema previous = schemaCache.putIfAbsent(key, schema);
+        if (previous != null)
+            return previous;
+        validatorPools.put(schema, new ConcurrentLinkedQueue<Validator>());
+        int sizeSeparator = key.lastIndexOf('|', key.lastIndexOf('|') - 1);
+        if (sizeSeparator > 0) {
+            String pathPrefix = key.substring(0, sizeSeparator + 1);
+            for (Map.Entry<String, Schema> e : schemaCache.entrySet())
+                if (e.getKey().startsWith(pathPrefix) && !e.getKey().equals(key)
+                        && schemaCache.remove(e.getKey(), e.getValue()))
+                    validatorPools.remove(e.getValue());
+        }
+        return schema;
+    }
+
+    /**
+     * Gets the cache key of a schema file, from its real path, size and last
+     * modification time, so that schemas with the same content in different
+     * directories, which may include different relative files, are not shared.
+     *
+     * @param fileName the file name
+     * @return the key
+     * @throws SEDALibException if the file can't be accessed
+     */
+    private static String getFileKey(String fileName) throws SEDALibException {
+        try {
+            Path path = Paths.get(fileName).toRealPath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return path + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de lire le schéma " + fileName, e);
+        }
+    }
+
+    /**
+     * Gets a validator for the schema, from the pool if the schema is cached and
+     * a validator is available.
+     *
+     * @param schema the schema
+     * @return the validator
+     */
+    private static Validator borrowValidator(Schema schema) {
+        Queue<Validator> pool = validatorPools.get(schema);
+        Validator validator = (pool == null ? null : pool.poll());
+        if (validator == null)
+            validator = schema.newValidator();
+        return validator;
+    }
+
+    /**
+     * Give back a validator to the pool of its schema, if cached and not full.
+     *
+     * @param schema    the schema
+     * @param validator the validator
+     */
+    private static void returnValidator(Schema schema, Validator validator) {
+        Queue<Validator> pool = validatorPools.get(schema);
+        if ((pool != null) && (pool.size() < MAX_POOLED_VALIDATORS)) {
+            try {
+                validator.reset();
+                pool.offer(validator);
+            } catch (UnsupportedOperationException ignored) {
+                // not reusable validator
+            }
+        }
+    }
+
+    private String getContextualErrorMessage(Scanner scanner, SAXParseException e) {
         int i = 0;
-        String line="", inArchiveUnit = "", result;
+        String line="", inArchiveUnit = "";
 
-        Scanner scanner = new Scanner(manifest);
         while (scanner.hasNextLine() && (i < e.getLineNumber())) {
             line = scanner.nextLine();
             if (line.trim().startsWith("<ArchiveUnit "))
                 inArchiveUnit = line.trim();
             i++;
         }
-        result = "Contexte de l'erreur: " + (inArchiveUnit.isEmpty()?"hors AU":inArchiveUnit) + "\n" +
+        scanner.close();
+        return getContextualErrorMessage(line, inArchiveUnit, e);
+    }
+
+    static String getContextualErrorMessage(String line, String inArchiveUnit, SAXParseException e) {
+        return "Contexte de l'erreur: " + (inArchiveUnit.isEmpty()?"hors AU":inArchiveUnit) + "\n" +
                 "position de l'erreur identifiée: ligne " + e.getLineNumber() + ", colonne " + e.getColumnNumber() + "\n" +
                 "ligne: " + line+"\n" +
                 "erreur brute: " + e.getMessage();
-        scanner.close();
-        return result;
+    }
+
+    private String getContextualErrorMessage(String manifest, SAXParseException e) {
+        return getContextualErrorMessage(new Scanner(manifest), e);
+    }
+
+    private String getContextualErrorMessage(Path manifestPath, SAXParseException e) {
+        try {
+            return getContextualErrorMessage(new Scanner(manifestPath, "UTF-8"), e);
+        } catch (IOException ignored) {
+            return getPositionErrorMessage(e);
+        }
+    }
+
+    static String getPositionErrorMessage(SAXParseException e) {
+        return "position de l'erreur identifiée: ligne " + e.getLineNumber() + ", colonne " + e.getColumnNumber() + "\n" +
+                "erreur brute: " + e.getMessage();
+    }
+
+    /**
+     * Validate the XML stream with a pooled validator of the schema.
+     *
+     * @param source the XML source
+     * @param schema the schema
+     * @throws SAXException the SAX exception if the XML is not valid
+     * @throws IOException  the IO exception
+     */
+    private void validate(Source source, Schema schema) throws SAXException, IOException {
+        final Validator validator = borrowValidator(schema);
+        try {
+            validator.validate(source);
+        } finally {
+            returnValidator(schema, validator);
+        }
+    }
+
+    /**
+     * Validate the XML stream with the xsd schema, through a StAX reader.
+     *
+     * @param is        the XML input stream
+     * @param xmlSchema the xml schema
+     * @throws SAXException       the SAX exception if the XML is not valid
+     * @throws IOException        the IO exception
+     * @throws XMLStreamException the XML stream exception
+     */
+    private void validateWithXSDSchema(InputStream is, Schema xmlSchema)
+            throws SAXException, IOException, XMLStreamException {
+        XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(is, "UTF-8");
+        try {
+            validate(new StAXSource(xmlStreamReader), xmlSchema);
+        } finally {
+            try {
+                xmlStreamReader.close();
+            } catch (XMLStreamException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Validate the XML stream with the xsd or rng schema.
+     *
+     * @param is      the XML input stream
+     * @param schema  the schema
+     * @param rngFlag true if the schema is a rng one
+     * @throws SAXException       the SAX exception if the XML is not valid
+     * @throws IOException        the IO exception
+     * @throws XMLStreamException the XML stream exception
+     */
+    void validate(InputStream is, Schema schema, boolean rngFlag)
+            throws SAXException, IOException, XMLStreamException {
+        if (rngFlag)
+            validate(new StreamSource(is), schema);
+        else
+            validateWithXSDSchema(is, schema);
     }
 
     /**
@@ -123,14 +367,8 @@ public class SEDAXMLValidator {
      * @throws SEDALibException the seda lib exception
      */
     public boolean checkWithXSDSchema(String manifest, Schema xmlSchema) throws SEDALibException {
-        XMLInputFactory xmlInputFactory;
-        XMLStreamReader xmlStreamReader = null;
         try (ByteArrayInputStream bais = new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8))) {
-            xmlInputFactory = XMLInputFactory.newInstance();
-            xmlStreamReader = xmlInputFactory.createXMLStreamReader(bais, "UTF-8");
-
-            final Validator validator = xmlSchema.newValidator();
-            validator.validate(new StAXSource(xmlStreamReader));
+            validateWithXSDSchema(bais, xmlSchema);
             return true;
         } catch (IOException e) {
             throw new SEDALibException("Erreur d'accès au flux XML", e);
@@ -141,13 +379,55 @@ public class SEDAXMLValidator {
                     + getContextualErrorMessage(manifest, e));
         } catch (SAXException e) {
             throw new SEDALibException("Le flux XML n'est pas conforme", e);
-        } finally {
-            if (xmlStreamReader != null) {
-                try {
-                    xmlStreamReader.close();
-                } catch (XMLStreamException ignored) {
-                }
-            }
+        }
+    }
+
+    /**
+     * Check with xsd schema the XML manifest streamed from an input stream,
+     * without loading it in memory.
+     *
+     * @param manifestStream the XML manifest input stream
+     * @param xmlSchema      the xml schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithXSDSchema(InputStream manifestStream, Schema xmlSchema) throws SEDALibException {
+        try {
+            validateWithXSDSchema(manifestStream, xmlSchema);
+            return true;
+        } catch (IOException e) {
+            throw new SEDALibException("Erreur d'accès au flux XML", e);
+        } catch (XMLStreamException e) {
+            throw new SEDALibException("Impossible d'ouvrir le flux XML", e);
+        } catch (SAXParseException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme\n-> " + getPositionErrorMessage(e));
+        } catch (SAXException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme", e);
+        }
+    }
+
+    /**
+     * Check with xsd schema the XML manifest file, streamed without loading it in
+     * memory.
+     *
+     * @param manifestPath the XML manifest path
+     * @param xmlSchema    the xml schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithXSDSchema(Path manifestPath, Schema xmlSchema) throws SEDALibException {
+        try (InputStream is = Files.newInputStream(manifestPath)) {
+            validateWithXSDSchema(is, xmlSchema);
+            return true;
+        } catch (IOException e) {
+            throw new SEDALibException("Erreur d'accès au flux XML", e);
+        } catch (XMLStreamException e) {
+            throw new SEDALibException("Impossible d'ouvrir le flux XML", e);
+        } catch (SAXParseException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme\n-> "
+                    + getContextualErrorMessage(manifestPath, e));
+        } catch (SAXException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme", e);
         }
     }
 
@@ -161,8 +441,7 @@ public class SEDAXMLValidator {
      */
     public boolean checkWithRNGSchema(String manifest, Schema rngSchema) throws SEDALibException {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8))) {
-            final Validator validator = rngSchema.newValidator();
-            validator.validate(new StreamSource(bais));
+            validate(new StreamSource(bais), rngSchema);
             return true;
         } catch (SAXParseException e) {
             throw new SEDALibException("Le flux XML n'est pas conforme\n-> "
@@ -173,4 +452,49 @@ public class SEDAXMLValidator {
             throw new SEDALibException("Erreur d'accès au flux XML", e);
         }
     }
+
+    /**
+     * Check with rng schema the XML manifest streamed from an input stream,
+     * without loading it in memory.
+     *
+     * @param manifestStream the XML manifest input stream
+     * @param rngSchema      the rng schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithRNGSchema(InputStream manifestStream, Schema rngSchema) throws SEDALibException {
+        try {
+            validate(new StreamSource(manifestStream), rngSchema);
+            return true;
+        } catch (SAXParseException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme\n-> " + getPositionErrorMessage(e));
+        } catch (SAXException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme", e);
+        } catch (IOException e) {
+            throw new SEDALibException("Erreur d'accès au flux XML", e);
+        }
+    }
+
+    /**
+     * Check with rng schema the XML manifest file, streamed without loading it in
+     * memory.
+     *
+     * @param manifestPath the XML manifest path
+     * @param rngSchema    the rng schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithRNGSchema(Path manifestPath, Schema rngSchema) throws SEDALibException {
+        try (InputStream is = Files.newInputStream(manifestPath)) {
+            validate(new StreamSource(is), rngSchema);
+            return true;
+        } catch (SAXParseException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme\n-> "
+                    + getContextualErrorMessage(manifestPath, e));
+        } catch (SAXException e) {
+            throw new SEDALibException("Le flux XML n'est pas conforme", e);
+        } catch (IOException e) {
+            throw new SEDALibException("Erreur d'accès au flux XML", e);
+        }
+    }
 }
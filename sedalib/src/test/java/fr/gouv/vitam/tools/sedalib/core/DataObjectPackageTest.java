@@ -6,8 +6,14 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageSerializer;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.XmlFragmentCompressor;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import static fr.gouv.vitam.tools.sedalib.TestUtilities.LineEndNormalize;
@@ -15,9 +21,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -618,7 +632,324 @@ class DataObjectPackageTest {
     //    System.out.println(sau);
         assertEquals(LineEndNormalize(testau), LineEndNormalize(sau));
     }
-    
+
+    @Test
+    void testArchiveUnitTraversal() throws SEDALibException, InterruptedException {
+        // Given
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+
+        // When visit sequentially and in parallel from the ghost root
+        List<ArchiveUnit> visited = new ArrayList<ArchiveUnit>();
+        dataObjectPackage.visitArchiveUnits(dataObjectPackage.getGhostRootAu(), visited::add);
+        Set<ArchiveUnit> parallelVisited = dataObjectPackage.archiveUnitStream(dataObjectPackage.getGhostRootAu(), true)
+                .collect(Collectors.toSet());
+
+        // Then each ArchiveUnit is visited one time, roots first
+        assertThat(visited).doesNotHaveDuplicates();
+        assertThat(visited).containsExactlyInAnyOrderElementsOf(dataObjectPackage.getAuInDataObjectPackageIdMap().values());
+        assertThat(parallelVisited).containsExactlyInAnyOrderElementsOf(visited);
+        assertThat(visited.get(0)).isEqualTo(dataObjectPackage.getGhostRootAu().getChildrenAuList().getArchiveUnitList().get(0));
+    }
+
+    @Test
+    void testArchiveUnitTraversalAfterMove() throws SEDALibException, InterruptedException {
+        // Given a package with elements visited in more traversals than the target package
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+        SIPToArchiveTransferImporter childSi = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIPChild.zip-tmpdir", null);
+        childSi.doImport();
+        DataObjectPackage childDataObjectPackage = childSi.getArchiveTransfer().getDataObjectPackage();
+        for (int i = 0; i < 3; i++)
+            childDataObjectPackage.visitArchiveUnits(childDataObjectPackage.getGhostRootAu(), au -> {
+            });
+        int count = dataObjectPackage.getArchiveUnitCount() + childDataObjectPackage.getArchiveUnitCount();
+
+        // When move the package content
+        dataObjectPackage.moveContentFromDataObjectPackage(childDataObjectPackage, dataObjectPackage.getGhostRootAu());
+
+        // Then all ArchiveUnits are visited in each following traversal of the target package
+        for (int i = 0; i < 5; i++) {
+            List<ArchiveUnit> visited = new ArrayList<ArchiveUnit>();
+            dataObjectPackage.visitArchiveUnits(dataObjectPackage.getGhostRootAu(), visited::add);
+            assertThat(visited).doesNotHaveDuplicates();
+            assertThat(visited).hasSize(count);
+        }
+    }
+
+    @Test
+    void testArchiveUnitMetadataCache() throws SEDALibException, InterruptedException {
+        // Given
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+        dataObjectPackage.setArchiveUnitMetadataCache(new ArchiveUnitMetadataCache(2));
+        List<String> firstContents = new ArrayList<String>();
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            firstContents.add(au.getContent().toString());
+
+        // When read again after eviction and modify one
+        List<String> secondContents = new ArrayList<String>();
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            secondContents.add(au.getContent().toString());
+        ArchiveUnit au = dataObjectPackage.getArchiveUnitById("ID19");
+        au.getContent().addNewMetadata("Description", "CacheTest");
+        for (ArchiveUnit other : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            other.getContent();
+
+        // Then same metadata, bounded cache and modification kept
+        ArchiveUnitMetadataCache cache = dataObjectPackage.getArchiveUnitMetadataCache();
+        assertThat(secondContents).isEqualTo(firstContents);
+        assertThat(cache.getSize()).isLessThanOrEqualTo(2);
+        assertThat(cache.getEvictionCount()).isGreaterThan(0);
+        assertThat(au.getContentXmlData()).contains("CacheTest");
+    }
+
+    @Test
+    void testArchiveUnitMetadataCacheOptIn() throws SEDALibException, InterruptedException {
+        // Given
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+
+        // When modify a held Content after reading all the others
+        Content content = dataObjectPackage.getArchiveUnitById("ID19").getContent();
+        for (ArchiveUnit other : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            other.getContent();
+        content.addNewMetadata("Description", "HeldContentTest");
+
+        // Then no cache by default and modification kept
+        assertThat(dataObjectPackage.getArchiveUnitMetadataCache()).isNull();
+        assertThat(dataObjectPackage.getArchiveUnitById("ID19").getContentXmlData()).contains("HeldContentTest");
+    }
+
+    @Test
+    void testArchiveUnitContentStringRead() throws SEDALibException, InterruptedException {
+        // Given a package with a cache
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+        ArchiveUnitMetadataCache cache = new ArchiveUnitMetadataCache(0);
+        dataObjectPackage.setArchiveUnitMetadataCache(cache);
+
+        // When read all the contents as string
+        List<String> readContents = new ArrayList<String>();
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            readContents.add(au.readContentString());
+        int readCacheSize = cache.getSize();
+        List<String> contents = new ArrayList<String>();
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            contents.add(au.getContent().toString());
+
+        // Then same normalised contents, without any parsed Content kept
+        assertThat(readContents).isEqualTo(contents);
+        assertThat(readCacheSize).isZero();
+        assertThat(cache.getSize()).isEqualTo(contents.size());
+    }
+
+    @Test
+    void testArchiveUnitMetadataCacheRemoval() throws SEDALibException, InterruptedException {
+        // Given a package with a cache and all ArchiveUnits metadata parsed
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+        ArchiveUnitMetadataCache cache = new ArchiveUnitMetadataCache(0);
+        dataObjectPackage.setArchiveUnitMetadataCache(cache);
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            au.getContent();
+        int parsedCount = cache.getSize();
+
+        // When an empty ArchiveUnit is removed and all the ArchiveUnits are moved in another package
+        ArchiveUnit emptyAu = new ArchiveUnit(dataObjectPackage);
+        emptyAu.setContentXmlData("<Content><Title>Empty</Title></Content>");
+        emptyAu.getContent();
+        int withEmptyCount = cache.getSize();
+        dataObjectPackage.removeEmptyArchiveUnit(emptyAu);
+        int afterRemoveCount = cache.getSize();
+        DataObjectPackage targetDataObjectPackage = new DataObjectPackage();
+        targetDataObjectPackage.moveContentFromDataObjectPackage(dataObjectPackage,
+                targetDataObjectPackage.getGhostRootAu());
+
+        // Then the cache forgets them
+        assertThat(parsedCount).isEqualTo(targetDataObjectPackage.getArchiveUnitCount());
+        assertThat(withEmptyCount).isEqualTo(parsedCount + 1);
+        assertThat(afterRemoveCount).isEqualTo(parsedCount);
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    void testXmlFragmentsCompaction() throws SEDALibException, InterruptedException {
+        // Given
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+        List<String> plainContents = new ArrayList<String>();
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            plainContents.add(au.getContentXmlData());
+
+        // When compacted and one modified
+        dataObjectPackage.setXmlFragmentsCompactionMode(XmlFragmentCompressor.DEFLATE_COMPACTION);
+        List<String> compactedContents = new ArrayList<String>();
+        for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            compactedContents.add(au.getContentXmlData());
+        ArchiveUnit au = dataObjectPackage.getArchiveUnitById("ID19");
+        au.getContent().addNewMetadata("Description", "CompactionTest");
+        au.releaseParsedMetadata();
+        dataObjectPackage.setXmlFragmentsCompactionMode(XmlFragmentCompressor.NO_COMPACTION);
+
+        // Then same xml data and modification kept
+        assertThat(compactedContents).isEqualTo(plainContents);
+        assertThat(au.getContentXmlData()).contains("CompactionTest");
+        assertThat(au.getContent().toString()).contains("CompactionTest");
+    }
+
+    @Test
+    void testDataObjectPackageStreamReader() throws Exception {
+        for (String manifest : new String[]{"src/test/resources/PacketSamples/SampleWithLinkFlatManifest.xml",
+                "src/test/resources/PacketSamples/SampleWithLinkHierarchicalManifest.xml"}) {
+            // Given
+            DataObjectPackage dataObjectPackage;
+            try (FileInputStream fis = new FileInputStream(manifest);
+                 SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(fis)) {
+                dataObjectPackage = ArchiveTransfer.fromSedaXml(xmlReader, "target/tmpJunit", null)
+                        .getDataObjectPackage();
+            }
+            List<String> expectedElements = new ArrayList<String>();
+            for (DataObjectGroup dog : dataObjectPackage.getDogInDataObjectPackageIdMap().values())
+                expectedElements.add("DataObjectGroup " + dog.getInDataObjectPackageId());
+            for (BinaryDataObject bdo : dataObjectPackage.getBdoInDataObjectPackageIdMap().values())
+                expectedElements.add("BinaryDataObject " + bdo.getInDataObjectPackageId());
+            for (PhysicalDataObject pdo : dataObjectPackage.getPdoInDataObjectPackageIdMap().values())
+                expectedElements.add("PhysicalDataObject " + pdo.getInDataObjectPackageId());
+            for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+                expectedElements.add("ArchiveUnit " + au.getInDataObjectPackageId() + " " + au.getContentXmlData());
+
+            // When
+            List<String> streamedElements = new ArrayList<String>();
+            String managementMetadataXmlData;
+            try (FileInputStream fis = new FileInputStream(manifest);
+                 DataObjectPackageStreamReader reader = new DataObjectPackageStreamReader(fis, "target/tmpJunit",
+                         null)) {
+                reader.forEachRemaining(element -> {
+                    if (element instanceof ArchiveUnit)
+                        streamedElements.add("ArchiveUnit " + element.getInDataObjectPackageId() + " "
+                                + ((ArchiveUnit) element).getContentXmlData());
+                    else
+                        streamedElements.add(element.getClass().getSimpleName() + " "
+                                + element.getInDataObjectPackageId());
+                });
+                managementMetadataXmlData = reader.getManagementMetadataXmlData();
+            }
+
+            // Then
+            assertThat(streamedElements).containsExactlyInAnyOrderElementsOf(expectedElements);
+            assertThat(managementMetadataXmlData).isEqualTo(dataObjectPackage.getManagementMetadataXmlData());
+        }
+    }
+
+    private static byte[] exportManifest(ArchiveTransfer archiveTransfer, boolean hierarchicalFlag,
+                                         boolean indentedFlag, int threadCount) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArchiveTransferToSIPExporter exporter = new ArchiveTransferToSIPExporter(archiveTransfer, null);
+        exporter.setThreadCount(threadCount);
+        exporter.exportManifestOutputStream(baos, hierarchicalFlag, indentedFlag);
+        return baos.toByteArray();
+    }
+
+    @Test
+    void testParallelManifestExport() throws Exception {
+        // Given
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+        si.doImport();
+        ArchiveTransfer archiveTransfer = si.getArchiveTransfer();
+
+        for (boolean hierarchicalFlag : new boolean[]{false, true})
+            for (boolean indentedFlag : new boolean[]{false, true}) {
+                // When
+                byte[] sequentialManifest = exportManifest(archiveTransfer, hierarchicalFlag, indentedFlag, 1);
+                byte[] parallelManifest = exportManifest(archiveTransfer, hierarchicalFlag, indentedFlag, 4);
+
+                // Then
+                assertThat(parallelManifest).isEqualTo(sequentialManifest);
+            }
+    }
+
+    private static byte[] exportDataObjectPackage(DataObjectPackage dataObjectPackage, int threadCount)
+            throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (SEDAXMLStreamWriter xmlWriter = new SEDAXMLStreamWriter(baos, 2)) {
+            dataObjectPackage.toSedaXml(xmlWriter, false, threadCount, null);
+        }
+        return baos.toByteArray();
+    }
+
+    private static DataObjectPackage generateDataObjectPackage(int count) {
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit previous = null;
+        for (int i = 0; i < count; i++) {
+            ArchiveUnit au = new ArchiveUnit(dataObjectPackage);
+            au.setContentXmlData("<Content>\n  <DescriptionLevel>Item</DescriptionLevel>\n  <Title>Unité n°" + i
+                    + " &amp; été</Title>\n  <Description>Description de l'unité " + i + "</Description>\n</Content>");
+            if ((previous != null) && (i % 10 != 0))
+                previous.addChildArchiveUnit(au);
+            else
+                dataObjectPackage.addRootAu(au);
+            previous = au;
+        }
+        dataObjectPackage.setManagementMetadataXmlData("<ManagementMetadata>\n  <OriginatingAgencyIdentifier>Service" +
+                "</OriginatingAgencyIdentifier>\n</ManagementMetadata>");
+        return dataObjectPackage;
+    }
+
+    @Test
+    void testParallelManifestExportOnGeneratedPackage() throws Exception {
+        // Given
+        DataObjectPackage dataObjectPackage = generateDataObjectPackage(500);
+
+        // When
+        byte[] sequentialManifest = exportDataObjectPackage(dataObjectPackage, 1);
+        byte[] parallelManifest = exportDataObjectPackage(dataObjectPackage, 4);
+
+        // Then
+        assertThat(parallelManifest).isEqualTo(sequentialManifest);
+        assertThat(new String(parallelManifest, StandardCharsets.UTF_8)).contains("RefID450");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testParallelManifestExportBenchmark() throws Exception {
+        // Given a generated package, of 1000000 ArchiveUnits with -Dsedalib.benchmark.archiveUnits=1000000
+        assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+        int count = Integer.getInteger("sedalib.benchmark.archiveUnits", 20000);
+        DataObjectPackage dataObjectPackage = generateDataObjectPackage(count);
+        int threadCount = Runtime.getRuntime().availableProcessors();
+
+        // When exported, after warm up
+        exportDataObjectPackage(dataObjectPackage, 1);
+        exportDataObjectPackage(dataObjectPackage, threadCount);
+        long start = System.nanoTime();
+        byte[] sequentialManifest = exportDataObjectPackage(dataObjectPackage, 1);
+        long sequentialDuration = System.nanoTime() - start;
+        start = System.nanoTime();
+        byte[] parallelManifest = exportDataObjectPackage(dataObjectPackage, threadCount);
+        long parallelDuration = System.nanoTime() - start;
+
+        // Then
+        assertThat(parallelManifest).isEqualTo(sequentialManifest);
+        assertThat(parallelDuration).isLessThan(sequentialDuration);
+    }
+
     //Cleaning tmp folder
     @AfterEach
     public void deleteOutputFile() throws IOException, InterruptedException {
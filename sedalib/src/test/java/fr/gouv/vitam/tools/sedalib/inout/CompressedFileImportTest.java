@@ -6,24 +6,33 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import fr.gouv.vitam.tools.sedalib.TestUtilities;
 import fr.gouv.vitam.tools.sedalib.UseTestFiles;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageSerializer;
 import fr.gouv.vitam.tools.sedalib.inout.importer.CompressedFileToArchiveTransferImporter;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -283,6 +292,86 @@ public class CompressedFileImportTest implements UseTestFiles {
         assertThat(sau).isEqualTo(testau);
     }
     
+    @Test
+    public void TestZipParallelImport() throws Exception {
+
+        // do sequential and parallel import of the same zip
+        CompressedFileToArchiveTransferImporter sequentialZi = new CompressedFileToArchiveTransferImporter(
+                "src/test/resources/zip/TestImport.zip", "target/tmpJunit/TestImportSequential.zip-tmpdir", "UTF8", null, null);
+        sequentialZi.addIgnorePattern("Thumbs.db");
+        sequentialZi.addIgnorePattern("pagefile.sys");
+        sequentialZi.doImport();
+
+        CompressedFileToArchiveTransferImporter parallelZi = new CompressedFileToArchiveTransferImporter(
+                "src/test/resources/zip/TestImport.zip", "target/tmpJunit/TestImportParallel.zip-tmpdir", "UTF8", null, null);
+        parallelZi.addIgnorePattern("Thumbs.db");
+        parallelZi.addIgnorePattern("pagefile.sys");
+        parallelZi.setThreadCount(4);
+        parallelZi.doImport();
+
+        // assert same structure and same files content
+        DataObjectPackage sequentialDop = sequentialZi.getArchiveTransfer().getDataObjectPackage();
+        DataObjectPackage parallelDop = parallelZi.getArchiveTransfer().getDataObjectPackage();
+        assertEquals(sequentialDop.getAuInDataObjectPackageIdMap().keySet(), parallelDop.getAuInDataObjectPackageIdMap().keySet());
+        assertEquals(sequentialDop.getBdoInDataObjectPackageIdMap().keySet(), parallelDop.getBdoInDataObjectPackageIdMap().keySet());
+        for (BinaryDataObject bdo : sequentialDop.getBdoInDataObjectPackageIdMap().values())
+            assertEquals(bdo.messageDigest.getValue(),
+                    parallelDop.getBdoInDataObjectPackageIdMap().get(bdo.getInDataObjectPackageId()).messageDigest.getValue());
+    }
+
+    private static byte[] generateContent(int size, char c) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) c);
+        return content;
+    }
+
+    @Test
+    public void TestDuplicateEntriesImport() throws Exception {
+        // Given a tar with a small then a big entry of the same name, and the reverse, and a zip with many
+        // entries of the same name
+        Files.createDirectories(Paths.get("target/tmpJunit"));
+        byte[] small = "small content".getBytes(StandardCharsets.UTF_8);
+        byte[] big = generateContent(3 * 1024 * 1024, 'b');
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(
+                new FileOutputStream("target/tmpJunit/TestDuplicate.tar"))) {
+            String[] names = {"root/smallThenBig.txt", "root/smallThenBig.txt", "root/bigThenSmall.txt",
+                    "root/bigThenSmall.txt"};
+            byte[][] contents = {small, big, big, small};
+            for (int i = 0; i < names.length; i++) {
+                TarArchiveEntry entry = new TarArchiveEntry(names[i]);
+                entry.setSize(contents[i].length);
+                tos.putArchiveEntry(entry);
+                tos.write(contents[i]);
+                tos.closeArchiveEntry();
+            }
+        }
+        try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(
+                new File("target/tmpJunit/TestDuplicate.zip"))) {
+            for (int i = 0; i < 20; i++) {
+                zos.putArchiveEntry(new ZipArchiveEntry("root/duplicate.txt"));
+                zos.write(i == 19 ? big : ("content " + i).getBytes(StandardCharsets.UTF_8));
+                zos.closeArchiveEntry();
+            }
+        }
+
+        // When uncompressed sequentially for the tar and in parallel for the zip
+        CompressedFileToArchiveTransferImporter tarZi = new CompressedFileToArchiveTransferImporter(
+                "target/tmpJunit/TestDuplicate.tar", "target/tmpJunit/TestDuplicate.tar-tmpdir", "UTF8", null, null);
+        tarZi.doImport();
+        CompressedFileToArchiveTransferImporter zipZi = new CompressedFileToArchiveTransferImporter(
+                "target/tmpJunit/TestDuplicate.zip", "target/tmpJunit/TestDuplicate.zip-tmpdir", "UTF8", null, null);
+        zipZi.setThreadCount(4);
+        zipZi.doImport();
+
+        // Then the last entry of each name is kept
+        assertArrayEquals(big,
+                Files.readAllBytes(Paths.get("target/tmpJunit/TestDuplicate.tar-tmpdir/root/smallThenBig.txt")));
+        assertArrayEquals(small,
+                Files.readAllBytes(Paths.get("target/tmpJunit/TestDuplicate.tar-tmpdir/root/bigThenSmall.txt")));
+        assertArrayEquals(big,
+                Files.readAllBytes(Paths.get("target/tmpJunit/TestDuplicate.zip-tmpdir/root/duplicate.txt")));
+    }
+
     @AfterEach
     public void deleteOutputFile() throws IOException, InterruptedException {
         recursiveDelete(new File("target/tmpJunit/"));
@@ -5,24 +5,40 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import fr.gouv.vitam.tools.sedalib.TestUtilities;
 import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageSerializer;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPStreamExporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DiskImportExportTest implements UseTestFiles {
@@ -410,4 +426,198 @@ public class DiskImportExportTest implements UseTestFiles {
 
         assertEquals(sau, testau);
     }
+
+    @Test
+    public void TestDiskImportWithParallelTechnicalExtraction() throws Exception {
+
+        // do sequential and parallel import of the same test directory
+        DiskToArchiveTransferImporter sequentialDi;
+        sequentialDi = new DiskToArchiveTransferImporter("src/test/resources/PacketSamples/SampleWithLinksModelV2", null);
+        sequentialDi.addIgnorePattern("Thumbs.db");
+        sequentialDi.addIgnorePattern("pagefile.sys");
+        sequentialDi.doImport();
+
+        DiskToArchiveTransferImporter parallelDi;
+        parallelDi = new DiskToArchiveTransferImporter("src/test/resources/PacketSamples/SampleWithLinksModelV2", null);
+        parallelDi.addIgnorePattern("Thumbs.db");
+        parallelDi.addIgnorePattern("pagefile.sys");
+        parallelDi.setThreadCount(4);
+        parallelDi.doImport();
+
+        // assert same ids and same technical elements
+        DataObjectPackage sequentialDop = sequentialDi.getArchiveTransfer().getDataObjectPackage();
+        DataObjectPackage parallelDop = parallelDi.getArchiveTransfer().getDataObjectPackage();
+        assertEquals(sequentialDop.getAuInDataObjectPackageIdMap().keySet(), parallelDop.getAuInDataObjectPackageIdMap().keySet());
+        assertEquals(sequentialDop.getBdoInDataObjectPackageIdMap().keySet(), parallelDop.getBdoInDataObjectPackageIdMap().keySet());
+        for (BinaryDataObject bdo : sequentialDop.getBdoInDataObjectPackageIdMap().values()) {
+            BinaryDataObject parallelBdo = parallelDop.getBdoInDataObjectPackageIdMap().get(bdo.getInDataObjectPackageId());
+            assertEquals(bdo.messageDigest.getValue(), parallelBdo.messageDigest.getValue());
+            assertEquals(bdo.size.getValue(), parallelBdo.size.getValue());
+            assertEquals(bdo.formatIdentification.getSimpleMetadata("FormatId"),
+                    parallelBdo.formatIdentification.getSimpleMetadata("FormatId"));
+        }
+    }
+
+    @Test
+    public void TestDiskImportStreamSIPExport() throws Exception {
+
+        // do import of test directory
+        DiskToArchiveTransferImporter di;
+        di = new DiskToArchiveTransferImporter("src/test/resources/PacketSamples/SampleWithLinksModelV2", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        di.doImport();
+        ArchiveTransfer archiveTransfer = di.getArchiveTransfer();
+        archiveTransfer.getGlobalMetadata().date = "2018-09-30T14:33:24";
+        archiveTransfer.getGlobalMetadata().setNowFlag(false);
+
+        // do standard flat manifest export
+        ArchiveTransferToSIPExporter attse = new ArchiveTransferToSIPExporter(archiveTransfer, null);
+        String manifest = attse.getSEDAXMLManifest(false, true);
+
+        // do stream SIP export in the same order
+        DataObjectPackage dop = archiveTransfer.getDataObjectPackage();
+        List<DataObjectGroup> dogList = new ArrayList<>(dop.getDogInDataObjectPackageIdMap().values());
+        dogList.sort(Comparator.comparing(DataObjectGroup::getInDataObjectPackageId));
+        List<ArchiveUnit> auList = new ArrayList<>(dop.getAuInDataObjectPackageIdMap().values());
+        auList.sort(Comparator.comparingInt(au -> Integer.parseInt(au.getInDataObjectPackageId().substring(2))));
+        eraseAll("target/tmpJunit/SampleWithLinksModelV2Stream.zip");
+        ArchiveTransferToSIPStreamExporter attsse = new ArchiveTransferToSIPStreamExporter(archiveTransfer, null);
+        attsse.doExportToSEDASIP("target/tmpJunit/SampleWithLinksModelV2Stream.zip", true,
+                dogList.iterator(), auList.iterator());
+
+        // assert same manifest and all binary files in SIP
+        try (ZipFile zipFile = new ZipFile("target/tmpJunit/SampleWithLinksModelV2Stream.zip")) {
+            String streamManifest = IOUtils.toString(zipFile.getInputStream(zipFile.getEntry("manifest.xml")),
+                    StandardCharsets.UTF_8);
+            assertEquals(manifest, streamManifest);
+            assertEquals(dop.getBdoInDataObjectPackageIdMap().size() + 1, zipFile.size());
+        }
+    }
+
+    private static List<String> getEntriesNames(ZipFile zip) {
+        List<String> result = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements())
+            result.add(entries.nextElement().getName());
+        return result;
+    }
+
+    @Test
+    public void TestDiskImportParallelSIPExport() throws Exception {
+
+        // do import of test directory
+        DiskToArchiveTransferImporter di;
+        di = new DiskToArchiveTransferImporter("src/test/resources/PacketSamples/SampleWithLinksModelV2", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        di.doImport();
+        di.getArchiveTransfer().getGlobalMetadata().date = "2018-09-30T14:33:24";
+        di.getArchiveTransfer().getGlobalMetadata().setNowFlag(false);
+
+        // do reference SIP export with ZipOutputStream, as before parallel compression
+        new File("target/tmpJunit").mkdirs();
+        ArchiveTransferToSIPExporter attse = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream("target/tmpJunit/SampleWithLinksModelV2Reference.zip"))) {
+            zos.putNextEntry(new ZipEntry("manifest.xml"));
+            attse.exportManifestOutputStream(zos, false, true);
+            zos.closeEntry();
+            for (DataObjectGroup og : di.getArchiveTransfer().getDataObjectPackage().getDogInDataObjectPackageIdMap()
+                    .values()) {
+                for (BinaryDataObject bo : og.getBinaryDataObjectList()) {
+                    zos.putNextEntry(new ZipEntry(bo.uri.getValue()));
+                    Files.copy(bo.getOnDiskPath(), zos);
+                    zos.closeEntry();
+                }
+            }
+        }
+
+        // do sequential and parallel SIP export
+        attse = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        attse.doExportToSEDASIP("target/tmpJunit/SampleWithLinksModelV2Sequential.zip", false, true);
+        attse = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        attse.setThreadCount(4);
+        attse.doExportToSEDASIP("target/tmpJunit/SampleWithLinksModelV2Parallel.zip", false, true);
+        assertTrue(attse.getSummary().contains("fichiers stockés sans compression"));
+
+        // assert already compressed formats are stored and others deflated
+        int storedCount = 0;
+        for (DataObjectGroup og : di.getArchiveTransfer().getDataObjectPackage().getDogInDataObjectPackageIdMap()
+                .values()) {
+            for (BinaryDataObject bo : og.getBinaryDataObjectList()) {
+                String formatId = bo.formatIdentification.getSimpleMetadata("FormatId");
+                int expectedMethod = ArchiveTransferToSIPExporter.DEFAULT_STORED_FORMAT_IDS.contains(formatId) ?
+                        ZipEntry.STORED : ZipEntry.DEFLATED;
+                if (expectedMethod == ZipEntry.STORED)
+                    storedCount++;
+                for (String zipName : new String[]{"target/tmpJunit/SampleWithLinksModelV2Sequential.zip",
+                        "target/tmpJunit/SampleWithLinksModelV2Parallel.zip"}) {
+                    try (ZipFile zip = new ZipFile(zipName)) {
+                        assertEquals(expectedMethod, zip.getEntry(bo.uri.getValue()).getMethod(),
+                                bo.uri.getValue() + " (" + formatId + ")");
+                    }
+                }
+            }
+        }
+        assertTrue(storedCount > 0);
+
+        // assert same entries with same content, manifest being first
+        try (ZipFile referenceZip = new ZipFile("target/tmpJunit/SampleWithLinksModelV2Reference.zip");
+             ZipFile sequentialZip = new ZipFile("target/tmpJunit/SampleWithLinksModelV2Sequential.zip");
+             ZipFile parallelZip = new ZipFile("target/tmpJunit/SampleWithLinksModelV2Parallel.zip")) {
+            for (ZipFile zip : new ZipFile[]{sequentialZip, parallelZip}) {
+                assertEquals(referenceZip.size(), zip.size());
+                assertEquals(getEntriesNames(referenceZip), getEntriesNames(zip));
+                assertEquals("manifest.xml", zip.entries().nextElement().getName());
+                Enumeration<? extends ZipEntry> referenceEntries = referenceZip.entries();
+                while (referenceEntries.hasMoreElements()) {
+                    ZipEntry referenceEntry = referenceEntries.nextElement();
+                    ZipEntry entry = zip.getEntry(referenceEntry.getName());
+                    assertNotNull(entry);
+                    assertTrue(IOUtils.contentEquals(referenceZip.getInputStream(referenceEntry),
+                            zip.getInputStream(entry)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestSIPExportEntropyFallback() throws Exception {
+
+        // create a hierarchy with random and text files, both not in stored format ids
+        eraseAll("target/tmpJunit/EntropySample");
+        Files.createDirectories(Paths.get("target/tmpJunit/EntropySample"));
+        byte[] random = new byte[200000];
+        new Random(0).nextBytes(random);
+        Files.write(Paths.get("target/tmpJunit/EntropySample/random.bin"), random);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            text.append("Ligne ").append(i).append(" d'un fichier texte compressible\n");
+        Files.write(Paths.get("target/tmpJunit/EntropySample/text.txt"),
+                text.toString().getBytes(StandardCharsets.UTF_8));
+        DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter("target/tmpJunit/EntropySample", null);
+        di.doImport();
+
+        // do SIP export with default parameters and with entropy fallback
+        ArchiveTransferToSIPExporter attse = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        attse.doExportToSEDASIP("target/tmpJunit/EntropySampleDefault.zip", false, true);
+        attse = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        attse.setEntropyFallbackFlag(true);
+        attse.doExportToSEDASIP("target/tmpJunit/EntropySampleFallback.zip", false, true);
+
+        // assert high entropy file is stored only with entropy fallback, and text always deflated
+        for (DataObjectGroup og : di.getArchiveTransfer().getDataObjectPackage().getDogInDataObjectPackageIdMap()
+                .values()) {
+            for (BinaryDataObject bo : og.getBinaryDataObjectList()) {
+                boolean randomFlag = bo.getOnDiskPath().getFileName().toString().equals("random.bin");
+                try (ZipFile defaultZip = new ZipFile("target/tmpJunit/EntropySampleDefault.zip");
+                     ZipFile fallbackZip = new ZipFile("target/tmpJunit/EntropySampleFallback.zip")) {
+                    assertEquals(ZipEntry.DEFLATED, defaultZip.getEntry(bo.uri.getValue()).getMethod());
+                    assertEquals(randomFlag ? ZipEntry.STORED : ZipEntry.DEFLATED,
+                            fallbackZip.getEntry(bo.uri.getValue()).getMethod());
+                }
+            }
+        }
+    }
 }
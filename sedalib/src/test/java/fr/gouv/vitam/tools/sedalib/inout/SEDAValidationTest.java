@@ -4,21 +4,31 @@ import fr.gouv.vitam.tools.sedalib.TestUtilities;
 import fr.gouv.vitam.tools.sedalib.UseTestFiles;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
 import fr.gouv.vitam.tools.sedalib.core.GlobalMetadata;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidator;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertAll;
 
@@ -160,6 +170,80 @@ class SEDAValidationTest implements UseTestFiles {
 				.hasMessageContaining("\"Title\" invalid; must be equal to \"Versement de la matrice cadastrale numérique\"");
 	}
 
+	private static Path exportManifest(String sipFileName, String manifestFileName)
+			throws SEDALibException, InterruptedException, IOException {
+		String tmpDir = "target/tmpJunit/" + Paths.get(sipFileName).getFileName() + "-tmpdir";
+		TestUtilities.eraseAll(tmpDir);
+		SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(sipFileName, tmpDir, null);
+		si.doImport();
+		Path manifestPath = Paths.get("target/tmpJunit/" + manifestFileName);
+		try (OutputStream os = Files.newOutputStream(manifestPath)) {
+			new ArchiveTransferToSIPExporter(si.getArchiveTransfer(), null).exportManifestOutputStream(os, true, true);
+		}
+		return manifestPath;
+	}
+
+	@Test
+	void testSedaRNGProfileStreamValidation()
+			throws IllegalArgumentException, SEDALibException, IOException, InterruptedException {
+		// given
+		Path okManifestPath = exportManifest("src/test/resources/PacketSamples/OK_468.zip", "OK_468-manifest.xml");
+		Path koManifestPath = exportManifest("src/test/resources/PacketSamples/KO_468.zip", "KO_468-manifest.xml");
+		Files.copy(Paths.get("src/test/resources/PacketSamples/profile.rng"), Paths.get("target/tmpJunit/profileCopy.rng"),
+				StandardCopyOption.REPLACE_EXISTING);
+		SEDAXMLValidator sedaXMLValidator = new SEDAXMLValidator();
+
+		// when
+		Schema rngSchema = sedaXMLValidator.getSchemaFromRNGFile("src/test/resources/PacketSamples/profile.rng");
+		Schema sameRngSchema = sedaXMLValidator.getSchemaFromRNGFile("src/test/resources/PacketSamples/profile.rng");
+		Schema copyRngSchema = sedaXMLValidator.getSchemaFromRNGFile("target/tmpJunit/profileCopy.rng");
+		int cacheSize = SEDAXMLValidator.getSchemaCacheSize();
+		Files.setLastModifiedTime(Paths.get("target/tmpJunit/profileCopy.rng"),
+				FileTime.fromMillis(Files.getLastModifiedTime(Paths.get("target/tmpJunit/profileCopy.rng")).toMillis() + 2000));
+		Schema modifiedCopyRngSchema = sedaXMLValidator.getSchemaFromRNGFile("target/tmpJunit/profileCopy.rng");
+
+		// then compiled schema shared only for the same unmodified file, the previous version of a modified file
+		// dropped, and streamed validations with the pooled validator
+		assertThat(sameRngSchema).isSameAs(rngSchema);
+		assertThat(copyRngSchema).isNotSameAs(rngSchema);
+		assertThat(modifiedCopyRngSchema).isNotSameAs(copyRngSchema);
+		assertThat(SEDAXMLValidator.getSchemaCacheSize()).isEqualTo(cacheSize);
+		assertThat(sedaXMLValidator.checkWithRNGSchema(okManifestPath, copyRngSchema)).isTrue();
+		assertThat(sedaXMLValidator.checkWithRNGSchema(okManifestPath, rngSchema)).isTrue();
+		assertThatThrownBy(() -> sedaXMLValidator.checkWithRNGSchema(koManifestPath, rngSchema))
+				.hasMessageContaining("Contexte de l'erreur")
+				.hasMessageContaining("\"Title\" invalid; must be equal to \"Versement de la matrice cadastrale numérique\"");
+		try (InputStream is = Files.newInputStream(okManifestPath)) {
+			assertThat(sedaXMLValidator.checkWithRNGSchema(is, rngSchema)).isTrue();
+		}
+	}
+
+	@Test
+	void testSedaRNGProfileValidationWhileExporting()
+			throws IllegalArgumentException, SEDALibException, IOException, InterruptedException {
+		// given
+		TestUtilities.eraseAll("target/tmpJunit/OK_468.zip-tmpdir");
+		SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+				"src/test/resources/PacketSamples/OK_468.zip", "target/tmpJunit/OK_468.zip-tmpdir", null);
+		si.doImport();
+		TestUtilities.eraseAll("target/tmpJunit/KO_468.zip-tmpdir");
+		SIPToArchiveTransferImporter wrongSi = new SIPToArchiveTransferImporter(
+				"src/test/resources/PacketSamples/KO_468.zip", "target/tmpJunit/KO_468.zip-tmpdir", null);
+		wrongSi.doImport();
+		ArchiveTransferToSIPExporter exporter = new ArchiveTransferToSIPExporter(si.getArchiveTransfer(), null);
+		exporter.setManifestValidation(true, "src/test/resources/PacketSamples/profile.rng");
+		ArchiveTransferToSIPExporter wrongExporter = new ArchiveTransferToSIPExporter(wrongSi.getArchiveTransfer(), null);
+		wrongExporter.setManifestValidation(true, "src/test/resources/PacketSamples/profile.rng");
+
+		// when export with validation, then the valid manifest is exported and the wrong one fails
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		exporter.exportManifestOutputStream(baos, true, true);
+		assertThat(baos.toString("UTF-8")).isEqualTo(exporter.getSEDAXMLManifest(true, true));
+		assertThatThrownBy(() -> wrongExporter.exportManifestOutputStream(new ByteArrayOutputStream(), true, true))
+				.hasMessageContaining("Contexte de l'erreur")
+				.hasMessageContaining("\"Title\" invalid; must be equal to \"Versement de la matrice cadastrale numérique\"");
+	}
+
 	// TODO testWithXSD
 	
 	//Cleaning tmp folder
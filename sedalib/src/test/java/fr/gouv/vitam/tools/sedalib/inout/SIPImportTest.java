@@ -7,6 +7,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import fr.gouv.vitam.tools.sedalib.TestUtilities;
 import fr.gouv.vitam.tools.sedalib.UseTestFiles;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
@@ -15,17 +16,28 @@ import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToDiskExporter;
 import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.utils.LazyZipExtractor;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SIPImportTest implements UseTestFiles {
@@ -695,6 +707,83 @@ public class SIPImportTest implements UseTestFiles {
         assertTrue(FileUtils.contentEquals(new File("target/tmpJunit/SWLMV2.1.xml"), new File("target/tmpJunit/SWLMV2.xml")));
     }
     
+    @Test
+    public void TestSIPOKLazyImport() throws Exception {
+
+        // do lazy import of test SIP
+        TestUtilities.eraseAll("target/tmpJunit/SipOKLazy.zip-tmpdir");
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SIP_OK.zip", "target/tmpJunit/SipOKLazy.zip-tmpdir", null);
+        si.setLazyExtractionFlag(true);
+        si.doImport();
+
+        // assert macro results and no file extracted
+        DataObjectPackage dop = si.getArchiveTransfer().getDataObjectPackage();
+        assertEquals(28, dop.getAuInDataObjectPackageIdMap().size());
+        assertEquals(4, dop.getDogInDataObjectPackageIdMap().size());
+        assertFalse(new File("target/tmpJunit/SipOKLazy.zip-tmpdir/content").exists());
+
+        // assert files are extracted on demand, only once
+        LazyZipExtractor lazyZipExtractor = dop.getLazyZipExtractor();
+        List<BinaryDataObject> bdos = new ArrayList<>(dop.getBdoInDataObjectPackageIdMap().values());
+        assertTrue(Files.isRegularFile(bdos.get(0).getOnDiskPath()));
+        assertTrue(Files.isRegularFile(bdos.get(0).getOnDiskPath()));
+        assertEquals(1, lazyZipExtractor.getExtractedCount());
+
+        // assert the SIP is reopened when the DataObjectPackage is reloaded
+        ObjectMapper mapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(DataObjectPackage.class, new DataObjectPackageSerializer());
+        module.addDeserializer(DataObjectPackage.class, new DataObjectPackageDeserializer());
+        mapper.registerModule(module);
+        String json = mapper.writeValueAsString(dop);
+        DataObjectPackage reloadedDop = mapper.readValue(json, DataObjectPackage.class);
+        assertNotNull(reloadedDop.getLazyZipExtractor());
+        for (BinaryDataObject bdo : reloadedDop.getBdoInDataObjectPackageIdMap().values())
+            assertTrue(Files.isRegularFile(bdo.getOnDiskPath()));
+        assertEquals(bdos.size() - 1, reloadedDop.getLazyZipExtractor().getExtractedCount());
+        reloadedDop.closeLazyZipExtractor();
+        assertNull(reloadedDop.getLazyZipExtractor());
+
+        // assert extraction failures are reported once the extractor is closed
+        lazyZipExtractor.close();
+        Files.delete(Paths.get(bdos.get(1).getOnDiskPathToString()));
+        assertThrows(UncheckedIOException.class, () -> bdos.get(1).getOnDiskPath());
+        assertThrows(SEDALibException.class, () -> bdos.get(1).extractOnDiskFile());
+        dop.closeLazyZipExtractor();
+        assertNull(dop.getLazyZipExtractor());
+    }
+
+    @Test
+    public void TestSIPOKParallelImport() throws Exception {
+
+        // do sequential and parallel import of the same SIP
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SIP_OK.zip", "target/tmpJunit/SipOK.zip-tmpdir", null);
+        si.doImport();
+        SIPToArchiveTransferImporter parallelSi = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SIP_OK.zip", "target/tmpJunit/SipOKParallel.zip-tmpdir", null);
+        parallelSi.setThreadCount(4);
+        parallelSi.doImport();
+
+        // assert same ArchiveUnits, in same order, with same links and metadata
+        DataObjectPackage sequentialDop = si.getArchiveTransfer().getDataObjectPackage();
+        DataObjectPackage parallelDop = parallelSi.getArchiveTransfer().getDataObjectPackage();
+        assertEquals(sequentialDop.getAuInDataObjectPackageIdMap().keySet().toString(),
+                parallelDop.getAuInDataObjectPackageIdMap().keySet().toString());
+        assertEquals(sequentialDop.getGhostRootAu().getChildrenAuList().getInDataObjectPackageIdList(),
+                parallelDop.getGhostRootAu().getChildrenAuList().getInDataObjectPackageIdList());
+        for (ArchiveUnit au : sequentialDop.getAuInDataObjectPackageIdMap().values()) {
+            ArchiveUnit parallelAu = parallelDop.getArchiveUnitById(au.getInDataObjectPackageId());
+            assertEquals(au.getChildrenAuList().getInDataObjectPackageIdList(),
+                    parallelAu.getChildrenAuList().getInDataObjectPackageIdList());
+            assertEquals(au.getDataObjectRefList().getInDataObjectPackageIdList(),
+                    parallelAu.getDataObjectRefList().getInDataObjectPackageIdList());
+            assertEquals(au.getContentXmlData(), parallelAu.getContentXmlData());
+            assertEquals(au.getManagementXmlData(), parallelAu.getManagementXmlData());
+        }
+    }
+
     //Cleaning tmp folder
     @AfterEach
     public void deleteOutputFile() throws IOException, InterruptedException {
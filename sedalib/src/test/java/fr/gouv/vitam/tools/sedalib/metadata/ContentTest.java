@@ -3,10 +3,13 @@ package fr.gouv.vitam.tools.sedalib.metadata;
 import fr.gouv.vitam.tools.sedalib.metadata.content.*;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.*;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.apache.commons.lang3.reflect.ConstructorUtils;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -1153,4 +1156,80 @@ class ContentTest {
                 "</Content>";
         assertThat(cNextOut).isEqualTo(testOut);
     }
+
+    @Test
+    void testContentRepeatedParsing() throws SEDALibException {
+        // Given
+        Content c = new Content();
+        c.addNewMetadata("DescriptionLevel", "File");
+        c.addNewMetadata("Title", "TestTitle");
+        c.addNewMetadata("Description", "TestDescription");
+        c.addNewMetadata("Keyword", "TestKeywordContent", "TestKeywordReference", "corpname");
+        c.addNewMetadata("Writer", "TestFirstName", "TestBirthName", "TestIdentifier");
+        c.addNewMetadata("Event", "TestEventIdentifier", "TestEventType",
+                LocalDateTime.of(1970, 1, 1, 1, 0), "TestOutcome");
+        c.addNewMetadata("CreatedDate", LocalDateTime.of(2019, 1, 1, 1, 0));
+        String cOut = c.toString();
+
+        // When parsed many times, with cached constructors
+        List<String> parsedOuts = new ArrayList<String>();
+        for (int i = 0; i < 200; i++)
+            parsedOuts.add(SEDAMetadata.fromString(cOut, Content.class).toString());
+
+        // Then same content each time
+        assertThat(parsedOuts).containsOnly(cOut);
+    }
+
+    private static SEDAMetadata newEmptySEDAMetadataByReflection(Class<?> metadataClass, String elementName)
+            throws Exception {
+        if (metadataClass.getName().contains(".namedtype."))
+            return (SEDAMetadata) ConstructorUtils.invokeConstructor(metadataClass, elementName);
+        return (SEDAMetadata) ConstructorUtils.invokeConstructor(metadataClass, (Object[]) null);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testContentParsingConstructorsBenchmark() throws Exception {
+        // Given a Content and its metadata classes
+        Content c = new Content();
+        c.addNewMetadata("DescriptionLevel", "File");
+        c.addNewMetadata("Title", "TestTitle");
+        c.addNewMetadata("Description", "TestDescription");
+        c.addNewMetadata("Keyword", "TestKeywordContent", "TestKeywordReference", "corpname");
+        c.addNewMetadata("Writer", "TestFirstName", "TestBirthName", "TestIdentifier");
+        c.addNewMetadata("Event", "TestEventIdentifier", "TestEventType",
+                LocalDateTime.of(1970, 1, 1, 1, 0), "TestOutcome");
+        c.addNewMetadata("CreatedDate", LocalDateTime.of(2019, 1, 1, 1, 0));
+        String cOut = c.toString();
+        final int count = 20000;
+
+        // When construct the metadata as when parsing, by reflection and with cached constructors, after warm up
+        for (int i = 0; i < count; i++)
+            for (SEDAMetadata sm : c.metadataList) {
+                newEmptySEDAMetadataByReflection(sm.getClass(), sm.getXmlElementName());
+                SEDAMetadataFactory.newEmptySEDAMetadata(sm.getClass(), sm.getXmlElementName());
+            }
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+            for (SEDAMetadata sm : c.metadataList)
+                newEmptySEDAMetadataByReflection(sm.getClass(), sm.getXmlElementName());
+        long reflectionDuration = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+            for (SEDAMetadata sm : c.metadataList)
+                SEDAMetadataFactory.newEmptySEDAMetadata(sm.getClass(), sm.getXmlElementName());
+        long cachedDuration = System.nanoTime() - start;
+        start = System.nanoTime();
+        Content cNext = null;
+        for (int i = 0; i < count / 10; i++)
+            cNext = (Content) SEDAMetadata.fromString(cOut, Content.class);
+        long parsingDuration = System.nanoTime() - start;
+
+        // Then same content, and cached constructors faster than reflection
+        assertThat(cNext.toString()).isEqualTo(cOut);
+        assertThat(cachedDuration).as("Constructions du Content par réflexion en "
+                + (reflectionDuration / count / 1000.0) + " µs, par constructeurs en cache en "
+                + (cachedDuration / count / 1000.0) + " µs, analyse en "
+                + (parsingDuration / (count / 10) / 1000.0) + " µs").isLessThan(reflectionDuration);
+    }
 }
@@ -0,0 +1,155 @@
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdIndexMapTest {
+
+    @Test
+    void testIdIndexMapAsMap() {
+        // Given
+        IdIndexMap<String> map = new IdIndexMap<String>();
+        HashMap<String, String> reference = new HashMap<String, String>();
+        Random random = new Random(42);
+        String[] ids = {"ID0", "ID1", "ID12", "ID012", "ID", "Id3", "AU-12", "ID99999999999", "ID2000000"};
+
+        // When put, replace and remove a mix of generated and other ids
+        for (int i = 0; i < 5000; i++) {
+            String id = (random.nextInt(10) == 0 ? ids[random.nextInt(ids.length)] : "ID" + random.nextInt(3000));
+            if (random.nextInt(4) == 0) {
+                assertThat(map.remove(id)).isEqualTo(reference.remove(id));
+            } else {
+                assertThat(map.put(id, "V" + i)).isEqualTo(reference.put(id, "V" + i));
+            }
+        }
+
+        // Then same content
+        assertThat(map).isEqualTo(reference);
+        assertThat(map.size()).isEqualTo(reference.size());
+        for (String id : ids)
+            assertThat(map.containsKey(id)).isEqualTo(reference.containsKey(id));
+    }
+
+    @Test
+    void testIdIndexMapIteration() {
+        // Given
+        IdIndexMap<Integer> map = new IdIndexMap<Integer>();
+        for (int i = 100; i > 0; i--)
+            map.put("ID" + i, i);
+        map.put("Other", 0);
+
+        // When remove odd ids with iterator
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> e = it.next();
+            if (e.getValue() % 2 == 1)
+                it.remove();
+            else
+                e.setValue(e.getValue() * 10);
+        }
+
+        // Then generated ids in increasing order, then others
+        List<String> keys = new ArrayList<String>(map.keySet());
+        assertThat(keys).hasSize(51);
+        assertThat(keys.get(0)).isEqualTo("ID2");
+        assertThat(keys.get(49)).isEqualTo("ID100");
+        assertThat(keys.get(50)).isEqualTo("Other");
+        assertThat(map.get("ID4")).isEqualTo(40);
+        assertThat(map.get("ID5")).isNull();
+    }
+
+    @Test
+    void testIdTouchedSet() {
+        // Given
+        IdTouchedSet touched = new IdTouchedSet();
+
+        // When touch and increment
+        touched.add("ID10");
+        touched.increment("ID10");
+        touched.increment("ID7");
+        touched.increment("Other");
+        touched.increment("Other");
+        touched.add("ID500000");
+
+        // Then
+        assertThat(touched.getCount("ID10")).isEqualTo(2);
+        assertThat(touched.getCount("ID7")).isEqualTo(1);
+        assertThat(touched.getCount("Other")).isEqualTo(2);
+        assertThat(touched.getCount("ID500000")).isEqualTo(1);
+        assertThat(touched.contains("ID8")).isFalse();
+
+        // When re-add after clear
+        touched.clear();
+        touched.add("ID10");
+
+        // Then counts are reset
+        assertThat(touched.getCount("ID10")).isEqualTo(1);
+        assertThat(touched.contains("Other")).isFalse();
+    }
+
+    @Test
+    void testIdIndexMapGeneratedIdsStorage() {
+        // Given generated ids, in creation order, and another id
+        final int count = 200000;
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+            ids.add("ID" + (i + 1));
+        ids.add("Other");
+
+        // When fill a HashMap and an IdIndexMap with the same content
+        HashMap<String, Object> hashMap = new HashMap<String, Object>();
+        IdIndexMap<Object> idIndexMap = new IdIndexMap<Object>();
+        for (String id : ids) {
+            Object value = new Object();
+            hashMap.put(id, value);
+            idIndexMap.put(id, value);
+        }
+
+        // Then same content, with only the other id kept in hash map
+        assertThat(idIndexMap).isEqualTo(hashMap);
+        assertThat(idIndexMap.getSparseCount()).isEqualTo(1);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testIdIndexMapMemoryFootprintBenchmark() {
+        // Given values and ids kept alive outside the measured maps
+        final int count = 200000;
+        Object[] values = new Object[count];
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = new Object();
+            ids[i] = "ID" + (i + 1);
+        }
+
+        // When fill a HashMap and an IdIndexMap with the same content
+        usedMemory();
+        long before = usedMemory();
+        HashMap<String, Object> hashMap = new HashMap<String, Object>();
+        for (int i = 0; i < count; i++)
+            hashMap.put(ids[i], values[i]);
+        long hashMapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        IdIndexMap<Object> idIndexMap = new IdIndexMap<Object>();
+        for (int i = 0; i < count; i++)
+            idIndexMap.put(ids[i], values[i]);
+        long idIndexMapBytes = usedMemory() - before;
+
+        // Then same content with a smaller per id overhead
+        assertThat(idIndexMap).isEqualTo(hashMap);
+        assertThat(idIndexMapBytes / count).as("Surcoût par id IdIndexMap, HashMap=" + (hashMapBytes / count)
+                + " octets").isLessThan(hashMapBytes / count);
+    }
+}
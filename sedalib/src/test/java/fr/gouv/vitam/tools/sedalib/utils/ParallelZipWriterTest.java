@@ -0,0 +1,112 @@
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelZipWriterTest {
+
+    private static final Path TEST_DIR = Paths.get("target/tmpJunit/ParallelZipWriterTest");
+
+    // generate files, random ones bigger than the in memory entry limit, text and empty ones
+    private static List<Path> generateFiles() throws IOException {
+        Files.createDirectories(TEST_DIR);
+        Random random = new Random(0);
+        List<Path> result = new ArrayList<Path>();
+        for (int i = 0; i < 40; i++) {
+            byte[] content;
+            if (i % 10 == 0) {
+                content = new byte[ParallelZipWriter.MAX_MEMORY_ENTRY_SIZE + 100000];
+                random.nextBytes(content);
+            } else if (i % 9 == 0)
+                content = new byte[0];
+            else {
+                StringBuilder sb = new StringBuilder();
+                for (int j = random.nextInt(5000); j >= 0; j--)
+                    sb.append("Contenu ").append(i).append(" ligne ").append(j).append('\n');
+                content = sb.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            Path file = TEST_DIR.resolve("file" + i);
+            Files.write(file, content);
+            result.add(file);
+        }
+        return result;
+    }
+
+    private static void writeZip(File zipFile, List<Path> files, int threadCount) throws IOException {
+        try (ParallelZipWriter zipWriter = new ParallelZipWriter(zipFile, threadCount)) {
+            try (OutputStream os = zipWriter.putStreamEntry("manifest.xml")) {
+                os.write("<manifest/>".getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                if (i % 3 == 0)
+                    zipWriter.addAutomaticFileEntry("content/file" + i, files.get(i));
+                else
+                    zipWriter.addFileEntry("content/file" + i, files.get(i), i % 3 == 1);
+            }
+        }
+    }
+
+    // entries names and methods in zip order, and check entries content
+    private static List<String> getEntries(File zipFile, List<Path> files) throws IOException {
+        List<String> result = new ArrayList<String>();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                result.add(entry.getName() + " " + entry.getMethod());
+                if (entry.getName().startsWith("content/file")) {
+                    Path file = files.get(Integer.parseInt(entry.getName().substring("content/file".length())));
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        assertThat(IOUtils.toByteArray(is)).isEqualTo(Files.readAllBytes(file));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testEntriesOrderWithThreadCount() throws IOException {
+        // Given
+        List<Path> files = generateFiles();
+
+        // When
+        List<List<String>> entriesByThreadCount = new ArrayList<List<String>>();
+        for (int threadCount : new int[]{1, 2, 4}) {
+            File zipFile = TEST_DIR.resolve("threads" + threadCount + ".zip").toFile();
+            writeZip(zipFile, files, threadCount);
+            entriesByThreadCount.add(getEntries(zipFile, files));
+        }
+
+        // Then same entries in adding order, with same methods
+        List<String> expectedNames = new ArrayList<String>();
+        expectedNames.add("manifest.xml");
+        for (int i = 0; i < files.size(); i++)
+            expectedNames.add("content/file" + i);
+        List<String> names = new ArrayList<String>();
+        for (String entry : entriesByThreadCount.get(0))
+            names.add(entry.substring(0, entry.indexOf(' ')));
+        assertThat(names).isEqualTo(expectedNames);
+        assertThat(entriesByThreadCount.get(0)).contains("content/file1 " + ZipEntry.STORED,
+                "content/file2 " + ZipEntry.DEFLATED, "content/file10 " + ZipEntry.STORED);
+        assertThat(entriesByThreadCount.get(1)).isEqualTo(entriesByThreadCount.get(0));
+        assertThat(entriesByThreadCount.get(2)).isEqualTo(entriesByThreadCount.get(0));
+    }
+}
@@ -0,0 +1,111 @@
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TechnicalElementsCacheTest {
+
+    private static final Path CACHE_DIR = Paths.get("target/tmpJunit/TechnicalElementsCacheTest");
+
+    private static TechnicalElementsCache.Entry entry(long size, long lastModified, String digest) {
+        return new TechnicalElementsCache.Entry(size, lastModified, digest, "Portable Document Format",
+                "application/pdf", "fmt/18");
+    }
+
+    @Test
+    void testSaveAndOpenRoundTrip() throws IOException, SEDALibException {
+        // Given
+        Path cacheFile = CACHE_DIR.resolve("roundTrip.bin");
+        Files.deleteIfExists(cacheFile);
+        TechnicalElementsCache cache = TechnicalElementsCache.open(cacheFile);
+        cache.put(Paths.get("dir/file1.pdf"), entry(10, 1000, "digest1"));
+        cache.put(Paths.get("dir/file2.txt"), new TechnicalElementsCache.Entry(20, 2000, "digest2", "Plain Text File",
+                null, "x-fmt/111"));
+
+        // When
+        cache.save();
+        TechnicalElementsCache reopened = TechnicalElementsCache.open(cacheFile);
+
+        // Then
+        assertThat(reopened.getCount()).isEqualTo(2);
+        TechnicalElementsCache.Entry e1 = reopened.get(Paths.get("dir/../dir/file1.pdf"), 10, 1000);
+        assertThat(e1).isNotNull();
+        assertThat(e1.getDigest()).isEqualTo("digest1");
+        assertThat(e1.getFormatLitteral()).isEqualTo("Portable Document Format");
+        assertThat(e1.getMimeType()).isEqualTo("application/pdf");
+        assertThat(e1.getFormatId()).isEqualTo("fmt/18");
+        TechnicalElementsCache.Entry e2 = reopened.get(Paths.get("dir/file2.txt").toAbsolutePath(), 20, 2000);
+        assertThat(e2).isNotNull();
+        assertThat(e2.getMimeType()).isNull();
+        assertThat(e2.getFormatId()).isEqualTo("x-fmt/111");
+        assertThat(reopened.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testOpenUnreadableFile() throws IOException {
+        // Given
+        Path cacheFile = CACHE_DIR.resolve("corrupted.bin");
+        Files.createDirectories(CACHE_DIR);
+        Files.write(cacheFile, "not a cache".getBytes(StandardCharsets.UTF_8));
+
+        // When
+        TechnicalElementsCache cache = TechnicalElementsCache.open(cacheFile);
+
+        // Then
+        assertThat(cache.getCount()).isEqualTo(0);
+    }
+
+    @Test
+    void testInvalidationOnSizeOrLastModifiedChange() throws IOException, SEDALibException {
+        // Given
+        Path cacheFile = CACHE_DIR.resolve("invalidation.bin");
+        Files.deleteIfExists(cacheFile);
+        TechnicalElementsCache cache = TechnicalElementsCache.open(cacheFile);
+        cache.put(Paths.get("file1"), entry(10, 1000, "digest1"));
+        cache.put(Paths.get("file2"), entry(20, 2000, "digest2"));
+        cache.put(Paths.get("file3"), entry(30, 3000, "digest3"));
+
+        // When
+        TechnicalElementsCache.Entry sizeChanged = cache.get(Paths.get("file1"), 11, 1000);
+        TechnicalElementsCache.Entry lastModifiedChanged = cache.get(Paths.get("file2"), 20, 2001);
+        TechnicalElementsCache.Entry unchanged = cache.get(Paths.get("file3"), 30, 3000);
+        cache.save();
+
+        // Then
+        assertThat(sizeChanged).isNull();
+        assertThat(lastModifiedChanged).isNull();
+        assertThat(unchanged).isNotNull();
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        // invalidated entries are removed, also from the saved file
+        assertThat(cache.get(Paths.get("file1"), 10, 1000)).isNull();
+        TechnicalElementsCache reopened = TechnicalElementsCache.open(cacheFile);
+        assertThat(reopened.getCount()).isEqualTo(1);
+        assertThat(reopened.get(Paths.get("file3"), 30, 3000).getDigest()).isEqualTo("digest3");
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        // Given
+        TechnicalElementsCache cache = new TechnicalElementsCache(CACHE_DIR.resolve("eviction.bin"), 2);
+        cache.put(Paths.get("file1"), entry(10, 1000, "digest1"));
+        cache.put(Paths.get("file2"), entry(20, 2000, "digest2"));
+
+        // When
+        cache.get(Paths.get("file1"), 10, 1000);
+        cache.put(Paths.get("file3"), entry(30, 3000, "digest3"));
+
+        // Then
+        assertThat(cache.getCount()).isEqualTo(2);
+        assertThat(cache.get(Paths.get("file2"), 20, 2000)).isNull();
+        assertThat(cache.get(Paths.get("file1"), 10, 1000)).isNotNull();
+        assertThat(cache.get(Paths.get("file3"), 30, 3000)).isNotNull();
+    }
+}
@@ -0,0 +1,58 @@
+package fr.gouv.vitam.tools.sedalib.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XmlFragmentCompressorTest {
+
+    private static String contentFragment(int i) {
+        return "<Content>\n" +
+                "  <DescriptionLevel>Item</DescriptionLevel>\n" +
+                "  <Title>Message n°" + i + " : réunion du comité été</Title>\n" +
+                "  <Description>Corps du message " + i + "</Description>\n" +
+                "  <Writer>\n    <FirstName>Jean</FirstName>\n    <BirthName>Dupont" + (i % 17) + "</BirthName>\n  </Writer>\n" +
+                "  <Addressee>\n    <Identifier>user" + (i % 31) + "@example.org</Identifier>\n  </Addressee>\n" +
+                "  <SentDate>2019-01-" + String.format("%02d", 1 + i % 28) + "T10:00:00</SentDate>\n" +
+                "  <ReceivedDate>2019-01-" + String.format("%02d", 1 + i % 28) + "T10:00:05</ReceivedDate>\n" +
+                "</Content>";
+    }
+
+    @Test
+    void testCompactExpandRoundTrip() {
+        // Given
+        String[] fragments = {"", "<Content/>", contentFragment(1), contentFragment(2) + contentFragment(3) +
+                contentFragment(4), "é中😀<Title>ü</Title>"};
+
+        for (String fragment : fragments) {
+            // When
+            byte[] utf8 = XmlFragmentCompressor.compact(fragment, XmlFragmentCompressor.UTF8_COMPACTION);
+            byte[] deflated = XmlFragmentCompressor.compact(fragment, XmlFragmentCompressor.DEFLATE_COMPACTION);
+
+            // Then
+            assertThat(XmlFragmentCompressor.expand(utf8)).isEqualTo(fragment);
+            assertThat(XmlFragmentCompressor.expand(deflated)).isEqualTo(fragment);
+            assertThat(deflated.length).isLessThanOrEqualTo(utf8.length);
+        }
+    }
+
+    @Test
+    void testCompactionRatio() {
+        // Given
+        long chars = 0;
+        long utf8Bytes = 0;
+        long deflatedBytes = 0;
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            String fragment = contentFragment(i);
+            chars += fragment.length();
+            utf8Bytes += XmlFragmentCompressor.compact(fragment, XmlFragmentCompressor.UTF8_COMPACTION).length;
+            deflatedBytes += XmlFragmentCompressor.compact(fragment, XmlFragmentCompressor.DEFLATE_COMPACTION).length;
+        }
+
+        // Then
+        assertThat(deflatedBytes).as("deflate size of " + chars + " chars, " + utf8Bytes + " bytes in UTF-8")
+                .isLessThan(utf8Bytes / 2);
+    }
+}
@@ -0,0 +1,108 @@
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SEDAXMLEventReaderTest {
+
+    private static final String XML_DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<ArchiveTransfer xmlns=\"fr:gouv:culture:archivesdefrance:seda:v2.1\" " +
+            "xmlns:xlink=\"http://www.w3.org/1999/xlink\"><!-- comment -->\n" +
+            "  <Date>2019-01-01T10:00:00</Date>\n  <Flag>true</Flag>\n" +
+            "  <ArchiveUnit id=\"ID1\" xlink:href=\"ref\">\n" +
+            "    <Content><Title xml:lang=\"fr\">a &amp; b &lt;c&gt; é</Title><Empty/><!-- in -->" +
+            "<x:Other xmlns:x=\"urn:other\" x:a=\"1\">text</x:Other></Content>\n" +
+            "    <Management/>\n  </ArchiveUnit>\n  <Name>  value </Name>\n  <Void></Void>\n" +
+            "</ArchiveTransfer>";
+
+    private List<String> readDocument(boolean cursorMode) throws Exception {
+        List<String> result = new ArrayList<String>();
+        boolean previousCursorMode = SEDAXMLEventReader.isCursorMode();
+        SEDAXMLEventReader.setCursorMode(cursorMode);
+        try (SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(
+                new ByteArrayInputStream(XML_DOCUMENT.getBytes(StandardCharsets.UTF_8)))) {
+            result.add(Integer.toString(xmlReader.nextUsefullEvent().getEventType()));
+            result.add(xmlReader.peekName());
+            result.add(Boolean.toString(xmlReader.nextBlockIfNamed("ArchiveTransfer")));
+            result.add(String.valueOf(xmlReader.nextDateValueIfNamed("Date")));
+            result.add(String.valueOf(xmlReader.nextBooleanValueIfNamed("Flag")));
+            result.add(xmlReader.peekAttribute("id"));
+            result.add(xmlReader.peekAttribute("http://www.w3.org/1999/xlink", "href"));
+            result.add(xmlReader.peekAttributeBlockIfNamed("ArchiveUnit", "id"));
+            result.add(Boolean.toString(xmlReader.nextBlockIfNamed("ArchiveUnit")));
+            result.add(xmlReader.nextBlockAsStringIfNamed("Content"));
+            result.add(xmlReader.nextMandatoryBlockAsString("Management"));
+            xmlReader.endBlockNamed("ArchiveUnit");
+            result.add(xmlReader.nextValueIfNamed("Name"));
+            result.add(xmlReader.nextValueIfNamed("Unknown"));
+            result.add(xmlReader.nextMandatoryValue("Void"));
+            xmlReader.endBlockNamed("ArchiveTransfer");
+            result.add(Boolean.toString(xmlReader.xmlReader.peek().isEndDocument()));
+        } finally {
+            SEDAXMLEventReader.setCursorMode(previousCursorMode);
+        }
+        return result;
+    }
+
+    @Test
+    void testCursorModeReading() throws Exception {
+        // Given
+        List<String> eventResult = readDocument(false);
+
+        // When
+        List<String> cursorResult = readDocument(true);
+
+        // Then
+        assertThat(cursorResult).isEqualTo(eventResult);
+        assertThat(cursorResult).contains("  value ", "", "true");
+    }
+
+    private List<String> importArchiveUnitsXmlData(boolean cursorMode) throws Exception {
+        List<String> result = new ArrayList<String>();
+        boolean previousCursorMode = SEDAXMLEventReader.isCursorMode();
+        SEDAXMLEventReader.setCursorMode(cursorMode);
+        try {
+            SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                    "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSIP.zip-tmpdir", null);
+            si.doImport();
+            DataObjectPackage dataObjectPackage = si.getArchiveTransfer().getDataObjectPackage();
+            for (ArchiveUnit au : dataObjectPackage.getAuInDataObjectPackageIdMap().values()) {
+                result.add(au.getContentXmlData());
+                result.add(au.getManagementXmlData());
+            }
+        } finally {
+            SEDAXMLEventReader.setCursorMode(previousCursorMode);
+        }
+        return result;
+    }
+
+    @Test
+    void testCursorModeImport() throws Exception {
+        // Given
+        List<String> eventResult = importArchiveUnitsXmlData(false);
+
+        // When
+        List<String> cursorResult = importArchiveUnitsXmlData(true);
+
+        // Then
+        assertThat(cursorResult).isEqualTo(eventResult);
+    }
+
+    //Cleaning tmp folder
+    @AfterEach
+    public void deleteOutputFile() {
+        FileUtils.deleteQuietly(new File("target/tmpJunit/"));
+    }
+}